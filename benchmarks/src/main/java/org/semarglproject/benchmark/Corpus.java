@@ -0,0 +1,74 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shape of benchmark documents. Every parameter can be overridden from command line
+ * (for example <code>-p nonAsciiRatio=0.3</code>), the number of triples is fixed to {@link #TRIPLES}
+ * so scores can be reported per triple.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    /**
+     * Number of triples in each generated document
+     */
+    public static final int TRIPLES = 10000;
+
+    public static final String BASE_URI = CorpusGenerator.BASE_URI;
+
+    @Param({"42"})
+    public long seed;
+
+    @Param({"4"})
+    public int minLiteralLength;
+
+    @Param({"48"})
+    public int maxLiteralLength;
+
+    @Param({"0"})
+    public double nonAsciiRatio;
+
+    @Param({"0"})
+    public double blankNodeRatio;
+
+    @Param({"0"})
+    public int nestingDepth;
+
+    @Param({"4"})
+    public int prefixes;
+
+    @Param({"4"})
+    public int graphs;
+
+    /**
+     * @return generator of documents with configured shape
+     */
+    public CorpusGenerator newGenerator() {
+        return new CorpusGenerator(seed)
+                .setTriples(TRIPLES)
+                .setLiteralLength(minLiteralLength, maxLiteralLength)
+                .setNonAsciiRatio(nonAsciiRatio)
+                .setBlankNodeRatio(blankNodeRatio)
+                .setNestingDepth(nestingDepth)
+                .setPrefixes(prefixes)
+                .setGraphs(graphs);
+    }
+}
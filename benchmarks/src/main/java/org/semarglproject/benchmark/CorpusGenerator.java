@@ -0,0 +1,777 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import org.semarglproject.rdf.NQuadsSerializer;
+import org.semarglproject.rdf.NTriplesSerializer;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.CharOutputSink;
+import org.semarglproject.sink.QuadSink;
+import org.semarglproject.sink.TripleSink;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic RDF documents. Generator with the same seed and shape
+ * always produces the same triples and every supported format describes exactly the same graph,
+ * so benchmark scores of different parsers can be compared per triple.
+ * <p>
+ *     Document is a sequence of resources, each having a type and up to four properties
+ *     (plain literal, literal with language, typed literal or link). Links can be replaced with nested
+ *     resources up to configured depth, every resource can be a blank node.
+ * </p>
+ */
+public final class CorpusGenerator {
+
+    /**
+     * Supported output formats
+     */
+    public enum Format {
+        NTRIPLES("nt"), NQUADS("nq"), RDF_XML("rdf"), XHTML("xhtml"), HTML5("html"), JSON_LD("jsonld");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * @return file extension used for documents in this format
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Base URI all generated documents should be processed with
+     */
+    public static final String BASE_URI = "http://example.org/";
+
+    private static final String RESOURCE = BASE_URI + "resource/";
+    private static final String GRAPH = BASE_URI + "graph/";
+    private static final String VOCAB = BASE_URI + "vocab";
+    private static final String RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+    private static final String XSD_INTEGER = XSD + "integer";
+
+    private static final int PROPERTIES_PER_NODE = 4;
+    private static final int CLASSES = 10;
+    private static final String[] LANGUAGES = {"en", "de", "fr", "ru", "ja"};
+    private static final String ASCII_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final String NON_ASCII_CHARS = "äöüßéèñçøåæœжзийклмнпрстуфхцчшыэюяαβγδεζηθλμξπσφψω漢字日本語中文한국어";
+
+    private static final int PLAIN_LITERAL = 0;
+    private static final int LANG_LITERAL = 1;
+    private static final int TYPED_LITERAL = 2;
+    private static final int LINK = 3;
+    private static final int NESTED = 4;
+
+    private final long seed;
+
+    private int triples = 10000;
+    private int minLiteralLength = 4;
+    private int maxLiteralLength = 48;
+    private double nonAsciiRatio = 0;
+    private double blankNodeRatio = 0;
+    private int nestingDepth = 0;
+    private int prefixes = 4;
+    private int graphs = 0;
+
+    /**
+     * Creates generator with default shape: 10000 triples, literals of 4-48 characters, ASCII only,
+     * no blank nodes, no nesting, 4 prefixes and no named graphs.
+     * @param seed seed of pseudorandom sequence
+     */
+    public CorpusGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param triples exact number of triples in generated documents
+     * @return this generator
+     */
+    public CorpusGenerator setTriples(int triples) {
+        if (triples < 0) {
+            throw new IllegalArgumentException("Triple count must not be negative");
+        }
+        this.triples = triples;
+        return this;
+    }
+
+    /**
+     * Length of plain literals is uniformly distributed in specified range. Typed literals are integers.
+     * @param min minimal literal length in characters
+     * @param max maximal literal length in characters
+     * @return this generator
+     */
+    public CorpusGenerator setLiteralLength(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid literal length range " + min + ".." + max);
+        }
+        this.minLiteralLength = min;
+        this.maxLiteralLength = max;
+        return this;
+    }
+
+    /**
+     * @param nonAsciiRatio probability of each literal character to be non-ASCII
+     * @return this generator
+     */
+    public CorpusGenerator setNonAsciiRatio(double nonAsciiRatio) {
+        this.nonAsciiRatio = checkRatio(nonAsciiRatio);
+        return this;
+    }
+
+    /**
+     * @param blankNodeRatio probability of each resource to be a blank node
+     * @return this generator
+     */
+    public CorpusGenerator setBlankNodeRatio(double blankNodeRatio) {
+        this.blankNodeRatio = checkRatio(blankNodeRatio);
+        return this;
+    }
+
+    /**
+     * @param nestingDepth maximal depth of resources nested into properties of other resources,
+     *                     0 disables nesting
+     * @return this generator
+     */
+    public CorpusGenerator setNestingDepth(int nestingDepth) {
+        if (nestingDepth < 0) {
+            throw new IllegalArgumentException("Nesting depth must not be negative");
+        }
+        this.nestingDepth = nestingDepth;
+        return this;
+    }
+
+    /**
+     * @param prefixes number of vocabularies predicates and types are taken from
+     * @return this generator
+     */
+    public CorpusGenerator setPrefixes(int prefixes) {
+        if (prefixes < 1) {
+            throw new IllegalArgumentException("At least one prefix is required");
+        }
+        this.prefixes = prefixes;
+        return this;
+    }
+
+    /**
+     * Resources are assigned to named graphs in round robin order. Graphs are written
+     * to N-Quads and JSON-LD documents only.
+     * @param graphs number of named graphs, 0 puts all triples to default graph
+     * @return this generator
+     */
+    public CorpusGenerator setGraphs(int graphs) {
+        if (graphs < 0) {
+            throw new IllegalArgumentException("Graph count must not be negative");
+        }
+        this.graphs = graphs;
+        return this;
+    }
+
+    private static double checkRatio(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("Ratio must be in [0, 1] range");
+        }
+        return ratio;
+    }
+
+    /**
+     * Passes generated triples to specified sink as a single stream. Quads are passed
+     * only if sink is a {@link QuadSink} and named graphs are enabled.
+     * @param sink sink to pass triples to
+     * @throws ParseException if sink fails to process stream
+     */
+    public void generate(TripleSink sink) throws ParseException {
+        sink.startStream();
+        generate(new StatementWriter(sink));
+        sink.endStream();
+    }
+
+    /**
+     * Generates document in specified format.
+     * @param format output format
+     * @return generated document
+     */
+    public String generate(Format format) {
+        StringWriter result = new StringWriter();
+        try {
+            write(format, result);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes document in specified format.
+     * @param format output format
+     * @param out writer to write document to
+     * @throws IOException if writer fails
+     */
+    public void write(Format format, Writer out) throws IOException {
+        switch (format) {
+            case NTRIPLES:
+            case NQUADS:
+                CharOutputSink charSink = new CharOutputSink();
+                charSink.connect(out);
+                TripleSink serializer = format == Format.NQUADS
+                        ? NQuadsSerializer.connect(charSink) : NTriplesSerializer.connect(charSink);
+                try {
+                    generate(serializer);
+                } catch (ParseException e) {
+                    throw new IOException(e);
+                }
+                break;
+            case RDF_XML:
+                generate(new RdfXmlWriter(out));
+                break;
+            case XHTML:
+                generate(new RdfaWriter(out, false));
+                break;
+            case HTML5:
+                generate(new RdfaWriter(out, true));
+                break;
+            default:
+                generate(new JsonLdWriter(out));
+                break;
+        }
+        out.flush();
+    }
+
+    private <E extends Exception> void generate(ResourceWriter<E> writer) throws E {
+        Random random = new Random(seed);
+        BitSet blankResources = new BitSet();
+        writer.start();
+        int remaining = triples;
+        for (int i = 0; remaining > 0; i++) {
+            boolean blank = random.nextDouble() < blankNodeRatio;
+            blankResources.set(i, blank);
+            Node node = new Node(String.valueOf(i), blank);
+            remaining = fill(node, i, 0, remaining, random, blankResources);
+            writer.resource(node, graphs == 0 ? null : GRAPH + (i % graphs));
+        }
+        writer.end();
+    }
+
+    private int fill(Node node, int resource, int depth, int remaining, Random random, BitSet blankResources) {
+        node.type = new Name(random.nextInt(prefixes), "Class" + random.nextInt(CLASSES));
+        remaining--;
+        for (int i = 0; i < PROPERTIES_PER_NODE && remaining > 0; i++) {
+            Property property = new Property(new Name(random.nextInt(prefixes), "p" + i), random.nextInt(4));
+            node.properties.add(property);
+            remaining--;
+            switch (property.kind) {
+                case PLAIN_LITERAL:
+                    property.value = literal(random);
+                    break;
+                case LANG_LITERAL:
+                    property.value = literal(random);
+                    property.qualifier = LANGUAGES[random.nextInt(LANGUAGES.length)];
+                    break;
+                case TYPED_LITERAL:
+                    property.value = String.valueOf(random.nextInt(1000000));
+                    property.qualifier = XSD_INTEGER;
+                    break;
+                default:
+                    if (depth < nestingDepth && remaining > 0 && random.nextBoolean()) {
+                        property.kind = NESTED;
+                        property.nested = new Node(node.path + '_' + i, random.nextDouble() < blankNodeRatio);
+                        remaining = fill(property.nested, resource, depth + 1, remaining, random, blankResources);
+                    } else {
+                        int target = random.nextInt(resource + 1);
+                        property.value = blankResources.get(target) ? "_:r" + target : RESOURCE + target;
+                    }
+                    break;
+            }
+        }
+        return remaining;
+    }
+
+    private String literal(Random random) {
+        int length = minLiteralLength + random.nextInt(maxLiteralLength - minLiteralLength + 1);
+        StringBuilder result = new StringBuilder(length);
+        int wordLength = 0;
+        while (result.length() < length) {
+            if (wordLength > 0 && random.nextInt(6) == 0) {
+                int separator = random.nextInt(16);
+                result.append(separator == 0 ? '\n' : separator == 1 ? '"' : ' ');
+                wordLength = 0;
+            } else if (random.nextDouble() < nonAsciiRatio) {
+                result.append(NON_ASCII_CHARS.charAt(random.nextInt(NON_ASCII_CHARS.length())));
+                wordLength++;
+            } else {
+                result.append(ASCII_CHARS.charAt(random.nextInt(ASCII_CHARS.length())));
+                wordLength++;
+            }
+        }
+        return result.toString();
+    }
+
+    private static String namespace(int prefix) {
+        return VOCAB + prefix + '#';
+    }
+
+    private static final class Name {
+        final int prefix;
+        final String localName;
+
+        Name(int prefix, String localName) {
+            this.prefix = prefix;
+            this.localName = localName;
+        }
+
+        String iri() {
+            return namespace(prefix) + localName;
+        }
+
+        String curie() {
+            return "ns" + prefix + ':' + localName;
+        }
+    }
+
+    private static final class Node {
+        final String path;
+        final String id;
+        final boolean blank;
+        final List<Property> properties = new ArrayList<Property>(PROPERTIES_PER_NODE);
+        Name type;
+
+        Node(String path, boolean blank) {
+            this.path = path;
+            this.id = blank ? "_:r" + path : RESOURCE + path;
+            this.blank = blank;
+        }
+    }
+
+    private static final class Property {
+        final Name predicate;
+        int kind;
+        String value;
+        String qualifier;
+        Node nested;
+
+        Property(Name predicate, int kind) {
+            this.predicate = predicate;
+            this.kind = kind;
+        }
+    }
+
+    private abstract static class ResourceWriter<E extends Exception> {
+        abstract void start() throws E;
+
+        abstract void resource(Node node, String graph) throws E;
+
+        abstract void end() throws E;
+    }
+
+    private static final class StatementWriter extends ResourceWriter<RuntimeException> {
+
+        private final TripleSink triples;
+        private final QuadSink quads;
+
+        StatementWriter(TripleSink sink) {
+            this.triples = sink;
+            this.quads = sink instanceof QuadSink ? (QuadSink) sink : null;
+        }
+
+        @Override
+        void start() {
+        }
+
+        @Override
+        void resource(Node node, String graph) {
+            addNonLiteral(node.id, RDF + "type", node.type.iri(), graph);
+            for (Property property : node.properties) {
+                String pred = property.predicate.iri();
+                if (property.kind == NESTED) {
+                    addNonLiteral(node.id, pred, property.nested.id, graph);
+                    resource(property.nested, graph);
+                } else if (property.kind == LINK) {
+                    addNonLiteral(node.id, pred, property.value, graph);
+                } else if (property.kind == TYPED_LITERAL) {
+                    if (quads == null || graph == null) {
+                        triples.addTypedLiteral(node.id, pred, property.value, property.qualifier);
+                    } else {
+                        quads.addTypedLiteral(node.id, pred, property.value, property.qualifier, graph);
+                    }
+                } else if (quads == null || graph == null) {
+                    triples.addPlainLiteral(node.id, pred, property.value, property.qualifier);
+                } else {
+                    quads.addPlainLiteral(node.id, pred, property.value, property.qualifier, graph);
+                }
+            }
+        }
+
+        private void addNonLiteral(String subj, String pred, String obj, String graph) {
+            if (quads == null || graph == null) {
+                triples.addNonLiteral(subj, pred, obj);
+            } else {
+                quads.addNonLiteral(subj, pred, obj, graph);
+            }
+        }
+
+        @Override
+        void end() {
+        }
+    }
+
+    private abstract class MarkupWriter extends ResourceWriter<IOException> {
+
+        final Writer out;
+
+        MarkupWriter(Writer out) {
+            this.out = out;
+        }
+
+        void writeEscaped(String str) throws IOException {
+            for (int i = 0; i < str.length(); i++) {
+                char ch = str.charAt(i);
+                switch (ch) {
+                    case '&':
+                        out.write("&amp;");
+                        break;
+                    case '<':
+                        out.write("&lt;");
+                        break;
+                    case '>':
+                        out.write("&gt;");
+                        break;
+                    case '"':
+                        out.write("&quot;");
+                        break;
+                    default:
+                        out.write(ch);
+                        break;
+                }
+            }
+        }
+
+        void indent(int depth) throws IOException {
+            for (int i = 0; i <= depth; i++) {
+                out.write("  ");
+            }
+        }
+    }
+
+    private final class RdfXmlWriter extends MarkupWriter {
+
+        RdfXmlWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void start() throws IOException {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rdf:RDF xmlns:rdf=\"" + RDF + "\"");
+            for (int i = 0; i < prefixes; i++) {
+                out.write("\n    xmlns:ns" + i + "=\"" + namespace(i) + "\"");
+            }
+            out.write(">\n");
+        }
+
+        @Override
+        void resource(Node node, String graph) throws IOException {
+            writeNode(node, 0, true);
+        }
+
+        private void writeNode(Node node, int depth, boolean topLevel) throws IOException {
+            String type = node.type.curie();
+            indent(depth);
+            out.write('<' + type);
+            if (!node.blank) {
+                out.write(" rdf:about=\"" + node.id + '"');
+            } else if (topLevel) {
+                out.write(" rdf:nodeID=\"" + node.id.substring(2) + '"');
+            }
+            out.write(">\n");
+            for (Property property : node.properties) {
+                String pred = property.predicate.curie();
+                indent(depth + 1);
+                out.write('<' + pred);
+                if (property.kind == NESTED) {
+                    out.write(">\n");
+                    writeNode(property.nested, depth + 2, false);
+                    indent(depth + 1);
+                } else if (property.kind == LINK) {
+                    if (property.value.startsWith("_:")) {
+                        out.write(" rdf:nodeID=\"" + property.value.substring(2) + "\"/>\n");
+                    } else {
+                        out.write(" rdf:resource=\"" + property.value + "\"/>\n");
+                    }
+                    continue;
+                } else {
+                    if (property.kind == LANG_LITERAL) {
+                        out.write(" xml:lang=\"" + property.qualifier + "\">");
+                    } else if (property.kind == TYPED_LITERAL) {
+                        out.write(" rdf:datatype=\"" + property.qualifier + "\">");
+                    } else {
+                        out.write('>');
+                    }
+                    writeEscaped(property.value);
+                }
+                out.write("</" + pred + ">\n");
+            }
+            indent(depth);
+            out.write("</" + type + ">\n");
+        }
+
+        @Override
+        void end() throws IOException {
+            out.write("</rdf:RDF>\n");
+        }
+    }
+
+    private final class RdfaWriter extends MarkupWriter {
+
+        private final boolean html5;
+
+        RdfaWriter(Writer out, boolean html5) {
+            super(out);
+            this.html5 = html5;
+        }
+
+        @Override
+        void start() throws IOException {
+            if (html5) {
+                out.write("<!DOCTYPE html>\n<html prefix=\"");
+            } else {
+                out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<html xmlns=\"http://www.w3.org/1999/xhtml\" prefix=\"");
+            }
+            for (int i = 0; i < prefixes; i++) {
+                out.write((i == 0 ? "ns" : " ns") + i + ": " + namespace(i));
+            }
+            out.write("\">\n<head><title>Benchmark</title></head>\n<body>\n");
+        }
+
+        @Override
+        void resource(Node node, String graph) throws IOException {
+            writeNode(node, 0, true);
+        }
+
+        private void writeNode(Node node, int depth, boolean topLevel) throws IOException {
+            indent(depth);
+            out.write("<div");
+            if (!node.blank || topLevel) {
+                out.write(" about=\"" + node.id + '"');
+            }
+            out.write(" typeof=\"" + node.type.curie() + "\">\n");
+            for (Property property : node.properties) {
+                String pred = property.predicate.curie();
+                indent(depth + 1);
+                if (property.kind == NESTED) {
+                    out.write("<div rel=\"" + pred + "\">\n");
+                    writeNode(property.nested, depth + 2, false);
+                    indent(depth + 1);
+                    out.write("</div>\n");
+                } else if (property.kind == LINK) {
+                    out.write("<span rel=\"" + pred + "\" resource=\"" + property.value + "\"></span>\n");
+                } else {
+                    out.write("<span property=\"" + pred + '"');
+                    if (property.kind == LANG_LITERAL) {
+                        out.write((html5 ? " lang=\"" : " xml:lang=\"") + property.qualifier + '"');
+                    } else if (property.kind == TYPED_LITERAL) {
+                        out.write(" datatype=\"xsd:integer\"");
+                    }
+                    out.write('>');
+                    writeEscaped(property.value);
+                    out.write("</span>\n");
+                }
+            }
+            indent(depth);
+            out.write("</div>\n");
+        }
+
+        @Override
+        void end() throws IOException {
+            out.write("</body>\n</html>\n");
+        }
+    }
+
+    private final class JsonLdWriter extends ResourceWriter<IOException> {
+
+        private final Writer out;
+        private boolean first = true;
+
+        JsonLdWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        void start() throws IOException {
+            out.write("{\n  \"@context\": {\"xsd\": \"" + XSD + '"');
+            for (int i = 0; i < prefixes; i++) {
+                out.write(", \"ns" + i + "\": \"" + namespace(i) + '"');
+            }
+            out.write("},\n  \"@graph\": [");
+        }
+
+        @Override
+        void resource(Node node, String graph) throws IOException {
+            out.write(first ? "\n    " : ",\n    ");
+            first = false;
+            if (graph == null) {
+                writeNode(node, 2, true);
+            } else {
+                out.write("{\"@id\": \"" + graph + "\", \"@graph\": [\n      ");
+                writeNode(node, 3, true);
+                out.write("]}");
+            }
+        }
+
+        private void writeNode(Node node, int depth, boolean topLevel) throws IOException {
+            out.write('{');
+            if (!node.blank || topLevel) {
+                out.write("\"@id\": \"" + node.id + "\", ");
+            }
+            out.write("\"@type\": \"" + node.type.curie() + '"');
+            for (Property property : node.properties) {
+                out.write(",\n");
+                for (int i = 0; i <= depth; i++) {
+                    out.write("  ");
+                }
+                out.write('"' + property.predicate.curie() + "\": ");
+                if (property.kind == NESTED) {
+                    writeNode(property.nested, depth + 1, false);
+                } else if (property.kind == LINK) {
+                    out.write("{\"@id\": \"" + property.value + "\"}");
+                } else {
+                    out.write("{\"@value\": ");
+                    writeString(property.value);
+                    if (property.kind == LANG_LITERAL) {
+                        out.write(", \"@language\": \"" + property.qualifier + "\"}");
+                    } else if (property.kind == TYPED_LITERAL) {
+                        out.write(", \"@type\": \"xsd:integer\"}");
+                    } else {
+                        out.write('}');
+                    }
+                }
+            }
+            out.write('}');
+        }
+
+        private void writeString(String str) throws IOException {
+            out.write('"');
+            for (int i = 0; i < str.length(); i++) {
+                char ch = str.charAt(i);
+                if (ch == '"' || ch == '\\') {
+                    out.write('\\');
+                    out.write(ch);
+                } else if (ch == '\n') {
+                    out.write("\\n");
+                } else {
+                    out.write(ch);
+                }
+            }
+            out.write('"');
+        }
+
+        @Override
+        void end() throws IOException {
+            out.write("\n  ]\n}\n");
+        }
+    }
+
+    /**
+     * Sets shape parameter by name. Used to configure generator from command line.
+     * @param name one of <code>triples</code>, <code>minLiteralLength</code>, <code>maxLiteralLength</code>,
+     *             <code>nonAsciiRatio</code>, <code>blankNodeRatio</code>, <code>nestingDepth</code>,
+     *             <code>prefixes</code> and <code>graphs</code>
+     * @param value parameter value
+     * @return true if parameter is known
+     */
+    boolean setOption(String name, String value) {
+        if ("triples".equals(name)) {
+            setTriples(Integer.parseInt(value));
+        } else if ("minLiteralLength".equals(name)) {
+            int min = Integer.parseInt(value);
+            setLiteralLength(min, Math.max(min, maxLiteralLength));
+        } else if ("maxLiteralLength".equals(name)) {
+            int max = Integer.parseInt(value);
+            setLiteralLength(Math.min(minLiteralLength, max), max);
+        } else if ("nonAsciiRatio".equals(name)) {
+            setNonAsciiRatio(Double.parseDouble(value));
+        } else if ("blankNodeRatio".equals(name)) {
+            setBlankNodeRatio(Double.parseDouble(value));
+        } else if ("nestingDepth".equals(name)) {
+            setNestingDepth(Integer.parseInt(value));
+        } else if ("prefixes".equals(name)) {
+            setPrefixes(Integer.parseInt(value));
+        } else if ("graphs".equals(name)) {
+            setGraphs(Integer.parseInt(value));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes generated documents in all supported formats to specified directory.
+     * Usage: <code>CorpusGenerator &lt;directory&gt; [option=value]...</code>, where options are
+     * <code>seed</code> and shape parameters accepted by {@link #setOption(String, String)}.
+     * @param args command line arguments
+     * @throws IOException if documents can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: CorpusGenerator <directory> [option=value]...");
+            System.exit(1);
+        }
+        long seed = 0;
+        List<String[]> options = new ArrayList<String[]>();
+        for (int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option " + args[i]);
+            }
+            if ("seed".equals(option[0])) {
+                seed = Long.parseLong(option[1]);
+            } else {
+                options.add(option);
+            }
+        }
+        CorpusGenerator generator = new CorpusGenerator(seed);
+        for (String[] option : options) {
+            if (!generator.setOption(option[0], option[1])) {
+                throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+        File dir = new File(args[0]);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create directory " + dir);
+        }
+        for (Format format : Format.values()) {
+            File file = new File(dir, "corpus." + format.getExtension());
+            Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                generator.write(format, out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import org.semarglproject.sink.CharSink;
+
+/**
+ * Char sink which only counts received chars.
+ */
+final class NullCharSink implements CharSink {
+
+    private long count;
+
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public CharSink process(String str) {
+        count += str.length();
+        return this;
+    }
+
+    @Override
+    public CharSink process(char ch) {
+        count++;
+        return this;
+    }
+
+    @Override
+    public CharSink process(char[] buffer, int start, int count) {
+        this.count += count;
+        return this;
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+    }
+
+    @Override
+    public void startStream() {
+        count = 0;
+    }
+
+    @Override
+    public void endStream() {
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        return false;
+    }
+}
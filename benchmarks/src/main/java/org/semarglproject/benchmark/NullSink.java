@@ -0,0 +1,79 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import org.semarglproject.sink.QuadSink;
+
+/**
+ * Sink which only counts received statements. Returned counts are consumed by benchmarks,
+ * so parsing can't be eliminated by JIT.
+ */
+final class NullSink implements QuadSink {
+
+    private long count;
+
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        count++;
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        count++;
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        count++;
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        count++;
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        count++;
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        count++;
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+    }
+
+    @Override
+    public void startStream() {
+        count = 0;
+    }
+
+    @Override
+    public void endStream() {
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        return false;
+    }
+}
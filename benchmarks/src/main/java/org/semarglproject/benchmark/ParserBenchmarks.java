@@ -0,0 +1,151 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semarglproject.jsonld.JsonLdParser;
+import org.semarglproject.rdf.NQuadsParser;
+import org.semarglproject.rdf.NTriplesParser;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.RdfXmlParser;
+import org.semarglproject.rdf.rdfa.RdfaParser;
+import org.semarglproject.source.StreamProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing throughput. Each operation is a triple, so scores are reported in triples
+ * per second and <code>gc.alloc.rate.norm</code> of GC profiler shows bytes allocated per triple.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ParserBenchmarks {
+
+    private final NullSink sink = new NullSink();
+
+    private String ntriples;
+    private byte[] ntriplesBytes;
+    private String nquads;
+    private String rdfXml;
+    private String xhtml;
+    private String html5;
+    private String jsonLd;
+
+    private StreamProcessor ntriplesProcessor;
+    private StreamProcessor nquadsProcessor;
+    private StreamProcessor rdfXmlProcessor;
+    private StreamProcessor rdfaProcessor;
+    private StreamProcessor jsonLdProcessor;
+
+    @Setup
+    public void setUp(Corpus corpus) throws ParseException, UnsupportedEncodingException {
+        CorpusGenerator generator = corpus.newGenerator();
+        ntriples = generator.generate(CorpusGenerator.Format.NTRIPLES);
+        ntriplesBytes = ntriples.getBytes("UTF-8");
+        nquads = generator.generate(CorpusGenerator.Format.NQUADS);
+        rdfXml = generator.generate(CorpusGenerator.Format.RDF_XML);
+        xhtml = generator.generate(CorpusGenerator.Format.XHTML);
+        html5 = generator.generate(CorpusGenerator.Format.HTML5);
+        jsonLd = generator.generate(CorpusGenerator.Format.JSON_LD);
+
+        ntriplesProcessor = new StreamProcessor(NTriplesParser.connect(sink));
+        nquadsProcessor = new StreamProcessor(NQuadsParser.connect(sink));
+        rdfXmlProcessor = new StreamProcessor(RdfXmlParser.connect(sink));
+        rdfaProcessor = new StreamProcessor(RdfaParser.connect(sink));
+        jsonLdProcessor = new StreamProcessor(JsonLdParser.connect(sink));
+
+        // scores are meaningful only if every document produces the same triples
+        verify(ntriplesProcessor, ntriples);
+        verify(nquadsProcessor, nquads);
+        verify(rdfXmlProcessor, rdfXml);
+        verify(rdfaProcessor, xhtml);
+        verify(rdfaProcessor, html5);
+        verify(jsonLdProcessor, jsonLd);
+    }
+
+    private void verify(StreamProcessor processor, String document) throws ParseException {
+        long count = parse(processor, document);
+        if (count != Corpus.TRIPLES) {
+            throw new IllegalStateException("Expected " + Corpus.TRIPLES + " triples, got " + count);
+        }
+    }
+
+    private long parse(StreamProcessor processor, String document) throws ParseException {
+        processor.process(new StringReader(document), Corpus.BASE_URI);
+        return sink.getCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long ntriples() throws ParseException {
+        return parse(ntriplesProcessor, ntriples);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long ntriplesFromBytes() throws ParseException {
+        ntriplesProcessor.process(new ByteArrayInputStream(ntriplesBytes), Corpus.BASE_URI);
+        return sink.getCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long nquads() throws ParseException {
+        return parse(nquadsProcessor, nquads);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long rdfXml() throws ParseException {
+        return parse(rdfXmlProcessor, rdfXml);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long rdfa() throws ParseException {
+        return parse(rdfaProcessor, xhtml);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long rdfaHtml5() throws ParseException {
+        return parse(rdfaProcessor, html5);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long jsonLd() throws ParseException {
+        return parse(jsonLdProcessor, jsonLd);
+    }
+
+}
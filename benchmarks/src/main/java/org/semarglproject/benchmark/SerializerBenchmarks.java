@@ -0,0 +1,88 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semarglproject.rdf.NQuadsSerializer;
+import org.semarglproject.rdf.NTriplesSerializer;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.TurtleSerializer;
+import org.semarglproject.sink.QuadSink;
+import org.semarglproject.sink.TripleSink;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serialization throughput of generated triples written into a char sink which
+ * discards its input. Scores are reported in triples per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SerializerBenchmarks {
+
+    private final NullCharSink charSink = new NullCharSink();
+    private final TripleRecorder triples = new TripleRecorder();
+    private final TripleRecorder quads = new TripleRecorder();
+
+    private TripleSink ntriplesSerializer;
+    private QuadSink nquadsSerializer;
+    private TripleSink turtleSerializer;
+
+    @Setup
+    public void setUp(Corpus corpus) throws ParseException {
+        corpus.newGenerator().setGraphs(0).generate(triples);
+        corpus.newGenerator().generate(quads);
+        ntriplesSerializer = NTriplesSerializer.connect(charSink);
+        nquadsSerializer = NQuadsSerializer.connect(charSink);
+        turtleSerializer = TurtleSerializer.connect(charSink);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long ntriples() throws ParseException {
+        triples.replay(ntriplesSerializer);
+        return charSink.getCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long nquads() throws ParseException {
+        quads.replay(nquadsSerializer);
+        return charSink.getCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long turtle() throws ParseException {
+        triples.replay(turtleSerializer);
+        return charSink.getCount();
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.apache.clerezza.rdf.core.NonLiteral;
+import org.apache.clerezza.rdf.core.Resource;
+import org.apache.clerezza.rdf.core.UriRef;
+import org.apache.clerezza.rdf.core.impl.SimpleMGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.semarglproject.clerezza.core.sink.ClerezzaSink;
+import org.semarglproject.jena.core.sink.AbstractJenaSink;
+import org.semarglproject.jena.core.sink.JenaSink;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sesame.core.sink.SesameSink;
+import org.semarglproject.sink.RingBufferPipe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures store adapters separately from parsing: every benchmark replays the same generated
+ * triples into a newly created sink, so each document starts with an empty blank node map.
+ * <ul>
+ *     <li><code>*Conversion</code> benchmarks only convert terms to store objects and discard them;</li>
+ *     <li><code>*Load</code> benchmarks add converted triples to an empty in-memory store, the difference
+ *     with conversion is the cost of store updates (batch flushes in case of Jena);</li>
+ *     <li><code>subjects</code> parameter switches all resources to distinct blank nodes which shows
+ *     the cost of blank node map growth.</li>
+ * </ul>
+ * Scores are reported in triples per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SinkBenchmarks {
+
+    @Param({"iri", "bnode"})
+    public String subjects;
+
+    private final TripleRecorder triples = new TripleRecorder();
+
+    /**
+     * Batch sizes used with Jena sink. Kept in separate state so other benchmarks are not
+     * multiplied by its values.
+     */
+    @State(Scope.Thread)
+    public static class JenaBatch {
+        @Param({"64", "512", "4096"})
+        public int batchSize;
+    }
+
+    @Setup
+    public void setUp(Corpus corpus) throws ParseException {
+        CorpusGenerator generator = corpus.newGenerator().setGraphs(0);
+        if ("bnode".equals(subjects)) {
+            generator.setBlankNodeRatio(1);
+        }
+        generator.generate(triples);
+        if (triples.size() != Corpus.TRIPLES) {
+            throw new IllegalStateException("Unexpected number of triples: " + triples.size());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long jenaConversion() throws ParseException {
+        ConvertingJenaSink sink = new ConvertingJenaSink();
+        triples.replay(sink);
+        return sink.count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long sesameConversion() throws ParseException {
+        triples.replay(SesameSink.connect(new RDFHandlerBase()));
+        return triples.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long clerezzaConversion() throws ParseException {
+        ConvertingClerezzaSink sink = new ConvertingClerezzaSink();
+        triples.replay(sink);
+        return sink.count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long jenaLoad(JenaBatch batch) throws ParseException {
+        Model model = ModelFactory.createDefaultModel();
+        triples.replay(JenaSink.connect(model, batch.batchSize));
+        return model.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long jenaLoadAsync(JenaBatch batch) throws ParseException {
+        Model model = ModelFactory.createDefaultModel();
+        triples.replay(RingBufferPipe.connect(JenaSink.connect(model, batch.batchSize)));
+        return model.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long sesameLoad() throws ParseException {
+        LinkedHashModel model = new LinkedHashModel();
+        triples.replay(SesameSink.connect(new StatementCollector(model)));
+        return model.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.TRIPLES)
+    public long clerezzaLoad() throws ParseException {
+        SimpleMGraph graph = new SimpleMGraph();
+        triples.replay(ClerezzaSink.connect(graph));
+        return graph.size();
+    }
+
+    /**
+     * Jena sink which converts terms to Jena nodes and discards them.
+     */
+    private static final class ConvertingJenaSink extends AbstractJenaSink {
+
+        private long count;
+
+        private ConvertingJenaSink() {
+            super(null);
+        }
+
+        @Override
+        protected void addTriple(Node subj, Node pred, Node obj) {
+            count++;
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+        }
+
+        @Override
+        public void startStream() {
+        }
+
+        @Override
+        public void endStream() {
+        }
+    }
+
+    /**
+     * Clerezza sink which converts terms to Clerezza resources and discards them.
+     */
+    private static final class ConvertingClerezzaSink extends ClerezzaSink {
+
+        private long count;
+
+        private ConvertingClerezzaSink() {
+            super(null);
+        }
+
+        @Override
+        protected void addTriple(NonLiteral subj, UriRef pred, Resource obj) {
+            count++;
+        }
+    }
+
+}
@@ -0,0 +1,413 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.apache.clerezza.rdf.core.MGraph;
+import org.apache.clerezza.rdf.core.impl.SimpleMGraph;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.semarglproject.clerezza.core.sink.ClerezzaSink;
+import org.semarglproject.jena.core.sink.JenaSink;
+import org.semarglproject.jsonld.JsonLdParser;
+import org.semarglproject.rdf.NQuadsParser;
+import org.semarglproject.rdf.NTriplesParser;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.RdfXmlParser;
+import org.semarglproject.rdf.rdfa.RdfaParser;
+import org.semarglproject.sesame.core.sink.SesameSink;
+import org.semarglproject.sink.DataSink;
+import org.semarglproject.source.StreamProcessor;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.StringReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Long running soak test. Repeatedly processes generated documents through reused
+ * {@link StreamProcessor} pipelines and reports GC pause percentiles, allocation rate and slope
+ * of heap retained after full GC. Fails (exits with status 1) if retained heap of any pipeline
+ * grows faster than configured threshold.
+ * <p>
+ *     Usage: <code>SoakHarness [option=value]...</code>, where options are
+ *     <ul>
+ *         <li><code>pipelines</code> - comma separated list of pipelines to run, all by default:
+ *         ntriples, nquads, rdfxml, rdfa, jsonld, jena, sesame and clerezza;</li>
+ *         <li><code>duration</code> - seconds each pipeline runs, 60 by default;</li>
+ *         <li><code>warmup</code> - seconds each pipeline runs before measurement, 10 by default;</li>
+ *         <li><code>samples</code> - number of retained heap samples, 20 by default;</li>
+ *         <li><code>documents</code> - number of distinct documents processed in rotation, 16 by default;</li>
+ *         <li><code>maxHeapGrowth</code> - allowed retained heap growth in bytes per document,
+ *         1024 by default;</li>
+ *         <li><code>seed</code> and corpus shape parameters accepted by {@link CorpusGenerator}.
+ *         Documents have 0.5 blank node ratio, nesting depth 2 and 4 named graphs by default.</li>
+ *     </ul>
+ * </p>
+ * Store pipelines (jena, sesame, clerezza) parse RDF/XML and clear their stores after each document,
+ * so only state kept by parsers and sinks is retained.
+ */
+public final class SoakHarness {
+
+    private static final String[] PIPELINES = {
+            "ntriples", "nquads", "rdfxml", "rdfa", "jsonld", "jena", "sesame", "clerezza"
+    };
+
+    private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+    private static final String EXPLICIT_GC_CAUSE = "System.gc()";
+
+    private final long durationMillis;
+    private final long warmupMillis;
+    private final int samples;
+    private final double maxHeapGrowth;
+    private final String[][] documents = new String[CorpusGenerator.Format.values().length][];
+
+    private final GcPauseListener pauses = new GcPauseListener();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private SoakHarness(long durationMillis, long warmupMillis, int samples, double maxHeapGrowth) {
+        this.durationMillis = durationMillis;
+        this.warmupMillis = warmupMillis;
+        this.samples = samples;
+        this.maxHeapGrowth = maxHeapGrowth;
+    }
+
+    /**
+     * Pipeline under test. Instantiated once and reused for all documents.
+     */
+    private abstract static class Pipeline {
+        final CorpusGenerator.Format format;
+        final NullSink counter = new NullSink();
+        long triples;
+
+        Pipeline(CorpusGenerator.Format format) {
+            this.format = format;
+        }
+
+        abstract DataSink createSink();
+
+        void afterDocument() {
+            triples += counter.getCount();
+        }
+    }
+
+    private static Pipeline createPipeline(String name) {
+        if ("ntriples".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.NTRIPLES) {
+                @Override
+                DataSink createSink() {
+                    return NTriplesParser.connect(counter);
+                }
+            };
+        } else if ("nquads".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.NQUADS) {
+                @Override
+                DataSink createSink() {
+                    return NQuadsParser.connect(counter);
+                }
+            };
+        } else if ("rdfxml".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.RDF_XML) {
+                @Override
+                DataSink createSink() {
+                    return RdfXmlParser.connect(counter);
+                }
+            };
+        } else if ("rdfa".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.XHTML) {
+                @Override
+                DataSink createSink() {
+                    return RdfaParser.connect(counter);
+                }
+            };
+        } else if ("jsonld".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.JSON_LD) {
+                @Override
+                DataSink createSink() {
+                    return JsonLdParser.connect(counter);
+                }
+            };
+        } else if ("jena".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.RDF_XML) {
+                private final Model model = ModelFactory.createDefaultModel();
+
+                @Override
+                DataSink createSink() {
+                    return RdfXmlParser.connect(JenaSink.connect(model));
+                }
+
+                @Override
+                void afterDocument() {
+                    triples += model.size();
+                    model.removeAll();
+                }
+            };
+        } else if ("sesame".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.RDF_XML) {
+                @Override
+                DataSink createSink() {
+                    return RdfXmlParser.connect(SesameSink.connect(new RDFHandlerBase() {
+                        @Override
+                        public void handleStatement(Statement st) {
+                            triples++;
+                        }
+                    }));
+                }
+            };
+        } else if ("clerezza".equals(name)) {
+            return new Pipeline(CorpusGenerator.Format.RDF_XML) {
+                private final MGraph graph = new SimpleMGraph();
+
+                @Override
+                DataSink createSink() {
+                    return RdfXmlParser.connect(ClerezzaSink.connect(graph));
+                }
+
+                @Override
+                void afterDocument() {
+                    triples += graph.size();
+                    graph.clear();
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unknown pipeline " + name);
+    }
+
+    private String[] getDocuments(CorpusGenerator[] generators, CorpusGenerator.Format format) {
+        String[] result = documents[format.ordinal()];
+        if (result == null) {
+            result = new String[generators.length];
+            for (int i = 0; i < generators.length; i++) {
+                result[i] = generators[i].generate(format);
+            }
+            documents[format.ordinal()] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Collects durations of GC events not caused by {@link System#gc()}. Durations of concurrent
+     * collections include time application threads weren't paused.
+     */
+    private static final class GcPauseListener implements NotificationListener {
+
+        private long[] pauses = new long[1024];
+        private int size;
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (EXPLICIT_GC_CAUSE.equals(info.getGcCause())) {
+                return;
+            }
+            if (size == pauses.length) {
+                pauses = Arrays.copyOf(pauses, size * 2);
+            }
+            pauses[size++] = info.getGcInfo().getDuration();
+        }
+
+        synchronized void reset() {
+            size = 0;
+        }
+
+        synchronized long[] getPauses() {
+            long[] result = Arrays.copyOf(pauses, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    private long retainedHeap() {
+        // several collections let finalizers and soft references settle
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private boolean run(String name, CorpusGenerator[] generators) throws ParseException {
+        Pipeline pipeline = createPipeline(name);
+        String[] docs = getDocuments(generators, pipeline.format);
+        StreamProcessor processor = new StreamProcessor(pipeline.createSink());
+        long threadId = Thread.currentThread().getId();
+
+        int doc = 0;
+        long warmupEnd = System.currentTimeMillis() + warmupMillis;
+        while (System.currentTimeMillis() < warmupEnd) {
+            processor.process(new StringReader(docs[doc++ % docs.length]), CorpusGenerator.BASE_URI);
+            pipeline.afterDocument();
+        }
+
+        double[] sampleDocs = new double[samples + 1];
+        double[] sampleHeap = new double[samples + 1];
+        sampleHeap[0] = retainedHeap();
+        pauses.reset();
+        long startTriples = pipeline.triples;
+        long startAllocated = threads.getThreadAllocatedBytes(threadId);
+        long start = System.currentTimeMillis();
+        long processingMillis = 0;
+        int processed = 0;
+        for (int sample = 1; sample <= samples; sample++) {
+            long sampleStart = System.currentTimeMillis();
+            long sampleEnd = start + durationMillis * sample / samples;
+            while (System.currentTimeMillis() < sampleEnd) {
+                processor.process(new StringReader(docs[doc++ % docs.length]), CorpusGenerator.BASE_URI);
+                pipeline.afterDocument();
+                processed++;
+            }
+            processingMillis += System.currentTimeMillis() - sampleStart;
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            sampleDocs[sample] = processed;
+            sampleHeap[sample] = retainedHeap();
+            // exclude allocations made by sampling itself
+            startAllocated += threads.getThreadAllocatedBytes(threadId) - allocated;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - startAllocated;
+        long triples = pipeline.triples - startTriples;
+        double seconds = Math.max(processingMillis, 1) / 1000.0;
+        double slope = slope(sampleDocs, sampleHeap);
+        boolean failed = slope > maxHeapGrowth;
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-9s %8d docs %10.1f docs/s", name, processed, processed / seconds));
+        report.append(String.format(Locale.ROOT, " | alloc %8.1f MB/s", allocated / seconds / (1 << 20)));
+        if (triples > 0) {
+            report.append(String.format(Locale.ROOT, " %7.1f B/triple", (double) allocated / triples));
+        }
+        long[] gcPauses = pauses.getPauses();
+        report.append(" | gc ").append(gcPauses.length).append(" pauses");
+        for (double percentile : PERCENTILES) {
+            report.append(String.format(Locale.ROOT, " p%.0f=%dms", percentile, percentile(gcPauses, percentile)));
+        }
+        report.append(String.format(Locale.ROOT, " | retained %.1f MB -> %.1f MB, slope %.1f B/doc",
+                sampleHeap[0] / (1 << 20), sampleHeap[samples] / (1 << 20), slope));
+        report.append(failed ? " FAIL" : " OK");
+        System.out.println(report);
+        return !failed;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Least squares slope of y(x).
+     */
+    private static double slope(double[] x, double[] y) {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= x.length;
+        meanY /= x.length;
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < x.length; i++) {
+            covariance += (x[i] - meanX) * (y[i] - meanY);
+            variance += (x[i] - meanX) * (x[i] - meanX);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    /**
+     * Runs soak test.
+     * @param args options in <code>name=value</code> form, see class description
+     * @throws Exception if processing fails
+     */
+    public static void main(String[] args) throws Exception {
+        String[] pipelines = PIPELINES;
+        long duration = 60;
+        long warmup = 10;
+        int samples = 20;
+        int documents = 16;
+        double maxHeapGrowth = 1024;
+        long seed = 0;
+        List<String[]> options = new ArrayList<String[]>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid option " + arg);
+            }
+            if ("pipelines".equals(option[0])) {
+                pipelines = option[1].split(",");
+            } else if ("duration".equals(option[0])) {
+                duration = Long.parseLong(option[1]);
+            } else if ("warmup".equals(option[0])) {
+                warmup = Long.parseLong(option[1]);
+            } else if ("samples".equals(option[0])) {
+                samples = Integer.parseInt(option[1]);
+            } else if ("documents".equals(option[0])) {
+                documents = Integer.parseInt(option[1]);
+            } else if ("maxHeapGrowth".equals(option[0])) {
+                maxHeapGrowth = Double.parseDouble(option[1]);
+            } else if ("seed".equals(option[0])) {
+                seed = Long.parseLong(option[1]);
+            } else {
+                options.add(option);
+            }
+        }
+        if (samples < 2 || documents < 1) {
+            throw new IllegalArgumentException("At least 2 samples and 1 document are required");
+        }
+
+        CorpusGenerator[] generators = new CorpusGenerator[documents];
+        for (int i = 0; i < documents; i++) {
+            generators[i] = new CorpusGenerator(seed + i).setBlankNodeRatio(0.5).setNestingDepth(2).setGraphs(4);
+            for (String[] option : options) {
+                if (!generators[i].setOption(option[0], option[1])) {
+                    throw new IllegalArgumentException("Unknown option " + option[0]);
+                }
+            }
+        }
+
+        SoakHarness harness = new SoakHarness(duration * 1000, warmup * 1000, samples, maxHeapGrowth);
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(harness.pauses, null, null);
+            }
+        }
+        boolean passed = true;
+        for (String pipeline : pipelines) {
+            passed &= harness.run(pipeline.trim(), generators);
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.benchmark;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.QuadSink;
+import org.semarglproject.sink.TripleSink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records statements produced by a parser, so they can be replayed into sinks
+ * without measuring parsing costs.
+ */
+final class TripleRecorder implements QuadSink {
+
+    private static final byte NON_LITERAL = 0;
+    private static final byte PLAIN_LITERAL = 1;
+    private static final byte TYPED_LITERAL = 2;
+
+    private final List<Statement> recorded = new ArrayList<Statement>();
+    private Statement[] statements = new Statement[0];
+
+    /**
+     * Replays recorded statements as a single stream. Graphs are ignored.
+     * @param sink sink to pass statements to
+     * @throws ParseException if sink fails to process stream
+     */
+    void replay(TripleSink sink) throws ParseException {
+        sink.startStream();
+        for (Statement st : statements) {
+            replayTriple(sink, st);
+        }
+        sink.endStream();
+    }
+
+    /**
+     * Replays recorded statements as a single stream.
+     * @param sink sink to pass statements to
+     * @throws ParseException if sink fails to process stream
+     */
+    void replay(QuadSink sink) throws ParseException {
+        sink.startStream();
+        for (Statement st : statements) {
+            if (st.graph == null) {
+                replayTriple(sink, st);
+            } else if (st.kind == NON_LITERAL) {
+                sink.addNonLiteral(st.subj, st.pred, st.obj, st.graph);
+            } else if (st.kind == PLAIN_LITERAL) {
+                sink.addPlainLiteral(st.subj, st.pred, st.obj, st.qualifier, st.graph);
+            } else {
+                sink.addTypedLiteral(st.subj, st.pred, st.obj, st.qualifier, st.graph);
+            }
+        }
+        sink.endStream();
+    }
+
+    private static void replayTriple(TripleSink sink, Statement st) {
+        if (st.kind == NON_LITERAL) {
+            sink.addNonLiteral(st.subj, st.pred, st.obj);
+        } else if (st.kind == PLAIN_LITERAL) {
+            sink.addPlainLiteral(st.subj, st.pred, st.obj, st.qualifier);
+        } else {
+            sink.addTypedLiteral(st.subj, st.pred, st.obj, st.qualifier);
+        }
+    }
+
+    int size() {
+        return statements.length;
+    }
+
+    private void record(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+        recorded.add(new Statement(kind, subj, pred, obj, qualifier, graph));
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        record(NON_LITERAL, subj, pred, obj, null, null);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        record(PLAIN_LITERAL, subj, pred, content, lang, null);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        record(TYPED_LITERAL, subj, pred, content, type, null);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        record(NON_LITERAL, subj, pred, obj, null, graph);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        record(PLAIN_LITERAL, subj, pred, content, lang, graph);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        record(TYPED_LITERAL, subj, pred, content, type, graph);
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+    }
+
+    @Override
+    public void startStream() {
+        recorded.clear();
+    }
+
+    @Override
+    public void endStream() {
+        statements = recorded.toArray(new Statement[recorded.size()]);
+        recorded.clear();
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        return false;
+    }
+
+    private static final class Statement {
+        final byte kind;
+        final String subj;
+        final String pred;
+        final String obj;
+        final String qualifier;
+        final String graph;
+
+        Statement(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+            this.kind = kind;
+            this.subj = subj;
+            this.pred = pred;
+            this.obj = obj;
+            this.qualifier = qualifier;
+            this.graph = graph;
+        }
+    }
+}
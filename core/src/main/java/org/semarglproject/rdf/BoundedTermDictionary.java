@@ -0,0 +1,131 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+/**
+ * Term dictionary of bounded capacity. Terms are stored in two-way set associative table, the least
+ * recently used term of a set is replaced on miss. Lookups don't allocate memory.
+ * Not thread-safe, see {@link ConcurrentTermDictionary} for shared use.
+ */
+public final class BoundedTermDictionary implements TermDictionary {
+
+    /**
+     * Default count of terms dictionary can hold
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final String[] terms;
+    private final int mask;
+
+    /**
+     * Creates dictionary of {@link #DEFAULT_CAPACITY default capacity}.
+     */
+    public BoundedTermDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates dictionary of specified capacity.
+     * @param capacity count of terms dictionary can hold, rounded up to the power of two
+     */
+    public BoundedTermDictionary(int capacity) {
+        int size = tableSize(capacity);
+        this.terms = new String[size];
+        this.mask = (size >> 1) - 1;
+    }
+
+    @Override
+    public String intern(String term) {
+        if (term == null) {
+            return null;
+        }
+        int hash = term.hashCode();
+        int pos = (spread(hash) & mask) << 1;
+        String first = terms[pos];
+        if (first != null && (first == term || first.hashCode() == hash && first.equals(term))) {
+            return first;
+        }
+        String second = terms[pos + 1];
+        if (second != null && (second == term || second.hashCode() == hash && second.equals(term))) {
+            terms[pos] = second;
+            terms[pos + 1] = first;
+            return second;
+        }
+        terms[pos] = term;
+        terms[pos + 1] = first;
+        return term;
+    }
+
+    @Override
+    public String intern(char[] buffer, int offset, int count) {
+        int hash = hash(buffer, offset, count);
+        int pos = (spread(hash) & mask) << 1;
+        String first = terms[pos];
+        if (first != null && matches(first, hash, buffer, offset, count)) {
+            return first;
+        }
+        String second = terms[pos + 1];
+        if (second != null && matches(second, hash, buffer, offset, count)) {
+            terms[pos] = second;
+            terms[pos + 1] = first;
+            return second;
+        }
+        String term = new String(buffer, offset, count);
+        terms[pos] = term;
+        terms[pos + 1] = first;
+        return term;
+    }
+
+    static int tableSize(int capacity) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30");
+        }
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Computes hash code of char sequence same way as {@link String#hashCode()} does
+     */
+    static int hash(char[] buffer, int offset, int count) {
+        int hash = 0;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
+    }
+
+    static boolean matches(String term, int hash, char[] buffer, int offset, int count) {
+        if (term.length() != count || term.hashCode() != hash) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (term.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe term dictionary of bounded capacity which can be shared by multiple pipelines.
+ * Uses the same replacement policy as {@link BoundedTermDictionary} without locking. Concurrent
+ * updates of the same set may occasionally evict a term earlier, which only affects hit rate.
+ */
+public final class ConcurrentTermDictionary implements TermDictionary {
+
+    /**
+     * Default count of terms dictionary can hold
+     */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private final AtomicReferenceArray<String> terms;
+    private final int mask;
+
+    /**
+     * Creates dictionary of {@link #DEFAULT_CAPACITY default capacity}.
+     */
+    public ConcurrentTermDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates dictionary of specified capacity.
+     * @param capacity count of terms dictionary can hold, rounded up to the power of two
+     */
+    public ConcurrentTermDictionary(int capacity) {
+        int size = BoundedTermDictionary.tableSize(capacity);
+        this.terms = new AtomicReferenceArray<String>(size);
+        this.mask = (size >> 1) - 1;
+    }
+
+    @Override
+    public String intern(String term) {
+        if (term == null) {
+            return null;
+        }
+        int hash = term.hashCode();
+        int pos = (BoundedTermDictionary.spread(hash) & mask) << 1;
+        String first = terms.get(pos);
+        if (first != null && (first == term || first.hashCode() == hash && first.equals(term))) {
+            return first;
+        }
+        String second = terms.get(pos + 1);
+        if (second != null && (second == term || second.hashCode() == hash && second.equals(term))) {
+            moveToFront(pos, first, second);
+            return second;
+        }
+        moveToFront(pos, first, term);
+        return term;
+    }
+
+    @Override
+    public String intern(char[] buffer, int offset, int count) {
+        int hash = BoundedTermDictionary.hash(buffer, offset, count);
+        int pos = (BoundedTermDictionary.spread(hash) & mask) << 1;
+        String first = terms.get(pos);
+        if (first != null && BoundedTermDictionary.matches(first, hash, buffer, offset, count)) {
+            return first;
+        }
+        String second = terms.get(pos + 1);
+        if (second != null && BoundedTermDictionary.matches(second, hash, buffer, offset, count)) {
+            moveToFront(pos, first, second);
+            return second;
+        }
+        String term = new String(buffer, offset, count);
+        moveToFront(pos, first, term);
+        return term;
+    }
+
+    /**
+     * Places term first in its set, previously first term becomes second
+     */
+    private void moveToFront(int pos, String first, String term) {
+        if (terms.compareAndSet(pos, first, term)) {
+            terms.lazySet(pos + 1, first);
+        }
+    }
+
+}
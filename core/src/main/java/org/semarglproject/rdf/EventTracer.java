@@ -0,0 +1,126 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Hook for recording events at processing boundaries: document processing, vocabulary fetches,
+ * sink flushes, etc. Each event carries document URI, size and number of triples.
+ * <p>
+ *     Implementation is looked up once using {@link ServiceLoader}. If no implementation is
+ *     available, {@link #begin(Kind)} always returns null and instrumented code skips all event
+ *     bookkeeping, so disabled tracing costs a single null check per event.
+ * </p>
+ * <p>
+ *     Typical usage:
+ *     <pre>
+ *     Object event = EventTracer.get().begin(EventTracer.Kind.DOCUMENT);
+ *     ...
+ *     if (event != null) {
+ *         EventTracer.get().end(event, uri, size, triples);
+ *     }
+ *     </pre>
+ * </p>
+ */
+public abstract class EventTracer {
+
+    /**
+     * Value of size and triples counters which can't be determined.
+     */
+    public static final long UNKNOWN = -1;
+
+    private static final EventTracer INSTANCE = load();
+
+    /**
+     * Kinds of traced events
+     */
+    public enum Kind {
+        /**
+         * Document processed by stream processor. Size is number of chars or bytes read.
+         */
+        DOCUMENT,
+        /**
+         * RDFa vocabulary fetch. Size is number of vocabulary terms.
+         */
+        VOCABULARY_LOAD,
+        /**
+         * Batch of triples flushed by sink to underlying store. Size is number of triples in batch.
+         */
+        SINK_FLUSH,
+        /**
+         * Serialization of rdf:XMLLiteral value. Size is length of serialized literal.
+         */
+        XML_LITERAL,
+        /**
+         * Drain of triples queued by parser until their subject can be resolved.
+         */
+        UNSAFE_TRIPLES_DRAIN
+    }
+
+    /**
+     * @return tracer instance found on classpath or tracer which doesn't record anything
+     */
+    public static EventTracer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts event of specified kind.
+     * @param kind event kind
+     * @return event handle which must be passed to {@link #end(Object, String, long, long)},
+     * null if events of specified kind aren't recorded
+     */
+    public abstract Object begin(Kind kind);
+
+    /**
+     * Ends event and records it.
+     * @param event event handle returned by {@link #begin(Kind)}
+     * @param uri document URI, can be null
+     * @param size event size or {@link #UNKNOWN}
+     * @param triples number of triples or {@link #UNKNOWN}
+     */
+    public abstract void end(Object event, String uri, long size, long triples);
+
+    private static EventTracer load() {
+        try {
+            Iterator<EventTracer> tracers = ServiceLoader.load(EventTracer.class,
+                    EventTracer.class.getClassLoader()).iterator();
+            if (tracers.hasNext()) {
+                return tracers.next();
+            }
+        } catch (ServiceConfigurationError e) {
+            // tracer isn't supported by current runtime
+        } catch (LinkageError e) {
+            // tracer isn't supported by current runtime
+        }
+        return new NoopTracer();
+    }
+
+    private static final class NoopTracer extends EventTracer {
+        @Override
+        public Object begin(Kind kind) {
+            return null;
+        }
+
+        @Override
+        public void end(Object event, String uri, long size, long triples) {
+        }
+    }
+
+}
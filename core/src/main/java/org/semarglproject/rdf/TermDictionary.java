@@ -0,0 +1,46 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+/**
+ * Dictionary used by parsers to share instances of frequently repeated terms (IRIs, datatypes,
+ * language tags) instead of materializing new strings for each statement. As long as term stays in
+ * dictionary, it's returned as the same instance, so sinks can compare terms by identity
+ * before falling back to {@link String#equals(Object)}.
+ * <p>
+ *     Can be passed to parsers using {@link org.semarglproject.source.StreamProcessor#TERM_DICTIONARY_PROPERTY}.
+ * </p>
+ */
+public interface TermDictionary {
+
+    /**
+     * Returns canonical instance of specified term.
+     * @param term term to intern
+     * @return term instance equal to specified one
+     */
+    String intern(String term);
+
+    /**
+     * Returns canonical instance of term stored in specified buffer. New string is created
+     * only if term isn't in dictionary.
+     * @param buffer buffer containing term
+     * @param offset term's start position
+     * @param count term's length
+     * @return term instance
+     */
+    String intern(char[] buffer, int offset, int count);
+
+}
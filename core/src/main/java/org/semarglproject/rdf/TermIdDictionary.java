@@ -0,0 +1,292 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import org.semarglproject.sink.IdTripleSink;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Assigns numeric ids to terms of dictionary encoded streams (see {@link IdTripleSink}). New term
+ * gets next free id and is passed to the sink on first sighting. IRI ids stay the same while
+ * dictionary lives, so it can be reused for several streams loaded into the same store.
+ * BNode ids are stream scoped, literals are not deduplicated.
+ * <p>
+ *     Terms can be looked up directly in parser buffers, so strings are created for new terms only.
+ *     Not thread-safe.
+ * </p>
+ */
+public final class TermIdDictionary {
+
+    /**
+     * Returned by lookup methods for unknown terms
+     */
+    public static final long NO_ID = -1;
+
+    private static final long NOT_ASCII = -2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Table iris = new Table();
+    private final Table bnodes = new Table();
+    private long nextId = 0;
+
+    /**
+     * @param iri IRI to look up
+     * @return id of specified IRI or {@link #NO_ID} if IRI wasn't encoded yet
+     */
+    public long getIriId(String iri) {
+        return iris.get(iri);
+    }
+
+    /**
+     * @return count of ids assigned by dictionary
+     */
+    public long getIdCount() {
+        return nextId;
+    }
+
+    /**
+     * Returns id of specified IRI, new IRIs are defined in specified sink.
+     * @param iri IRI to encode
+     * @param sink sink to pass definition of new IRI to
+     * @return IRI's id
+     */
+    public long encodeIri(String iri, IdTripleSink sink) {
+        long id = iris.get(iri);
+        if (id == NO_ID) {
+            id = define(iris, iri, true, sink);
+        }
+        return id;
+    }
+
+    /**
+     * Same as {@link #encodeIri(String, IdTripleSink)} for IRI stored in char buffer
+     */
+    public long encodeIri(char[] buffer, int offset, int count, IdTripleSink sink) {
+        long id = iris.get(buffer, offset, count);
+        if (id == NO_ID) {
+            id = define(iris, new String(buffer, offset, count), true, sink);
+        }
+        return id;
+    }
+
+    /**
+     * Same as {@link #encodeIri(String, IdTripleSink)} for IRI stored in UTF-8 encoded buffer
+     */
+    public long encodeIri(byte[] buffer, int offset, int count, IdTripleSink sink) {
+        long id = iris.get(buffer, offset, count);
+        if (id == NOT_ASCII) {
+            return encodeIri(new String(buffer, offset, count, UTF_8), sink);
+        } else if (id == NO_ID) {
+            id = define(iris, asciiString(buffer, offset, count), true, sink);
+        }
+        return id;
+    }
+
+    /**
+     * Returns id of specified BNode, new BNodes are defined in specified sink.
+     * @param bnode BNode name to encode
+     * @param sink sink to pass definition of new BNode to
+     * @return BNode's id
+     */
+    public long encodeBnode(String bnode, IdTripleSink sink) {
+        long id = bnodes.get(bnode);
+        if (id == NO_ID) {
+            id = define(bnodes, bnode, false, sink);
+        }
+        return id;
+    }
+
+    /**
+     * Same as {@link #encodeBnode(String, IdTripleSink)} for BNode name stored in char buffer
+     */
+    public long encodeBnode(char[] buffer, int offset, int count, IdTripleSink sink) {
+        long id = bnodes.get(buffer, offset, count);
+        if (id == NO_ID) {
+            id = define(bnodes, new String(buffer, offset, count), false, sink);
+        }
+        return id;
+    }
+
+    /**
+     * Same as {@link #encodeBnode(String, IdTripleSink)} for BNode name stored in UTF-8 encoded buffer
+     */
+    public long encodeBnode(byte[] buffer, int offset, int count, IdTripleSink sink) {
+        long id = bnodes.get(buffer, offset, count);
+        if (id == NOT_ASCII) {
+            return encodeBnode(new String(buffer, offset, count, UTF_8), sink);
+        } else if (id == NO_ID) {
+            id = define(bnodes, asciiString(buffer, offset, count), false, sink);
+        }
+        return id;
+    }
+
+    /**
+     * Assigns id to plain literal and defines it in specified sink.
+     * @param content unescaped string representation of content
+     * @param lang content's lang, can be null if no language specified
+     * @param sink sink to pass literal definition to
+     * @return literal's id
+     */
+    public long encodePlainLiteral(String content, String lang, IdTripleSink sink) {
+        long id = nextId++;
+        sink.addPlainLiteral(id, content, lang);
+        return id;
+    }
+
+    /**
+     * Assigns id to typed literal and defines it in specified sink.
+     * @param content unescaped string representation of content
+     * @param type literal datatype's IRI
+     * @param sink sink to pass literal definition to
+     * @return literal's id
+     */
+    public long encodeTypedLiteral(String content, String type, IdTripleSink sink) {
+        long id = nextId++;
+        sink.addTypedLiteral(id, content, type);
+        return id;
+    }
+
+    /**
+     * Forgets BNode ids, should be called when new stream starts
+     */
+    public void clearBnodes() {
+        bnodes.clear();
+    }
+
+    private long define(Table table, String term, boolean iri, IdTripleSink sink) {
+        long id = nextId++;
+        table.put(term, id);
+        if (iri) {
+            sink.addIri(id, term);
+        } else {
+            sink.addBnode(id, term);
+        }
+        return id;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String asciiString(byte[] buffer, int offset, int count) {
+        return new String(buffer, 0, offset, count);
+    }
+
+    /**
+     * Open addressing hash table mapping terms to ids, supports lookups by buffer slices
+     */
+    private static final class Table {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private String[] keys = new String[INITIAL_CAPACITY];
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private int size = 0;
+
+        long get(String term) {
+            int hash = term.hashCode();
+            int mask = keys.length - 1;
+            String key;
+            for (int i = BoundedTermDictionary.spread(hash) & mask; (key = keys[i]) != null; i = (i + 1) & mask) {
+                if (key.hashCode() == hash && key.equals(term)) {
+                    return ids[i];
+                }
+            }
+            return NO_ID;
+        }
+
+        long get(char[] buffer, int offset, int count) {
+            int hash = BoundedTermDictionary.hash(buffer, offset, count);
+            int mask = keys.length - 1;
+            String key;
+            for (int i = BoundedTermDictionary.spread(hash) & mask; (key = keys[i]) != null; i = (i + 1) & mask) {
+                if (BoundedTermDictionary.matches(key, hash, buffer, offset, count)) {
+                    return ids[i];
+                }
+            }
+            return NO_ID;
+        }
+
+        long get(byte[] buffer, int offset, int count) {
+            int hash = 0;
+            int end = offset + count;
+            for (int i = offset; i < end; i++) {
+                byte b = buffer[i];
+                if (b < 0) {
+                    return NOT_ASCII;
+                }
+                hash = 31 * hash + b;
+            }
+            int mask = keys.length - 1;
+            String key;
+            for (int i = BoundedTermDictionary.spread(hash) & mask; (key = keys[i]) != null; i = (i + 1) & mask) {
+                if (key.hashCode() == hash && key.length() == count && matches(key, buffer, offset)) {
+                    return ids[i];
+                }
+            }
+            return NO_ID;
+        }
+
+        private static boolean matches(String key, byte[] buffer, int offset) {
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != buffer[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(String term, long id) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            insert(keys, ids, term, id);
+            size++;
+        }
+
+        private void resize(int capacity) {
+            String[] newKeys = new String[capacity];
+            long[] newIds = new long[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    insert(newKeys, newIds, keys[i], ids[i]);
+                }
+            }
+            keys = newKeys;
+            ids = newIds;
+        }
+
+        private static void insert(String[] keys, long[] ids, String term, long id) {
+            int mask = keys.length - 1;
+            int i = BoundedTermDictionary.spread(term.hashCode()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = term;
+            ids[i] = id;
+        }
+
+        void clear() {
+            if (keys.length > INITIAL_CAPACITY * 16) {
+                keys = new String[INITIAL_CAPACITY];
+                ids = new long[INITIAL_CAPACITY];
+            } else {
+                Arrays.fill(keys, null);
+            }
+            size = 0;
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import org.semarglproject.vocab.RDF;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Declarative triple filter. Triple is accepted if it matches every specified criterion,
+ * unspecified criteria match any triple. Filter is applied by
+ * {@link org.semarglproject.sink.TripleFilterPipe} and can be pushed down to parsers using
+ * {@link org.semarglproject.source.StreamProcessor#TRIPLE_FILTER_PROPERTY}, so they are able to skip
+ * work for rejected triples.
+ * <p>
+ *     Filter must not be modified while stream is processed.
+ * </p>
+ */
+public final class TripleFilter {
+
+    /**
+     * Object kind flag matching IRIs
+     */
+    public static final int IRI = 1;
+
+    /**
+     * Object kind flag matching blank nodes
+     */
+    public static final int BLANK_NODE = 2;
+
+    /**
+     * Object kind flag matching plain literals
+     */
+    public static final int PLAIN_LITERAL = 4;
+
+    /**
+     * Object kind flag matching typed literals
+     */
+    public static final int TYPED_LITERAL = 8;
+
+    /**
+     * Object kind mask matching any object
+     */
+    public static final int ANY_OBJECT = IRI | BLANK_NODE | PLAIN_LITERAL | TYPED_LITERAL;
+
+    private String[] subjectPrefixes = null;
+    private Set<String> predicates = null;
+    private int objectKinds = ANY_OBJECT;
+    private Set<String> datatypes = null;
+    private Set<String> languages = null;
+
+    /**
+     * Restricts subjects of accepted triples.
+     * @param prefixes subject must start with one of these strings, use {@link RDF#BNODE_PREFIX} to match
+     *                 blank nodes
+     * @return this filter
+     */
+    public TripleFilter subjectPrefixes(String... prefixes) {
+        this.subjectPrefixes = prefixes.clone();
+        return this;
+    }
+
+    /**
+     * Restricts predicates of accepted triples.
+     * @param predicates set of accepted predicate IRIs
+     * @return this filter
+     */
+    public TripleFilter predicates(String... predicates) {
+        this.predicates = toSet(predicates, false);
+        return this;
+    }
+
+    /**
+     * Restricts kinds of accepted objects.
+     * @param kinds combination of {@link #IRI}, {@link #BLANK_NODE}, {@link #PLAIN_LITERAL}
+     *              and {@link #TYPED_LITERAL} flags
+     * @return this filter
+     */
+    public TripleFilter objectKinds(int kinds) {
+        if ((kinds & ~ANY_OBJECT) != 0) {
+            throw new IllegalArgumentException("Unknown object kind flags " + kinds);
+        }
+        this.objectKinds = kinds;
+        return this;
+    }
+
+    /**
+     * Restricts datatypes of accepted typed literals. Doesn't affect other kinds of objects.
+     * @param datatypes set of accepted datatype IRIs
+     * @return this filter
+     */
+    public TripleFilter datatypes(String... datatypes) {
+        this.datatypes = toSet(datatypes, false);
+        return this;
+    }
+
+    /**
+     * Restricts language tags of accepted plain literals, tags are compared case-insensitively.
+     * Doesn't affect other kinds of objects.
+     * @param languages set of accepted language tags, empty string matches literals without language
+     * @return this filter
+     */
+    public TripleFilter languages(String... languages) {
+        this.languages = toSet(languages, true);
+        return this;
+    }
+
+    /**
+     * Checks if triples with specified subject can be accepted.
+     * @param subj subject IRI or blank node
+     * @return false if every triple with such subject is rejected
+     */
+    public boolean acceptsSubject(String subj) {
+        if (subjectPrefixes == null) {
+            return true;
+        }
+        for (String prefix : subjectPrefixes) {
+            if (subj.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if triples with specified predicate can be accepted.
+     * @param pred predicate IRI
+     * @return false if every triple with such predicate is rejected
+     */
+    public boolean acceptsPredicate(String pred) {
+        return predicates == null || predicates.contains(pred);
+    }
+
+    /**
+     * Checks if triple with IRI or blank node object is accepted.
+     * @param subj subject IRI or blank node
+     * @param pred predicate IRI
+     * @param obj object IRI or blank node
+     * @return true if triple is accepted
+     */
+    public boolean acceptsNonLiteral(String subj, String pred, String obj) {
+        int kind = obj.startsWith(RDF.BNODE_PREFIX) ? BLANK_NODE : IRI;
+        return (objectKinds & kind) != 0 && acceptsSubject(subj) && acceptsPredicate(pred);
+    }
+
+    /**
+     * Checks if triple with plain literal object is accepted.
+     * @param subj subject IRI or blank node
+     * @param pred predicate IRI
+     * @param lang language tag or null
+     * @return true if triple is accepted
+     */
+    public boolean acceptsPlainLiteral(String subj, String pred, String lang) {
+        if ((objectKinds & PLAIN_LITERAL) == 0) {
+            return false;
+        }
+        if (languages != null && !languages.contains(lang == null ? "" : lang.toLowerCase(Locale.ENGLISH))) {
+            return false;
+        }
+        return acceptsSubject(subj) && acceptsPredicate(pred);
+    }
+
+    /**
+     * Checks if triple with typed literal object is accepted.
+     * @param subj subject IRI or blank node
+     * @param pred predicate IRI
+     * @param type datatype IRI
+     * @return true if triple is accepted
+     */
+    public boolean acceptsTypedLiteral(String subj, String pred, String type) {
+        if ((objectKinds & TYPED_LITERAL) == 0) {
+            return false;
+        }
+        if (datatypes != null && !datatypes.contains(type)) {
+            return false;
+        }
+        return acceptsSubject(subj) && acceptsPredicate(pred);
+    }
+
+    private static Set<String> toSet(String[] values, boolean lowerCase) {
+        Set<String> result = new HashSet<String>();
+        for (String value : values) {
+            result.add(lowerCase ? value.toLowerCase(Locale.ENGLISH) : value);
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+}
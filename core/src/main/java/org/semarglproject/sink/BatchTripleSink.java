@@ -0,0 +1,54 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+/**
+ * Interface for handling blocks of triples passed as parallel arrays. Allows bulk consumers
+ * (stores, network writers, etc) to process whole blocks in tight loops instead of paying
+ * per triple callback costs. Single triple pipelines can be connected to such sinks using
+ * {@link TripleBatcher}.
+ */
+public interface BatchTripleSink extends DataSink {
+
+    /**
+     * Object kind for IRIs and BNodes
+     */
+    byte NON_LITERAL = 0;
+
+    /**
+     * Object kind for plain literals, qualifier holds literal's lang or null
+     */
+    byte PLAIN_LITERAL = 1;
+
+    /**
+     * Object kind for typed literals, qualifier holds literal's datatype IRI
+     */
+    byte TYPED_LITERAL = 2;
+
+    /**
+     * Callback for handling block of triples. Arrays are owned by caller and reused after
+     * this method returns, so sink must copy values it wants to keep.
+     * @param subjs subjects
+     * @param preds predicates
+     * @param objs objects, holds unescaped content for literals
+     * @param kinds kind of each object, one of {@link #NON_LITERAL}, {@link #PLAIN_LITERAL},
+     *              {@link #TYPED_LITERAL}
+     * @param qualifiers literal's lang or datatype, null for non literal objects
+     * @param count number of triples in block, arrays can be longer
+     */
+    void addTriples(String[] subjs, String[] preds, String[] objs, byte[] kinds, String[] qualifiers, int count);
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+
+/**
+ * Interface for handling raw UTF-8 encoded input from {@link org.semarglproject.source.CharSource}.
+ * Sinks implementing it receive undecoded bytes and are responsible for decoding them.
+ */
+public interface ByteSink extends DataSink {
+
+    /**
+     * Callback for buffer processing. Multibyte sequences can be split between subsequent calls.
+     *
+     * @param buffer byte buffer for processing
+     * @param start position to start
+     * @param count count of bytes to process
+     * @throws ParseException
+     */
+    ByteSink process(byte[] buffer, int start, int count) throws ParseException;
+}
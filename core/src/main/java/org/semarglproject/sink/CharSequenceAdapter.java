@@ -0,0 +1,126 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+/**
+ * Bridge from string based {@link QuadSink} to {@link CharSequenceTripleSink}.
+ * Quads are passed as triples if connected sink doesn't implement {@link CharSequenceQuadSink}.
+ * NTriples and NQuads parsers connected to this pipe pass views over their buffers
+ * instead of strings.
+ */
+public final class CharSequenceAdapter extends Pipe<CharSequenceTripleSink>
+        implements QuadSink, CharSequenceQuadSink {
+
+    private final CharSequenceQuadSink quadSink;
+
+    private CharSequenceAdapter(CharSequenceTripleSink sink) {
+        super(sink);
+        this.quadSink = sink instanceof CharSequenceQuadSink ? (CharSequenceQuadSink) sink : null;
+    }
+
+    /**
+     * Creates instance of CharSequenceAdapter connected to specified sink.
+     * @param sink sink to be connected to
+     * @return instance of CharSequenceAdapter
+     */
+    public static QuadSink connect(CharSequenceTripleSink sink) {
+        return new CharSequenceAdapter(sink);
+    }
+
+    @Override
+    public void addNonLiteral(CharSequence subj, CharSequence pred, CharSequence obj) {
+        sink.addNonLiteral(subj, pred, obj);
+    }
+
+    @Override
+    public void addPlainLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence lang) {
+        sink.addPlainLiteral(subj, pred, content, lang);
+    }
+
+    @Override
+    public void addTypedLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence type) {
+        sink.addTypedLiteral(subj, pred, content, type);
+    }
+
+    @Override
+    public void addNonLiteral(CharSequence subj, CharSequence pred, CharSequence obj, CharSequence graph) {
+        if (quadSink != null) {
+            quadSink.addNonLiteral(subj, pred, obj, graph);
+        } else {
+            sink.addNonLiteral(subj, pred, obj);
+        }
+    }
+
+    @Override
+    public void addPlainLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence lang,
+                                CharSequence graph) {
+        if (quadSink != null) {
+            quadSink.addPlainLiteral(subj, pred, content, lang, graph);
+        } else {
+            sink.addPlainLiteral(subj, pred, content, lang);
+        }
+    }
+
+    @Override
+    public void addTypedLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence type,
+                                CharSequence graph) {
+        if (quadSink != null) {
+            quadSink.addTypedLiteral(subj, pred, content, type, graph);
+        } else {
+            sink.addTypedLiteral(subj, pred, content, type);
+        }
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        sink.addNonLiteral(subj, pred, obj);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        sink.addPlainLiteral(subj, pred, content, lang);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        sink.addTypedLiteral(subj, pred, content, type);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        addNonLiteral((CharSequence) subj, pred, obj, graph);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        addPlainLiteral((CharSequence) subj, pred, content, lang, graph);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        addTypedLiteral((CharSequence) subj, pred, content, type, graph);
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        sink.setBaseUri(baseUri);
+    }
+
+    @Override
+    protected boolean setPropertyInternal(String key, Object value) {
+        return false;
+    }
+}
@@ -0,0 +1,564 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Pipe which drops repeated triples and quads within a stream, so duplicates emitted by parsers
+ * (RDFa pages, concatenated dumps) don't reach serializers and stores. Statements are identified by
+ * 128-bit hashes kept in {@link Index} of bounded size:
+ * <ul>
+ *     <li>{@link #exact(long)} keeps hashes in off-heap open addressing hash table</li>
+ *     <li>{@link #probabilistic(long, double)} keeps hashes in scalable Bloom filter, which holds
+ *     more statements within the same memory but drops distinct statement with specified probability</li>
+ * </ul>
+ * <p>
+ *     When index is full, new statements are still checked against it but aren't remembered, so their
+ *     duplicates pass through. Index is cleared at the start of each stream, because blank node labels
+ *     are scoped to a document. Quads are passed to sinks which don't implement {@link QuadSink} as triples.
+ * </p>
+ * <pre>
+ * DeduplicatingPipe.Index index = DeduplicatingPipe.exact(64 &lt;&lt; 20);
+ * TripleSink sink = DeduplicatingPipe.connect(JenaSink.connect(model), index);
+ * </pre>
+ */
+public final class DeduplicatingPipe extends Pipe<TripleSink> implements QuadSink {
+
+    /**
+     * Memory used by index created with {@link #connect(TripleSink)}
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final QuadSink quadSink;
+    private final Index index;
+
+    // hash of statement being checked
+    private long h1;
+    private long h2;
+
+    private DeduplicatingPipe(TripleSink sink, Index index) {
+        super(sink);
+        this.quadSink = sink instanceof QuadSink ? (QuadSink) sink : null;
+        this.index = index;
+    }
+
+    /**
+     * Creates pipe with exact index of {@link #DEFAULT_MEMORY_BUDGET default size}.
+     * @param sink sink to pass triples to
+     * @return new instance of pipe
+     */
+    public static TripleSink connect(TripleSink sink) {
+        return create(sink, exact(DEFAULT_MEMORY_BUDGET));
+    }
+
+    /**
+     * Creates pipe with specified index.
+     * @param sink sink to pass triples to
+     * @param index index created with {@link #exact(long)} or {@link #probabilistic(long, double)}
+     * @return new instance of pipe
+     */
+    public static TripleSink connect(TripleSink sink, Index index) {
+        return create(sink, index);
+    }
+
+    /**
+     * Creates pipe with specified index.
+     * @param sink sink to pass triples and quads to
+     * @param index index created with {@link #exact(long)} or {@link #probabilistic(long, double)}
+     * @return new instance of pipe
+     */
+    public static QuadSink connect(QuadSink sink, Index index) {
+        return create(sink, index);
+    }
+
+    private static DeduplicatingPipe create(TripleSink sink, Index index) {
+        if (index.connected) {
+            throw new IllegalArgumentException("Index is already connected");
+        }
+        index.connected = true;
+        return new DeduplicatingPipe(sink, index);
+    }
+
+    /**
+     * Creates index which never drops distinct statements. Hashes are stored off-heap, 16 bytes per slot,
+     * table grows while both it and the table it replaces fit into memory budget.
+     * @param memoryBudget max size of index in bytes
+     * @return new index
+     */
+    public static Index exact(long memoryBudget) {
+        if (memoryBudget < ExactIndex.MIN_MEMORY) {
+            throw new IllegalArgumentException("Memory budget must be at least " + ExactIndex.MIN_MEMORY);
+        }
+        return new ExactIndex(memoryBudget);
+    }
+
+    /**
+     * Creates scalable Bloom filter index. Each time filter is full, a twice larger filter with twice lower
+     * false positive rate is added, until memory budget is reached.
+     * @param memoryBudget max size of index in bytes
+     * @param falsePositiveRate probability that distinct statement is dropped as duplicate
+     * @return new index
+     */
+    public static Index probabilistic(long memoryBudget, double falsePositiveRate) {
+        if (memoryBudget < BloomIndex.MIN_MEMORY) {
+            throw new IllegalArgumentException("Memory budget must be at least " + BloomIndex.MIN_MEMORY);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        return new BloomIndex(memoryBudget, falsePositiveRate);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        if (!isDuplicate(BatchTripleSink.NON_LITERAL, subj, pred, obj, null, null)) {
+            sink.addNonLiteral(subj, pred, obj);
+        }
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        if (!isDuplicate(BatchTripleSink.PLAIN_LITERAL, subj, pred, content, lang, null)) {
+            sink.addPlainLiteral(subj, pred, content, lang);
+        }
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        if (!isDuplicate(BatchTripleSink.TYPED_LITERAL, subj, pred, content, type, null)) {
+            sink.addTypedLiteral(subj, pred, content, type);
+        }
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        if (quadSink == null) {
+            addNonLiteral(subj, pred, obj);
+        } else if (!isDuplicate(BatchTripleSink.NON_LITERAL, subj, pred, obj, null, graph)) {
+            quadSink.addNonLiteral(subj, pred, obj, graph);
+        }
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        if (quadSink == null) {
+            addPlainLiteral(subj, pred, content, lang);
+        } else if (!isDuplicate(BatchTripleSink.PLAIN_LITERAL, subj, pred, content, lang, graph)) {
+            quadSink.addPlainLiteral(subj, pred, content, lang, graph);
+        }
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        if (quadSink == null) {
+            addTypedLiteral(subj, pred, content, type);
+        } else if (!isDuplicate(BatchTripleSink.TYPED_LITERAL, subj, pred, content, type, graph)) {
+            quadSink.addTypedLiteral(subj, pred, content, type, graph);
+        }
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+        index.clear();
+        super.startStream();
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        sink.setBaseUri(baseUri);
+    }
+
+    @Override
+    protected boolean setPropertyInternal(String key, Object value) {
+        return false;
+    }
+
+    private boolean isDuplicate(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+        h1 = kind;
+        h2 = kind;
+        hash(subj);
+        hash(pred);
+        hash(obj);
+        hash(qualifier);
+        hash(graph);
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return index.isDuplicate(h1, h2);
+    }
+
+    /**
+     * Mixes term into statement hash using MurmurHash3 x64 128-bit block function. Each term is padded
+     * to block boundary and followed by its length, so term boundaries can't be shifted.
+     */
+    private void hash(String term) {
+        int length = term == null ? -1 : term.length();
+        int pos = 0;
+        for (; pos + 8 <= length; pos += 8) {
+            mixBlock(pack(term, pos, 4), pack(term, pos + 4, 4));
+        }
+        int tail = length - pos;
+        if (tail > 0) {
+            mixBlock(pack(term, pos, Math.min(tail, 4)), tail > 4 ? pack(term, pos + 4, tail - 4) : 0);
+        }
+        mixBlock(length, C1);
+    }
+
+    private static long pack(String term, int pos, int count) {
+        long result = 0;
+        for (int i = 0; i < count; i++) {
+            result |= (long) term.charAt(pos + i) << (i << 4);
+        }
+        return result;
+    }
+
+    private void mixBlock(long k1, long k2) {
+        h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+        h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Bounded set of statement hashes with deduplication statistics. Statistics are updated from
+     * processing thread and accumulated over all streams.
+     */
+    public abstract static class Index {
+
+        static final int ADDED = 0;
+        static final int FOUND = 1;
+        static final int FULL = 2;
+
+        boolean connected = false;
+
+        private long statements;
+        private long duplicates;
+        private long untracked;
+
+        private Index() {
+        }
+
+        final boolean isDuplicate(long hash1, long hash2) {
+            statements++;
+            int result = add(hash1, hash2);
+            if (result == FOUND) {
+                duplicates++;
+                return true;
+            }
+            if (result == FULL) {
+                untracked++;
+            }
+            return false;
+        }
+
+        /**
+         * Adds hash to index.
+         * @return {@link #ADDED}, {@link #FOUND} if hash was already added or {@link #FULL} if there is
+         *         no room for it
+         */
+        abstract int add(long hash1, long hash2);
+
+        abstract void clear();
+
+        /**
+         * @return memory currently allocated by index in bytes
+         */
+        public abstract long getMemoryUsage();
+
+        /**
+         * @return number of statements passed to pipe
+         */
+        public long getStatements() {
+            return statements;
+        }
+
+        /**
+         * @return number of statements dropped as duplicates
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * @return number of statements passed without being remembered because index was full
+         */
+        public long getUntrackedStatements() {
+            return untracked;
+        }
+    }
+
+    /**
+     * Open addressing hash table with linear probing stored in direct buffer.
+     * Slot holds both halves of hash, zero hash marks empty slot.
+     */
+    private static final class ExactIndex extends Index {
+
+        static final long MIN_MEMORY = 1 << 10;
+
+        private static final int SLOT_SIZE = 16;
+        private static final int INITIAL_CAPACITY = 1 << 16;
+        // direct buffers are limited by 2G
+        private static final int MAX_CAPACITY = 1 << 26;
+
+        private final long memoryBudget;
+        private final int maxCapacity;
+        private LongBuffer table;
+        private int mask;
+        private int size;
+
+        ExactIndex(long memoryBudget) {
+            int capacity = Integer.highestOneBit((int) Math.min(memoryBudget / SLOT_SIZE, MAX_CAPACITY));
+            this.memoryBudget = memoryBudget;
+            this.maxCapacity = capacity;
+            allocate(Math.min(capacity, INITIAL_CAPACITY));
+        }
+
+        private void allocate(int capacity) {
+            table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder()).asLongBuffer();
+            mask = capacity - 1;
+            size = 0;
+        }
+
+        @Override
+        int add(long hash1, long hash2) {
+            if (hash1 == 0 && hash2 == 0) {
+                hash2 = 1;
+            }
+            int pos = find(table, mask, hash1, hash2);
+            if (table.get(pos) != 0 || table.get(pos + 1) != 0) {
+                return FOUND;
+            }
+            // load factor is kept under 3/4
+            if (size >= (mask >> 2) * 3) {
+                int capacity = mask + 1;
+                // old table is still allocated while its hashes are moved to twice larger one
+                if (capacity == maxCapacity || capacity * 3L * SLOT_SIZE > memoryBudget) {
+                    return FULL;
+                }
+                grow(capacity << 1);
+                pos = find(table, mask, hash1, hash2);
+            }
+            table.put(pos, hash1);
+            table.put(pos + 1, hash2);
+            size++;
+            return ADDED;
+        }
+
+        /**
+         * @return position of slot holding specified hash or of empty slot where it should be stored
+         */
+        private static int find(LongBuffer table, int mask, long hash1, long hash2) {
+            int slot = (int) hash1 & mask;
+            while (true) {
+                int pos = slot << 1;
+                long stored1 = table.get(pos);
+                long stored2 = table.get(pos + 1);
+                if (stored1 == hash1 && stored2 == hash2 || stored1 == 0 && stored2 == 0) {
+                    return pos;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void grow(int capacity) {
+            LongBuffer oldTable = table;
+            int oldSize = size;
+            allocate(capacity);
+            for (int pos = 0; pos < oldTable.capacity(); pos += 2) {
+                long hash1 = oldTable.get(pos);
+                long hash2 = oldTable.get(pos + 1);
+                if (hash1 != 0 || hash2 != 0) {
+                    int newPos = find(table, mask, hash1, hash2);
+                    table.put(newPos, hash1);
+                    table.put(newPos + 1, hash2);
+                }
+            }
+            size = oldSize;
+        }
+
+        @Override
+        void clear() {
+            if (size == 0) {
+                return;
+            }
+            // table is reused, so direct memory isn't allocated again before old buffer is collected
+            for (int pos = 0; pos < table.capacity(); pos++) {
+                table.put(pos, 0);
+            }
+            size = 0;
+        }
+
+        @Override
+        public long getMemoryUsage() {
+            return table.capacity() * 8L;
+        }
+    }
+
+    /**
+     * Scalable Bloom filter: chain of filters with growing capacity and tightening error rate,
+     * so total false positive rate stays bounded while the number of statements is unknown.
+     */
+    private static final class BloomIndex extends Index {
+
+        static final long MIN_MEMORY = 1 << 10;
+
+        private static final int INITIAL_CAPACITY = 1 << 16;
+        // bit index is computed as 32-bit fraction of filter size
+        private static final long MAX_BITS = 1L << 31;
+        private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+        // error rates of successive filters form geometric series with this ratio
+        private static final double TIGHTENING_RATIO = 0.5;
+
+        private final long memoryBudget;
+        private final double initialErrorRate;
+
+        private long[][] filters = new long[0][];
+        private long[] bitCounts = new long[0];
+        private int[] hashCounts = new int[0];
+        private int[] capacities = new int[0];
+        private int lastSize;
+        private long memoryUsage;
+        private boolean full;
+
+        BloomIndex(long memoryBudget, double falsePositiveRate) {
+            this.memoryBudget = memoryBudget;
+            this.initialErrorRate = falsePositiveRate * (1 - TIGHTENING_RATIO);
+            addFilter();
+        }
+
+        /**
+         * Adds filter twice larger than the last one.
+         * @return false if it doesn't fit into memory budget
+         */
+        private boolean addFilter() {
+            int count = filters.length;
+            int capacity = count == 0 ? INITIAL_CAPACITY : capacities[count - 1] << 1;
+            double errorRate = initialErrorRate * Math.pow(TIGHTENING_RATIO, count);
+            long bits = (long) Math.ceil(-capacity * Math.log(errorRate) / LN2_SQUARED);
+            long maxBits = Math.min((memoryBudget - memoryUsage) * Byte.SIZE, MAX_BITS);
+            if (bits > maxBits) {
+                if (count > 0) {
+                    return false;
+                }
+                // first filter is shrunk to fit into budget
+                capacity = (int) (capacity * maxBits / bits);
+                bits = maxBits;
+            }
+            int words = (int) ((bits + Long.SIZE - 1) / Long.SIZE);
+            filters = Arrays.copyOf(filters, count + 1);
+            bitCounts = Arrays.copyOf(bitCounts, count + 1);
+            hashCounts = Arrays.copyOf(hashCounts, count + 1);
+            capacities = Arrays.copyOf(capacities, count + 1);
+            filters[count] = new long[words];
+            bitCounts[count] = (long) words * Long.SIZE;
+            hashCounts[count] = Math.max(1, (int) Math.ceil(-Math.log(errorRate) / Math.log(2)));
+            capacities[count] = capacity;
+            lastSize = 0;
+            memoryUsage += words * 8L;
+            return true;
+        }
+
+        @Override
+        int add(long hash1, long hash2) {
+            for (int i = 0; i < filters.length; i++) {
+                if (contains(i, hash1, hash2)) {
+                    return FOUND;
+                }
+            }
+            if (full) {
+                return FULL;
+            }
+            if (lastSize == capacities[filters.length - 1] && !addFilter()) {
+                full = true;
+                return FULL;
+            }
+            int last = filters.length - 1;
+            long[] filter = filters[last];
+            long bits = bitCounts[last];
+            long hash = hash1;
+            for (int i = 0; i < hashCounts[last]; i++) {
+                long bit = bitIndex(hash, bits);
+                filter[(int) (bit >>> 6)] |= 1L << bit;
+                hash += hash2;
+            }
+            lastSize++;
+            return ADDED;
+        }
+
+        private boolean contains(int filterIndex, long hash1, long hash2) {
+            long[] filter = filters[filterIndex];
+            long bits = bitCounts[filterIndex];
+            long hash = hash1;
+            for (int i = 0; i < hashCounts[filterIndex]; i++) {
+                long bit = bitIndex(hash, bits);
+                if ((filter[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+                hash += hash2;
+            }
+            return true;
+        }
+
+        /**
+         * Maps upper half of hash to [0, bits) range without division.
+         */
+        private static long bitIndex(long hash, long bits) {
+            return ((hash >>> 32) * bits) >>> 32;
+        }
+
+        @Override
+        void clear() {
+            if (filters.length > 1) {
+                filters = Arrays.copyOf(filters, 1);
+                bitCounts = Arrays.copyOf(bitCounts, 1);
+                hashCounts = Arrays.copyOf(hashCounts, 1);
+                capacities = Arrays.copyOf(capacities, 1);
+                memoryUsage = filters[0].length * 8L;
+            }
+            Arrays.fill(filters[0], 0);
+            lastSize = 0;
+            full = false;
+        }
+
+        @Override
+        public long getMemoryUsage() {
+            return memoryUsage;
+        }
+    }
+}
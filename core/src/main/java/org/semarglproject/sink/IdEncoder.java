@@ -0,0 +1,217 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.TermIdDictionary;
+import org.semarglproject.vocab.RDF;
+
+/**
+ * Bridge from string based {@link QuadSink} to dictionary encoded {@link IdTripleSink}.
+ * Quads are passed as triples if connected sink doesn't implement {@link IdQuadSink}.
+ * NTriples and NQuads parsers connected to this pipe look up terms in their input buffers and
+ * avoid creating strings for known terms.
+ */
+public final class IdEncoder extends Pipe<IdTripleSink> implements QuadSink {
+
+    private final TermIdDictionary dictionary;
+    private final IdQuadSink quadSink;
+
+    private IdEncoder(IdTripleSink sink, TermIdDictionary dictionary) {
+        super(sink);
+        this.dictionary = dictionary;
+        this.quadSink = sink instanceof IdQuadSink ? (IdQuadSink) sink : null;
+    }
+
+    /**
+     * Creates instance of IdEncoder with own dictionary connected to specified sink.
+     * @param sink sink to be connected to
+     * @return instance of IdEncoder
+     */
+    public static QuadSink connect(IdTripleSink sink) {
+        return new IdEncoder(sink, new TermIdDictionary());
+    }
+
+    /**
+     * Creates instance of IdEncoder connected to specified sink. Dictionary can be shared
+     * by several encoders, so IRIs get same ids across different streams.
+     * @param sink sink to be connected to
+     * @param dictionary dictionary used to assign ids
+     * @return instance of IdEncoder
+     */
+    public static QuadSink connect(IdTripleSink sink, TermIdDictionary dictionary) {
+        return new IdEncoder(sink, dictionary);
+    }
+
+    /**
+     * @param iri IRI to encode
+     * @return IRI's id
+     */
+    public long encodeIri(String iri) {
+        return dictionary.encodeIri(iri, sink);
+    }
+
+    /**
+     * Encodes IRI stored in char buffer.
+     * @return IRI's id
+     */
+    public long encodeIri(char[] buffer, int offset, int count) {
+        return dictionary.encodeIri(buffer, offset, count, sink);
+    }
+
+    /**
+     * Encodes IRI stored in UTF-8 encoded buffer.
+     * @return IRI's id
+     */
+    public long encodeIri(byte[] buffer, int offset, int count) {
+        return dictionary.encodeIri(buffer, offset, count, sink);
+    }
+
+    /**
+     * @param bnode BNode name to encode
+     * @return BNode's id
+     */
+    public long encodeBnode(String bnode) {
+        return dictionary.encodeBnode(bnode, sink);
+    }
+
+    /**
+     * Encodes BNode name stored in char buffer.
+     * @return BNode's id
+     */
+    public long encodeBnode(char[] buffer, int offset, int count) {
+        return dictionary.encodeBnode(buffer, offset, count, sink);
+    }
+
+    /**
+     * Encodes BNode name stored in UTF-8 encoded buffer.
+     * @return BNode's id
+     */
+    public long encodeBnode(byte[] buffer, int offset, int count) {
+        return dictionary.encodeBnode(buffer, offset, count, sink);
+    }
+
+    /**
+     * @param content unescaped string representation of content
+     * @param lang content's lang, can be null if no language specified
+     * @return literal's id
+     */
+    public long encodePlainLiteral(String content, String lang) {
+        return dictionary.encodePlainLiteral(content, lang, sink);
+    }
+
+    /**
+     * @param content unescaped string representation of content
+     * @param type literal datatype's IRI
+     * @return literal's id
+     */
+    public long encodeTypedLiteral(String content, String type) {
+        return dictionary.encodeTypedLiteral(content, type, sink);
+    }
+
+    /**
+     * Passes encoded triple to connected sink.
+     * @param subj subject's id
+     * @param pred predicate's id
+     * @param obj object's id
+     */
+    public void addTriple(long subj, long pred, long obj) {
+        sink.addTriple(subj, pred, obj);
+    }
+
+    /**
+     * Passes encoded quad to connected sink.
+     * @param subj subject's id
+     * @param pred predicate's id
+     * @param obj object's id
+     * @param graph graph's id
+     */
+    public void addQuad(long subj, long pred, long obj, long graph) {
+        if (quadSink != null) {
+            quadSink.addQuad(subj, pred, obj, graph);
+        } else {
+            sink.addTriple(subj, pred, obj);
+        }
+    }
+
+    private long encodeResource(String resource) {
+        if (resource.startsWith(RDF.BNODE_PREFIX)) {
+            return dictionary.encodeBnode(resource, sink);
+        }
+        return dictionary.encodeIri(resource, sink);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        long subjId = encodeResource(subj);
+        long predId = encodeIri(pred);
+        sink.addTriple(subjId, predId, encodeResource(obj));
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        long subjId = encodeResource(subj);
+        long predId = encodeIri(pred);
+        sink.addTriple(subjId, predId, encodePlainLiteral(content, lang));
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        long subjId = encodeResource(subj);
+        long predId = encodeIri(pred);
+        sink.addTriple(subjId, predId, encodeTypedLiteral(content, type));
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        long subjId = encodeResource(subj);
+        long predId = encodeIri(pred);
+        long objId = encodeResource(obj);
+        addQuad(subjId, predId, objId, encodeResource(graph));
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        long subjId = encodeResource(subj);
+        long predId = encodeIri(pred);
+        long objId = encodePlainLiteral(content, lang);
+        addQuad(subjId, predId, objId, encodeResource(graph));
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        long subjId = encodeResource(subj);
+        long predId = encodeIri(pred);
+        long objId = encodeTypedLiteral(content, type);
+        addQuad(subjId, predId, objId, encodeResource(graph));
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+        dictionary.clearBnodes();
+        super.startStream();
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        sink.setBaseUri(baseUri);
+    }
+
+    @Override
+    protected boolean setPropertyInternal(String key, Object value) {
+        return false;
+    }
+}
@@ -13,25 +13,20 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.semarglproject.rdf.rdfa;
+package org.semarglproject.sink;
 
-import java.util.HashMap;
-import java.util.Map;
-
-final class VocabManager {
+/**
+ * Interface for handling dictionary encoded quads.
+ */
+public interface IdQuadSink extends IdTripleSink {
 
-    private final Map<String, Vocabulary> vocabCache = new HashMap<String, Vocabulary>();
+    /**
+     * Callback for handling quads
+     * @param subj subject's id
+     * @param pred predicate's id
+     * @param obj object's id
+     * @param graph graph's id
+     */
+    void addQuad(long subj, long pred, long obj, long graph);
 
-    Vocabulary findVocab(String vocabUrl, boolean expandVocab) {
-        Vocabulary vocab = vocabCache.get(vocabUrl);
-        if (vocab != null) {
-            return vocab;
-        }
-        vocab = new Vocabulary(vocabUrl);
-        vocabCache.put(vocabUrl, vocab);
-        if (expandVocab) {
-            vocab.load();
-        }
-        return vocab;
-    }
 }
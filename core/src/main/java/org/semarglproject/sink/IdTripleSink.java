@@ -0,0 +1,64 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+/**
+ * Interface for handling dictionary encoded triples. Each term is identified by a number and is
+ * defined by a corresponding <code>add*</code> callback before its first usage in a statement.
+ * IRIs are defined once per {@link org.semarglproject.rdf.TermIdDictionary dictionary},
+ * blank nodes once per stream, each literal occurrence gets its own id.
+ */
+public interface IdTripleSink extends DataSink {
+
+    /**
+     * Callback for IRI definition
+     * @param id IRI's id
+     * @param iri IRI
+     */
+    void addIri(long id, String iri);
+
+    /**
+     * Callback for BNode definition
+     * @param id BNode's id
+     * @param bnode BNode name
+     */
+    void addBnode(long id, String bnode);
+
+    /**
+     * Callback for plain literal definition
+     * @param id literal's id
+     * @param content unescaped string representation of content
+     * @param lang content's lang, can be null if no language specified
+     */
+    void addPlainLiteral(long id, String content, String lang);
+
+    /**
+     * Callback for typed literal definition
+     * @param id literal's id
+     * @param content unescaped string representation of content
+     * @param type literal datatype's IRI
+     */
+    void addTypedLiteral(long id, String content, String type);
+
+    /**
+     * Callback for handling triples
+     * @param subj subject's id
+     * @param pred predicate's id
+     * @param obj object's id
+     */
+    void addTriple(long subj, long pred, long obj);
+
+}
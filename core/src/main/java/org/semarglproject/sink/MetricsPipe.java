@@ -0,0 +1,477 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.ProcessorGraphHandler;
+import org.semarglproject.source.StreamProcessor;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Instrumenting pipe which can be inserted between any two pipeline stages. Passes all events
+ * downstream unchanged, counts events, chars, bytes and triples by kind, measures time of each document
+ * and time spent in downstream sinks, and records them to {@link PipeMetrics}. Errors and warnings are counted
+ * if processor graph handler is set with {@link StreamProcessor#PROCESSOR_GRAPH_HANDLER_PROPERTY}.
+ * <p>
+ *     Time spent in downstream sinks is measured with {@link System#nanoTime()} around every event,
+ *     so pipe adds a few dozens of nanoseconds per event.
+ * </p>
+ * @param <S> class of output sink
+ */
+public abstract class MetricsPipe<S extends DataSink> extends Pipe<S> {
+
+    long events;
+    long chars;
+    long bytes;
+    long nonLiteralTriples;
+    long plainLiteralTriples;
+    long typedLiteralTriples;
+    long quads;
+
+    private final PipeMetrics metrics;
+
+    private long documentStart;
+    private long downstreamNanos;
+    private long callStart;
+    private boolean failed;
+    private boolean inDocument;
+
+    private MetricsPipe(S sink, PipeMetrics metrics) {
+        super(sink);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Instruments char sink. If sink also implements {@link ByteSink}, so does returned pipe.
+     * @param sink sink to pass events to
+     * @param metrics metrics to record statistics to
+     * @return instrumented sink
+     */
+    public static CharSink connect(CharSink sink, PipeMetrics metrics) {
+        if (sink instanceof ByteSink) {
+            return new CharByteMetricsPipe(sink, metrics);
+        }
+        return new CharMetricsPipe(sink, metrics);
+    }
+
+    /**
+     * Instruments XML sink.
+     * @param sink sink to pass events to
+     * @param metrics metrics to record statistics to
+     * @return instrumented sink
+     */
+    public static XmlSink connect(XmlSink sink, PipeMetrics metrics) {
+        return new XmlMetricsPipe(sink, metrics);
+    }
+
+    /**
+     * Instruments triple sink.
+     * @param sink sink to pass triples to
+     * @param metrics metrics to record statistics to
+     * @return instrumented sink
+     */
+    public static TripleSink connect(TripleSink sink, PipeMetrics metrics) {
+        return new TripleMetricsPipe(sink, metrics);
+    }
+
+    /**
+     * Instruments quad sink.
+     * @param sink sink to pass triples and quads to
+     * @param metrics metrics to record statistics to
+     * @return instrumented sink
+     */
+    public static QuadSink connect(QuadSink sink, PipeMetrics metrics) {
+        return new QuadMetricsPipe(sink, metrics);
+    }
+
+    final void enter() {
+        events++;
+        callStart = System.nanoTime();
+    }
+
+    final void exit() {
+        downstreamNanos += System.nanoTime() - callStart;
+        callStart = 0;
+    }
+
+    private void abortedCall() {
+        // downstream call hasn't returned normally
+        if (callStart != 0) {
+            exit();
+            failed = true;
+        }
+    }
+
+    private void finishDocument() {
+        abortedCall();
+        metrics.recordDocument(this, System.nanoTime() - documentStart, downstreamNanos, failed);
+        inDocument = false;
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+        if (inDocument) {
+            finishDocument();
+        }
+        events = 0;
+        chars = 0;
+        bytes = 0;
+        nonLiteralTriples = 0;
+        plainLiteralTriples = 0;
+        typedLiteralTriples = 0;
+        quads = 0;
+        downstreamNanos = 0;
+        failed = false;
+        inDocument = true;
+        documentStart = System.nanoTime();
+        enter();
+        super.startStream();
+        exit();
+    }
+
+    @Override
+    public void endStream() throws ParseException {
+        abortedCall();
+        enter();
+        try {
+            super.endStream();
+            exit();
+        } finally {
+            finishDocument();
+        }
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        sink.setBaseUri(baseUri);
+    }
+
+    @Override
+    protected boolean setPropertyInternal(String key, Object value) {
+        if (StreamProcessor.PROCESSOR_GRAPH_HANDLER_PROPERTY.equals(key) && value instanceof ProcessorGraphHandler) {
+            // replaces handler passed to downstream sinks by Pipe.setProperty()
+            sink.setProperty(key, new CountingHandler((ProcessorGraphHandler) value, metrics));
+        }
+        return false;
+    }
+
+    private static final class CountingHandler implements ProcessorGraphHandler {
+
+        private final ProcessorGraphHandler handler;
+        private final PipeMetrics metrics;
+
+        private CountingHandler(ProcessorGraphHandler handler, PipeMetrics metrics) {
+            this.handler = handler;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void info(String infoClass, String message) {
+            handler.info(infoClass, message);
+        }
+
+        @Override
+        public void warning(String warningClass, String message) {
+            metrics.recordWarning();
+            handler.warning(warningClass, message);
+        }
+
+        @Override
+        public void error(String errorClass, String message) {
+            metrics.recordError();
+            handler.error(errorClass, message);
+        }
+    }
+
+    private static class CharMetricsPipe extends MetricsPipe<CharSink> implements CharSink {
+
+        private CharMetricsPipe(CharSink sink, PipeMetrics metrics) {
+            super(sink, metrics);
+        }
+
+        @Override
+        public CharSink process(String str) throws ParseException {
+            chars += str.length();
+            enter();
+            sink.process(str);
+            exit();
+            return this;
+        }
+
+        @Override
+        public CharSink process(char ch) throws ParseException {
+            chars++;
+            enter();
+            sink.process(ch);
+            exit();
+            return this;
+        }
+
+        @Override
+        public CharSink process(char[] buffer, int start, int count) throws ParseException {
+            chars += count;
+            enter();
+            sink.process(buffer, start, count);
+            exit();
+            return this;
+        }
+    }
+
+    private static final class CharByteMetricsPipe extends CharMetricsPipe implements ByteSink {
+
+        private CharByteMetricsPipe(CharSink sink, PipeMetrics metrics) {
+            super(sink, metrics);
+        }
+
+        @Override
+        public ByteSink process(byte[] buffer, int start, int count) throws ParseException {
+            bytes += count;
+            enter();
+            ((ByteSink) sink).process(buffer, start, count);
+            exit();
+            return this;
+        }
+    }
+
+    private static final class XmlMetricsPipe extends MetricsPipe<XmlSink> implements XmlSink {
+
+        private XmlMetricsPipe(XmlSink sink, PipeMetrics metrics) {
+            super(sink, metrics);
+        }
+
+        @Override
+        public ParseException processException(SAXException e) {
+            return sink.processException(e);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            sink.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            enter();
+            sink.startDocument();
+            exit();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            enter();
+            sink.endDocument();
+            exit();
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            enter();
+            sink.startPrefixMapping(prefix, uri);
+            exit();
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            enter();
+            sink.endPrefixMapping(prefix);
+            exit();
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            enter();
+            sink.startElement(uri, localName, qName, atts);
+            exit();
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            enter();
+            sink.endElement(uri, localName, qName);
+            exit();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            chars += length;
+            enter();
+            sink.characters(ch, start, length);
+            exit();
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            chars += length;
+            enter();
+            sink.ignorableWhitespace(ch, start, length);
+            exit();
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            enter();
+            sink.processingInstruction(target, data);
+            exit();
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            enter();
+            sink.skippedEntity(name);
+            exit();
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) throws SAXException {
+            enter();
+            sink.startDTD(name, publicId, systemId);
+            exit();
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            enter();
+            sink.endDTD();
+            exit();
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+            enter();
+            sink.startEntity(name);
+            exit();
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+            enter();
+            sink.endEntity(name);
+            exit();
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            enter();
+            sink.startCDATA();
+            exit();
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            enter();
+            sink.endCDATA();
+            exit();
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) throws SAXException {
+            enter();
+            sink.comment(ch, start, length);
+            exit();
+        }
+    }
+
+    private static final class TripleMetricsPipe extends MetricsPipe<TripleSink> implements TripleSink {
+
+        private TripleMetricsPipe(TripleSink sink, PipeMetrics metrics) {
+            super(sink, metrics);
+        }
+
+        @Override
+        public void addNonLiteral(String subj, String pred, String obj) {
+            nonLiteralTriples++;
+            enter();
+            sink.addNonLiteral(subj, pred, obj);
+            exit();
+        }
+
+        @Override
+        public void addPlainLiteral(String subj, String pred, String content, String lang) {
+            plainLiteralTriples++;
+            enter();
+            sink.addPlainLiteral(subj, pred, content, lang);
+            exit();
+        }
+
+        @Override
+        public void addTypedLiteral(String subj, String pred, String content, String type) {
+            typedLiteralTriples++;
+            enter();
+            sink.addTypedLiteral(subj, pred, content, type);
+            exit();
+        }
+    }
+
+    private static final class QuadMetricsPipe extends MetricsPipe<QuadSink> implements QuadSink {
+
+        private QuadMetricsPipe(QuadSink sink, PipeMetrics metrics) {
+            super(sink, metrics);
+        }
+
+        @Override
+        public void addNonLiteral(String subj, String pred, String obj) {
+            nonLiteralTriples++;
+            enter();
+            sink.addNonLiteral(subj, pred, obj);
+            exit();
+        }
+
+        @Override
+        public void addPlainLiteral(String subj, String pred, String content, String lang) {
+            plainLiteralTriples++;
+            enter();
+            sink.addPlainLiteral(subj, pred, content, lang);
+            exit();
+        }
+
+        @Override
+        public void addTypedLiteral(String subj, String pred, String content, String type) {
+            typedLiteralTriples++;
+            enter();
+            sink.addTypedLiteral(subj, pred, content, type);
+            exit();
+        }
+
+        @Override
+        public void addNonLiteral(String subj, String pred, String obj, String graph) {
+            nonLiteralTriples++;
+            quads++;
+            enter();
+            sink.addNonLiteral(subj, pred, obj, graph);
+            exit();
+        }
+
+        @Override
+        public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+            plainLiteralTriples++;
+            quads++;
+            enter();
+            sink.addPlainLiteral(subj, pred, content, lang, graph);
+            exit();
+        }
+
+        @Override
+        public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+            typedLiteralTriples++;
+            quads++;
+            enter();
+            sink.addTypedLiteral(subj, pred, content, type, graph);
+            exit();
+        }
+    }
+}
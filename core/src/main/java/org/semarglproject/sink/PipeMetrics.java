@@ -0,0 +1,250 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Statistics collected by {@link MetricsPipe}. Counters are updated once per document, so
+ * values of document being processed are not visible until its end. Instance can be shared
+ * between several pipes to aggregate their statistics.
+ */
+public final class PipeMetrics implements PipeMetricsMBean {
+
+    /**
+     * Domain of object names used by {@link #register(String)}
+     */
+    public static final String JMX_DOMAIN = "org.semarglproject";
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final LatencyHistogram documentTimes = new LatencyHistogram();
+    private final LatencyHistogram downstreamTimes = new LatencyHistogram();
+
+    private ObjectName objectName;
+
+    private long documents;
+    private long failedDocuments;
+    private long events;
+    private long chars;
+    private long bytes;
+    private long nonLiteralTriples;
+    private long plainLiteralTriples;
+    private long typedLiteralTriples;
+    private long quads;
+    private long errors;
+    private long warnings;
+    private long totalDocumentTime;
+    private long totalDownstreamTime;
+
+    /**
+     * Creates metrics registered as MBean in platform MBean server with
+     * <code>org.semarglproject:type=PipeMetrics,name=&lt;name&gt;</code> object name.
+     * @param name name of pipeline stage
+     * @return new metrics instance
+     * @throws IllegalArgumentException if MBean can't be registered
+     */
+    public static PipeMetrics register(String name) {
+        PipeMetrics metrics = new PipeMetrics();
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=PipeMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            metrics.objectName = objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Can't register metrics " + name, e);
+        }
+        return metrics;
+    }
+
+    /**
+     * Unregisters MBean registered with {@link #register(String)}.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            // already unregistered
+        }
+        objectName = null;
+    }
+
+    synchronized void recordDocument(MetricsPipe<?> pipe, long documentNanos, long downstreamNanos,
+                                     boolean failed) {
+        documents++;
+        if (failed) {
+            failedDocuments++;
+        }
+        events += pipe.events;
+        chars += pipe.chars;
+        bytes += pipe.bytes;
+        nonLiteralTriples += pipe.nonLiteralTriples;
+        plainLiteralTriples += pipe.plainLiteralTriples;
+        typedLiteralTriples += pipe.typedLiteralTriples;
+        quads += pipe.quads;
+        long documentTime = documentNanos / NANOS_PER_MICRO;
+        long downstreamTime = downstreamNanos / NANOS_PER_MICRO;
+        totalDocumentTime += documentTime;
+        totalDownstreamTime += downstreamTime;
+        documentTimes.record(documentTime);
+        downstreamTimes.record(downstreamTime);
+    }
+
+    synchronized void recordError() {
+        errors++;
+    }
+
+    synchronized void recordWarning() {
+        warnings++;
+    }
+
+    @Override
+    public synchronized long getDocuments() {
+        return documents;
+    }
+
+    @Override
+    public synchronized long getFailedDocuments() {
+        return failedDocuments;
+    }
+
+    @Override
+    public synchronized long getEvents() {
+        return events;
+    }
+
+    @Override
+    public synchronized long getChars() {
+        return chars;
+    }
+
+    @Override
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized long getTriples() {
+        return nonLiteralTriples + plainLiteralTriples + typedLiteralTriples;
+    }
+
+    @Override
+    public synchronized long getNonLiteralTriples() {
+        return nonLiteralTriples;
+    }
+
+    @Override
+    public synchronized long getPlainLiteralTriples() {
+        return plainLiteralTriples;
+    }
+
+    @Override
+    public synchronized long getTypedLiteralTriples() {
+        return typedLiteralTriples;
+    }
+
+    @Override
+    public synchronized long getQuads() {
+        return quads;
+    }
+
+    @Override
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    @Override
+    public synchronized long getWarnings() {
+        return warnings;
+    }
+
+    @Override
+    public synchronized long getTotalDocumentTime() {
+        return totalDocumentTime;
+    }
+
+    @Override
+    public synchronized long getTotalDownstreamTime() {
+        return totalDownstreamTime;
+    }
+
+    @Override
+    public synchronized long getDocumentTimeP50() {
+        return documentTimes.getPercentile(50);
+    }
+
+    @Override
+    public synchronized long getDocumentTimeP90() {
+        return documentTimes.getPercentile(90);
+    }
+
+    @Override
+    public synchronized long getDocumentTimeP99() {
+        return documentTimes.getPercentile(99);
+    }
+
+    @Override
+    public synchronized long getDocumentTimeMax() {
+        return documentTimes.getMax();
+    }
+
+    @Override
+    public synchronized long getDownstreamTimeP50() {
+        return downstreamTimes.getPercentile(50);
+    }
+
+    @Override
+    public synchronized long getDownstreamTimeP90() {
+        return downstreamTimes.getPercentile(90);
+    }
+
+    @Override
+    public synchronized long getDownstreamTimeP99() {
+        return downstreamTimes.getPercentile(99);
+    }
+
+    @Override
+    public synchronized long getDownstreamTimeMax() {
+        return downstreamTimes.getMax();
+    }
+
+    @Override
+    public synchronized void reset() {
+        documents = 0;
+        failedDocuments = 0;
+        events = 0;
+        chars = 0;
+        bytes = 0;
+        nonLiteralTriples = 0;
+        plainLiteralTriples = 0;
+        typedLiteralTriples = 0;
+        quads = 0;
+        errors = 0;
+        warnings = 0;
+        totalDocumentTime = 0;
+        totalDownstreamTime = 0;
+        documentTimes.clear();
+        downstreamTimes.clear();
+    }
+}
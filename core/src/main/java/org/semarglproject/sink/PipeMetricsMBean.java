@@ -0,0 +1,137 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+/**
+ * Management interface of {@link PipeMetrics}. Times are reported in microseconds.
+ */
+public interface PipeMetricsMBean {
+
+    /**
+     * @return number of processed documents
+     */
+    long getDocuments();
+
+    /**
+     * @return number of documents aborted by exception thrown from downstream sink
+     */
+    long getFailedDocuments();
+
+    /**
+     * @return number of events passed downstream
+     */
+    long getEvents();
+
+    /**
+     * @return number of chars passed downstream
+     */
+    long getChars();
+
+    /**
+     * @return number of bytes passed downstream
+     */
+    long getBytes();
+
+    /**
+     * @return number of triples and quads passed downstream
+     */
+    long getTriples();
+
+    /**
+     * @return number of triples and quads with non literal objects
+     */
+    long getNonLiteralTriples();
+
+    /**
+     * @return number of triples and quads with plain literal objects
+     */
+    long getPlainLiteralTriples();
+
+    /**
+     * @return number of triples and quads with typed literal objects
+     */
+    long getTypedLiteralTriples();
+
+    /**
+     * @return number of statements with graph specified
+     */
+    long getQuads();
+
+    /**
+     * @return number of errors reported to processor graph handler by downstream sinks
+     */
+    long getErrors();
+
+    /**
+     * @return number of warnings reported to processor graph handler by downstream sinks
+     */
+    long getWarnings();
+
+    /**
+     * @return total time between start and end of processed documents
+     */
+    long getTotalDocumentTime();
+
+    /**
+     * @return total time spent in downstream sinks
+     */
+    long getTotalDownstreamTime();
+
+    /**
+     * @return median time between start and end of document
+     */
+    long getDocumentTimeP50();
+
+    /**
+     * @return 90th percentile of time between start and end of document
+     */
+    long getDocumentTimeP90();
+
+    /**
+     * @return 99th percentile of time between start and end of document
+     */
+    long getDocumentTimeP99();
+
+    /**
+     * @return maximal time between start and end of document
+     */
+    long getDocumentTimeMax();
+
+    /**
+     * @return median time per document spent in downstream sinks
+     */
+    long getDownstreamTimeP50();
+
+    /**
+     * @return 90th percentile of time per document spent in downstream sinks
+     */
+    long getDownstreamTimeP90();
+
+    /**
+     * @return 99th percentile of time per document spent in downstream sinks
+     */
+    long getDownstreamTimeP99();
+
+    /**
+     * @return maximal time per document spent in downstream sinks
+     */
+    long getDownstreamTimeMax();
+
+    /**
+     * Resets all counters and histograms.
+     */
+    void reset();
+}
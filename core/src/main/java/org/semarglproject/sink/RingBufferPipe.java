@@ -0,0 +1,430 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pipe which decouples parsing from downstream sink by passing triples to consumer thread
+ * through preallocated ring buffer of mutable triple slots. Parser and store insertion run on
+ * separate cores, latency spikes on either side are absorbed by buffer. Buffer is bounded,
+ * so slow sink blocks parser when buffer is full.
+ * <p>
+ *     Pipe has single producer, i.e. it must be fed from one thread. Consumer thread is started
+ *     for each stream. Downstream sink is started and ended from producer's thread,
+ *     {@link #endStream()} returns after all triples are delivered and rethrows exceptions thrown by
+ *     sink as {@link ParseException}. If producer is interrupted while waiting for free slot, its interrupt
+ *     status is kept, remaining triples of stream are dropped and {@link #endStream()} throws
+ *     {@link ParseException}.
+ * </p>
+ * <p>
+ *     Idle threads behaviour is controlled by {@link WaitStrategy}.
+ * </p>
+ */
+public final class RingBufferPipe extends Pipe<TripleSink> implements QuadSink {
+
+    /**
+     * Number of slots used by default
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final byte QUAD = 4;
+    private static final byte BASE_URI = 8;
+    private static final byte END_OF_STREAM = 16;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = 100000;
+
+    private final QuadSink quadSink;
+    private final WaitStrategy waitStrategy;
+    private final int mask;
+
+    private final byte[] kinds;
+    private final String[] subjs;
+    private final String[] preds;
+    private final String[] objs;
+    private final String[] qualifiers;
+    private final String[] graphs;
+
+    // last published slot
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // last delivered slot
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    private long nextSeq;
+    private long cachedConsumed = -1;
+
+    private volatile Thread producer;
+    private volatile Thread consumer;
+    private volatile boolean producerWaiting;
+    private volatile boolean consumerWaiting;
+    private volatile Throwable failure;
+    // set when producer is interrupted, consumer delivers already published triples and stops
+    private volatile boolean aborted;
+
+    private RingBufferPipe(TripleSink sink, int capacity, WaitStrategy waitStrategy) {
+        super(sink);
+        this.quadSink = sink instanceof QuadSink ? (QuadSink) sink : null;
+        this.waitStrategy = waitStrategy;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        kinds = new byte[size];
+        subjs = new String[size];
+        preds = new String[size];
+        objs = new String[size];
+        qualifiers = new String[size];
+        graphs = new String[size];
+    }
+
+    /**
+     * Creates pipe with default capacity and {@link WaitStrategy#BLOCKING} strategy.
+     * @param sink sink to pass triples to
+     * @return new instance of pipe
+     */
+    public static TripleSink connect(TripleSink sink) {
+        return connect(sink, DEFAULT_CAPACITY, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * Creates pipe with specified buffer settings.
+     * @param sink sink to pass triples to
+     * @param capacity number of slots, rounded up to power of two
+     * @param waitStrategy idle threads behaviour
+     * @return new instance of pipe
+     */
+    public static TripleSink connect(TripleSink sink, int capacity, WaitStrategy waitStrategy) {
+        return create(sink, capacity, waitStrategy);
+    }
+
+    /**
+     * Creates pipe with default capacity and {@link WaitStrategy#BLOCKING} strategy.
+     * @param sink sink to pass triples and quads to
+     * @return new instance of pipe
+     */
+    public static QuadSink connect(QuadSink sink) {
+        return connect(sink, DEFAULT_CAPACITY, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * Creates pipe with specified buffer settings.
+     * @param sink sink to pass triples and quads to
+     * @param capacity number of slots, rounded up to power of two
+     * @param waitStrategy idle threads behaviour
+     * @return new instance of pipe
+     */
+    public static QuadSink connect(QuadSink sink, int capacity, WaitStrategy waitStrategy) {
+        return create(sink, capacity, waitStrategy);
+    }
+
+    private static RingBufferPipe create(TripleSink sink, int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be positive and not greater than 2^30");
+        }
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("Wait strategy must be specified");
+        }
+        return new RingBufferPipe(sink, capacity, waitStrategy);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        publish(BatchTripleSink.NON_LITERAL, subj, pred, obj, null, null);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        publish(BatchTripleSink.PLAIN_LITERAL, subj, pred, content, lang, null);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        publish(BatchTripleSink.TYPED_LITERAL, subj, pred, content, type, null);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        publish((byte) (BatchTripleSink.NON_LITERAL | QUAD), subj, pred, obj, null, graph);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        publish((byte) (BatchTripleSink.PLAIN_LITERAL | QUAD), subj, pred, content, lang, graph);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        publish((byte) (BatchTripleSink.TYPED_LITERAL | QUAD), subj, pred, content, type, graph);
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        if (consumer == null) {
+            sink.setBaseUri(baseUri);
+        } else {
+            publish(BASE_URI, baseUri, null, null, null, null);
+        }
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+        if (consumer != null) {
+            throw new IllegalStateException("Stream is already started");
+        }
+        failure = null;
+        aborted = false;
+        producer = Thread.currentThread();
+        sink.startStream();
+        consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "semargl-ring-buffer-" + sink.getClass().getSimpleName());
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @Override
+    public void endStream() throws ParseException {
+        Thread consumerThread = consumer;
+        if (consumerThread == null) {
+            sink.endStream();
+            return;
+        }
+        publish(END_OF_STREAM, null, null, null, null, null);
+        boolean interrupted = false;
+        while (consumerThread.isAlive()) {
+            try {
+                consumerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        consumer = null;
+        producer = null;
+        Arrays.fill(subjs, null);
+        Arrays.fill(preds, null);
+        Arrays.fill(objs, null);
+        Arrays.fill(qualifiers, null);
+        Arrays.fill(graphs, null);
+        super.endStream();
+        if (aborted) {
+            throw new ParseException("Producer was interrupted while waiting for sink");
+        }
+        if (failure != null) {
+            throw new ParseException("Sink failed", failure);
+        }
+    }
+
+    @Override
+    protected boolean setPropertyInternal(String key, Object value) {
+        return false;
+    }
+
+    private void publish(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+        if (aborted) {
+            return;
+        }
+        long seq = nextSeq;
+        long wrapPoint = seq - kinds.length;
+        if (wrapPoint > cachedConsumed) {
+            cachedConsumed = waitForConsumer(wrapPoint);
+            if (aborted) {
+                return;
+            }
+        }
+        int index = (int) seq & mask;
+        kinds[index] = kind;
+        subjs[index] = subj;
+        preds[index] = pred;
+        objs[index] = obj;
+        qualifiers[index] = qualifier;
+        graphs[index] = graph;
+        nextSeq = seq + 1;
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            cursor.set(seq);
+            if (consumerWaiting) {
+                LockSupport.unpark(consumer);
+            }
+        } else {
+            cursor.lazySet(seq);
+        }
+    }
+
+    /**
+     * Waits until slot preceding specified one is delivered. Stream is aborted if producer is interrupted,
+     * since parking and sleeping return immediately for interrupted thread.
+     */
+    private long waitForConsumer(long wrapPoint) {
+        long available;
+        int tries = 0;
+        while ((available = consumed.get()) < wrapPoint) {
+            if (Thread.currentThread().isInterrupted()) {
+                aborted = true;
+                LockSupport.unpark(consumer);
+                break;
+            }
+            if (waitStrategy == WaitStrategy.BLOCKING) {
+                producerWaiting = true;
+                if (consumed.get() < wrapPoint) {
+                    LockSupport.park(this);
+                }
+                producerWaiting = false;
+            } else {
+                tries = idle(tries);
+            }
+        }
+        return available;
+    }
+
+    private long waitForProducer(long seq) {
+        long available;
+        int tries = 0;
+        while ((available = cursor.get()) < seq) {
+            if (aborted) {
+                break;
+            }
+            if (waitStrategy == WaitStrategy.BLOCKING) {
+                consumerWaiting = true;
+                if (cursor.get() < seq && !aborted) {
+                    LockSupport.park(this);
+                }
+                consumerWaiting = false;
+            } else {
+                tries = idle(tries);
+            }
+        }
+        return available;
+    }
+
+    private int idle(int tries) {
+        if (waitStrategy == WaitStrategy.BUSY_SPIN || tries < SPIN_TRIES) {
+            return tries + 1;
+        }
+        if (waitStrategy == WaitStrategy.YIELDING || tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+            return tries + 1;
+        }
+        LockSupport.parkNanos(SLEEP_NANOS);
+        return tries;
+    }
+
+    private void consume() {
+        long seq = consumed.get() + 1;
+        while (true) {
+            long available = waitForProducer(seq);
+            if (available < seq) {
+                return;
+            }
+            for (; seq <= available; seq++) {
+                int index = (int) seq & mask;
+                byte kind = kinds[index];
+                if (kind == END_OF_STREAM) {
+                    release(seq);
+                    return;
+                }
+                if (failure == null) {
+                    deliver(kind, index);
+                }
+            }
+            release(available);
+        }
+    }
+
+    private void release(long seq) {
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            consumed.set(seq);
+            if (producerWaiting) {
+                LockSupport.unpark(producer);
+            }
+        } else {
+            consumed.lazySet(seq);
+        }
+    }
+
+    private void deliver(byte kind, int index) {
+        try {
+            if ((kind & QUAD) != 0 && quadSink != null) {
+                deliverQuad(kind, index);
+                return;
+            }
+            switch (kind & ~QUAD) {
+                case BatchTripleSink.NON_LITERAL:
+                    sink.addNonLiteral(subjs[index], preds[index], objs[index]);
+                    break;
+                case BatchTripleSink.PLAIN_LITERAL:
+                    sink.addPlainLiteral(subjs[index], preds[index], objs[index], qualifiers[index]);
+                    break;
+                case BatchTripleSink.TYPED_LITERAL:
+                    sink.addTypedLiteral(subjs[index], preds[index], objs[index], qualifiers[index]);
+                    break;
+                default:
+                    sink.setBaseUri(subjs[index]);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Error e) {
+            failure = e;
+        }
+    }
+
+    private void deliverQuad(byte kind, int index) {
+        switch (kind & ~QUAD) {
+            case BatchTripleSink.NON_LITERAL:
+                quadSink.addNonLiteral(subjs[index], preds[index], objs[index], graphs[index]);
+                break;
+            case BatchTripleSink.PLAIN_LITERAL:
+                quadSink.addPlainLiteral(subjs[index], preds[index], objs[index], qualifiers[index], graphs[index]);
+                break;
+            default:
+                quadSink.addTypedLiteral(subjs[index], preds[index], objs[index], qualifiers[index], graphs[index]);
+        }
+    }
+
+    /**
+     * Defines how producer waits for free slots and consumer waits for published triples.
+     */
+    public enum WaitStrategy {
+        /**
+         * Threads park until they are signalled by other side. Lowest CPU usage, highest latency.
+         */
+        BLOCKING,
+        /**
+         * Threads spin, yield and then sleep for short periods. Low CPU usage when idle.
+         */
+        SLEEPING,
+        /**
+         * Threads spin and then yield. Low latency, occupies cores when idle.
+         */
+        YIELDING,
+        /**
+         * Threads spin. Lowest latency, requires dedicated core for each thread, otherwise
+         * spinning thread steals time from thread it waits for.
+         */
+        BUSY_SPIN
+    }
+}
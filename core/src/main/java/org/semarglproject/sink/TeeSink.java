@@ -0,0 +1,467 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fan-out stage which delivers each triple or quad to several sinks, so document can be parsed once
+ * and fed to a store, a serializer and a statistics collector at the same time. Each branch is either
+ * synchronous, i.e. called from parser's thread, or asynchronous with its own bounded queue and thread,
+ * so slow consumer doesn't throttle other branches until its queue is full.
+ * <p>
+ *     Quads are passed to branches which don't implement {@link QuadSink} as triples.
+ *     Asynchronous branch sinks are started and ended from caller's thread, {@link #endStream()} returns
+ *     after all queued triples are delivered. Exceptions thrown by asynchronous branch sinks are
+ *     rethrown from {@link #endStream()} as {@link ParseException}. If any branch fails to start,
+ *     branches started before it are ended.
+ * </p>
+ * <pre>
+ * QuadSink tee = TeeSink.connect(TeeSink.sync(JenaSink.connect(model)),
+ *         TeeSink.async(NQuadsSerializer.connect(archive), 4096));
+ * </pre>
+ */
+public final class TeeSink implements QuadSink {
+
+    private static final byte QUAD = 4;
+    private static final byte BASE_URI = 8;
+
+    private final Branch[] branches;
+
+    private TeeSink(Branch[] branches) {
+        this.branches = branches;
+    }
+
+    /**
+     * Creates fan-out stage with synchronous branches.
+     * @param sinks sinks to pass triples and quads to
+     * @return new instance of tee sink
+     */
+    public static QuadSink connect(TripleSink... sinks) {
+        Branch[] branches = new Branch[sinks.length];
+        for (int i = 0; i < sinks.length; i++) {
+            branches[i] = sync(sinks[i]);
+        }
+        return connect(branches);
+    }
+
+    /**
+     * Creates fan-out stage with specified branches.
+     * @param branches branches created with {@link #sync(TripleSink)} or {@link #async(TripleSink, int)}
+     * @return new instance of tee sink
+     */
+    public static QuadSink connect(Branch... branches) {
+        if (branches.length == 0) {
+            throw new IllegalArgumentException("At least one branch must be specified");
+        }
+        for (Branch branch : branches) {
+            if (branch.connected) {
+                throw new IllegalArgumentException("Branch is already connected");
+            }
+            branch.connected = true;
+        }
+        return new TeeSink(branches.clone());
+    }
+
+    /**
+     * Creates branch which passes triples to sink from caller's thread.
+     * @param sink sink to pass triples and quads to
+     * @return new branch
+     */
+    public static Branch sync(TripleSink sink) {
+        return new SyncBranch(sink);
+    }
+
+    /**
+     * Creates branch which passes triples to sink from its own thread.
+     * @param sink sink to pass triples and quads to
+     * @param queueCapacity max number of triples queued for sink before caller is blocked
+     * @return new branch
+     */
+    public static Branch async(TripleSink sink, int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        return new AsyncBranch(sink, queueCapacity);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        for (Branch branch : branches) {
+            branch.add(BatchTripleSink.NON_LITERAL, subj, pred, obj, null, null);
+        }
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        for (Branch branch : branches) {
+            branch.add(BatchTripleSink.PLAIN_LITERAL, subj, pred, content, lang, null);
+        }
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        for (Branch branch : branches) {
+            branch.add(BatchTripleSink.TYPED_LITERAL, subj, pred, content, type, null);
+        }
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        for (Branch branch : branches) {
+            branch.add((byte) (BatchTripleSink.NON_LITERAL | QUAD), subj, pred, obj, null, graph);
+        }
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        for (Branch branch : branches) {
+            branch.add((byte) (BatchTripleSink.PLAIN_LITERAL | QUAD), subj, pred, content, lang, graph);
+        }
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        for (Branch branch : branches) {
+            branch.add((byte) (BatchTripleSink.TYPED_LITERAL | QUAD), subj, pred, content, type, graph);
+        }
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        for (Branch branch : branches) {
+            branch.add(BASE_URI, baseUri, null, null, null, null);
+        }
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+        int started = 0;
+        try {
+            for (; started < branches.length; started++) {
+                branches[started].startStream();
+            }
+        } finally {
+            if (started < branches.length) {
+                endStartedBranches(started);
+            }
+        }
+    }
+
+    /**
+     * Ends branches started before one of them failed to start, so their consumer threads are stopped.
+     * Failures of these branches are ignored in favor of original one.
+     */
+    private void endStartedBranches(int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                branches[i].endStream();
+            } catch (ParseException e) {
+                // start failure is rethrown instead
+            } catch (RuntimeException e) {
+                // start failure is rethrown instead
+            }
+        }
+    }
+
+    @Override
+    public void endStream() throws ParseException {
+        for (Branch branch : branches) {
+            branch.flush();
+        }
+        ParseException exception = null;
+        for (Branch branch : branches) {
+            try {
+                branch.endStream();
+            } catch (ParseException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        boolean result = false;
+        for (Branch branch : branches) {
+            result |= branch.sink.setProperty(key, value);
+        }
+        return result;
+    }
+
+    /**
+     * Branch of fan-out stage. Instances are created with {@link TeeSink#sync(TripleSink)} and
+     * {@link TeeSink#async(TripleSink, int)} and can be connected to single tee only.
+     */
+    public abstract static class Branch {
+
+        final TripleSink sink;
+        final QuadSink quadSink;
+        boolean connected = false;
+
+        private Branch(TripleSink sink) {
+            this.sink = sink;
+            this.quadSink = sink instanceof QuadSink ? (QuadSink) sink : null;
+        }
+
+        abstract void add(byte kind, String subj, String pred, String obj, String qualifier, String graph);
+
+        abstract void startStream() throws ParseException;
+
+        abstract void flush();
+
+        abstract void endStream() throws ParseException;
+
+        final void deliver(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+            if ((kind & QUAD) != 0 && quadSink != null) {
+                switch (kind & ~QUAD) {
+                    case BatchTripleSink.NON_LITERAL:
+                        quadSink.addNonLiteral(subj, pred, obj, graph);
+                        break;
+                    case BatchTripleSink.PLAIN_LITERAL:
+                        quadSink.addPlainLiteral(subj, pred, obj, qualifier, graph);
+                        break;
+                    default:
+                        quadSink.addTypedLiteral(subj, pred, obj, qualifier, graph);
+                }
+                return;
+            }
+            switch (kind & ~QUAD) {
+                case BatchTripleSink.NON_LITERAL:
+                    sink.addNonLiteral(subj, pred, obj);
+                    break;
+                case BatchTripleSink.PLAIN_LITERAL:
+                    sink.addPlainLiteral(subj, pred, obj, qualifier);
+                    break;
+                case BatchTripleSink.TYPED_LITERAL:
+                    sink.addTypedLiteral(subj, pred, obj, qualifier);
+                    break;
+                default:
+                    sink.setBaseUri(subj);
+            }
+        }
+    }
+
+    private static final class SyncBranch extends Branch {
+
+        private SyncBranch(TripleSink sink) {
+            super(sink);
+        }
+
+        @Override
+        void add(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+            deliver(kind, subj, pred, obj, qualifier, graph);
+        }
+
+        @Override
+        void startStream() throws ParseException {
+            sink.startStream();
+        }
+
+        @Override
+        void flush() {
+        }
+
+        @Override
+        void endStream() throws ParseException {
+            sink.endStream();
+        }
+    }
+
+    /**
+     * Passes chunks of triples to consumer thread through bounded queue. Delivered chunks are
+     * returned to producer through free list, so steady state processing doesn't allocate.
+     */
+    private static final class AsyncBranch extends Branch implements Runnable {
+
+        private static final int MAX_CHUNK_SIZE = 256;
+        private static final Chunk END_OF_STREAM = new Chunk(0);
+
+        private final int chunkSize;
+        private final BlockingQueue<Chunk> queue;
+        private final BlockingQueue<Chunk> freeChunks;
+
+        private Chunk chunk;
+        private Thread consumer;
+        private volatile Throwable failure;
+
+        private AsyncBranch(TripleSink sink, int queueCapacity) {
+            super(sink);
+            chunkSize = Math.min(MAX_CHUNK_SIZE, queueCapacity);
+            int chunks = Math.max(1, queueCapacity / chunkSize);
+            queue = new ArrayBlockingQueue<Chunk>(chunks + 1);
+            freeChunks = new ArrayBlockingQueue<Chunk>(chunks + 2);
+        }
+
+        @Override
+        void add(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+            if (chunk == null) {
+                return;
+            }
+            chunk.add(kind, subj, pred, obj, qualifier, graph);
+            if (chunk.size == chunkSize) {
+                flush();
+            }
+        }
+
+        @Override
+        void startStream() throws ParseException {
+            failure = null;
+            sink.startStream();
+            chunk = newChunk();
+            consumer = new Thread(this, "semargl-tee-" + sink.getClass().getSimpleName());
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        @Override
+        void flush() {
+            if (chunk == null || chunk.size == 0) {
+                return;
+            }
+            if (put(chunk)) {
+                chunk = newChunk();
+            } else {
+                chunk = null;
+            }
+        }
+
+        @Override
+        void endStream() throws ParseException {
+            if (consumer == null) {
+                sink.endStream();
+                return;
+            }
+            if (chunk != null) {
+                put(END_OF_STREAM);
+            }
+            chunk = null;
+            boolean interrupted = false;
+            while (consumer.isAlive()) {
+                try {
+                    consumer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            consumer = null;
+            sink.endStream();
+            if (failure != null) {
+                throw new ParseException("Branch sink failed", failure);
+            }
+        }
+
+        private boolean put(Chunk item) {
+            try {
+                queue.put(item);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                consumer.interrupt();
+                failure = e;
+                return false;
+            }
+        }
+
+        private Chunk newChunk() {
+            Chunk result = freeChunks.poll();
+            return result != null ? result : new Chunk(chunkSize);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Chunk item = queue.take();
+                    if (item == END_OF_STREAM) {
+                        return;
+                    }
+                    if (failure == null) {
+                        deliver(item);
+                    }
+                    item.clear();
+                    freeChunks.offer(item);
+                }
+            } catch (InterruptedException e) {
+                // producer was interrupted
+            }
+        }
+
+        private void deliver(Chunk item) {
+            try {
+                for (int i = 0; i < item.size; i++) {
+                    deliver(item.kinds[i], item.subjs[i], item.preds[i], item.objs[i], item.qualifiers[i],
+                            item.graphs[i]);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } catch (Error e) {
+                failure = e;
+            }
+        }
+    }
+
+    private static final class Chunk {
+
+        private final byte[] kinds;
+        private final String[] subjs;
+        private final String[] preds;
+        private final String[] objs;
+        private final String[] qualifiers;
+        private final String[] graphs;
+        private int size = 0;
+
+        private Chunk(int capacity) {
+            kinds = new byte[capacity];
+            subjs = new String[capacity];
+            preds = new String[capacity];
+            objs = new String[capacity];
+            qualifiers = new String[capacity];
+            graphs = new String[capacity];
+        }
+
+        private void add(byte kind, String subj, String pred, String obj, String qualifier, String graph) {
+            kinds[size] = kind;
+            subjs[size] = subj;
+            preds[size] = pred;
+            objs[size] = obj;
+            qualifiers[size] = qualifier;
+            graphs[size] = graph;
+            size++;
+        }
+
+        private void clear() {
+            for (int i = 0; i < size; i++) {
+                subjs[i] = null;
+                preds[i] = null;
+                objs[i] = null;
+                qualifiers[i] = null;
+                graphs[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+
+import java.util.Arrays;
+
+/**
+ * Pipe which accumulates triples into blocks and passes them to {@link BatchTripleSink}.
+ * Blocks are flushed when full and at the end of stream.
+ */
+public final class TripleBatcher extends Pipe<BatchTripleSink> implements TripleSink {
+
+    /**
+     * Number of triples per block used by default
+     */
+    public static final int DEFAULT_BATCH_SIZE = 512;
+
+    private final String[] subjs;
+    private final String[] preds;
+    private final String[] objs;
+    private final byte[] kinds;
+    private final String[] qualifiers;
+    private int size = 0;
+
+    private TripleBatcher(BatchTripleSink sink, int batchSize) {
+        super(sink);
+        subjs = new String[batchSize];
+        preds = new String[batchSize];
+        objs = new String[batchSize];
+        kinds = new byte[batchSize];
+        qualifiers = new String[batchSize];
+    }
+
+    /**
+     * Creates instance of TripleBatcher with default block size connected to specified sink.
+     * @param sink sink to be connected to
+     * @return instance of TripleBatcher
+     */
+    public static TripleSink connect(BatchTripleSink sink) {
+        return new TripleBatcher(sink, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates instance of TripleBatcher connected to specified sink.
+     * @param sink sink to be connected to
+     * @param batchSize max number of triples per block
+     * @return instance of TripleBatcher
+     */
+    public static TripleSink connect(BatchTripleSink sink, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        return new TripleBatcher(sink, batchSize);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        add(subj, pred, obj, BatchTripleSink.NON_LITERAL, null);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        add(subj, pred, content, BatchTripleSink.PLAIN_LITERAL, lang);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        add(subj, pred, content, BatchTripleSink.TYPED_LITERAL, type);
+    }
+
+    private void add(String subj, String pred, String obj, byte kind, String qualifier) {
+        subjs[size] = subj;
+        preds[size] = pred;
+        objs[size] = obj;
+        kinds[size] = kind;
+        qualifiers[size] = qualifier;
+        size++;
+        if (size == subjs.length) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (size > 0) {
+            sink.addTriples(subjs, preds, objs, kinds, qualifiers, size);
+            size = 0;
+        }
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+        size = 0;
+        super.startStream();
+    }
+
+    @Override
+    public void endStream() throws ParseException {
+        flush();
+        // don't keep last stream's terms reachable
+        Arrays.fill(subjs, null);
+        Arrays.fill(preds, null);
+        Arrays.fill(objs, null);
+        Arrays.fill(qualifiers, null);
+        super.endStream();
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        sink.setBaseUri(baseUri);
+    }
+
+    @Override
+    protected boolean setPropertyInternal(String key, Object value) {
+        return false;
+    }
+}
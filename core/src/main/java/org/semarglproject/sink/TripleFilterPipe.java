@@ -0,0 +1,130 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.TripleFilter;
+import org.semarglproject.source.StreamProcessor;
+
+/**
+ * Pipe which passes to its sink only triples accepted by {@link TripleFilter}.
+ * <p>
+ *     Filter can be replaced using {@link StreamProcessor#TRIPLE_FILTER_PROPERTY}. When property is set
+ *     on a {@link StreamProcessor}, same filter is also pushed down to parsers supporting it, so they
+ *     can skip work for rejected triples. Parsers may pass some of rejected triples, this pipe drops
+ *     them anyway.
+ * </p>
+ */
+public final class TripleFilterPipe extends Pipe<TripleSink> implements QuadSink {
+
+    private final QuadSink quadSink;
+    private TripleFilter filter;
+
+    private TripleFilterPipe(TripleSink sink, TripleFilter filter) {
+        super(sink);
+        this.quadSink = sink instanceof QuadSink ? (QuadSink) sink : null;
+        this.filter = filter;
+    }
+
+    /**
+     * Creates instance of TripleFilterPipe connected to specified sink.
+     * @param sink sink to be connected to
+     * @param filter filter applied to triples
+     * @return instance of TripleFilterPipe
+     */
+    public static TripleSink connect(TripleSink sink, TripleFilter filter) {
+        return create(sink, filter);
+    }
+
+    /**
+     * Creates instance of TripleFilterPipe connected to specified sink. Graph of quads isn't
+     * checked by filter.
+     * @param sink sink to be connected to
+     * @param filter filter applied to triples and quads
+     * @return instance of TripleFilterPipe
+     */
+    public static QuadSink connect(QuadSink sink, TripleFilter filter) {
+        return create(sink, filter);
+    }
+
+    private static TripleFilterPipe create(TripleSink sink, TripleFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter must be specified");
+        }
+        return new TripleFilterPipe(sink, filter);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        if (filter.acceptsNonLiteral(subj, pred, obj)) {
+            sink.addNonLiteral(subj, pred, obj);
+        }
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        if (filter.acceptsPlainLiteral(subj, pred, lang)) {
+            sink.addPlainLiteral(subj, pred, content, lang);
+        }
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        if (filter.acceptsTypedLiteral(subj, pred, type)) {
+            sink.addTypedLiteral(subj, pred, content, type);
+        }
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        if (quadSink == null) {
+            addNonLiteral(subj, pred, obj);
+        } else if (filter.acceptsNonLiteral(subj, pred, obj)) {
+            quadSink.addNonLiteral(subj, pred, obj, graph);
+        }
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        if (quadSink == null) {
+            addPlainLiteral(subj, pred, content, lang);
+        } else if (filter.acceptsPlainLiteral(subj, pred, lang)) {
+            quadSink.addPlainLiteral(subj, pred, content, lang, graph);
+        }
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        if (quadSink == null) {
+            addTypedLiteral(subj, pred, content, type);
+        } else if (filter.acceptsTypedLiteral(subj, pred, type)) {
+            quadSink.addTypedLiteral(subj, pred, content, type, graph);
+        }
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        sink.setBaseUri(baseUri);
+    }
+
+    @Override
+    protected boolean setPropertyInternal(String key, Object value) {
+        if (StreamProcessor.TRIPLE_FILTER_PROPERTY.equals(key) && value instanceof TripleFilter) {
+            filter = (TripleFilter) value;
+            return true;
+        }
+        return false;
+    }
+}
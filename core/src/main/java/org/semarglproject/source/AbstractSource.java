@@ -18,6 +18,7 @@ package org.semarglproject.source;
 import org.semarglproject.rdf.ParseException;
 import org.semarglproject.sink.DataSink;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
 
@@ -25,12 +26,53 @@ abstract class AbstractSource<S extends DataSink> {
 
     protected final S sink;
 
+    // size of read ahead buffers, read ahead is disabled if zero
+    private int readAheadBufferSize = 0;
+
     protected AbstractSource(S sink) {
         this.sink = sink;
     }
 
+    void setReadAheadBufferSize(int readAheadBufferSize) {
+        this.readAheadBufferSize = Math.max(0, readAheadBufferSize);
+    }
+
+    boolean isReadAheadEnabled() {
+        return readAheadBufferSize > 0;
+    }
+
+    /**
+     * Wraps stream to read it ahead on separate I/O thread if read ahead is enabled.
+     * @param inputStream stream to wrap
+     * @return wrapped or original stream
+     */
+    protected InputStream readAhead(InputStream inputStream) {
+        return isReadAheadEnabled() ? ReadAhead.wrap(inputStream, readAheadBufferSize) : inputStream;
+    }
+
+    /**
+     * Wraps reader to read it ahead on separate I/O thread if read ahead is enabled.
+     * @param reader reader to wrap
+     * @return wrapped or original reader
+     */
+    protected Reader readAhead(Reader reader) {
+        return isReadAheadEnabled() ? ReadAhead.wrap(reader, readAheadBufferSize) : reader;
+    }
+
     protected abstract void process(Reader reader, String mimeType, String baseUri) throws ParseException;
 
     protected abstract void process(InputStream inputStream, String mimeType, String baseUri) throws ParseException;
 
+    /**
+     * Processes file using more efficient access than stream based one if it's possible.
+     * @param file document's file
+     * @param mimeType document's MIME type
+     * @param baseUri document's base URI
+     * @return false if file wasn't processed and should be read as stream
+     * @throws ParseException
+     */
+    protected boolean processMapped(File file, String mimeType, String baseUri) throws ParseException {
+        return false;
+    }
+
 }
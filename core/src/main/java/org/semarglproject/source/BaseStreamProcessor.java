@@ -15,6 +15,7 @@
  */
 package org.semarglproject.source;
 
+import org.semarglproject.rdf.EventTracer;
 import org.semarglproject.rdf.ParseException;
 import org.semarglproject.sink.CharSink;
 import org.semarglproject.sink.DataSink;
@@ -22,8 +23,8 @@ import org.semarglproject.sink.XmlSink;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -36,6 +37,8 @@ import java.net.URLConnection;
  */
 public abstract class BaseStreamProcessor {
 
+    private static final EventTracer TRACER = EventTracer.get();
+
     protected abstract void startStream() throws ParseException;
 
     protected abstract void endStream() throws ParseException;
@@ -45,6 +48,28 @@ public abstract class BaseStreamProcessor {
     protected abstract void processInternal(InputStream inputStream, String mimeType,
                                             String baseUri) throws ParseException;
 
+    /**
+     * Processes file contents. Subclasses may override this method to use more efficient
+     * file access than default stream based one.
+     * @param file document's file
+     * @param mimeType document's MIME type
+     * @param baseUri document's base URI
+     * @throws ParseException
+     */
+    protected void processInternal(File file, String mimeType, String baseUri) throws ParseException {
+        InputStream inputStream;
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            throw new ParseException(e);
+        }
+        try {
+            processInternal(inputStream, mimeType, baseUri);
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
     /**
      * Key-value based settings. Property settings are passed to child sinks.
      * @param key property key
@@ -70,16 +95,18 @@ public abstract class BaseStreamProcessor {
      * @throws ParseException
      */
     public final void process(File file, String baseUri) throws ParseException {
-        FileReader reader;
+        Object event = TRACER.begin(EventTracer.Kind.DOCUMENT);
         try {
-            reader = new FileReader(file);
-        } catch (FileNotFoundException e) {
-            throw new ParseException(e);
-        }
-        try {
-            process(reader, null, baseUri);
+            startStream();
+            try {
+                processInternal(file, null, baseUri);
+            } finally {
+                endStream();
+            }
         } finally {
-            closeQuietly(reader);
+            if (event != null) {
+                TRACER.end(event, baseUri, file.length(), EventTracer.UNKNOWN);
+            }
         }
     }
 
@@ -137,6 +164,20 @@ public abstract class BaseStreamProcessor {
      * @throws ParseException
      */
     public final void process(InputStream inputStream, String mimeType, String baseUri) throws ParseException {
+        Object event = TRACER.begin(EventTracer.Kind.DOCUMENT);
+        if (event == null) {
+            processStream(inputStream, mimeType, baseUri);
+            return;
+        }
+        CountingInputStream countingStream = new CountingInputStream(inputStream);
+        try {
+            processStream(countingStream, mimeType, baseUri);
+        } finally {
+            TRACER.end(event, baseUri, countingStream.getCount(), EventTracer.UNKNOWN);
+        }
+    }
+
+    private void processStream(InputStream inputStream, String mimeType, String baseUri) throws ParseException {
         startStream();
         try {
             processInternal(inputStream, mimeType, baseUri);
@@ -162,6 +203,20 @@ public abstract class BaseStreamProcessor {
      * @throws ParseException
      */
     public final void process(Reader reader, String mimeType, String baseUri) throws ParseException {
+        Object event = TRACER.begin(EventTracer.Kind.DOCUMENT);
+        if (event == null) {
+            processReader(reader, mimeType, baseUri);
+            return;
+        }
+        CountingReader countingReader = new CountingReader(reader);
+        try {
+            processReader(countingReader, mimeType, baseUri);
+        } finally {
+            TRACER.end(event, baseUri, countingReader.getCount(), EventTracer.UNKNOWN);
+        }
+    }
+
+    private void processReader(Reader reader, String mimeType, String baseUri) throws ParseException {
         startStream();
         try {
             processInternal(reader, mimeType, baseUri);
@@ -16,27 +16,71 @@
 package org.semarglproject.source;
 
 import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.ByteSink;
 import org.semarglproject.sink.CharSink;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 final class CharSource extends AbstractSource<CharSink> {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // files smaller than threshold are processed using stream based reading
+    private static final long MAPPING_THRESHOLD = 1024 * 1024;
+    private static final long MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // window must hold the longest UTF-8 sequence, otherwise decoding can't advance
+    static final long MIN_MAPPED_WINDOW_SIZE = 4;
+
+    // set if sink is able to decode UTF-8 input by itself
+    private final ByteSink byteSink;
+    private final long mappingThreshold;
+    private final long mappedWindowSize;
+
     CharSource(CharSink sink) {
+        this(sink, MAPPED_WINDOW_SIZE);
+    }
+
+    CharSource(CharSink sink, long mappedWindowSize) {
+        this(sink, MAPPING_THRESHOLD, mappedWindowSize);
+    }
+
+    CharSource(CharSink sink, long mappingThreshold, long mappedWindowSize) {
         super(sink);
+        if (mappedWindowSize < MIN_MAPPED_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Mapped window size must be at least " + MIN_MAPPED_WINDOW_SIZE);
+        }
+        this.byteSink = sink instanceof ByteSink ? (ByteSink) sink : null;
+        this.mappingThreshold = mappingThreshold;
+        this.mappedWindowSize = mappedWindowSize;
     }
 
     @Override
     public void process(Reader reader, String mimeType, String baseUri) throws ParseException {
+        processReader(readAhead(reader), baseUri);
+    }
+
+    private void processReader(Reader reader, String baseUri) throws ParseException {
         BufferedReader bufferedReader = new BufferedReader(reader);
         try {
             sink.setBaseUri(baseUri);
-            char[] buffer = new char[512];
+            char[] buffer = new char[BUFFER_SIZE];
             int read;
             while ((read = bufferedReader.read(buffer)) != -1) {
                 sink.process(buffer, 0, read);
@@ -50,12 +94,111 @@ final class CharSource extends AbstractSource<CharSink> {
 
     @Override
     public void process(InputStream inputStream, String mimeType, String baseUri) throws ParseException {
-        Reader reader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+        InputStream input = readAhead(inputStream);
+        if (byteSink != null) {
+            processBytes(input, baseUri);
+            return;
+        }
+        Reader reader = new InputStreamReader(input, UTF_8);
         try {
-            process(reader, mimeType, baseUri);
+            processReader(reader, baseUri);
         } finally {
             BaseStreamProcessor.closeQuietly(reader);
         }
     }
 
+    private void processBytes(InputStream inputStream, String baseUri) throws ParseException {
+        try {
+            byteSink.setBaseUri(baseUri);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                byteSink.process(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new ParseException(e);
+        } finally {
+            BaseStreamProcessor.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Processes file by mapping it into memory window by window and decoding UTF-8 directly
+     * from mapped regions into reusable char buffer. Small files are processed as streams.
+     * Byte sinks receive mapped content without decoding. If read ahead is enabled, files are
+     * processed as streams, so page faults on slow filesystems don't stall parsing.
+     */
+    @Override
+    protected boolean processMapped(File file, String mimeType, String baseUri) throws ParseException {
+        if (file.length() < mappingThreshold || isReadAheadEnabled()) {
+            return false;
+        }
+        FileInputStream inputStream;
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            throw new ParseException(e);
+        }
+        try {
+            sink.setBaseUri(baseUri);
+            if (byteSink != null) {
+                processChannelBytes(inputStream.getChannel());
+            } else {
+                processChannel(inputStream.getChannel());
+            }
+        } catch (IOException e) {
+            throw new ParseException(e);
+        } finally {
+            BaseStreamProcessor.closeQuietly(inputStream);
+        }
+        return true;
+    }
+
+    private void processChannel(FileChannel channel) throws IOException, ParseException {
+        CharsetDecoder decoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            long windowSize = Math.min(mappedWindowSize, size - position);
+            boolean lastWindow = position + windowSize == size;
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, lastWindow);
+                flushChars(chars);
+            } while (result.isOverflow());
+            // bytes of multibyte sequence split by window boundary are remapped with next window
+            position += bytes.position();
+        }
+        decoder.flush(chars);
+        flushChars(chars);
+    }
+
+    private void processChannelBytes(FileChannel channel) throws IOException, ParseException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            long windowSize = Math.min(mappedWindowSize, size - position);
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            while (bytes.hasRemaining()) {
+                int count = Math.min(buffer.length, bytes.remaining());
+                bytes.get(buffer, 0, count);
+                byteSink.process(buffer, 0, count);
+            }
+            position += windowSize;
+        }
+    }
+
+    private void flushChars(CharBuffer chars) throws ParseException {
+        chars.flip();
+        if (chars.hasRemaining()) {
+            sink.process(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+        }
+        chars.clear();
+    }
+
 }
\ No newline at end of file
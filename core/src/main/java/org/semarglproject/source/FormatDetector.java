@@ -0,0 +1,269 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import java.util.Locale;
+
+/**
+ * Detects document format using MIME type and first chars of a document.
+ */
+final class FormatDetector {
+
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String XHTML_NS = "http://www.w3.org/1999/xhtml";
+
+    private FormatDetector() {
+    }
+
+    /**
+     * Maps MIME type to format. Generic types such as <code>text/plain</code> or
+     * <code>application/xml</code> can't be used for detection and produce null.
+     * @param mimeType MIME type with optional parameters, can be null
+     * @return format identifier or null
+     */
+    static String detectByMimeType(String mimeType) {
+        if (mimeType == null) {
+            return null;
+        }
+        String type = mimeType;
+        int paramsStart = type.indexOf(';');
+        if (paramsStart != -1) {
+            type = type.substring(0, paramsStart);
+        }
+        type = type.trim().toLowerCase(Locale.ENGLISH);
+        if (type.equals(SniffingStreamProcessor.RDF_XML)) {
+            return SniffingStreamProcessor.RDF_XML;
+        } else if (type.equals(SniffingStreamProcessor.HTML)) {
+            return SniffingStreamProcessor.HTML;
+        } else if (type.equals(SniffingStreamProcessor.XHTML)) {
+            return SniffingStreamProcessor.XHTML;
+        } else if (type.equals(SniffingStreamProcessor.NTRIPLES)) {
+            return SniffingStreamProcessor.NTRIPLES;
+        } else if (type.equals(SniffingStreamProcessor.NQUADS) || type.equals("text/x-nquads")) {
+            return SniffingStreamProcessor.NQUADS;
+        } else if (type.equals(SniffingStreamProcessor.JSON_LD) || type.equals("application/json")) {
+            return SniffingStreamProcessor.JSON_LD;
+        }
+        return null;
+    }
+
+    /**
+     * Detects format by first chars of a document.
+     * @param peek beginning of the document
+     * @param complete true if peek contains whole document
+     * @return format identifier or null if format can't be detected
+     */
+    static String detectByContent(String peek, boolean complete) {
+        int pos = skipWhitespace(peek, 0);
+        if (pos < peek.length() && peek.charAt(pos) == '\uFEFF') {
+            pos = skipWhitespace(peek, pos + 1);
+        }
+        if (pos == peek.length()) {
+            return null;
+        }
+        char ch = peek.charAt(pos);
+        if (ch == '{' || ch == '[') {
+            return SniffingStreamProcessor.JSON_LD;
+        }
+        if (ch == '#' || ch == '_' || ch == '<' && pos + 1 < peek.length() && peek.charAt(pos + 1) != '?'
+                && peek.charAt(pos + 1) != '!') {
+            String format = detectStatementFormat(peek, pos, complete);
+            if (format != null || ch != '<') {
+                return format;
+            }
+        }
+        if (ch == '<') {
+            return detectXmlFormat(peek, pos);
+        }
+        return null;
+    }
+
+    /**
+     * Counts terms in the first statement line to distinguish NTriples from NQuads.
+     */
+    private static String detectStatementFormat(String peek, int pos, boolean complete) {
+        int length = peek.length();
+        // skip comment lines
+        while (pos < length && peek.charAt(pos) == '#') {
+            while (pos < length && peek.charAt(pos) != '\n' && peek.charAt(pos) != '\r') {
+                pos++;
+            }
+            pos = skipWhitespace(peek, pos);
+        }
+        int terms = 0;
+        while (pos < length) {
+            char ch = peek.charAt(pos);
+            if (ch == '.') {
+                int end = skipInlineWhitespace(peek, pos + 1);
+                boolean lineEnd = end == length ? complete : peek.charAt(end) == '\n' || peek.charAt(end) == '\r'
+                        || peek.charAt(end) == '#';
+                if (!lineEnd) {
+                    return null;
+                }
+                if (terms == 3) {
+                    return SniffingStreamProcessor.NTRIPLES;
+                } else if (terms == 4) {
+                    return SniffingStreamProcessor.NQUADS;
+                }
+                return null;
+            } else if (ch == '<') {
+                pos = skipUntil(peek, pos + 1, '>');
+                if (pos == -1 || terms >= 4) {
+                    return null;
+                }
+                terms++;
+                pos++;
+            } else if (ch == '_' && pos + 1 < length && peek.charAt(pos + 1) == ':') {
+                while (pos < length && !isWhitespace(peek.charAt(pos)) && peek.charAt(pos) != '.'
+                        && peek.charAt(pos) != '<') {
+                    pos++;
+                }
+                terms++;
+            } else if (ch == '"' && terms == 2) {
+                pos = skipLiteral(peek, pos + 1);
+                if (pos == -1) {
+                    return null;
+                }
+                terms++;
+            } else {
+                return null;
+            }
+            int next = skipInlineWhitespace(peek, pos);
+            if (next == pos && next < length && peek.charAt(next) != '.' && peek.charAt(next) != '<') {
+                return null;
+            }
+            pos = next;
+        }
+        return null;
+    }
+
+    private static int skipLiteral(String peek, int pos) {
+        int length = peek.length();
+        while (pos < length && peek.charAt(pos) != '"') {
+            if (peek.charAt(pos) == '\\') {
+                pos++;
+            }
+            pos++;
+        }
+        if (pos >= length) {
+            return -1;
+        }
+        pos++;
+        if (pos < length && peek.charAt(pos) == '@') {
+            while (pos < length && !isWhitespace(peek.charAt(pos)) && peek.charAt(pos) != '<') {
+                pos++;
+            }
+            // language tag can be followed by sentence end without whitespace
+            if (peek.charAt(pos - 1) == '.') {
+                pos--;
+            }
+        } else if (peek.startsWith("^^<", pos)) {
+            pos = skipUntil(peek, pos + 3, '>');
+            if (pos == -1) {
+                return -1;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static String detectXmlFormat(String peek, int pos) {
+        boolean xmlDeclaration = false;
+        boolean htmlDoctype = false;
+        int length = peek.length();
+        while (pos < length) {
+            if (peek.startsWith("<?", pos)) {
+                xmlDeclaration = true;
+                pos = peek.indexOf("?>", pos);
+                if (pos == -1) {
+                    break;
+                }
+                pos += 2;
+            } else if (peek.startsWith("<!--", pos)) {
+                pos = peek.indexOf("-->", pos);
+                if (pos == -1) {
+                    break;
+                }
+                pos += 3;
+            } else if (peek.startsWith("<!", pos)) {
+                htmlDoctype = peek.regionMatches(true, pos, "<!DOCTYPE html", 0, 14);
+                int subsetStart = peek.indexOf('[', pos);
+                int declarationEnd = peek.indexOf('>', pos);
+                if (subsetStart != -1 && subsetStart < declarationEnd) {
+                    declarationEnd = peek.indexOf("]>", subsetStart);
+                }
+                if (declarationEnd == -1) {
+                    break;
+                }
+                pos = declarationEnd + 1;
+            } else if (peek.charAt(pos) == '<') {
+                int nameEnd = pos + 1;
+                while (nameEnd < length && !isWhitespace(peek.charAt(nameEnd)) && peek.charAt(nameEnd) != '>'
+                        && peek.charAt(nameEnd) != '/') {
+                    nameEnd++;
+                }
+                String name = peek.substring(pos + 1, nameEnd);
+                String localName = name.substring(name.indexOf(':') + 1);
+                if (localName.equals("RDF") && (name.indexOf(':') == -1 || peek.indexOf(RDF_NS, pos) != -1)) {
+                    return SniffingStreamProcessor.RDF_XML;
+                } else if (localName.equalsIgnoreCase("html")) {
+                    if (xmlDeclaration || peek.indexOf(XHTML_NS, pos) != -1) {
+                        return SniffingStreamProcessor.XHTML;
+                    }
+                    return SniffingStreamProcessor.HTML;
+                }
+                return SniffingStreamProcessor.XML;
+            } else {
+                pos++;
+            }
+            pos = skipWhitespace(peek, pos);
+        }
+        if (htmlDoctype) {
+            return SniffingStreamProcessor.HTML;
+        }
+        return xmlDeclaration ? SniffingStreamProcessor.XML : null;
+    }
+
+    private static int skipUntil(String peek, int pos, char ch) {
+        int length = peek.length();
+        while (pos < length && peek.charAt(pos) != ch) {
+            if (isWhitespace(peek.charAt(pos))) {
+                return -1;
+            }
+            pos++;
+        }
+        return pos < length ? pos : -1;
+    }
+
+    private static int skipWhitespace(String peek, int pos) {
+        while (pos < peek.length() && isWhitespace(peek.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipInlineWhitespace(String peek, int pos) {
+        while (pos < peek.length() && (peek.charAt(pos) == ' ' || peek.charAt(pos) == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+    }
+
+}
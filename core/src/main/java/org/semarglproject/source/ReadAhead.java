@@ -0,0 +1,237 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads underlying input ahead of consumer on dedicated I/O thread. I/O thread fills buffers
+ * taken from a small pool of recycled buffers and queues them, consumer copies data out of
+ * filled buffers and returns them to the pool. Blocking reads of high latency inputs
+ * (network filesystems, HTTP connections) overlap with parsing of already read data.
+ * @param <B> buffer type, byte or char array
+ */
+abstract class ReadAhead<B> implements Runnable {
+
+    /**
+     * Number of buffers in pool, one is filled by I/O thread while others are queued or consumed
+     */
+    static final int BUFFER_COUNT = 4;
+
+    private final BlockingQueue<Block<B>> freeBlocks;
+    private final BlockingQueue<Block<B>> filledBlocks;
+    private final Thread ioThread;
+
+    private Block<B> current = null;
+    private int position = 0;
+    private boolean eof = false;
+
+    private volatile boolean closed = false;
+    private volatile Throwable failure = null;
+
+    ReadAhead(String name, int bufferSize) {
+        freeBlocks = new ArrayBlockingQueue<Block<B>>(BUFFER_COUNT);
+        // one more slot for end of input marker
+        filledBlocks = new ArrayBlockingQueue<Block<B>>(BUFFER_COUNT + 1);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeBlocks.add(new Block<B>(newBuffer(bufferSize)));
+        }
+        ioThread = new Thread(this, name);
+        ioThread.setDaemon(true);
+    }
+
+    /**
+     * Wraps input stream with stream reading it ahead on separate thread.
+     * @param inputStream stream to wrap
+     * @param bufferSize size of each buffer in bytes
+     * @return wrapped stream
+     */
+    static InputStream wrap(final InputStream inputStream, int bufferSize) {
+        final ReadAhead<byte[]> readAhead = new ReadAhead<byte[]>("semargl-read-ahead", bufferSize) {
+            @Override
+            protected byte[] newBuffer(int size) {
+                return new byte[size];
+            }
+
+            @Override
+            protected int fill(byte[] buffer) throws IOException {
+                return inputStream.read(buffer);
+            }
+
+            @Override
+            protected void closeInput() throws IOException {
+                inputStream.close();
+            }
+        };
+        readAhead.ioThread.start();
+        return new InputStream() {
+            private final byte[] single = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                return readAhead.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return readAhead.read(buffer, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                readAhead.close();
+            }
+        };
+    }
+
+    /**
+     * Wraps reader with reader reading it ahead on separate thread.
+     * @param reader reader to wrap
+     * @param bufferSize size of each buffer in chars
+     * @return wrapped reader
+     */
+    static Reader wrap(final Reader reader, int bufferSize) {
+        final ReadAhead<char[]> readAhead = new ReadAhead<char[]>("semargl-read-ahead", bufferSize) {
+            @Override
+            protected char[] newBuffer(int size) {
+                return new char[size];
+            }
+
+            @Override
+            protected int fill(char[] buffer) throws IOException {
+                return reader.read(buffer);
+            }
+
+            @Override
+            protected void closeInput() throws IOException {
+                reader.close();
+            }
+        };
+        readAhead.ioThread.start();
+        return new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return readAhead.read(buffer, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                readAhead.close();
+            }
+        };
+    }
+
+    protected abstract B newBuffer(int size);
+
+    /**
+     * Reads next portion of underlying input.
+     * @param buffer buffer to read to
+     * @return number of read elements or -1 if end of input is reached
+     * @throws IOException
+     */
+    protected abstract int fill(B buffer) throws IOException;
+
+    protected abstract void closeInput() throws IOException;
+
+    /**
+     * Copies read ahead data to specified array. Must be called from single consumer thread.
+     */
+    final int read(B buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (current != null && position == current.length) {
+            freeBlocks.offer(current);
+            current = null;
+        }
+        if (current == null) {
+            if (eof) {
+                return -1;
+            }
+            current = nextBlock();
+            position = 0;
+            if (current.length == -1) {
+                current = null;
+                eof = true;
+                if (failure != null) {
+                    throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+                }
+                return -1;
+            }
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.buffer, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    private Block<B> nextBlock() throws IOException {
+        try {
+            return filledBlocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    final void close() throws IOException {
+        closed = true;
+        ioThread.interrupt();
+        closeInput();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                Block<B> block = freeBlocks.take();
+                int read;
+                do {
+                    read = fill(block.buffer);
+                } while (read == 0);
+                if (read == -1) {
+                    break;
+                }
+                block.length = read;
+                filledBlocks.put(block);
+            }
+        } catch (InterruptedException e) {
+            // consumer closed input
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (Error e) {
+            failure = e;
+        } finally {
+            filledBlocks.offer(new Block<B>(null));
+        }
+    }
+
+    private static final class Block<B> {
+        private final B buffer;
+        private int length = -1;
+
+        private Block(B buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.DataSink;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stream processor which routes every document to exactly one of registered pipelines.
+ * Format is detected using document's MIME type and a bounded peek of document's first chars.
+ * Generic MIME types (like <code>text/plain</code> or <code>application/xml</code>) are resolved using
+ * document's content only. Selected pipeline is driven directly, so every document is still
+ * processed (and traced) once.
+ * <p>
+ *     Usage example:
+ *     <pre>
+ *     SniffingStreamProcessor sp = new SniffingStreamProcessor();
+ *     sp.register(SniffingStreamProcessor.RDF_XML, RdfXmlParser.connect(sink));
+ *     sp.register(SniffingStreamProcessor.NTRIPLES, NTriplesParser.connect(sink));
+ *     sp.process(uri);
+ *     </pre>
+ * </p>
+ */
+public final class SniffingStreamProcessor extends BaseStreamProcessor {
+
+    /**
+     * RDF/XML format identifier.
+     */
+    public static final String RDF_XML = "application/rdf+xml";
+
+    /**
+     * HTML format identifier.
+     */
+    public static final String HTML = "text/html";
+
+    /**
+     * XHTML format identifier.
+     */
+    public static final String XHTML = "application/xhtml+xml";
+
+    /**
+     * Generic XML (such as SVG) format identifier.
+     */
+    public static final String XML = "application/xml";
+
+    /**
+     * NTriples format identifier.
+     */
+    public static final String NTRIPLES = "application/n-triples";
+
+    /**
+     * NQuads format identifier.
+     */
+    public static final String NQUADS = "application/n-quads";
+
+    /**
+     * JSON-LD format identifier.
+     */
+    public static final String JSON_LD = "application/ld+json";
+
+    private static final int PEEK_SIZE = 4096;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+
+    // markup formats are processed with same RDFa pipeline if exact match isn't registered
+    private static final Map<String, String[]> FALLBACKS = new HashMap<String, String[]>();
+
+    static {
+        FALLBACKS.put(HTML, new String[] {XHTML, XML});
+        FALLBACKS.put(XHTML, new String[] {HTML, XML});
+        FALLBACKS.put(XML, new String[] {XHTML, HTML});
+    }
+
+    private final Map<String, StreamProcessor> processors = new HashMap<String, StreamProcessor>();
+    private final Map<DataSink, StreamProcessor> sinkProcessors = new IdentityHashMap<DataSink, StreamProcessor>();
+    private final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+
+    /**
+     * Registers pipeline for documents of specified format. Same pipeline can be registered for multiple formats.
+     * @param format one of format identifiers defined by this class
+     * @param sink pipeline's input
+     * @return this processor
+     */
+    public SniffingStreamProcessor register(String format, DataSink sink) {
+        StreamProcessor processor = sinkProcessors.get(sink);
+        if (processor == null) {
+            processor = new StreamProcessor(sink);
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                processor.setProperty(entry.getKey(), entry.getValue());
+            }
+            sinkProcessors.put(sink, processor);
+        }
+        processors.put(format, processor);
+        return this;
+    }
+
+    @Override
+    protected void startStream() throws ParseException {
+        // stream events are passed to selected pipeline only, see processInternal methods
+    }
+
+    @Override
+    protected void endStream() throws ParseException {
+    }
+
+    @Override
+    protected void processInternal(InputStream inputStream, String mimeType, String baseUri) throws ParseException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(inputStream, PEEK_SIZE);
+        byte[] peek = new byte[PEEK_SIZE];
+        int count;
+        try {
+            bufferedStream.mark(PEEK_SIZE);
+            count = readFully(bufferedStream, peek);
+            bufferedStream.reset();
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        StreamProcessor processor = selectProcessor(mimeType, decodePeek(peek, count), count < PEEK_SIZE);
+        processor.startStream();
+        try {
+            processor.processInternal(bufferedStream, mimeType, baseUri);
+        } finally {
+            processor.endStream();
+        }
+    }
+
+    @Override
+    protected void processInternal(Reader reader, String mimeType, String baseUri) throws ParseException {
+        BufferedReader bufferedReader = new BufferedReader(reader, PEEK_SIZE);
+        char[] peek = new char[PEEK_SIZE];
+        int count = 0;
+        try {
+            bufferedReader.mark(PEEK_SIZE);
+            int read;
+            while (count < PEEK_SIZE && (read = bufferedReader.read(peek, count, PEEK_SIZE - count)) != -1) {
+                count += read;
+            }
+            bufferedReader.reset();
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        StreamProcessor processor = selectProcessor(mimeType, new String(peek, 0, count), count < PEEK_SIZE);
+        processor.startStream();
+        try {
+            processor.processInternal(bufferedReader, mimeType, baseUri);
+        } finally {
+            processor.endStream();
+        }
+    }
+
+    @Override
+    protected void processInternal(File file, String mimeType, String baseUri) throws ParseException {
+        byte[] peek = new byte[PEEK_SIZE];
+        int count;
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            count = readFully(inputStream, peek);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        } finally {
+            closeQuietly(inputStream);
+        }
+        StreamProcessor processor = selectProcessor(mimeType, decodePeek(peek, count), count < PEEK_SIZE);
+        // selected processor uses its own efficient file access
+        processor.startStream();
+        try {
+            processor.processInternal(file, mimeType, baseUri);
+        } finally {
+            processor.endStream();
+        }
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int count = 0;
+        int read;
+        while (count < buffer.length && (read = inputStream.read(buffer, count, buffer.length - count)) != -1) {
+            count += read;
+        }
+        return count;
+    }
+
+    private static String decodePeek(byte[] peek, int count) {
+        if (count >= 2 && (peek[0] == (byte) 0xFE && peek[1] == (byte) 0xFF
+                || peek[0] == (byte) 0xFF && peek[1] == (byte) 0xFE)) {
+            return new String(peek, 0, count, UTF_16);
+        }
+        return new String(peek, 0, count, UTF_8);
+    }
+
+    private StreamProcessor selectProcessor(String mimeType, String peek, boolean complete) throws ParseException {
+        String mimeFormat = FormatDetector.detectByMimeType(mimeType);
+        if (mimeFormat != null && processors.containsKey(mimeFormat)) {
+            return processors.get(mimeFormat);
+        }
+        StreamProcessor processor = findProcessor(FormatDetector.detectByContent(peek, complete));
+        if (processor == null) {
+            processor = findProcessor(mimeFormat);
+        }
+        if (processor == null) {
+            throw new ParseException("Unable to detect document format or no pipeline registered for it");
+        }
+        return processor;
+    }
+
+    private StreamProcessor findProcessor(String format) {
+        if (format == null) {
+            return null;
+        }
+        if (processors.containsKey(format)) {
+            return processors.get(format);
+        }
+        if (FALLBACKS.containsKey(format)) {
+            for (String fallback : FALLBACKS.get(format)) {
+                if (processors.containsKey(fallback)) {
+                    return processors.get(fallback);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        properties.put(key, value);
+        boolean result = false;
+        for (StreamProcessor processor : sinkProcessors.values()) {
+            result |= processor.setProperty(key, value);
+        }
+        return result;
+    }
+
+}
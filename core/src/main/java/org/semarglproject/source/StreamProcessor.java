@@ -20,6 +20,7 @@ import org.semarglproject.sink.DataSink;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
 
@@ -29,6 +30,7 @@ import java.io.Reader;
  * <p>List of supported properties:
  *     <ul>
  *         <li>{@link #XML_READER_PROPERTY}</li>
+ *         <li>{@link #READ_AHEAD_PROPERTY}</li>
  *     </ul>
  * </p>
  */
@@ -55,6 +57,33 @@ public final class StreamProcessor extends BaseStreamProcessor {
     public static final String PROCESSOR_GRAPH_HANDLER_PROPERTY =
             "http://semarglproject.org/core/properties/processor-graph-handler";
 
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Allows to specify dictionary used by parsers to share instances of repeated terms.
+     * Instance of {@link org.semarglproject.rdf.TermDictionary} must be passed as a value.
+     */
+    public static final String TERM_DICTIONARY_PROPERTY =
+            "http://semarglproject.org/core/properties/term-dictionary";
+
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Enables read ahead mode: dedicated I/O thread reads input into pool of recycled buffers
+     * while previous buffer is parsed. Useful for inputs with high read latency, such as network
+     * filesystems and HTTP connections. Files aren't memory mapped in this mode.
+     * Size of each buffer in bytes or chars must be passed as an {@link Integer} value,
+     * zero disables read ahead.
+     */
+    public static final String READ_AHEAD_PROPERTY = "http://semarglproject.org/core/properties/read-ahead";
+
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Pushes triple filter down to parsers, so they can skip work (unescaping, serialization,
+     * queuing) for triples which will be rejected anyway. Parsers aren't required to drop every
+     * rejected triple, use {@link org.semarglproject.sink.TripleFilterPipe} to get exact result.
+     * Instance of {@link org.semarglproject.rdf.TripleFilter} must be passed as a value.
+     */
+    public static final String TRIPLE_FILTER_PROPERTY = "http://semarglproject.org/core/properties/triple-filter";
+
     private final DataSink sink;
     private final AbstractSource source;
 
@@ -72,6 +101,13 @@ public final class StreamProcessor extends BaseStreamProcessor {
         source.process(inputStream, mimeType, baseUri);
     }
 
+    @Override
+    protected void processInternal(File file, String mimeType, String baseUri) throws ParseException {
+        if (!source.processMapped(file, mimeType, baseUri)) {
+            super.processInternal(file, mimeType, baseUri);
+        }
+    }
+
     @Override
     protected void startStream() throws ParseException {
         sink.startStream();
@@ -90,6 +126,10 @@ public final class StreamProcessor extends BaseStreamProcessor {
     @Override
     public boolean setProperty(String key, Object value) {
         boolean result = false;
+        if (READ_AHEAD_PROPERTY.equals(key) && value instanceof Integer && source != null) {
+            source.setReadAheadBufferSize((Integer) value);
+            result = true;
+        }
         if (XML_READER_PROPERTY.equals(key) && value instanceof XMLReader && source instanceof XmlSource) {
             try {
                 if (value != null) {
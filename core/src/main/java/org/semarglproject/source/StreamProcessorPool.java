@@ -0,0 +1,220 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread-safe bounded pool of stream processors. Pipelines are created lazily by specified
+ * {@link PipelineFactory}, configured once with pool-wide properties and reused after release.
+ * Every pipeline is used by a single thread at a time, so pipes don't have to be thread-safe.
+ * Per document settings must be changed with {@link PooledPipeline#setProperty(String, Object)},
+ * so they can be reverted when pipeline is returned to the pool.
+ * <p>
+ *     Usage example:
+ *     <pre>
+ *     PooledPipeline&lt;CharOutputSink&gt; pipeline = pool.borrow();
+ *     try {
+ *         pipeline.getOutput().connect(writer);
+ *         pipeline.getProcessor().process(reader, baseUri);
+ *     } finally {
+ *         pool.release(pipeline);
+ *     }
+ *     </pre>
+ * </p>
+ * @param <T> type of pipeline's output
+ */
+public final class StreamProcessorPool<T> {
+
+    /**
+     * Creates pipelines for a pool. Methods can be called from multiple threads.
+     * @param <T> type of pipeline's output
+     */
+    public interface PipelineFactory<T> {
+
+        /**
+         * Creates pipeline's output, usually the last sink of pipeline.
+         * @return new output instance
+         */
+        T createOutput();
+
+        /**
+         * Creates stream processor for new pipeline. Per instance settings such as
+         * {@link StreamProcessor#XML_READER_PROPERTY} should be set here.
+         * @param output pipeline's output created by {@link #createOutput()}
+         * @return new stream processor
+         */
+        StreamProcessor createProcessor(T output);
+    }
+
+    private final PipelineFactory<T> factory;
+    private final Semaphore permits;
+    private final LinkedList<PooledPipeline<T>> idlePipelines = new LinkedList<PooledPipeline<T>>();
+    private final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+    private int propertiesVersion = 0;
+
+    /**
+     * Creates pool with specified factory and size limit.
+     * @param factory factory used to create pipelines
+     * @param maxSize maximum count of simultaneously borrowed pipelines
+     */
+    public StreamProcessorPool(PipelineFactory<T> factory, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.factory = factory;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Sets property for all pipelines of the pool. Property is applied to idle pipelines on next borrow
+     * and to borrowed ones after release.
+     * @param key property key
+     * @param value property value
+     */
+    public synchronized void setProperty(String key, Object value) {
+        properties.put(key, value);
+        propertiesVersion++;
+    }
+
+    /**
+     * Borrows pipeline from the pool waiting if all pipelines are in use.
+     * @return pipeline which must be returned with {@link #release(PooledPipeline)}
+     * @throws InterruptedException if waiting thread was interrupted
+     */
+    public PooledPipeline<T> borrow() throws InterruptedException {
+        permits.acquire();
+        return takePipeline();
+    }
+
+    /**
+     * Borrows pipeline from the pool waiting no longer than specified time.
+     * @param timeout maximum time to wait
+     * @param unit time unit of the timeout argument
+     * @return pipeline which must be returned with {@link #release(PooledPipeline)} or null if timeout elapsed
+     * @throws InterruptedException if waiting thread was interrupted
+     */
+    public PooledPipeline<T> borrow(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!permits.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return takePipeline();
+    }
+
+    /**
+     * Returns pipeline to the pool. Properties set on pipeline are reverted to pool-wide values.
+     * Pipeline which overrode property without pool-wide value can't be reverted, so it is discarded
+     * and replaced with a new one on demand.
+     * @param pipeline pipeline borrowed from this pool
+     */
+    public void release(PooledPipeline<T> pipeline) {
+        if (pipeline.pool != this || !pipeline.borrowed.compareAndSet(true, false)) {
+            throw new IllegalArgumentException("Pipeline is not borrowed from this pool");
+        }
+        synchronized (this) {
+            if (properties.keySet().containsAll(pipeline.overriddenKeys)) {
+                for (String key : pipeline.overriddenKeys) {
+                    pipeline.processor.setProperty(key, properties.get(key));
+                }
+                pipeline.overriddenKeys.clear();
+                idlePipelines.addFirst(pipeline);
+            }
+        }
+        permits.release();
+    }
+
+    private PooledPipeline<T> takePipeline() {
+        PooledPipeline<T> pipeline;
+        try {
+            synchronized (this) {
+                pipeline = idlePipelines.poll();
+            }
+            if (pipeline == null) {
+                T output = factory.createOutput();
+                pipeline = new PooledPipeline<T>(this, output, factory.createProcessor(output));
+            }
+            synchronized (this) {
+                if (pipeline.propertiesVersion != propertiesVersion) {
+                    for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                        pipeline.processor.setProperty(entry.getKey(), entry.getValue());
+                    }
+                    pipeline.propertiesVersion = propertiesVersion;
+                }
+            }
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        pipeline.borrowed.set(true);
+        return pipeline;
+    }
+
+    /**
+     * Pipeline borrowed from {@link StreamProcessorPool}.
+     * @param <T> type of pipeline's output
+     */
+    public static final class PooledPipeline<T> {
+
+        private final StreamProcessorPool<T> pool;
+        private final T output;
+        private final StreamProcessor processor;
+        private final Set<String> overriddenKeys = new HashSet<String>();
+        private int propertiesVersion = -1;
+        private final AtomicBoolean borrowed = new AtomicBoolean(false);
+
+        private PooledPipeline(StreamProcessorPool<T> pool, T output, StreamProcessor processor) {
+            this.pool = pool;
+            this.output = output;
+            this.processor = processor;
+        }
+
+        /**
+         * @return pipeline's output
+         */
+        public T getOutput() {
+            return output;
+        }
+
+        /**
+         * Properties must not be set directly on returned processor, otherwise they leak to
+         * later borrowers of the pipeline. Use {@link #setProperty(String, Object)} instead.
+         * @return stream processor managing pipeline
+         */
+        public StreamProcessor getProcessor() {
+            return processor;
+        }
+
+        /**
+         * Sets property until pipeline is returned to the pool. If there is no pool-wide value
+         * for the property, pipeline is discarded on release.
+         * @param key property key
+         * @param value property value
+         * @return true if at least one sink understands specified property, false otherwise
+         */
+        public boolean setProperty(String key, Object value) {
+            overriddenKeys.add(key);
+            return processor.setProperty(key, value);
+        }
+    }
+
+}
@@ -24,9 +24,7 @@ import org.xml.sax.helpers.XMLReaderFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.nio.charset.Charset;
 
 final class XmlSource extends AbstractSource<XmlSink> {
 
@@ -38,6 +36,31 @@ final class XmlSource extends AbstractSource<XmlSink> {
 
     @Override
     public void process(Reader reader, String mimeType, String baseUri) throws ParseException {
+        if (!isReadAheadEnabled()) {
+            parse(new InputSource(reader), baseUri);
+            return;
+        }
+        Reader readAheadReader = readAhead(reader);
+        try {
+            parse(new InputSource(readAheadReader), baseUri);
+        } finally {
+            // stops I/O thread if parsing was aborted
+            BaseStreamProcessor.closeQuietly(readAheadReader);
+        }
+    }
+
+    @Override
+    public void process(InputStream inputStream, String mimeType, String baseUri) throws ParseException {
+        // XML parser detects encoding from byte order mark or XML declaration
+        InputStream input = readAhead(inputStream);
+        try {
+            parse(new InputSource(input), baseUri);
+        } finally {
+            BaseStreamProcessor.closeQuietly(input);
+        }
+    }
+
+    private void parse(InputSource inputSource, String baseUri) throws ParseException {
         try {
             initXmlReader();
         } catch (SAXException e) {
@@ -45,7 +68,7 @@ final class XmlSource extends AbstractSource<XmlSink> {
         }
         try {
             sink.setBaseUri(baseUri);
-            xmlReader.parse(new InputSource(reader));
+            xmlReader.parse(inputSource);
         } catch (SAXException e) {
             ParseException wrappedException = sink.processException(e);
             try {
@@ -59,16 +82,6 @@ final class XmlSource extends AbstractSource<XmlSink> {
         }
     }
 
-    @Override
-    public void process(InputStream inputStream, String mimeType, String baseUri) throws ParseException {
-        Reader reader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-        try {
-            process(reader, mimeType, baseUri);
-        } finally {
-            BaseStreamProcessor.closeQuietly(reader);
-        }
-    }
-
     private void initXmlReader() throws SAXException {
         if (xmlReader == null) {
             xmlReader = getDefaultXmlReader();
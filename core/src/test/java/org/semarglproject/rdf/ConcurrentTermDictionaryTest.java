@@ -0,0 +1,88 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public final class ConcurrentTermDictionaryTest {
+
+    private static final int THREADS = 4;
+    private static final int TERMS = 256;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        // table is small enough for threads to keep replacing terms of the same sets
+        final ConcurrentTermDictionary dictionary = new ConcurrentTermDictionary(64);
+        final String[] terms = new String[TERMS];
+        for (int i = 0; i < TERMS; i++) {
+            terms[i] = "http://example.org/term" + i;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int seed = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int checked = 0;
+                        char[] buffer = new char[64];
+                        for (int round = 0; round < ROUNDS; round++) {
+                            String term = terms[(round * 31 + seed * 7) % TERMS];
+                            String interned;
+                            if ((round & 1) == 0) {
+                                interned = dictionary.intern(new String(term));
+                            } else {
+                                term.getChars(0, term.length(), buffer, 1);
+                                interned = dictionary.intern(buffer, 1, term.length());
+                            }
+                            assertEquals(interned, term);
+                            checked++;
+                        }
+                        return checked;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(result.get(30, TimeUnit.SECONDS).intValue(), ROUNDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        // dictionary stays consistent once threads are done
+        for (String term : terms) {
+            String interned = dictionary.intern(new String(term));
+            assertSame(dictionary.intern(term.toCharArray(), 0, term.length()), interned);
+        }
+    }
+
+}
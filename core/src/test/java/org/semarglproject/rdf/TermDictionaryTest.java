@@ -0,0 +1,164 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public final class TermDictionaryTest {
+
+    private static final String TERM = "http://example.org/term";
+
+    private interface Factory {
+        TermDictionary create(int capacity);
+    }
+
+    @DataProvider
+    public static Object[][] getDictionaries() {
+        return new Object[][] {
+                { new Factory() {
+                    @Override
+                    public TermDictionary create(int capacity) {
+                        return new BoundedTermDictionary(capacity);
+                    }
+                } },
+                { new Factory() {
+                    @Override
+                    public TermDictionary create(int capacity) {
+                        return new ConcurrentTermDictionary(capacity);
+                    }
+                } }
+        };
+    }
+
+    @Test
+    public void testTableSizeIsRoundedUpToPowerOfTwo() {
+        assertEquals(BoundedTermDictionary.tableSize(2), 2);
+        assertEquals(BoundedTermDictionary.tableSize(3), 4);
+        assertEquals(BoundedTermDictionary.tableSize(4), 4);
+        assertEquals(BoundedTermDictionary.tableSize(5), 8);
+        assertEquals(BoundedTermDictionary.tableSize(4095), 4096);
+        assertEquals(BoundedTermDictionary.tableSize(4097), 8192);
+        assertEquals(BoundedTermDictionary.tableSize(1 << 30), 1 << 30);
+    }
+
+    @Test
+    public void testInvalidCapacityIsRejected() {
+        int[] capacities = { Integer.MIN_VALUE, -1, 0, 1, (1 << 30) + 1, Integer.MAX_VALUE };
+        for (int capacity : capacities) {
+            try {
+                BoundedTermDictionary.tableSize(capacity);
+                fail("Capacity " + capacity + " accepted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testHashMatchesStringHash() {
+        String[] terms = { "", "a", TERM, "\u00E9t\u00E9", "\uD83D\uDE00" };
+        for (String term : terms) {
+            char[] buffer = ("<" + term + ">").toCharArray();
+            assertEquals(BoundedTermDictionary.hash(buffer, 1, term.length()), term.hashCode());
+        }
+    }
+
+    @Test(dataProvider = "getDictionaries")
+    public void testInternReturnsSameInstance(Factory factory) {
+        TermDictionary dictionary = factory.create(16);
+        assertNull(dictionary.intern(null));
+        String term = dictionary.intern(new String(TERM));
+        assertSame(dictionary.intern(new String(TERM)), term);
+        assertEquals(term, TERM);
+    }
+
+    @Test(dataProvider = "getDictionaries")
+    public void testInternOfBufferEqualsInternOfString(Factory factory) {
+        TermDictionary dictionary = factory.create(16);
+        char[] buffer = ("<" + TERM + "> .").toCharArray();
+
+        String term = dictionary.intern(new String(TERM));
+        assertSame(dictionary.intern(buffer, 1, TERM.length()), term);
+
+        String prefix = dictionary.intern(buffer, 1, 7);
+        assertEquals(prefix, "http://");
+        assertSame(dictionary.intern("http://"), prefix);
+        assertSame(dictionary.intern(buffer, 1, TERM.length()), term);
+
+        String empty = dictionary.intern(buffer, 0, 0);
+        assertEquals(empty, "");
+        assertSame(dictionary.intern(""), empty);
+    }
+
+    @Test(dataProvider = "getDictionaries")
+    public void testLeastRecentlyUsedTermOfSetIsReplaced(Factory factory) {
+        // the smallest table is a single set of two terms
+        TermDictionary dictionary = factory.create(2);
+        String a = dictionary.intern(new String("a"));
+        String b = dictionary.intern(new String("b"));
+        // hit in second way makes term most recently used
+        assertSame(dictionary.intern(new String("a")), a);
+        String c = dictionary.intern(new String("c"));
+
+        assertSame(dictionary.intern(new String("a")), a);
+        assertSame(dictionary.intern(new String("c")), c);
+        String evicted = dictionary.intern("b".toCharArray(), 0, 1);
+        assertEquals(evicted, b);
+        assertNotSame(evicted, b);
+        // buffer miss stores new term, replacing least recently used "a"
+        assertSame(dictionary.intern(new String("b")), evicted);
+        assertSame(dictionary.intern(new String("c")), c);
+        assertNotSame(dictionary.intern(new String("a")), a);
+    }
+
+    @Test(dataProvider = "getDictionaries")
+    public void testCapacityIsRoundedUpToPowerOfTwo(Factory factory) {
+        // capacity of 3 is rounded up to 4 terms in two sets, find three terms sharing a set
+        TermDictionary dictionary = factory.create(3);
+        String[] sameSet = new String[3];
+        int found = 0;
+        for (int i = 0; found < sameSet.length; i++) {
+            String term = "t" + i;
+            if ((BoundedTermDictionary.spread(term.hashCode()) & 1) == 0) {
+                sameSet[found++] = term;
+            }
+        }
+        String other = "t";
+        while ((BoundedTermDictionary.spread(other.hashCode()) & 1) == 0) {
+            other += "t";
+        }
+
+        String first = dictionary.intern(new String(sameSet[0]));
+        String second = dictionary.intern(new String(sameSet[1]));
+        String otherTerm = dictionary.intern(new String(other));
+        // term from another set doesn't evict anything
+        assertSame(dictionary.intern(new String(sameSet[0])), first);
+        assertSame(dictionary.intern(new String(sameSet[1])), second);
+        assertSame(dictionary.intern(new String(other)), otherTerm);
+
+        dictionary.intern(new String(sameSet[2]));
+        assertNotSame(dictionary.intern(new String(sameSet[0])), first);
+        assertSame(dictionary.intern(new String(other)), otherTerm);
+    }
+
+}
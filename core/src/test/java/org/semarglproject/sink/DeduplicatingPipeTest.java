@@ -0,0 +1,332 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class DeduplicatingPipeTest {
+
+    private static final String S = "http://example.org/s";
+    private static final String P = "http://example.org/p";
+    private static final String G1 = "http://example.org/g1";
+    private static final String G2 = "http://example.org/g2";
+    private static final String TYPE = "http://example.org/type";
+
+    // exact index of initial size keeps load factor of its 65536 slots under 3/4
+    private static final int INITIAL_ROOM = 49149;
+
+    @Test
+    public void testRepeatedTriplesAreDropped() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(DeduplicatingPipe.DEFAULT_MEMORY_BUDGET);
+        TripleSink pipe = DeduplicatingPipe.connect(recorder, index);
+        pipe.startStream();
+        for (int i = 0; i < 2; i++) {
+            pipe.addNonLiteral(S, P, S);
+            pipe.addNonLiteral(S, P, "_:b");
+            pipe.addPlainLiteral(S, P, "content", "en");
+            pipe.addPlainLiteral(S, P, "content", null);
+            pipe.addPlainLiteral(S, P, "content", "");
+            pipe.addTypedLiteral(S, P, "content", TYPE);
+            // same terms in different kinds and positions are distinct statements
+            pipe.addTypedLiteral(S, P, "content", "en");
+            pipe.addPlainLiteral(S, P, "content", TYPE);
+            pipe.addNonLiteral(S, P + "a", "b");
+            pipe.addNonLiteral(S, P, "ab");
+        }
+        pipe.endStream();
+
+        assertEquals(recorder.getStatements(), Arrays.asList(S + " " + P + " " + S, S + " " + P + " _:b",
+                S + " " + P + " \"content\"@en", S + " " + P + " \"content\"@null", S + " " + P + " \"content\"@",
+                S + " " + P + " \"content\"^^" + TYPE, S + " " + P + " \"content\"^^en",
+                S + " " + P + " \"content\"@" + TYPE, S + " " + P + "a b", S + " " + P + " ab"));
+        assertEquals(index.getStatements(), 20);
+        assertEquals(index.getDuplicates(), 10);
+        assertEquals(index.getUntrackedStatements(), 0);
+    }
+
+    @Test
+    public void testRepeatedQuadsAreDropped() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(DeduplicatingPipe.DEFAULT_MEMORY_BUDGET);
+        QuadSink pipe = DeduplicatingPipe.connect((QuadSink) recorder, index);
+        pipe.startStream();
+        for (int i = 0; i < 2; i++) {
+            pipe.addNonLiteral(S, P, S, G1);
+            pipe.addNonLiteral(S, P, S, G2);
+            pipe.addNonLiteral(S, P, S);
+            pipe.addPlainLiteral(S, P, "content", "en", G1);
+            pipe.addTypedLiteral(S, P, "1", TYPE, G1);
+            pipe.addTypedLiteral(S, P, "1", TYPE, G2);
+        }
+        pipe.endStream();
+
+        assertEquals(recorder.getStatements(), Arrays.asList(S + " " + P + " " + S + " " + G1,
+                S + " " + P + " " + S + " " + G2, S + " " + P + " " + S, S + " " + P + " \"content\"@en " + G1,
+                S + " " + P + " \"1\"^^" + TYPE + " " + G1, S + " " + P + " \"1\"^^" + TYPE + " " + G2));
+        assertEquals(index.getStatements(), 12);
+        assertEquals(index.getDuplicates(), 6);
+    }
+
+    @Test
+    public void testQuadsArePassedAsTriplesToTripleSink() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(DeduplicatingPipe.DEFAULT_MEMORY_BUDGET);
+        QuadSink pipe = (QuadSink) DeduplicatingPipe.connect(new TriplesOnly(recorder), index);
+        pipe.startStream();
+        pipe.addNonLiteral(S, P, S, G1);
+        pipe.addNonLiteral(S, P, S, G2);
+        pipe.addPlainLiteral(S, P, "content", "en", G1);
+        pipe.addPlainLiteral(S, P, "content", "en", G2);
+        pipe.addTypedLiteral(S, P, "1", TYPE, G1);
+        pipe.addTypedLiteral(S, P, "1", TYPE);
+        pipe.endStream();
+
+        assertEquals(recorder.getStatements(), Arrays.asList(S + " " + P + " " + S,
+                S + " " + P + " \"content\"@en", S + " " + P + " \"1\"^^" + TYPE));
+        assertEquals(index.getDuplicates(), 3);
+    }
+
+    @Test
+    public void testIndexIsClearedForEachStream() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(DeduplicatingPipe.DEFAULT_MEMORY_BUDGET);
+        TripleSink pipe = DeduplicatingPipe.connect(recorder, index);
+        for (int doc = 0; doc < 2; doc++) {
+            pipe.startStream();
+            pipe.setBaseUri(S);
+            pipe.addNonLiteral(S, P, "_:b");
+            pipe.addNonLiteral(S, P, "_:b");
+            pipe.endStream();
+        }
+
+        assertEquals(recorder.events, Arrays.asList(RecordingSink.START, RecordingSink.base(S), S + " " + P + " _:b",
+                RecordingSink.END, RecordingSink.START, RecordingSink.base(S), S + " " + P + " _:b",
+                RecordingSink.END));
+        // statistics are accumulated over streams
+        assertEquals(index.getStatements(), 4);
+        assertEquals(index.getDuplicates(), 2);
+    }
+
+    @Test
+    public void testExactIndexGrows() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(6L << 20);
+        TripleSink pipe = DeduplicatingPipe.connect(recorder, index);
+        assertEquals(index.getMemoryUsage(), 1L << 20);
+
+        pipe.startStream();
+        addTriples(pipe, INITIAL_ROOM);
+        assertEquals(index.getMemoryUsage(), 1L << 20);
+        addTriples(pipe, INITIAL_ROOM + 1);
+        assertEquals(index.getMemoryUsage(), 2L << 20);
+        addTriples(pipe, 2 * INITIAL_ROOM + 100);
+        assertEquals(index.getMemoryUsage(), 4L << 20);
+        // hashes are kept while table is rehashed
+        addTriples(pipe, 2 * INITIAL_ROOM + 100);
+        pipe.endStream();
+
+        assertEquals(recorder.getStatements().size(), 2 * INITIAL_ROOM + 100);
+        assertEquals(index.getDuplicates(), 4 * INITIAL_ROOM + 101);
+        assertEquals(index.getUntrackedStatements(), 0);
+
+        // table is cleared in place
+        pipe.startStream();
+        assertEquals(index.getMemoryUsage(), 4L << 20);
+        addTriples(pipe, 10);
+        pipe.endStream();
+        assertEquals(recorder.getStatements().size(), 2 * INITIAL_ROOM + 110);
+    }
+
+    @Test
+    public void testExactIndexGrowsWithinBudget() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        // 4M table fits into budget, but not together with 2M table it replaces
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(4L << 20);
+        TripleSink pipe = DeduplicatingPipe.connect(recorder, index);
+
+        // 2M table is filled up to 3/4 of its slots
+        int room = 2 * INITIAL_ROOM + 3;
+        pipe.startStream();
+        addTriples(pipe, room + 1);
+        addTriples(pipe, room + 1);
+        pipe.endStream();
+
+        assertEquals(index.getMemoryUsage(), 2L << 20);
+        assertEquals(recorder.getStatements().size(), room + 2);
+        assertEquals(index.getDuplicates(), room);
+        assertEquals(index.getUntrackedStatements(), 2);
+    }
+
+    @Test
+    public void testFullExactIndexPassesUntrackedStatements() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        // 64 slots, 45 of them can be used
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(1 << 10);
+        TripleSink pipe = DeduplicatingPipe.connect(recorder, index);
+        assertEquals(index.getMemoryUsage(), 1 << 10);
+
+        pipe.startStream();
+        addTriples(pipe, 50);
+        addTriples(pipe, 50);
+        pipe.endStream();
+
+        // first 45 statements are remembered, the rest and their duplicates pass through
+        assertEquals(recorder.getStatements().size(), 55);
+        assertEquals(index.getStatements(), 100);
+        assertEquals(index.getDuplicates(), 45);
+        assertEquals(index.getUntrackedStatements(), 10);
+        assertEquals(index.getMemoryUsage(), 1 << 10);
+
+        pipe.startStream();
+        addTriples(pipe, 50);
+        pipe.endStream();
+        assertEquals(recorder.getStatements().size(), 105);
+        assertEquals(index.getUntrackedStatements(), 15);
+    }
+
+    @Test
+    public void testProbabilisticIndex() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        double falsePositiveRate = 0.01;
+        DeduplicatingPipe.Index index = DeduplicatingPipe.probabilistic(8L << 20, falsePositiveRate);
+        TripleSink pipe = DeduplicatingPipe.connect(recorder, index);
+        long initialMemory = index.getMemoryUsage();
+
+        int count = 100000;
+        pipe.startStream();
+        addTriples(pipe, count);
+        // filter is scaled when first one is full
+        assertTrue(index.getMemoryUsage() > initialMemory);
+        long dropped = index.getDuplicates();
+        assertTrue(dropped < count * falsePositiveRate, String.valueOf(dropped));
+        // real duplicates are always dropped
+        addTriples(pipe, count);
+        pipe.endStream();
+
+        assertEquals(recorder.getStatements().size(), count - dropped);
+        assertEquals(index.getDuplicates(), count + dropped);
+        assertEquals(index.getUntrackedStatements(), 0);
+
+        pipe.startStream();
+        assertEquals(index.getMemoryUsage(), initialMemory);
+        pipe.endStream();
+    }
+
+    @Test
+    public void testFullProbabilisticIndexPassesUntrackedStatements() throws ParseException {
+        RecordingSink recorder = new RecordingSink();
+        DeduplicatingPipe.Index index = DeduplicatingPipe.probabilistic(1 << 10, 0.01);
+        TripleSink pipe = DeduplicatingPipe.connect(recorder, index);
+        assertEquals(index.getMemoryUsage(), 1 << 10);
+
+        pipe.startStream();
+        addTriples(pipe, 2000);
+        pipe.endStream();
+
+        assertEquals(index.getMemoryUsage(), 1 << 10);
+        assertTrue(index.getUntrackedStatements() > 0);
+        assertEquals(recorder.getStatements().size(), index.getStatements() - index.getDuplicates());
+    }
+
+    @Test
+    public void testInvalidUsage() {
+        try {
+            DeduplicatingPipe.exact(100);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        for (double rate : new double[] {0, 1, Double.NaN}) {
+            try {
+                DeduplicatingPipe.probabilistic(1 << 20, rate);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        DeduplicatingPipe.Index index = DeduplicatingPipe.exact(1 << 10);
+        DeduplicatingPipe.connect(new RecordingSink(), index);
+        try {
+            DeduplicatingPipe.connect(new RecordingSink(), index);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void addTriples(TripleSink sink, int count) {
+        for (int i = 0; i < count; i++) {
+            sink.addNonLiteral(S, P, S + i);
+        }
+    }
+
+    /**
+     * Hides quad methods of wrapped sink
+     */
+    private static final class TriplesOnly implements TripleSink {
+
+        private final TripleSink sink;
+
+        private TriplesOnly(TripleSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void addNonLiteral(String subj, String pred, String obj) {
+            sink.addNonLiteral(subj, pred, obj);
+        }
+
+        @Override
+        public void addPlainLiteral(String subj, String pred, String content, String lang) {
+            sink.addPlainLiteral(subj, pred, content, lang);
+        }
+
+        @Override
+        public void addTypedLiteral(String subj, String pred, String content, String type) {
+            sink.addTypedLiteral(subj, pred, content, type);
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+            sink.setBaseUri(baseUri);
+        }
+
+        @Override
+        public void startStream() throws ParseException {
+            sink.startStream();
+        }
+
+        @Override
+        public void endStream() throws ParseException {
+            sink.endStream();
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            return sink.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public final class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(histogram.getPercentile(50), 0);
+        assertEquals(histogram.getPercentile(100), 0);
+        assertEquals(histogram.getMax(), 0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 16; i++) {
+            histogram.record(i);
+        }
+        assertEquals(histogram.getPercentile(1), 0);
+        assertEquals(histogram.getPercentile(50), 7);
+        assertEquals(histogram.getPercentile(75), 11);
+        assertEquals(histogram.getPercentile(100), 15);
+        assertEquals(histogram.getMax(), 15);
+    }
+
+    @Test
+    public void testBucketBounds() {
+        for (long value = 16; value > 0 && value < Long.MAX_VALUE / 2; value = value * 3 / 2 + 1) {
+            for (long probe = value - 1; probe <= value + 1; probe++) {
+                LatencyHistogram histogram = new LatencyHistogram();
+                histogram.record(probe);
+                histogram.record(Long.MAX_VALUE);
+                // percentile is upper bound of value's bucket, which is within 12.5% of value
+                long bound = histogram.getPercentile(50);
+                assertTrue(bound >= probe, probe + " -> " + bound);
+                assertTrue(bound - probe <= probe / 8, probe + " -> " + bound);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentilesAreMonotonicAndCappedByMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 7L);
+        }
+        long previous = 0;
+        for (int percentile = 1; percentile <= 100; percentile++) {
+            long value = histogram.getPercentile(percentile);
+            assertTrue(value >= previous);
+            assertTrue(value >= percentile * 70L);
+            assertTrue(value <= percentile * 70L * 9 / 8);
+            previous = value;
+        }
+        assertEquals(histogram.getPercentile(100), 7000);
+        assertEquals(histogram.getMax(), 7000);
+
+        LatencyHistogram single = new LatencyHistogram();
+        single.record(1000);
+        assertEquals(single.getPercentile(50), 1000);
+    }
+
+    @Test
+    public void testExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(histogram.getPercentile(50), 0);
+        assertEquals(histogram.getPercentile(100), Long.MAX_VALUE);
+        assertEquals(histogram.getMax(), Long.MAX_VALUE);
+
+        histogram.clear();
+        assertEquals(histogram.getPercentile(100), 0);
+        assertEquals(histogram.getMax(), 0);
+    }
+}
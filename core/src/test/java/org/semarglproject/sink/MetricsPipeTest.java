@@ -0,0 +1,327 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.ProcessorGraphHandler;
+import org.semarglproject.source.StreamProcessor;
+import org.testng.annotations.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class MetricsPipeTest {
+
+    private static final String S = "http://example.org/s";
+    private static final String P = "http://example.org/p";
+    private static final String G = "http://example.org/g";
+    private static final String TYPE = "http://example.org/type";
+
+    @Test
+    public void testTripleCounters() throws ParseException {
+        PipeMetrics metrics = new PipeMetrics();
+        RecordingSink output = new RecordingSink();
+        TripleSink pipe = MetricsPipe.connect((TripleSink) output, metrics);
+        pipe.startStream();
+        pipe.addNonLiteral(S, P, S);
+        pipe.addNonLiteral(S, P, G);
+        pipe.addPlainLiteral(S, P, "content", "en");
+        pipe.addTypedLiteral(S, P, "1", TYPE);
+        pipe.addTypedLiteral(S, P, "2", TYPE);
+        pipe.addTypedLiteral(S, P, "3", TYPE);
+        assertEquals(metrics.getDocuments(), 0);
+        pipe.endStream();
+
+        assertEquals(output.getStatements().size(), 6);
+        assertEquals(metrics.getDocuments(), 1);
+        assertEquals(metrics.getFailedDocuments(), 0);
+        assertEquals(metrics.getNonLiteralTriples(), 2);
+        assertEquals(metrics.getPlainLiteralTriples(), 1);
+        assertEquals(metrics.getTypedLiteralTriples(), 3);
+        assertEquals(metrics.getTriples(), 6);
+        assertEquals(metrics.getQuads(), 0);
+        // triples plus start and end of stream
+        assertEquals(metrics.getEvents(), 8);
+    }
+
+    @Test
+    public void testQuadCounters() throws ParseException {
+        PipeMetrics metrics = new PipeMetrics();
+        RecordingSink output = new RecordingSink();
+        QuadSink pipe = MetricsPipe.connect((QuadSink) output, metrics);
+        pipe.startStream();
+        pipe.addNonLiteral(S, P, S);
+        pipe.addNonLiteral(S, P, S, G);
+        pipe.addPlainLiteral(S, P, "content", "en", G);
+        pipe.addTypedLiteral(S, P, "1", TYPE, G);
+        pipe.endStream();
+
+        assertEquals(output.getStatements(), Arrays.asList(S + " " + P + " " + S, S + " " + P + " " + S + " " + G,
+                S + " " + P + " \"content\"@en " + G, S + " " + P + " \"1\"^^" + TYPE + " " + G));
+        assertEquals(metrics.getTriples(), 4);
+        assertEquals(metrics.getNonLiteralTriples(), 2);
+        assertEquals(metrics.getPlainLiteralTriples(), 1);
+        assertEquals(metrics.getTypedLiteralTriples(), 1);
+        assertEquals(metrics.getQuads(), 3);
+    }
+
+    @Test
+    public void testCharCounters() throws ParseException {
+        PipeMetrics metrics = new PipeMetrics();
+        List<String> calls = new ArrayList<String>();
+        CharSink pipe = MetricsPipe.connect(recorder(CharSink.class, calls), metrics);
+        assertFalse(pipe instanceof ByteSink);
+        pipe.startStream();
+        pipe.process("abc");
+        pipe.process('d');
+        pipe.process("xefx".toCharArray(), 1, 2);
+        pipe.endStream();
+
+        assertEquals(calls, Arrays.asList("startStream", "process", "process", "process", "endStream"));
+        assertEquals(metrics.getChars(), 6);
+        assertEquals(metrics.getBytes(), 0);
+        assertEquals(metrics.getEvents(), 5);
+    }
+
+    @Test
+    public void testByteCounters() throws ParseException {
+        PipeMetrics metrics = new PipeMetrics();
+        List<String> calls = new ArrayList<String>();
+        CharSink pipe = MetricsPipe.connect(recorder(CharByteSink.class, calls), metrics);
+        assertTrue(pipe instanceof ByteSink);
+        pipe.startStream();
+        ((ByteSink) pipe).process(new byte[10], 2, 5);
+        pipe.process("ab");
+        pipe.endStream();
+
+        assertEquals(calls, Arrays.asList("startStream", "process", "process", "endStream"));
+        assertEquals(metrics.getBytes(), 5);
+        assertEquals(metrics.getChars(), 2);
+    }
+
+    @Test
+    public void testXmlCounters() throws Exception {
+        PipeMetrics metrics = new PipeMetrics();
+        List<String> calls = new ArrayList<String>();
+        XmlSink pipe = MetricsPipe.connect(recorder(XmlSink.class, calls), metrics);
+        pipe.startStream();
+        pipe.startDocument();
+        pipe.startElement("", "a", "a", new AttributesImpl());
+        pipe.characters("xtextx".toCharArray(), 1, 4);
+        pipe.ignorableWhitespace("  ".toCharArray(), 0, 2);
+        pipe.comment("comment".toCharArray(), 0, 7);
+        pipe.endElement("", "a", "a");
+        pipe.endDocument();
+        pipe.endStream();
+
+        assertEquals(calls, Arrays.asList("startStream", "startDocument", "startElement", "characters",
+                "ignorableWhitespace", "comment", "endElement", "endDocument", "endStream"));
+        // comments aren't document content
+        assertEquals(metrics.getChars(), 6);
+        assertEquals(metrics.getEvents(), 9);
+    }
+
+    @Test
+    public void testErrorsAndWarningsAreCountedThroughWrappedHandler() throws ParseException {
+        PipeMetrics metrics = new PipeMetrics();
+        RecordingSink output = new RecordingSink();
+        TripleSink pipe = MetricsPipe.connect((TripleSink) output, metrics);
+        RecordingHandler handler = new RecordingHandler();
+        pipe.setProperty(StreamProcessor.PROCESSOR_GRAPH_HANDLER_PROPERTY, handler);
+
+        // downstream sinks report to the wrapper instead of the original handler
+        ProcessorGraphHandler wrapped =
+                (ProcessorGraphHandler) output.properties.get(StreamProcessor.PROCESSOR_GRAPH_HANDLER_PROPERTY);
+        assertTrue(wrapped != handler);
+        wrapped.info("info", "i");
+        wrapped.warning("warning", "w1");
+        wrapped.warning("warning", "w2");
+        wrapped.error("error", "e");
+
+        assertEquals(handler.messages, Arrays.asList("info i", "warning w1", "warning w2", "error e"));
+        assertEquals(metrics.getWarnings(), 2);
+        assertEquals(metrics.getErrors(), 1);
+    }
+
+    @Test
+    public void testAbortedDocumentIsCountedAsFailed() throws ParseException {
+        PipeMetrics metrics = new PipeMetrics();
+        RecordingSink output = new RecordingSink();
+        TripleSink pipe = MetricsPipe.connect((TripleSink) output, metrics);
+        pipe.startStream();
+        pipe.addNonLiteral(S, P, S);
+        output.statementFailure = new IllegalStateException();
+        try {
+            pipe.addNonLiteral(S, P, G);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        output.statementFailure = null;
+        pipe.endStream();
+        assertEquals(metrics.getDocuments(), 1);
+        assertEquals(metrics.getFailedDocuments(), 1);
+        assertEquals(metrics.getNonLiteralTriples(), 2);
+
+        // document abandoned without endStream() is recorded when next one starts
+        pipe.startStream();
+        output.statementFailure = new IllegalStateException();
+        try {
+            pipe.addNonLiteral(S, P, G);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        output.statementFailure = null;
+        pipe.startStream();
+        assertEquals(metrics.getDocuments(), 2);
+        assertEquals(metrics.getFailedDocuments(), 2);
+        pipe.addNonLiteral(S, P, S);
+        pipe.endStream();
+        assertEquals(metrics.getDocuments(), 3);
+        assertEquals(metrics.getFailedDocuments(), 2);
+    }
+
+    @Test
+    public void testFailedEndOfStreamIsCountedAsFailed() {
+        PipeMetrics metrics = new PipeMetrics();
+        RecordingSink output = new RecordingSink();
+        output.endFailure = new ParseException("broken");
+        TripleSink pipe = MetricsPipe.connect((TripleSink) output, metrics);
+        try {
+            pipe.startStream();
+            pipe.endStream();
+            fail();
+        } catch (ParseException e) {
+            // expected
+        }
+        assertEquals(metrics.getDocuments(), 1);
+        assertEquals(metrics.getFailedDocuments(), 1);
+    }
+
+    @Test
+    public void testTimesAndReset() throws ParseException {
+        PipeMetrics metrics = new PipeMetrics();
+        RecordingSink output = new RecordingSink();
+        output.delayMillis = 5;
+        TripleSink pipe = MetricsPipe.connect((TripleSink) output, metrics);
+        for (int i = 0; i < 3; i++) {
+            pipe.startStream();
+            pipe.addNonLiteral(S, P, S);
+            pipe.endStream();
+        }
+        assertTrue(metrics.getTotalDownstreamTime() >= 3 * 5000);
+        assertTrue(metrics.getTotalDocumentTime() >= metrics.getTotalDownstreamTime());
+        assertTrue(metrics.getDownstreamTimeP50() >= 5000);
+        assertTrue(metrics.getDownstreamTimeP50() <= metrics.getDownstreamTimeP90());
+        assertTrue(metrics.getDownstreamTimeP90() <= metrics.getDownstreamTimeP99());
+        assertTrue(metrics.getDownstreamTimeP99() <= metrics.getDownstreamTimeMax());
+        assertTrue(metrics.getDocumentTimeP50() <= metrics.getDocumentTimeP99());
+        assertTrue(metrics.getDocumentTimeP99() <= metrics.getDocumentTimeMax());
+        assertTrue(metrics.getDocumentTimeMax() >= metrics.getDownstreamTimeMax());
+
+        metrics.reset();
+        assertEquals(metrics.getDocuments(), 0);
+        assertEquals(metrics.getTriples(), 0);
+        assertEquals(metrics.getTotalDocumentTime(), 0);
+        assertEquals(metrics.getDocumentTimeMax(), 0);
+        assertEquals(metrics.getDownstreamTimeP50(), 0);
+    }
+
+    @Test
+    public void testMBeanRegistration() throws Exception {
+        String name = "metrics test " + System.nanoTime();
+        ObjectName objectName = new ObjectName(PipeMetrics.JMX_DOMAIN + ":type=PipeMetrics,name="
+                + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        PipeMetrics metrics = PipeMetrics.register(name);
+        try {
+            assertTrue(server.isRegistered(objectName));
+            TripleSink pipe = MetricsPipe.connect((TripleSink) new RecordingSink(), metrics);
+            pipe.startStream();
+            pipe.addNonLiteral(S, P, S);
+            pipe.endStream();
+            assertEquals(server.getAttribute(objectName, "Documents"), 1L);
+            assertEquals(server.getAttribute(objectName, "Triples"), 1L);
+            try {
+                PipeMetrics.register(name);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            server.invoke(objectName, "reset", null, null);
+            assertEquals(metrics.getDocuments(), 0);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(objectName));
+        // second call is a no-op
+        metrics.unregister();
+
+        PipeMetrics other = PipeMetrics.register(name);
+        assertTrue(server.isRegistered(objectName));
+        other.unregister();
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T recorder(Class<T> type, final List<String> calls) {
+        return (T) Proxy.newProxyInstance(MetricsPipeTest.class.getClassLoader(), new Class[] {type},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        calls.add(method.getName());
+                        return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                    }
+                });
+    }
+
+    private interface CharByteSink extends CharSink, ByteSink {
+    }
+
+    private static final class RecordingHandler implements ProcessorGraphHandler {
+
+        private final List<String> messages = new ArrayList<String>();
+
+        @Override
+        public void info(String infoClass, String message) {
+            messages.add(infoClass + " " + message);
+        }
+
+        @Override
+        public void warning(String warningClass, String message) {
+            messages.add(warningClass + " " + message);
+        }
+
+        @Override
+        public void error(String errorClass, String message) {
+            messages.add(errorClass + " " + message);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Quad sink which records all received events as strings. Can be configured to slow down
+ * or to fail on statements, at the start and at the end of stream.
+ */
+final class RecordingSink implements QuadSink {
+
+    static final String START = "start";
+    static final String END = "end";
+
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    final Map<String, Object> properties = Collections.synchronizedMap(new HashMap<String, Object>());
+
+    volatile long delayMillis;
+    volatile RuntimeException statementFailure;
+    volatile ParseException startFailure;
+    volatile ParseException endFailure;
+
+    static String base(String baseUri) {
+        return "base " + baseUri;
+    }
+
+    /**
+     * @return statements recorded between stream events
+     */
+    List<String> getStatements() {
+        List<String> result = new ArrayList<String>();
+        synchronized (events) {
+            for (String event : events) {
+                if (!event.equals(START) && !event.equals(END) && !event.startsWith("base ")) {
+                    result.add(event);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void record(String statement) {
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (statementFailure != null) {
+            throw statementFailure;
+        }
+        events.add(statement);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        record(subj + " " + pred + " " + obj);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        record(subj + " " + pred + " \"" + content + "\"@" + lang);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        record(subj + " " + pred + " \"" + content + "\"^^" + type);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        record(subj + " " + pred + " " + obj + " " + graph);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        record(subj + " " + pred + " \"" + content + "\"@" + lang + " " + graph);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        record(subj + " " + pred + " \"" + content + "\"^^" + type + " " + graph);
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+        events.add(base(baseUri));
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+        if (startFailure != null) {
+            throw startFailure;
+        }
+        events.add(START);
+    }
+
+    @Override
+    public void endStream() throws ParseException {
+        events.add(END);
+        if (endFailure != null) {
+            throw endFailure;
+        }
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        properties.put(key, value);
+        return true;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.RingBufferPipe.WaitStrategy;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class RingBufferPipeTest {
+
+    private static final String BASE_URI = "http://example.org/";
+    private static final String S = "http://example.org/s";
+    private static final String P = "http://example.org/p";
+    private static final String G = "http://example.org/g";
+    private static final String TYPE = "http://example.org/type";
+
+    // smaller than any document below, so producer wraps around buffer and waits for consumer
+    private static final int CAPACITY = 3;
+
+    @DataProvider
+    public Object[][] getWaitStrategies() {
+        WaitStrategy[] strategies = WaitStrategy.values();
+        Object[][] result = new Object[strategies.length][];
+        for (int i = 0; i < strategies.length; i++) {
+            result[i] = new Object[] {strategies[i]};
+        }
+        return result;
+    }
+
+    @Test(dataProvider = "getWaitStrategies", timeOut = 30000)
+    public void testConsecutiveStreamsLargerThanCapacity(WaitStrategy waitStrategy) throws ParseException {
+        RecordingSink output = new RecordingSink();
+        TripleSink pipe = RingBufferPipe.connect((TripleSink) output, CAPACITY, waitStrategy);
+        List<String> expected = new ArrayList<String>();
+        for (int doc = 0; doc < 3; doc++) {
+            // base set before stream is passed directly, inside of stream it is queued with triples
+            pipe.setBaseUri(BASE_URI + doc);
+            expected.add(RecordingSink.base(BASE_URI + doc));
+            pipe.startStream();
+            expected.add(RecordingSink.START);
+            for (int i = 0; i < 200; i++) {
+                if (i == 100) {
+                    pipe.setBaseUri(BASE_URI + doc + "/half");
+                    expected.add(RecordingSink.base(BASE_URI + doc + "/half"));
+                }
+                pipe.addNonLiteral(S, P, S + i);
+                pipe.addPlainLiteral(S, P, "content " + i, "en");
+                pipe.addTypedLiteral(S, P, String.valueOf(i), TYPE);
+                expected.add(S + " " + P + " " + S + i);
+                expected.add(S + " " + P + " \"content " + i + "\"@en");
+                expected.add(S + " " + P + " \"" + i + "\"^^" + TYPE);
+            }
+            pipe.endStream();
+            expected.add(RecordingSink.END);
+            assertEquals(output.events, expected);
+        }
+    }
+
+    @Test(dataProvider = "getWaitStrategies", timeOut = 30000)
+    public void testQuads(WaitStrategy waitStrategy) throws ParseException {
+        RecordingSink output = new RecordingSink();
+        QuadSink pipe = RingBufferPipe.connect((QuadSink) output, CAPACITY, waitStrategy);
+        pipe.startStream();
+        pipe.addNonLiteral(S, P, S, G);
+        pipe.addPlainLiteral(S, P, "content", "en", G);
+        pipe.addTypedLiteral(S, P, "1", TYPE, G);
+        pipe.addNonLiteral(S, P, S);
+        pipe.addTypedLiteral(S, P, "2", TYPE, G);
+        pipe.endStream();
+        assertEquals(output.getStatements(), Arrays.asList(S + " " + P + " " + S + " " + G,
+                S + " " + P + " \"content\"@en " + G, S + " " + P + " \"1\"^^" + TYPE + " " + G,
+                S + " " + P + " " + S, S + " " + P + " \"2\"^^" + TYPE + " " + G));
+    }
+
+    @Test(dataProvider = "getWaitStrategies", timeOut = 30000)
+    public void testSinkFailureIsRethrownFromEndStream(WaitStrategy waitStrategy) throws ParseException {
+        RecordingSink output = new RecordingSink();
+        TripleSink pipe = RingBufferPipe.connect((TripleSink) output, CAPACITY, waitStrategy);
+        IllegalStateException cause = new IllegalStateException("broken sink");
+        output.statementFailure = cause;
+        pipe.startStream();
+        // consumer keeps draining buffer after failure, so producer isn't blocked
+        for (int i = 0; i < 100; i++) {
+            pipe.addNonLiteral(S, P, S + i);
+        }
+        try {
+            pipe.endStream();
+            fail();
+        } catch (ParseException e) {
+            assertSame(e.getCause(), cause);
+        }
+        assertEquals(output.events, Arrays.asList(RecordingSink.START, RecordingSink.END));
+
+        // pipe is usable after failure
+        output.statementFailure = null;
+        pipe.startStream();
+        pipe.addNonLiteral(S, P, S);
+        pipe.endStream();
+        assertEquals(output.getStatements(), Arrays.asList(S + " " + P + " " + S));
+    }
+
+    @Test(dataProvider = "getWaitStrategies", timeOut = 30000)
+    public void testInterruptedProducerAbortsStream(WaitStrategy waitStrategy) throws ParseException {
+        RecordingSink output = new RecordingSink();
+        TripleSink pipe = RingBufferPipe.connect((TripleSink) output, CAPACITY, waitStrategy);
+        output.delayMillis = 1;
+        pipe.startStream();
+        Thread.currentThread().interrupt();
+        try {
+            // producer stops waiting for slow sink as soon as buffer is full
+            for (int i = 0; i < 1000; i++) {
+                pipe.addNonLiteral(S, P, S + i);
+            }
+            try {
+                pipe.endStream();
+                fail();
+            } catch (ParseException e) {
+                // expected
+            }
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        List<String> delivered = output.getStatements();
+        assertTrue(delivered.size() < 100);
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(delivered.get(i), S + " " + P + " " + S + i);
+        }
+        assertEquals(output.events.get(output.events.size() - 1), RecordingSink.END);
+
+        // pipe is usable after interrupt
+        output.delayMillis = 0;
+        output.events.clear();
+        pipe.startStream();
+        for (int i = 0; i < 10; i++) {
+            pipe.addNonLiteral(S, P, S + i);
+        }
+        pipe.endStream();
+        assertEquals(output.getStatements().size(), 10);
+        assertEquals(output.getStatements().get(0), S + " " + P + " " + S + 0);
+    }
+
+    @Test(dataProvider = "getWaitStrategies", timeOut = 30000)
+    public void testEndStreamFailureIsPropagated(WaitStrategy waitStrategy) throws ParseException {
+        RecordingSink output = new RecordingSink();
+        ParseException failure = new ParseException("broken sink");
+        output.endFailure = failure;
+        TripleSink pipe = RingBufferPipe.connect((TripleSink) output, CAPACITY, waitStrategy);
+        pipe.startStream();
+        for (int i = 0; i < 10; i++) {
+            pipe.addNonLiteral(S, P, S + i);
+        }
+        try {
+            pipe.endStream();
+            fail();
+        } catch (ParseException e) {
+            assertSame(e, failure);
+        }
+        assertEquals(output.getStatements().size(), 10);
+    }
+
+    @Test
+    public void testInvalidUsage() throws ParseException {
+        try {
+            RingBufferPipe.connect((TripleSink) new RecordingSink(), 0, WaitStrategy.BLOCKING);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            RingBufferPipe.connect((TripleSink) new RecordingSink(), CAPACITY, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        TripleSink pipe = RingBufferPipe.connect((TripleSink) new RecordingSink());
+        pipe.startStream();
+        try {
+            pipe.startStream();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        pipe.endStream();
+    }
+}
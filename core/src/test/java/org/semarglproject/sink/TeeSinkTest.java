@@ -0,0 +1,345 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.sink;
+
+import org.semarglproject.rdf.ParseException;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class TeeSinkTest {
+
+    private static final String BASE_URI = "http://example.org/";
+    private static final String S = "http://example.org/s";
+    private static final String P = "http://example.org/p";
+    private static final String G = "http://example.org/g";
+    private static final String TYPE = "http://example.org/type";
+
+    @Test
+    public void testSyncAndAsyncBranchesReceiveSameEvents() throws ParseException {
+        RecordingSink sync = new RecordingSink();
+        RecordingSink async = new RecordingSink();
+        RecordingSink tiny = new RecordingSink();
+        QuadSink tee = TeeSink.connect(TeeSink.sync(sync), TeeSink.async(async, 16), TeeSink.async(tiny, 1));
+        for (int doc = 0; doc < 3; doc++) {
+            tee.startStream();
+            tee.setBaseUri(BASE_URI + doc);
+            for (int i = 0; i < 500; i++) {
+                tee.addNonLiteral(S, P, S + i);
+                tee.addPlainLiteral(S, P, "content " + i, "en");
+                tee.addTypedLiteral(S, P, String.valueOf(i), TYPE);
+            }
+            tee.endStream();
+        }
+        assertEquals(sync.events.size(), 3 * (3 + 3 * 500));
+        assertEquals(async.events, sync.events);
+        assertEquals(tiny.events, sync.events);
+    }
+
+    @Test
+    public void testQuadsArePassedAsTriplesToTripleBranches() throws ParseException {
+        RecordingSink quads = new RecordingSink();
+        RecordingSink syncTriples = new RecordingSink();
+        RecordingSink asyncTriples = new RecordingSink();
+        QuadSink tee = TeeSink.connect(TeeSink.sync(quads), TeeSink.sync(new TriplesOnly(syncTriples)),
+                TeeSink.async(new TriplesOnly(asyncTriples), 4));
+        tee.startStream();
+        tee.addNonLiteral(S, P, S, G);
+        tee.addPlainLiteral(S, P, "content", "en", G);
+        tee.addTypedLiteral(S, P, "1", TYPE, G);
+        tee.addNonLiteral(S, P, S);
+        tee.endStream();
+
+        assertEquals(quads.getStatements(), Arrays.asList(S + " " + P + " " + S + " " + G,
+                S + " " + P + " \"content\"@en " + G, S + " " + P + " \"1\"^^" + TYPE + " " + G,
+                S + " " + P + " " + S));
+        List<String> triples = Arrays.asList(S + " " + P + " " + S, S + " " + P + " \"content\"@en",
+                S + " " + P + " \"1\"^^" + TYPE, S + " " + P + " " + S);
+        assertEquals(syncTriples.getStatements(), triples);
+        assertEquals(asyncTriples.getStatements(), triples);
+    }
+
+    @Test
+    public void testAsyncBranchFailureIsRethrownFromEndStream() throws ParseException {
+        RecordingSink healthy = new RecordingSink();
+        RecordingSink broken = new RecordingSink();
+        IllegalStateException cause = new IllegalStateException("broken sink");
+        broken.statementFailure = cause;
+        QuadSink tee = TeeSink.connect(TeeSink.sync(healthy), TeeSink.async(broken, 8));
+        tee.startStream();
+        for (int i = 0; i < 100; i++) {
+            tee.addNonLiteral(S, P, S + i);
+        }
+        try {
+            tee.endStream();
+            fail();
+        } catch (ParseException e) {
+            assertSame(e.getCause(), cause);
+        }
+        assertEquals(healthy.getStatements().size(), 100);
+        assertEquals(healthy.events.get(healthy.events.size() - 1), RecordingSink.END);
+        assertEquals(broken.events, Arrays.asList(RecordingSink.START, RecordingSink.END));
+
+        // failure doesn't leak into next stream
+        broken.statementFailure = null;
+        tee.startStream();
+        tee.addNonLiteral(S, P, S);
+        tee.endStream();
+        assertEquals(broken.getStatements(), Arrays.asList(S + " " + P + " " + S));
+    }
+
+    @Test
+    public void testStartFailureEndsStartedBranches() throws ParseException {
+        RecordingSink sync = new RecordingSink();
+        RecordingSink async = new RecordingSink();
+        RecordingSink broken = new RecordingSink();
+        RecordingSink skipped = new RecordingSink();
+        ParseException cause = new ParseException("broken sink");
+        broken.startFailure = cause;
+        QuadSink tee = TeeSink.connect(TeeSink.sync(sync), TeeSink.async(async, 8), TeeSink.async(broken, 8),
+                TeeSink.async(skipped, 8));
+        try {
+            tee.startStream();
+            fail();
+        } catch (ParseException e) {
+            assertSame(e, cause);
+        }
+        // async branch is ended only after its consumer thread is joined
+        assertEquals(sync.events, Arrays.asList(RecordingSink.START, RecordingSink.END));
+        assertEquals(async.events, Arrays.asList(RecordingSink.START, RecordingSink.END));
+        assertTrue(broken.events.isEmpty());
+        assertTrue(skipped.events.isEmpty());
+
+        broken.startFailure = null;
+        tee.startStream();
+        tee.addNonLiteral(S, P, S);
+        tee.endStream();
+        assertEquals(async.getStatements(), Arrays.asList(S + " " + P + " " + S));
+        assertEquals(skipped.getStatements(), Arrays.asList(S + " " + P + " " + S));
+    }
+
+    @Test
+    public void testEndStreamFailureDoesNotSkipOtherBranches() {
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+        RecordingSink third = new RecordingSink();
+        ParseException firstFailure = new ParseException("first");
+        first.endFailure = firstFailure;
+        second.endFailure = new ParseException("second");
+        QuadSink tee = TeeSink.connect(TeeSink.sync(first), TeeSink.async(second, 8), TeeSink.async(third, 8));
+        try {
+            tee.startStream();
+            tee.addNonLiteral(S, P, S);
+            tee.endStream();
+            fail();
+        } catch (ParseException e) {
+            assertSame(e, firstFailure);
+        }
+        List<String> expected = Arrays.asList(RecordingSink.START, S + " " + P + " " + S, RecordingSink.END);
+        assertEquals(first.events, expected);
+        assertEquals(second.events, expected);
+        assertEquals(third.events, expected);
+    }
+
+    @Test
+    public void testSyncBranchFailureIsThrownToCaller() throws ParseException {
+        RecordingSink broken = new RecordingSink();
+        IllegalStateException cause = new IllegalStateException("broken sink");
+        broken.statementFailure = cause;
+        QuadSink tee = TeeSink.connect(broken);
+        tee.startStream();
+        try {
+            tee.addNonLiteral(S, P, S);
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(e, cause);
+        }
+        tee.endStream();
+    }
+
+    @Test
+    public void testSlowBranchDoesNotBlockOthers() throws Exception {
+        final RecordingSink fast = new RecordingSink();
+        RecordingSink slow = new RecordingSink();
+        final CountDownLatch release = new CountDownLatch(1);
+        final QuadSink tee = TeeSink.connect(TeeSink.sync(fast), TeeSink.async(new BlockingSink(slow, release), 64));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            tee.startStream();
+            // blocked branch consumes first chunk, remaining ones fit into its queue
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 100; i++) {
+                        tee.addNonLiteral(S, P, S + i);
+                    }
+                    return null;
+                }
+            }).get(10, TimeUnit.SECONDS);
+            assertEquals(fast.getStatements().size(), 100);
+            assertTrue(slow.getStatements().isEmpty());
+            release.countDown();
+            tee.endStream();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertEquals(slow.events, fast.events);
+    }
+
+    @Test
+    public void testInterruptedEndStreamWaitsForBranch() throws Exception {
+        final RecordingSink slow = new RecordingSink();
+        slow.delayMillis = 20;
+        final QuadSink tee = TeeSink.connect(TeeSink.async(slow, 64));
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicBoolean interruptedAfter = new AtomicBoolean();
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    tee.startStream();
+                    for (int i = 0; i < 20; i++) {
+                        tee.addNonLiteral(S, P, S + i);
+                    }
+                    tee.endStream();
+                    interruptedAfter.set(Thread.currentThread().isInterrupted());
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        producer.start();
+        // wait until producer joins consumer thread
+        while (producer.getState() != Thread.State.WAITING && producer.isAlive()) {
+            Thread.sleep(1);
+        }
+        producer.interrupt();
+        producer.join(10000);
+
+        assertEquals(failure.get(), null);
+        assertTrue(interruptedAfter.get());
+        assertEquals(slow.getStatements().size(), 20);
+        assertEquals(slow.events.get(slow.events.size() - 1), RecordingSink.END);
+    }
+
+    @Test
+    public void testBranchCanBeConnectedOnce() {
+        TeeSink.Branch branch = TeeSink.sync(new RecordingSink());
+        TeeSink.connect(branch);
+        try {
+            TeeSink.connect(branch);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            TeeSink.connect(new TeeSink.Branch[0]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            TeeSink.async(new RecordingSink(), 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Hides quad methods of wrapped sink
+     */
+    private static class TriplesOnly implements TripleSink {
+
+        final TripleSink sink;
+
+        private TriplesOnly(TripleSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void addNonLiteral(String subj, String pred, String obj) {
+            sink.addNonLiteral(subj, pred, obj);
+        }
+
+        @Override
+        public void addPlainLiteral(String subj, String pred, String content, String lang) {
+            sink.addPlainLiteral(subj, pred, content, lang);
+        }
+
+        @Override
+        public void addTypedLiteral(String subj, String pred, String content, String type) {
+            sink.addTypedLiteral(subj, pred, content, type);
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+            sink.setBaseUri(baseUri);
+        }
+
+        @Override
+        public void startStream() throws ParseException {
+            sink.startStream();
+        }
+
+        @Override
+        public void endStream() throws ParseException {
+            sink.endStream();
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            return sink.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Holds statements until latch is released
+     */
+    private static final class BlockingSink extends TriplesOnly {
+
+        private final CountDownLatch latch;
+
+        private BlockingSink(TripleSink sink, CountDownLatch latch) {
+            super(sink);
+            this.latch = latch;
+        }
+
+        @Override
+        public void addNonLiteral(String subj, String pred, String obj) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.addNonLiteral(subj, pred, obj);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.ByteSink;
+import org.semarglproject.sink.CharSink;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public final class CharSourceTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String[] CHARS = {"a", "<", " ", "\u00e9", "\u20ac", "\ud83d\ude00"};
+    // odd window size, so multibyte sequences are split by window boundaries
+    private static final int WINDOW_SIZE = 65537;
+
+    private File largeFile;
+    private String largeContent;
+
+    @BeforeClass
+    public void init() throws IOException {
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(1);
+        while (content.length() < 1536 * 1024) {
+            content.append(CHARS[random.nextInt(CHARS.length)]);
+        }
+        largeContent = content.toString();
+        largeFile = writeFile(largeContent);
+    }
+
+    @AfterClass
+    public void cleanUp() {
+        largeFile.delete();
+    }
+
+    @Test
+    public void testMappedFileIsDecodedAcrossWindows() throws ParseException {
+        CharCollector collector = new CharCollector();
+        assertTrue(new CharSource(collector, WINDOW_SIZE).processMapped(largeFile, null, "http://example.org/"));
+        assertEquals(collector.toString(), largeContent);
+        assertEquals(collector.baseUri, "http://example.org/");
+    }
+
+    @Test
+    public void testMappedFileIsPassedToByteSinkAcrossWindows() throws ParseException {
+        ByteCollector collector = new ByteCollector();
+        assertTrue(new CharSource(collector, WINDOW_SIZE).processMapped(largeFile, null, "http://example.org/"));
+        assertTrue(Arrays.equals(collector.toByteArray(), largeContent.getBytes(UTF_8)));
+    }
+
+    @Test
+    public void testMultibyteCharsStraddleSmallWindows() throws ParseException, IOException {
+        // 8 bytes per unit, so every window splits some sequence
+        String content = "a\ud83d\ude00\u20aca\ud83d\ude00\u20aca\ud83d\ude00\u20ac";
+        File file = writeFile(content);
+        try {
+            for (long windowSize = CharSource.MIN_MAPPED_WINDOW_SIZE; windowSize <= 9; windowSize++) {
+                CharCollector collector = new CharCollector();
+                assertTrue(new CharSource(collector, 0, windowSize).processMapped(file, null, "http://example.org/"));
+                assertEquals(collector.toString(), content, "window size " + windowSize);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWindowMustHoldMultibyteChar() {
+        new CharSource(new CharCollector(), CharSource.MIN_MAPPED_WINDOW_SIZE - 1);
+    }
+
+    @Test
+    public void testStreamProcessorMapsLargeFile() throws ParseException {
+        CharCollector collector = new CharCollector();
+        new StreamProcessor(collector).process(largeFile, "http://example.org/");
+        assertEquals(collector.toString(), largeContent);
+    }
+
+    @Test
+    public void testSmallFileIsProcessedAsStream() throws ParseException, IOException {
+        String content = "<a> <b> \"\u20ac\" .\n";
+        File file = writeFile(content);
+        try {
+            CharCollector collector = new CharCollector();
+            assertFalse(new CharSource(collector).processMapped(file, null, "http://example.org/"));
+            new StreamProcessor(collector).process(file, "http://example.org/");
+            assertEquals(collector.toString(), content);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testReadAheadDisablesMapping() throws ParseException {
+        CharCollector collector = new CharCollector();
+        CharSource source = new CharSource(collector, WINDOW_SIZE);
+        source.setReadAheadBufferSize(4096);
+        assertFalse(source.processMapped(largeFile, null, "http://example.org/"));
+        assertEquals(collector.toString(), "");
+        source.setReadAheadBufferSize(0);
+        assertTrue(source.processMapped(largeFile, null, "http://example.org/"));
+        assertEquals(collector.toString(), largeContent);
+    }
+
+    @Test
+    public void testStreamProcessorReadsLargeFileAhead() throws ParseException {
+        CharCollector charCollector = new CharCollector();
+        StreamProcessor charProcessor = new StreamProcessor(charCollector);
+        assertTrue(charProcessor.setProperty(StreamProcessor.READ_AHEAD_PROPERTY, 1000));
+        charProcessor.process(largeFile, "http://example.org/");
+        assertEquals(charCollector.toString(), largeContent);
+
+        ByteCollector byteCollector = new ByteCollector();
+        StreamProcessor byteProcessor = new StreamProcessor(byteCollector);
+        assertTrue(byteProcessor.setProperty(StreamProcessor.READ_AHEAD_PROPERTY, 1000));
+        byteProcessor.process(largeFile, "http://example.org/");
+        assertTrue(Arrays.equals(byteCollector.toByteArray(), largeContent.getBytes(UTF_8)));
+    }
+
+    private static File writeFile(String content) throws IOException {
+        File file = File.createTempFile("semargl", ".nt");
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes(UTF_8));
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static class CharCollector implements CharSink {
+
+        private final StringBuilder content = new StringBuilder();
+        private String baseUri;
+
+        @Override
+        public CharSink process(String str) {
+            content.append(str);
+            return this;
+        }
+
+        @Override
+        public CharSink process(char ch) {
+            content.append(ch);
+            return this;
+        }
+
+        @Override
+        public CharSink process(char[] buffer, int start, int count) {
+            content.append(buffer, start, count);
+            return this;
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+            this.baseUri = baseUri;
+        }
+
+        @Override
+        public void startStream() {
+        }
+
+        @Override
+        public void endStream() {
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return content.toString();
+        }
+    }
+
+    private static final class ByteCollector extends CharCollector implements ByteSink {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public ByteSink process(byte[] buffer, int start, int count) {
+            bytes.write(buffer, start, count);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
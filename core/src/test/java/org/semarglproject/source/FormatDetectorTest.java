@@ -0,0 +1,122 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public final class FormatDetectorTest {
+
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String XHTML_NS = "http://www.w3.org/1999/xhtml";
+
+    @Test
+    public void testSpecificMimeTypes() {
+        assertEquals(FormatDetector.detectByMimeType("application/rdf+xml; charset=UTF-8"),
+                SniffingStreamProcessor.RDF_XML);
+        assertEquals(FormatDetector.detectByMimeType("TEXT/HTML"), SniffingStreamProcessor.HTML);
+        assertEquals(FormatDetector.detectByMimeType("application/xhtml+xml"), SniffingStreamProcessor.XHTML);
+        assertEquals(FormatDetector.detectByMimeType(" application/n-triples "), SniffingStreamProcessor.NTRIPLES);
+        assertEquals(FormatDetector.detectByMimeType("text/x-nquads"), SniffingStreamProcessor.NQUADS);
+        assertEquals(FormatDetector.detectByMimeType("application/json"), SniffingStreamProcessor.JSON_LD);
+        assertEquals(FormatDetector.detectByMimeType("application/ld+json;profile=expanded"),
+                SniffingStreamProcessor.JSON_LD);
+    }
+
+    @Test
+    public void testGenericMimeTypes() {
+        assertNull(FormatDetector.detectByMimeType(null));
+        assertNull(FormatDetector.detectByMimeType("text/plain"));
+        assertNull(FormatDetector.detectByMimeType("application/xml"));
+        assertNull(FormatDetector.detectByMimeType("application/octet-stream"));
+    }
+
+    @Test
+    public void testJsonLd() {
+        assertEquals(detect("{\"@id\": \"http://example.org/a\"}"), SniffingStreamProcessor.JSON_LD);
+        assertEquals(detect("\n  [{\"@id\": \"http://example.org/a\"}]"), SniffingStreamProcessor.JSON_LD);
+        assertEquals(detect("\uFEFF{\"@id\": \"http://example.org/a\"}"), SniffingStreamProcessor.JSON_LD);
+    }
+
+    @Test
+    public void testRdfXml() {
+        assertEquals(detect("<?xml version=\"1.0\"?>\n<rdf:RDF xmlns:rdf=\"" + RDF_NS + "\"/>"),
+                SniffingStreamProcessor.RDF_XML);
+        assertEquals(detect("\uFEFF<!-- comment --><RDF xmlns=\"" + RDF_NS + "\"/>"),
+                SniffingStreamProcessor.RDF_XML);
+        // prefixed RDF element from other namespace isn't RDF/XML
+        assertEquals(detect("<x:RDF xmlns:x=\"http://example.org/\"/>"), SniffingStreamProcessor.XML);
+    }
+
+    @Test
+    public void testHtmlAndXhtml() {
+        assertEquals(detect("<!DOCTYPE html>\n<html><head></head></html>"), SniffingStreamProcessor.HTML);
+        assertEquals(detect("<!doctype html>"), SniffingStreamProcessor.HTML);
+        assertEquals(detect("<html><body></body></html>"), SniffingStreamProcessor.HTML);
+        assertEquals(detect("<html xmlns=\"" + XHTML_NS + "\"></html>"), SniffingStreamProcessor.XHTML);
+        assertEquals(detect("<?xml version=\"1.0\"?>\n<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML+RDFa 1.0//EN\" "
+                + "\"http://www.w3.org/MarkUp/DTD/xhtml-rdfa-1.dtd\">\n<html>"), SniffingStreamProcessor.XHTML);
+    }
+
+    @Test
+    public void testGenericXml() {
+        assertEquals(detect("<svg xmlns=\"http://www.w3.org/2000/svg\"/>"), SniffingStreamProcessor.XML);
+        assertEquals(detect("<?xml version=\"1.0\"?>"), SniffingStreamProcessor.XML);
+        assertEquals(detect("<!DOCTYPE svg [<!ENTITY e \"<html>\">]><svg/>"), SniffingStreamProcessor.XML);
+    }
+
+    @Test
+    public void testNTriples() {
+        assertEquals(detect("<http://example.org/a> <http://example.org/b> <http://example.org/c> .\n"),
+                SniffingStreamProcessor.NTRIPLES);
+        assertEquals(detect("# comment\n_:a <http://example.org/b> \"c\"@en.\n"),
+                SniffingStreamProcessor.NTRIPLES);
+        assertEquals(detect("<http://example.org/a> <http://example.org/b> \"c \\\" d\" . # comment\n"),
+                SniffingStreamProcessor.NTRIPLES);
+        assertEquals(detect("_:a <http://example.org/b> _:c ."), SniffingStreamProcessor.NTRIPLES);
+    }
+
+    @Test
+    public void testNQuads() {
+        assertEquals(detect("<http://example.org/a> <http://example.org/b> <http://example.org/c> "
+                + "<http://example.org/g> .\n"), SniffingStreamProcessor.NQUADS);
+        assertEquals(detect("_:a <http://example.org/b> \"c\"^^<http://example.org/t> _:g .\r\n"),
+                SniffingStreamProcessor.NQUADS);
+    }
+
+    @Test
+    public void testUndetectableContent() {
+        assertNull(detect(""));
+        assertNull(detect("  \n"));
+        assertNull(detect("plain text"));
+        assertNull(detect("_:a <http://example.org/b> ."));
+        assertNull(detect("# only comment\n"));
+    }
+
+    @Test
+    public void testIncompletePeek() {
+        String statement = "<http://example.org/a> <http://example.org/b> <http://example.org/c> .";
+        assertEquals(FormatDetector.detectByContent(statement, true), SniffingStreamProcessor.NTRIPLES);
+        assertNull(FormatDetector.detectByContent("_:a <http://example.org/b> <http://example.org/c> .", false));
+    }
+
+    private static String detect(String content) {
+        return FormatDetector.detectByContent(content, true);
+    }
+
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.XmlSink;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class ReadAheadTest {
+
+    // smaller than reads of consumer and producer, so every read spans several buffers
+    private static final int BUFFER_SIZE = 7;
+    private static final int[] READ_SIZES = {1, 3, 100, 4096};
+    private static final long THREAD_STOP_TIMEOUT = 10000;
+
+    @Test
+    public void testBytesAreReadAheadWithSmallBuffer() throws IOException {
+        byte[] data = randomBytes(10000);
+        for (int readSize : READ_SIZES) {
+            InputStream input = ReadAhead.wrap(new ScriptedInputStream(data, 5, null), BUFFER_SIZE);
+            assertTrue(Arrays.equals(readAll(input, readSize), data));
+            assertEquals(input.read(), -1);
+            assertEquals(input.read(new byte[10], 0, 10), -1);
+            input.close();
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        byte[] data = randomBytes(100);
+        InputStream input = ReadAhead.wrap(new ScriptedInputStream(data, 5, null), BUFFER_SIZE);
+        for (byte expected : data) {
+            assertEquals(input.read(), expected & 0xFF);
+        }
+        assertEquals(input.read(), -1);
+        input.close();
+    }
+
+    @Test
+    public void testCharsAreReadAheadWithSmallBuffer() throws IOException {
+        String data = randomChars(10000);
+        for (int readSize : READ_SIZES) {
+            Reader input = ReadAhead.wrap(new ScriptedReader(data, 5, null, false), BUFFER_SIZE);
+            assertEquals(readAll(input, readSize), data);
+            assertEquals(input.read(new char[10], 0, 10), -1);
+            input.close();
+        }
+    }
+
+    @Test
+    public void testByteFailureIsThrownAfterPrecedingData() throws IOException {
+        byte[] data = randomBytes(1000);
+        IOException failure = new IOException("broken input");
+        InputStream input = ReadAhead.wrap(new ScriptedInputStream(data, 5, failure), BUFFER_SIZE);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        try {
+            int read;
+            while ((read = input.read(buffer, 0, buffer.length)) != -1) {
+                result.write(buffer, 0, read);
+            }
+            fail();
+        } catch (IOException e) {
+            assertSame(e, failure);
+        }
+        assertTrue(Arrays.equals(result.toByteArray(), data));
+        input.close();
+    }
+
+    @Test
+    public void testCharFailureIsThrownAfterPrecedingData() throws IOException {
+        String data = randomChars(1000);
+        IOException failure = new IOException("broken input");
+        Reader input = ReadAhead.wrap(new ScriptedReader(data, 5, failure, false), BUFFER_SIZE);
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[3];
+        try {
+            int read;
+            while ((read = input.read(buffer, 0, buffer.length)) != -1) {
+                result.append(buffer, 0, read);
+            }
+            fail();
+        } catch (IOException e) {
+            assertSame(e, failure);
+        }
+        assertEquals(result.toString(), data);
+        input.close();
+    }
+
+    @Test
+    public void testCloseStopsIoThread() throws Exception {
+        ScriptedInputStream endless = new ScriptedInputStream(null, 5, null);
+        InputStream input = ReadAhead.wrap(endless, BUFFER_SIZE);
+        assertEquals(readFully(input, 100), 100);
+        // I/O thread is blocked on full queue now
+        input.close();
+        assertTrue(endless.closed);
+        assertStopped(endless.ioThread);
+    }
+
+    @Test
+    public void testAbortedXmlParsingStopsIoThread() throws Exception {
+        // malformed document followed by endless whitespace
+        ScriptedReader input = new ScriptedReader("<a></b>", 5, null, true);
+        StreamProcessor streamProcessor = new StreamProcessor(failingXmlSink());
+        streamProcessor.setProperty(StreamProcessor.READ_AHEAD_PROPERTY, BUFFER_SIZE);
+        try {
+            streamProcessor.process(input, "http://example.org/");
+            fail();
+        } catch (ParseException e) {
+            // expected
+        }
+        assertTrue(input.closed);
+        assertStopped(input.ioThread);
+    }
+
+    @Test
+    public void testAbortedXmlReaderWhichKeepsInputOpenStopsIoThread() throws Exception {
+        // unlike Xerces, this reader doesn't close input on failure, so source has to
+        ScriptedReader input = new ScriptedReader("<a>", 5, null, true);
+        StreamProcessor streamProcessor = new StreamProcessor(failingXmlSink());
+        streamProcessor.setProperty(StreamProcessor.READ_AHEAD_PROPERTY, BUFFER_SIZE);
+        streamProcessor.setProperty(StreamProcessor.XML_READER_PROPERTY, abortingXmlReader());
+        try {
+            streamProcessor.process(input, "http://example.org/");
+            fail();
+        } catch (ParseException e) {
+            // expected
+        }
+        assertTrue(input.closed);
+        assertStopped(input.ioThread);
+    }
+
+    private static void assertStopped(Thread ioThread) throws InterruptedException {
+        assertNotNull(ioThread);
+        ioThread.join(THREAD_STOP_TIMEOUT);
+        assertFalse(ioThread.isAlive());
+    }
+
+    private static XmlSink failingXmlSink() {
+        return (XmlSink) Proxy.newProxyInstance(ReadAheadTest.class.getClassLoader(), new Class[] {XmlSink.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("processException")) {
+                            return new ParseException((SAXException) args[0]);
+                        }
+                        return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                    }
+                });
+    }
+
+    /**
+     * Reads a few chars of document and fails
+     */
+    private static XMLReader abortingXmlReader() {
+        return (XMLReader) Proxy.newProxyInstance(ReadAheadTest.class.getClassLoader(),
+                new Class[] {XMLReader.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                        if (method.getName().equals("parse")) {
+                            Reader reader = ((InputSource) args[0]).getCharacterStream();
+                            reader.read(new char[100], 0, 100);
+                            throw new SAXException("aborted");
+                        }
+                        return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                    }
+                });
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] result = new byte[size];
+        new Random(1).nextBytes(result);
+        return result;
+    }
+
+    private static String randomChars(int size) {
+        Random random = new Random(1);
+        StringBuilder result = new StringBuilder();
+        while (result.length() < size) {
+            result.append((char) ('a' + random.nextInt(26))).append("\u00e9\ud83d\ude00");
+        }
+        return result.substring(0, size);
+    }
+
+    private static byte[] readAll(InputStream input, int readSize) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[readSize];
+        int read;
+        while ((read = input.read(buffer, 0, readSize)) != -1) {
+            result.write(buffer, 0, read);
+        }
+        return result.toByteArray();
+    }
+
+    private static String readAll(Reader input, int readSize) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[readSize];
+        int read;
+        while ((read = input.read(buffer, 0, readSize)) != -1) {
+            result.append(buffer, 0, read);
+        }
+        return result.toString();
+    }
+
+    private static int readFully(InputStream input, int count) throws IOException {
+        byte[] buffer = new byte[count];
+        int total = 0;
+        while (total < count) {
+            total += input.read(buffer, total, count - total);
+        }
+        return total;
+    }
+
+    /**
+     * Returns data in short portions, then fails or ends. Endless if data isn't specified.
+     */
+    private static final class ScriptedInputStream extends InputStream {
+
+        private final byte[] data;
+        private final int maxRead;
+        private final IOException failure;
+        private int position = 0;
+
+        private volatile Thread ioThread;
+        private volatile boolean closed;
+
+        private ScriptedInputStream(byte[] data, int maxRead, IOException failure) {
+            this.data = data;
+            this.maxRead = maxRead;
+            this.failure = failure;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            ioThread = Thread.currentThread();
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            int count = Math.min(length, maxRead);
+            if (data == null) {
+                Arrays.fill(buffer, offset, offset + count, (byte) ' ');
+                return count;
+            }
+            if (position == data.length) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return -1;
+            }
+            count = Math.min(count, data.length - position);
+            System.arraycopy(data, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Returns text in short portions, then fails, ends or returns endless whitespace.
+     */
+    private static final class ScriptedReader extends Reader {
+
+        private final String data;
+        private final int maxRead;
+        private final IOException failure;
+        private final boolean endless;
+        private int position = 0;
+
+        private volatile Thread ioThread;
+        private volatile boolean closed;
+
+        private ScriptedReader(String data, int maxRead, IOException failure, boolean endless) {
+            this.data = data;
+            this.maxRead = maxRead;
+            this.failure = failure;
+            this.endless = endless;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            ioThread = Thread.currentThread();
+            if (closed) {
+                throw new IOException("Reader closed");
+            }
+            int count = Math.min(length, maxRead);
+            if (position == data.length()) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (!endless) {
+                    return -1;
+                }
+                Arrays.fill(buffer, offset, offset + count, ' ');
+                return count;
+            }
+            count = Math.min(count, data.length() - position);
+            data.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.CharSink;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public final class SniffingStreamProcessorTest {
+
+    private static final String BASE_URI = "http://example.org/";
+
+    private static final String NTRIPLES = "<http://example.org/a> <http://example.org/b> \"c\" .\n";
+    private static final String NQUADS = "<http://example.org/a> <http://example.org/b> \"c\" <http://example.org/g> .\n";
+    private static final String JSON_LD = "{\"@id\": \"http://example.org/a\", \"http://example.org/b\": \"c\"}";
+    private static final String RDF_XML = "<?xml version=\"1.0\"?>\n"
+            + "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"/>";
+    private static final String HTML = "<!DOCTYPE html>\n<html><body></body></html>";
+    private static final String XHTML = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body/></html>";
+
+    private RecordingSink ntSink;
+    private RecordingSink nqSink;
+    private RecordingSink jsonSink;
+    private RecordingSink rdfXmlSink;
+    private RecordingSink htmlSink;
+    private SniffingStreamProcessor sniffer;
+
+    @BeforeMethod
+    public void init() {
+        ntSink = new RecordingSink();
+        nqSink = new RecordingSink();
+        jsonSink = new RecordingSink();
+        rdfXmlSink = new RecordingSink();
+        htmlSink = new RecordingSink();
+        sniffer = new SniffingStreamProcessor()
+                .register(SniffingStreamProcessor.NTRIPLES, ntSink)
+                .register(SniffingStreamProcessor.NQUADS, nqSink)
+                .register(SniffingStreamProcessor.JSON_LD, jsonSink)
+                .register(SniffingStreamProcessor.RDF_XML, rdfXmlSink)
+                .register(SniffingStreamProcessor.HTML, htmlSink);
+    }
+
+    @Test
+    public void testReaderIsRoutedByContent() throws ParseException {
+        assertRouted(NTRIPLES, ntSink);
+        assertRouted(NQUADS, nqSink);
+        assertRouted(JSON_LD, jsonSink);
+        assertRouted(RDF_XML, rdfXmlSink);
+        assertRouted(HTML, htmlSink);
+        // XHTML and generic XML fall back to registered HTML pipeline
+        assertRouted(XHTML, htmlSink);
+        assertRouted("<svg xmlns=\"http://www.w3.org/2000/svg\"/>", htmlSink);
+    }
+
+    @Test
+    public void testStreamIsRoutedByContent() throws Exception {
+        sniffer.process(new ByteArrayInputStream(NQUADS.getBytes("UTF-8")), BASE_URI);
+        assertProcessedOnce(nqSink, NQUADS);
+        sniffer.process(new ByteArrayInputStream(("\uFEFF" + JSON_LD).getBytes("UTF-8")), BASE_URI);
+        assertEquals(jsonSink.started, 1);
+        assertEquals(jsonSink.ended, 1);
+        sniffer.process(new ByteArrayInputStream(("\uFEFF" + RDF_XML).getBytes("UTF-16BE")), BASE_URI);
+        assertEquals(rdfXmlSink.started, 1);
+        assertEquals(rdfXmlSink.ended, 1);
+    }
+
+    @Test
+    public void testFileIsRoutedByContent() throws Exception {
+        File file = File.createTempFile("semargl-sniffer", ".txt");
+        try {
+            OutputStream output = new FileOutputStream(file);
+            try {
+                output.write(NTRIPLES.getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+            sniffer.process(file, BASE_URI);
+            assertProcessedOnce(ntSink, NTRIPLES);
+            sniffer.processInternal(file, "text/plain", BASE_URI);
+            assertEquals(ntSink.started, 2);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSpecificMimeTypeOverridesContent() throws ParseException {
+        sniffer.process(new StringReader(JSON_LD), SniffingStreamProcessor.NTRIPLES, BASE_URI);
+        assertProcessedOnce(ntSink, JSON_LD);
+        assertEquals(jsonSink.started, 0);
+    }
+
+    @Test
+    public void testGenericMimeTypeIsIgnored() throws ParseException {
+        sniffer.process(new StringReader(NQUADS), "text/plain; charset=UTF-8", BASE_URI);
+        assertProcessedOnce(nqSink, NQUADS);
+        sniffer.process(new StringReader(RDF_XML), "application/xml", BASE_URI);
+        assertProcessedOnce(rdfXmlSink, RDF_XML);
+    }
+
+    @Test
+    public void testMimeTypeIsUsedForUndetectableContent() throws ParseException {
+        // XHTML pipeline isn't registered, so MIME type resolves to HTML fallback
+        sniffer.process(new StringReader("plain text"), SniffingStreamProcessor.XHTML, BASE_URI);
+        assertProcessedOnce(htmlSink, "plain text");
+    }
+
+    @Test
+    public void testUnknownFormatIsRejected() {
+        try {
+            sniffer.process(new StringReader("plain text"), BASE_URI);
+            fail();
+        } catch (ParseException e) {
+            // expected
+        }
+        assertEquals(ntSink.started + nqSink.started + jsonSink.started + rdfXmlSink.started + htmlSink.started, 0);
+    }
+
+    @Test
+    public void testPropertiesArePassedToPipelines() {
+        assertEquals(sniffer.setProperty("http://example.org/properties/key", "value"), true);
+        assertEquals(ntSink.lastPropertyValue, "value");
+        RecordingSink lateSink = new RecordingSink();
+        sniffer.register(SniffingStreamProcessor.XHTML, lateSink);
+        assertEquals(lateSink.lastPropertyValue, "value");
+    }
+
+    private void assertRouted(String document, RecordingSink expected) throws ParseException {
+        int started = expected.started;
+        sniffer.process(new StringReader(document), BASE_URI);
+        assertEquals(expected.started, started + 1);
+        assertEquals(expected.ended, started + 1);
+        assertEquals(expected.text.toString(), document);
+        assertEquals(expected.baseUri, BASE_URI);
+    }
+
+    private static void assertProcessedOnce(RecordingSink sink, String document) {
+        assertEquals(sink.started, 1);
+        assertEquals(sink.ended, 1);
+        assertEquals(sink.text.toString(), document);
+    }
+
+    /**
+     * Records processed text and stream events
+     */
+    private static final class RecordingSink implements CharSink {
+
+        private final StringBuilder text = new StringBuilder();
+        private String baseUri;
+        private Object lastPropertyValue;
+        private int started;
+        private int ended;
+
+        @Override
+        public CharSink process(String str) throws ParseException {
+            text.append(str);
+            return this;
+        }
+
+        @Override
+        public CharSink process(char ch) throws ParseException {
+            text.append(ch);
+            return this;
+        }
+
+        @Override
+        public CharSink process(char[] buffer, int start, int count) throws ParseException {
+            text.append(buffer, start, count);
+            return this;
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+            this.baseUri = baseUri;
+        }
+
+        @Override
+        public void startStream() throws ParseException {
+            text.setLength(0);
+            started++;
+        }
+
+        @Override
+        public void endStream() throws ParseException {
+            ended++;
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            lastPropertyValue = value;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.source;
+
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.CharSink;
+import org.semarglproject.source.StreamProcessorPool.PooledPipeline;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class StreamProcessorPoolTest {
+
+    private static final String KEY = "http://example.org/properties/key";
+    private static final String OTHER_KEY = "http://example.org/properties/other-key";
+    private static final String BASE_URI = "http://example.org/";
+
+    @Test
+    public void testReleasedPipelineIsReused() throws InterruptedException {
+        RecordingFactory factory = new RecordingFactory();
+        StreamProcessorPool<RecordingSink> pool = new StreamProcessorPool<RecordingSink>(factory, 2);
+        PooledPipeline<RecordingSink> first = pool.borrow();
+        PooledPipeline<RecordingSink> second = pool.borrow();
+        assertNotSame(first, second);
+        pool.release(first);
+        assertSame(pool.borrow(), first);
+        assertEquals(factory.created.get(), 2);
+    }
+
+    @Test
+    public void testBorrowTimesOut() throws InterruptedException {
+        StreamProcessorPool<RecordingSink> pool = new StreamProcessorPool<RecordingSink>(new RecordingFactory(), 1);
+        PooledPipeline<RecordingSink> pipeline = pool.borrow();
+        assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+        pool.release(pipeline);
+        assertSame(pool.borrow(10, TimeUnit.MILLISECONDS), pipeline);
+    }
+
+    @Test
+    public void testPropertiesAreAppliedAndReverted() throws InterruptedException {
+        StreamProcessorPool<RecordingSink> pool = new StreamProcessorPool<RecordingSink>(new RecordingFactory(), 1);
+        pool.setProperty(KEY, "pool");
+        PooledPipeline<RecordingSink> pipeline = pool.borrow();
+        assertEquals(pipeline.getOutput().properties.get(KEY), "pool");
+        pipeline.setProperty(KEY, "borrower");
+        assertEquals(pipeline.getOutput().properties.get(KEY), "borrower");
+        pool.release(pipeline);
+
+        assertSame(pool.borrow(), pipeline);
+        assertEquals(pipeline.getOutput().properties.get(KEY), "pool");
+        pool.release(pipeline);
+
+        pool.setProperty(KEY, "changed");
+        assertSame(pool.borrow(), pipeline);
+        assertEquals(pipeline.getOutput().properties.get(KEY), "changed");
+    }
+
+    @Test
+    public void testPipelineWithUnrevertablePropertyIsDiscarded() throws InterruptedException {
+        RecordingFactory factory = new RecordingFactory();
+        StreamProcessorPool<RecordingSink> pool = new StreamProcessorPool<RecordingSink>(factory, 1);
+        pool.setProperty(KEY, "pool");
+        PooledPipeline<RecordingSink> pipeline = pool.borrow();
+        pipeline.setProperty(OTHER_KEY, "borrower");
+        pool.release(pipeline);
+
+        PooledPipeline<RecordingSink> next = pool.borrow();
+        assertNotSame(next, pipeline);
+        assertFalse(next.getOutput().properties.containsKey(OTHER_KEY));
+        assertEquals(next.getOutput().properties.get(KEY), "pool");
+        assertEquals(factory.created.get(), 2);
+    }
+
+    @Test
+    public void testPipelineCanBeReleasedOnlyOnce() throws Exception {
+        final StreamProcessorPool<RecordingSink> pool =
+                new StreamProcessorPool<RecordingSink>(new RecordingFactory(), 1);
+        final PooledPipeline<RecordingSink> pipeline = pool.borrow();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        start.await();
+                        try {
+                            pool.release(pipeline);
+                            return true;
+                        } catch (IllegalArgumentException e) {
+                            return false;
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            int released = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    released++;
+                }
+            }
+            assertEquals(released, 1);
+        } finally {
+            executor.shutdown();
+        }
+        // double release would leave a spare permit and the same pipeline queued twice
+        assertNotNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+        assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testForeignPipelineIsRejected() throws InterruptedException {
+        StreamProcessorPool<RecordingSink> pool = new StreamProcessorPool<RecordingSink>(new RecordingFactory(), 1);
+        StreamProcessorPool<RecordingSink> other = new StreamProcessorPool<RecordingSink>(new RecordingFactory(), 1);
+        PooledPipeline<RecordingSink> pipeline = other.borrow();
+        try {
+            pool.release(pipeline);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        final int poolSize = 3;
+        final RecordingFactory factory = new RecordingFactory();
+        final StreamProcessorPool<RecordingSink> pool = new StreamProcessorPool<RecordingSink>(factory, poolSize);
+        pool.setProperty(KEY, "pool");
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 8; i++) {
+                final String text = "document " + i;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 50; j++) {
+                            PooledPipeline<RecordingSink> pipeline = pool.borrow();
+                            try {
+                                int count = active.incrementAndGet();
+                                synchronized (maxActive) {
+                                    maxActive.set(Math.max(maxActive.get(), count));
+                                }
+                                assertEquals(pipeline.getOutput().properties.get(KEY), "pool");
+                                pipeline.setProperty(KEY, text);
+                                pipeline.getProcessor().process(new StringReader(text), BASE_URI);
+                                assertEquals(pipeline.getOutput().text.toString(), text);
+                                active.decrementAndGet();
+                            } finally {
+                                pool.release(pipeline);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(maxActive.get() <= poolSize);
+        assertTrue(factory.created.get() <= poolSize);
+    }
+
+    private static final class RecordingFactory implements StreamProcessorPool.PipelineFactory<RecordingSink> {
+
+        private final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public RecordingSink createOutput() {
+            created.incrementAndGet();
+            return new RecordingSink();
+        }
+
+        @Override
+        public StreamProcessor createProcessor(RecordingSink output) {
+            return new StreamProcessor(output);
+        }
+    }
+
+    /**
+     * Records properties and processed text, fails if used by two threads at once
+     */
+    private static final class RecordingSink implements CharSink {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+        private final StringBuilder text = new StringBuilder();
+        private final AtomicBoolean inUse = new AtomicBoolean();
+
+        @Override
+        public CharSink process(String str) throws ParseException {
+            text.append(str);
+            return this;
+        }
+
+        @Override
+        public CharSink process(char ch) throws ParseException {
+            text.append(ch);
+            return this;
+        }
+
+        @Override
+        public CharSink process(char[] buffer, int start, int count) throws ParseException {
+            text.append(buffer, start, count);
+            return this;
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+        }
+
+        @Override
+        public void startStream() throws ParseException {
+            if (!inUse.compareAndSet(false, true)) {
+                throw new IllegalStateException("Sink is used by another thread");
+            }
+            text.setLength(0);
+        }
+
+        @Override
+        public void endStream() throws ParseException {
+            inUse.set(false);
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            properties.put(key, value);
+            return true;
+        }
+    }
+
+}
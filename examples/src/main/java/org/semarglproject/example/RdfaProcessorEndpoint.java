@@ -22,6 +22,8 @@ import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.semarglproject.rdf.TurtleSerializer;
 import org.semarglproject.sink.CharOutputSink;
 import org.semarglproject.source.StreamProcessor;
+import org.semarglproject.source.StreamProcessorPool;
+import org.semarglproject.source.StreamProcessorPool.PooledPipeline;
 import org.semarglproject.rdf.ParseException;
 import org.semarglproject.rdf.rdfa.RdfaParser;
 import org.semarglproject.vocab.RDFa;
@@ -47,17 +49,37 @@ import java.net.URL;
  */
 public final class RdfaProcessorEndpoint extends AbstractHandler {
 
-    private final StreamProcessor streamProcessor;
-    private final CharOutputSink charOutputSink;
+    private static final int MAX_PIPELINES = 16;
 
-    public RdfaProcessorEndpoint() throws SAXException {
-        charOutputSink = new CharOutputSink("UTF-8");
-        streamProcessor = new StreamProcessor(RdfaParser.connect(TurtleSerializer.connect(charOutputSink)));
-        streamProcessor.setProperty(RdfaParser.ENABLE_VOCAB_EXPANSION, true);
+    // pipelines keep per-document state, so each Jetty thread borrows its own one
+    private final StreamProcessorPool<CharOutputSink> pool;
 
-        // use error-prone HTML parser to produce valid XML documents
-        XMLReader reader = SAXParserImpl.newInstance(null).getXMLReader();
-        streamProcessor.setProperty(StreamProcessor.XML_READER_PROPERTY, reader);
+    public RdfaProcessorEndpoint() {
+        pool = new StreamProcessorPool<CharOutputSink>(new StreamProcessorPool.PipelineFactory<CharOutputSink>() {
+            @Override
+            public CharOutputSink createOutput() {
+                return new CharOutputSink("UTF-8");
+            }
+
+            @Override
+            public StreamProcessor createProcessor(CharOutputSink output) {
+                StreamProcessor streamProcessor = new StreamProcessor(
+                        RdfaParser.connect(TurtleSerializer.connect(output)));
+                // use error-prone HTML parser to produce valid XML documents
+                try {
+                    XMLReader reader = SAXParserImpl.newInstance(null).getXMLReader();
+                    streamProcessor.setProperty(StreamProcessor.XML_READER_PROPERTY, reader);
+                } catch (SAXException e) {
+                    throw new IllegalStateException(e);
+                }
+                return streamProcessor;
+            }
+        }, MAX_PIPELINES);
+        pool.setProperty(RdfaParser.ENABLE_VOCAB_EXPANSION, true);
+        // defaults restored after requests overriding them
+        pool.setProperty(RdfaParser.ENABLE_OUTPUT_GRAPH, true);
+        pool.setProperty(RdfaParser.ENABLE_PROCESSOR_GRAPH, true);
+        pool.setProperty(RdfaParser.RDFA_VERSION_PROPERTY, RDFa.VERSION_11);
     }
 
     public static void main(String[] args) throws Exception {
@@ -94,26 +116,39 @@ public final class RdfaProcessorEndpoint extends AbstractHandler {
             sinkOutputGraph = true;
             sinkProcessorGraph = true;
         }
-        streamProcessor.setProperty(RdfaParser.ENABLE_OUTPUT_GRAPH, sinkOutputGraph);
-        streamProcessor.setProperty(RdfaParser.ENABLE_PROCESSOR_GRAPH, sinkProcessorGraph);
-
-        String rdfaversion = request.getParameter("rdfaversion");
-        if ("1.0".equals(rdfaversion)) {
-            streamProcessor.setProperty(RdfaParser.RDFA_VERSION_PROPERTY, RDFa.VERSION_10);
-        } else if ("1.1".equals(rdfaversion)) {
-            streamProcessor.setProperty(RdfaParser.RDFA_VERSION_PROPERTY, RDFa.VERSION_11);
+        PooledPipeline<CharOutputSink> pipeline;
+        try {
+            pipeline = pool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            baseRequest.setHandled(true);
+            return;
         }
+        try {
+            pipeline.setProperty(RdfaParser.ENABLE_OUTPUT_GRAPH, sinkOutputGraph);
+            pipeline.setProperty(RdfaParser.ENABLE_PROCESSOR_GRAPH, sinkProcessorGraph);
+
+            String rdfaversion = request.getParameter("rdfaversion");
+            if ("1.0".equals(rdfaversion)) {
+                pipeline.setProperty(RdfaParser.RDFA_VERSION_PROPERTY, RDFa.VERSION_10);
+            } else if ("1.1".equals(rdfaversion)) {
+                pipeline.setProperty(RdfaParser.RDFA_VERSION_PROPERTY, RDFa.VERSION_11);
+            }
 
-        System.out.println(uri);
-        URL url = new URL(uri);
-        Reader reader = new InputStreamReader(url.openStream());
+            System.out.println(uri);
+            URL url = new URL(uri);
+            Reader reader = new InputStreamReader(url.openStream());
 
-        response.setContentType("text/turtle; charset=UTF-8");
-        charOutputSink.connect(response.getWriter());
-        try {
-            streamProcessor.process(reader, uri);
-        } catch (ParseException e) {
-            // ignore
+            response.setContentType("text/turtle; charset=UTF-8");
+            pipeline.getOutput().connect(response.getWriter());
+            try {
+                pipeline.getProcessor().process(reader, uri);
+            } catch (ParseException e) {
+                // ignore
+            }
+        } finally {
+            pool.release(pipeline);
         }
         response.setStatus(HttpServletResponse.SC_OK);
         baseRequest.setHandled(true);
@@ -19,11 +19,15 @@ import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.shared.Lock;
+import org.semarglproject.rdf.EventTracer;
 import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.BatchTripleSink;
 import org.semarglproject.sink.TripleSink;
 
 /**
  * Implementation if {@link TripleSink} which feeds triples from Semargl's pipeline to Jena's {@link Model}.
+ * Also accepts blocks of triples as {@link BatchTripleSink}, e.g. from
+ * {@link org.semarglproject.sink.TripleBatcher}.
  * <p>
  *     List of supported options:
  *     <ul>
@@ -31,19 +35,23 @@ import org.semarglproject.sink.TripleSink;
  *     </ul>
  * </p>
  */
-public final class JenaSink extends AbstractJenaSink {
+public final class JenaSink extends AbstractJenaSink implements BatchTripleSink {
 
     private static final int DEFAULT_BATCH_SIZE = 512;
 
+    private static final EventTracer TRACER = EventTracer.get();
+
     private final int batchSize;
 
     private Triple[] triples;
     private int triplesSize;
+    private String baseUri;
 
     private JenaSink(Model model, int batchSize) {
         super(model);
         this.batchSize = batchSize;
     }
+
     /**
      * Instantiates sink for specified Jena {@link Model}
      * @param model model to sink triples to
@@ -53,6 +61,29 @@ public final class JenaSink extends AbstractJenaSink {
         return new JenaSink(model, DEFAULT_BATCH_SIZE);
     }
 
+    /**
+     * Instantiates sink for specified Jena {@link Model} which adds triples to model
+     * in batches of specified size
+     * @param model model to sink triples to
+     * @param batchSize number of triples added to model under single write lock
+     * @return new instance of Jena sink
+     */
+    public static TripleSink connect(Model model, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        return new JenaSink(model, batchSize);
+    }
+
+    /**
+     * Instantiates sink for specified Jena {@link Model} which accepts blocks of triples
+     * @param model model to sink triples to
+     * @return new instance of Jena sink
+     */
+    public static BatchTripleSink connectBatchSink(Model model) {
+        return new JenaSink(model, DEFAULT_BATCH_SIZE);
+    }
+
     private void newBatch() {
         triples = new Triple[batchSize];
         triplesSize = 0;
@@ -62,13 +93,40 @@ public final class JenaSink extends AbstractJenaSink {
     protected void addTriple(Node subj, Node pred, Node obj) {
         triples[triplesSize++] = new Triple(subj, pred, obj);
         if (triplesSize == batchSize) {
-            model.enterCriticalSection(Lock.WRITE);
-            model.getGraph().getBulkUpdateHandler().add(triples);
-            model.leaveCriticalSection();
+            flush();
             newBatch();
         }
     }
 
+    @Override
+    public void addTriples(String[] subjs, String[] preds, String[] objs, byte[] kinds,
+                           String[] qualifiers, int count) {
+        for (int i = 0; i < count; i++) {
+            if (kinds[i] == NON_LITERAL) {
+                addNonLiteral(subjs[i], preds[i], objs[i]);
+            } else if (kinds[i] == PLAIN_LITERAL) {
+                addPlainLiteral(subjs[i], preds[i], objs[i], qualifiers[i]);
+            } else {
+                addTypedLiteral(subjs[i], preds[i], objs[i], qualifiers[i]);
+            }
+        }
+    }
+
+    private void flush() {
+        Triple[] batch = triples;
+        if (triplesSize < batch.length) {
+            batch = new Triple[triplesSize];
+            System.arraycopy(triples, 0, batch, 0, triplesSize);
+        }
+        Object event = TRACER.begin(EventTracer.Kind.SINK_FLUSH);
+        model.enterCriticalSection(Lock.WRITE);
+        model.getGraph().getBulkUpdateHandler().add(batch);
+        model.leaveCriticalSection();
+        if (event != null) {
+            TRACER.end(event, baseUri, triplesSize, triplesSize);
+        }
+    }
+
     @Override
     public void startStream() throws ParseException {
         newBatch();
@@ -76,17 +134,13 @@ public final class JenaSink extends AbstractJenaSink {
 
     @Override
     public void endStream() throws ParseException {
-        if (triplesSize == 0) {
-            return;
+        if (triplesSize > 0) {
+            flush();
         }
-        Triple[] dummy = new Triple[triplesSize];
-        System.arraycopy(triples, 0, dummy, 0, triplesSize);
-        model.enterCriticalSection(Lock.WRITE);
-        model.getGraph().getBulkUpdateHandler().add(dummy);
-        model.leaveCriticalSection();
     }
 
     @Override
     public void setBaseUri(String baseUri) {
+        this.baseUri = baseUri;
     }
 }
@@ -21,6 +21,7 @@ import org.semarglproject.jena.core.sink.JenaSink;
 import org.semarglproject.rdf.NTriplesParser;
 import org.semarglproject.rdf.NTriplesParserTest;
 import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.TripleBatcher;
 import org.semarglproject.source.StreamProcessor;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -35,6 +36,7 @@ public final class JenaNTriplesParserTest {
 
     private Model model;
     private StreamProcessor sp;
+    private StreamProcessor spBatched;
     private NTriplesParserTest nTriplesParserTest;
 
     @BeforeClass
@@ -43,6 +45,8 @@ public final class JenaNTriplesParserTest {
         nTriplesParserTest.init();
         model = ModelFactory.createDefaultModel();
         sp = new StreamProcessor(NTriplesParser.connect(JenaSink.connect(model)));
+        spBatched = new StreamProcessor(NTriplesParser.connect(TripleBatcher.connect(
+                JenaSink.connectBatchSink(model), 7)));
     }
 
     @BeforeMethod
@@ -57,21 +61,37 @@ public final class JenaNTriplesParserTest {
 
     @Test(dataProvider = "getTestSuite")
     public void runTestSuite(NTriplesParserTest.TestCase testCase) throws Exception {
-        nTriplesParserTest.runTest(testCase, new NTriplesParserTest.SaveToFileCallback() {
-            @Override
-            public void run(Reader input, String inputUri, Writer output) throws ParseException {
-                try {
-                    sp.process(input, inputUri);
-                } finally {
-                    model.write(output, "TURTLE");
-                }
-            }
+        nTriplesParserTest.runTest(testCase, new ModelCallback(sp, "ttl"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runTestSuiteWithBatches(NTriplesParserTest.TestCase testCase) throws Exception {
+        nTriplesParserTest.runTest(testCase, new ModelCallback(spBatched, "batched.ttl"));
+    }
 
-            @Override
-            public String getOutputFileExt() {
-                return "ttl";
+    private final class ModelCallback implements NTriplesParserTest.SaveToFileCallback {
+
+        private final StreamProcessor streamProcessor;
+        private final String fileExt;
+
+        private ModelCallback(StreamProcessor streamProcessor, String fileExt) {
+            this.streamProcessor = streamProcessor;
+            this.fileExt = fileExt;
+        }
+
+        @Override
+        public void run(Reader input, String inputUri, Writer output) throws ParseException {
+            try {
+                streamProcessor.process(input, inputUri);
+            } finally {
+                model.write(output, "TURTLE");
             }
-        });
+        }
+
+        @Override
+        public String getOutputFileExt() {
+            return fileExt;
+        }
     }
 
 }
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.semarglproject.rdf.EventTracer;
+
+/**
+ * Implementation of {@link EventTracer} which emits Java Flight Recorder events.
+ * Registered as a service provider, so it's picked up by {@link EventTracer#get()} as soon as
+ * module is on classpath. When recording is off or event type is disabled, no event objects
+ * are created and instrumented code skips all bookkeeping.
+ * <p>
+ *     Recorded event types:
+ *     <ul>
+ *         <li>{@value #DOCUMENT}</li>
+ *         <li>{@value #VOCABULARY_LOAD}</li>
+ *         <li>{@value #SINK_FLUSH}</li>
+ *         <li>{@value #XML_LITERAL}</li>
+ *         <li>{@value #UNSAFE_TRIPLES_DRAIN}</li>
+ *     </ul>
+ * </p>
+ */
+public final class JfrEventTracer extends EventTracer {
+
+    /**
+     * Name of document processing event.
+     */
+    public static final String DOCUMENT = "org.semarglproject.Document";
+
+    /**
+     * Name of RDFa vocabulary fetch event.
+     */
+    public static final String VOCABULARY_LOAD = "org.semarglproject.VocabularyLoad";
+
+    /**
+     * Name of sink batch flush event.
+     */
+    public static final String SINK_FLUSH = "org.semarglproject.SinkFlush";
+
+    /**
+     * Name of rdf:XMLLiteral serialization event.
+     */
+    public static final String XML_LITERAL = "org.semarglproject.XmlLiteral";
+
+    /**
+     * Name of unsafe triple queue drain event.
+     */
+    public static final String UNSAFE_TRIPLES_DRAIN = "org.semarglproject.UnsafeTriplesDrain";
+
+    // used only to check if event type is enabled without allocating new event
+    private final SemarglEvent[] probes;
+
+    /**
+     * Instantiates tracer. Called by {@link java.util.ServiceLoader}.
+     */
+    public JfrEventTracer() {
+        Kind[] kinds = Kind.values();
+        probes = new SemarglEvent[kinds.length];
+        for (Kind kind : kinds) {
+            probes[kind.ordinal()] = newEvent(kind);
+        }
+    }
+
+    @Override
+    public Object begin(Kind kind) {
+        if (!probes[kind.ordinal()].isEnabled()) {
+            return null;
+        }
+        SemarglEvent event = newEvent(kind);
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void end(Object event, String uri, long size, long triples) {
+        SemarglEvent jfrEvent = (SemarglEvent) event;
+        jfrEvent.end();
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.uri = uri;
+            jfrEvent.size = size;
+            jfrEvent.triples = triples;
+            jfrEvent.commit();
+        }
+    }
+
+    private static SemarglEvent newEvent(Kind kind) {
+        switch (kind) {
+            case DOCUMENT:
+                return new DocumentEvent();
+            case VOCABULARY_LOAD:
+                return new VocabularyLoadEvent();
+            case SINK_FLUSH:
+                return new SinkFlushEvent();
+            case XML_LITERAL:
+                return new XmlLiteralEvent();
+            case UNSAFE_TRIPLES_DRAIN:
+                return new UnsafeTriplesDrainEvent();
+            default:
+                throw new IllegalArgumentException("Unknown event kind " + kind);
+        }
+    }
+
+    @Category("Semargl")
+    abstract static class SemarglEvent extends Event {
+        @Label("Document URI")
+        String uri;
+
+        @Label("Size")
+        @Description("Kind specific size, -1 if unknown")
+        long size;
+
+        @Label("Triples")
+        @Description("Number of triples, -1 if unknown")
+        long triples;
+    }
+
+    @Name(DOCUMENT)
+    @Label("Document")
+    @Description("Document processed by stream processor, size is number of chars or bytes read")
+    static final class DocumentEvent extends SemarglEvent {
+    }
+
+    @Name(VOCABULARY_LOAD)
+    @Label("Vocabulary Load")
+    @Description("RDFa vocabulary fetch, size is number of vocabulary terms")
+    static final class VocabularyLoadEvent extends SemarglEvent {
+    }
+
+    @Name(SINK_FLUSH)
+    @Label("Sink Flush")
+    @Description("Batch of triples flushed to underlying store, size is batch capacity")
+    static final class SinkFlushEvent extends SemarglEvent {
+    }
+
+    @Name(XML_LITERAL)
+    @Label("XML Literal")
+    @Description("Serialization of rdf:XMLLiteral value, size is literal length")
+    static final class XmlLiteralEvent extends SemarglEvent {
+    }
+
+    @Name(UNSAFE_TRIPLES_DRAIN)
+    @Label("Unsafe Triples Drain")
+    @Description("Drain of triples queued until their subject was resolved, size is queue length")
+    static final class UnsafeTriplesDrainEvent extends SemarglEvent {
+    }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.semarglproject.jsonld.JsonLdParser;
+import org.semarglproject.rdf.EventTracer;
+import org.semarglproject.rdf.NQuadsSerializer;
+import org.semarglproject.rdf.NTriplesParser;
+import org.semarglproject.rdf.NTriplesSerializer;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.rdfa.RdfaParser;
+import org.semarglproject.sink.CharOutputSink;
+import org.semarglproject.source.BaseStreamProcessor;
+import org.semarglproject.source.SniffingStreamProcessor;
+import org.semarglproject.source.StreamProcessor;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public final class JfrEventTracerTest {
+
+    private static final String BASE = "http://example.com/doc";
+
+    private static final String NTRIPLES = "<http://example.com/a> <http://example.com/b> <http://example.com/c> .\n"
+            + "<http://example.com/a> <http://example.com/b> \"d\" .\n";
+
+    private static final String XHTML = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body>"
+            + "<div about=\"#a\" property=\"http://example.com/b\" datatype=\"rdf:XMLLiteral\">"
+            + "<b>bold</b> text</div></body></html>";
+
+    private static final String JSON_LD = "{\"http://example.com/b\": \"c\", \"@id\": \"http://example.com/a\"}";
+
+    @Test
+    public void testTracerIsRegistered() {
+        assertTrue(EventTracer.get() instanceof JfrEventTracer);
+    }
+
+    @Test
+    public void testDisabledEventsAreNotCreated() {
+        assertNull(EventTracer.get().begin(EventTracer.Kind.DOCUMENT));
+    }
+
+    @Test
+    public void testDocumentEvent() throws Exception {
+        List<RecordedEvent> events = record(JfrEventTracer.DOCUMENT, new Runnable() {
+            @Override
+            public void run() {
+                process(new StreamProcessor(NTriplesParser.connect(NTriplesSerializer.connect(newOutput()))),
+                        NTRIPLES);
+            }
+        });
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getString("uri"), BASE);
+        assertEquals(events.get(0).getLong("size"), NTRIPLES.length());
+    }
+
+    @Test
+    public void testSniffedDocumentEvent() throws Exception {
+        List<RecordedEvent> events = record(JfrEventTracer.DOCUMENT, new Runnable() {
+            @Override
+            public void run() {
+                process(new SniffingStreamProcessor().register(SniffingStreamProcessor.NTRIPLES,
+                        NTriplesParser.connect(NTriplesSerializer.connect(newOutput()))), NTRIPLES);
+            }
+        });
+        // routed document mustn't be traced by both sniffing and selected processors
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getString("uri"), BASE);
+    }
+
+    @Test
+    public void testXmlLiteralEvent() throws Exception {
+        List<RecordedEvent> events = record(JfrEventTracer.XML_LITERAL, new Runnable() {
+            @Override
+            public void run() {
+                process(new StreamProcessor(RdfaParser.connect(NTriplesSerializer.connect(newOutput()))), XHTML);
+            }
+        });
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getString("uri"), BASE);
+        assertTrue(events.get(0).getLong("size") > "<b>bold</b> text".length());
+        assertEquals(events.get(0).getLong("triples"), 1);
+    }
+
+    @Test
+    public void testUnsafeTriplesDrainEvent() throws Exception {
+        List<RecordedEvent> events = record(JfrEventTracer.UNSAFE_TRIPLES_DRAIN, new Runnable() {
+            @Override
+            public void run() {
+                process(new StreamProcessor(JsonLdParser.connect(NQuadsSerializer.connect(newOutput()))), JSON_LD);
+            }
+        });
+        long triples = 0;
+        for (RecordedEvent event : events) {
+            assertEquals(event.getString("uri"), BASE);
+            triples += event.getLong("triples");
+        }
+        assertEquals(triples, 1);
+    }
+
+    private static CharOutputSink newOutput() {
+        CharOutputSink output = new CharOutputSink();
+        output.connect(new StringWriter());
+        return output;
+    }
+
+    private static void process(BaseStreamProcessor streamProcessor, String document) {
+        try {
+            streamProcessor.process(new StringReader(document), BASE);
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<RecordedEvent> record(String eventName, Runnable action) throws IOException {
+        Recording recording = new Recording();
+        File file = File.createTempFile("semargl", ".jfr");
+        try {
+            recording.enable(eventName).withoutThreshold();
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file.toPath());
+            List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                if (event.getEventType().getName().equals(eventName)) {
+                    result.add(event);
+                }
+            }
+            return result;
+        } finally {
+            recording.close();
+            file.delete();
+        }
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package org.semarglproject.jsonld;
 
+import org.semarglproject.rdf.TermDictionary;
+import org.semarglproject.rdf.TripleFilter;
 import org.semarglproject.vocab.RDF;
 
 import java.util.HashMap;
@@ -27,6 +29,8 @@ import java.util.Map;
 final class DocumentContext {
 
     String iri;
+    TermDictionary termDictionary;
+    TripleFilter tripleFilter;
 
     private Map<String, String> bnodeMapping = new HashMap<String, String>();
     private int nextBnodeId;
@@ -59,6 +63,13 @@ final class DocumentContext {
         return RDF.BNODE_PREFIX + 'n' + nextBnodeId++;
     }
 
+    String intern(String term) {
+        if (termDictionary == null || term == null || term.startsWith(RDF.BNODE_PREFIX)) {
+            return term;
+        }
+        return termDictionary.intern(term);
+    }
+
     void clear() {
         bnodeMapping.clear();
         iri = null;
@@ -15,6 +15,8 @@
  */
 package org.semarglproject.jsonld;
 
+import org.semarglproject.rdf.EventTracer;
+import org.semarglproject.rdf.TripleFilter;
 import org.semarglproject.ri.MalformedCurieException;
 import org.semarglproject.ri.MalformedIriException;
 import org.semarglproject.ri.RIUtils;
@@ -39,6 +41,8 @@ final class EvalContext {
     static final int PARENT_SAFE = 4;
     static final int SAFE_TO_SINK_TRIPLES = ID_DECLARED | CONTEXT_DECLARED | PARENT_SAFE;
 
+    private static final EventTracer TRACER = EventTracer.get();
+
     String base;
     String graph;
     String subject;
@@ -177,6 +181,12 @@ final class EvalContext {
     }
 
     private void sinkUnsafeTriples() {
+        Object event = TRACER.begin(EventTracer.Kind.UNSAFE_TRIPLES_DRAIN);
+        int queued = 0;
+        if (event != null) {
+            queued = (nonLiteralQueue.size() + plainLiteralQueue.size() + typedLiteralQueue.size()) / 3;
+        }
+        int sunk = queued;
         try {
             if (!subject.startsWith(RDF.BNODE_PREFIX)) {
                 subject = resolveCurieOrIri(subject, false);
@@ -186,6 +196,7 @@ final class EvalContext {
             nonLiteralQueue.clear();
             plainLiteralQueue.clear();
             typedLiteralQueue.clear();
+            sunk = 0;
         }
         while (!nonLiteralQueue.isEmpty()) {
             addNonLiteralUnsafe(nonLiteralQueue.poll(), nonLiteralQueue.poll(), nonLiteralQueue.poll());
@@ -199,6 +210,9 @@ final class EvalContext {
         if (parent != null) {
             parent.children.remove(this);
         }
+        if (event != null) {
+            TRACER.end(event, documentContext.iri, queued, sunk);
+        }
     }
 
     // TODO: check for property reordering issues
@@ -259,13 +273,37 @@ final class EvalContext {
             parent.addNonLiteral(predicate, object, base);
         } else if (state == SAFE_TO_SINK_TRIPLES) {
             addNonLiteralUnsafe(predicate, object, base);
-        } else {
+        } else if (isQueueable(predicate)) {
             nonLiteralQueue.offer(predicate);
             nonLiteralQueue.offer(object);
             nonLiteralQueue.offer(base);
         }
     }
 
+    /**
+     * Checks if triple with specified predicate should be queued until context becomes safe.
+     * Triples rejected by pushed down filter are dropped only when mappings can't change anymore.
+     */
+    private boolean isQueueable(String predicate) {
+        TripleFilter filter = documentContext.tripleFilter;
+        if (filter == null || !hasFinalMappings()) {
+            return true;
+        }
+        try {
+            return filter.acceptsPredicate(resolve(predicate));
+        } catch (MalformedIriException e) {
+            // such triple is dropped when sinked anyway
+            return false;
+        }
+    }
+
+    private boolean hasFinalMappings() {
+        if ((state & CONTEXT_DECLARED) == 0) {
+            return false;
+        }
+        return nullified || parent == null || parent.hasFinalMappings();
+    }
+
     private void addNonLiteralUnsafe(String predicate, String object, String base) {
         try {
             if (object == null) {
@@ -273,20 +311,21 @@ final class EvalContext {
             }
 
             boolean reversed = this.reversed ^ JsonLd.REVERSE_KEY.equals(getDtMapping(predicate));
-            String resolvedPredicate = resolve(predicate);
+            String resolvedPredicate = documentContext.intern(resolve(predicate));
 
             // FIXME: dirty hack
             String oldBase = this.base;
             if (base != null) {
                 this.base = base;
             }
-            object = resolve(object, false, resolvedPredicate.equals(RDF.TYPE));
+            object = documentContext.intern(resolve(object, false, resolvedPredicate.equals(RDF.TYPE)));
             this.base = oldBase;
 
+            String resolvedSubject = documentContext.intern(subject);
             if (reversed) {
-                sink.addNonLiteral(object, resolvedPredicate, subject, graph);
+                sink.addNonLiteral(object, resolvedPredicate, resolvedSubject, graph);
             } else {
-                sink.addNonLiteral(subject, resolvedPredicate, object, graph);
+                sink.addNonLiteral(resolvedSubject, resolvedPredicate, object, graph);
             }
         } catch (MalformedIriException e) {
         }
@@ -298,7 +337,7 @@ final class EvalContext {
             parent.addPlainLiteral(object, lang);
         } else if (state == SAFE_TO_SINK_TRIPLES) {
             addPlainLiteralUnsafe(predicate, object, lang);
-        } else {
+        } else if (isQueueable(predicate)) {
             plainLiteralQueue.offer(predicate);
             plainLiteralQueue.offer(object);
             plainLiteralQueue.offer(lang);
@@ -330,7 +369,8 @@ final class EvalContext {
             if (reversed) {
                 sink.addNonLiteral(object, resolve(predicate), subject, graph);
             } else {
-                sink.addPlainLiteral(subject, resolve(predicate), object, resolvedLang, graph);
+                sink.addPlainLiteral(documentContext.intern(subject), documentContext.intern(resolve(predicate)),
+                        object, documentContext.intern(resolvedLang), graph);
             }
         } catch (MalformedIriException e) {
         }
@@ -341,7 +381,7 @@ final class EvalContext {
             parent.addTypedLiteral(object, dt);
         } else if (state == SAFE_TO_SINK_TRIPLES) {
             addTypedLiteralUnsafe(predicate, object, dt);
-        } else {
+        } else if (isQueueable(predicate)) {
             typedLiteralQueue.offer(predicate);
             typedLiteralQueue.offer(object);
             typedLiteralQueue.offer(dt);
@@ -354,7 +394,8 @@ final class EvalContext {
             if (reversed) {
                 sink.addNonLiteral(object, resolve(predicate), subject, graph);
             } else {
-                sink.addTypedLiteral(subject, resolve(predicate), object, resolve(dt), graph);
+                sink.addTypedLiteral(documentContext.intern(subject), documentContext.intern(resolve(predicate)),
+                        object, documentContext.intern(resolve(dt)), graph);
             }
         } catch (MalformedIriException e) {
         }
@@ -16,6 +16,8 @@
 
 package org.semarglproject.jsonld;
 
+import org.semarglproject.rdf.TermDictionary;
+import org.semarglproject.rdf.TripleFilter;
 import org.semarglproject.ri.MalformedIriException;
 import org.semarglproject.sink.QuadSink;
 import org.semarglproject.vocab.JsonLd;
@@ -380,4 +382,12 @@ final class JsonLdContentHandler {
     public void setBaseUri(String baseUri) {
         dh.iri = baseUri;
     }
+
+    public void setTermDictionary(TermDictionary termDictionary) {
+        dh.termDictionary = termDictionary;
+    }
+
+    public void setTripleFilter(TripleFilter tripleFilter) {
+        dh.tripleFilter = tripleFilter;
+    }
 }
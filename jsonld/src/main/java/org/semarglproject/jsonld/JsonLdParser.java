@@ -18,6 +18,8 @@ package org.semarglproject.jsonld;
 
 import org.semarglproject.rdf.ParseException;
 import org.semarglproject.rdf.ProcessorGraphHandler;
+import org.semarglproject.rdf.TermDictionary;
+import org.semarglproject.rdf.TripleFilter;
 import org.semarglproject.sink.CharSink;
 import org.semarglproject.sink.Pipe;
 import org.semarglproject.sink.QuadSink;
@@ -36,6 +38,8 @@ import java.util.LinkedList;
  *     <ul>
  *         <li>{@link StreamProcessor#PROCESSOR_GRAPH_HANDLER_PROPERTY}</li>
  *         <li>{@link StreamProcessor#ENABLE_ERROR_RECOVERY}</li>
+ *         <li>{@link StreamProcessor#TERM_DICTIONARY_PROPERTY}</li>
+ *         <li>{@link StreamProcessor#TRIPLE_FILTER_PROPERTY}</li>
  *     </ul>
  * </p>
  */
@@ -327,6 +331,10 @@ public final class JsonLdParser extends Pipe<TripleSink> implements CharSink {
             processorGraphHandler = (ProcessorGraphHandler) value;
         } else if (StreamProcessor.ENABLE_ERROR_RECOVERY.equals(key) && value instanceof Boolean) {
             ignoreErrors = (Boolean) value;
+        } else if (StreamProcessor.TERM_DICTIONARY_PROPERTY.equals(key) && value instanceof TermDictionary) {
+            contentHandler.setTermDictionary((TermDictionary) value);
+        } else if (StreamProcessor.TRIPLE_FILTER_PROPERTY.equals(key) && value instanceof TripleFilter) {
+            contentHandler.setTripleFilter((TripleFilter) value);
         }
         return false;
     }
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.jsonld;
+
+import org.semarglproject.rdf.NQuadsSerializer;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.TripleFilter;
+import org.semarglproject.sink.CharOutputSink;
+import org.semarglproject.sink.QuadSink;
+import org.semarglproject.sink.TripleFilterPipe;
+import org.semarglproject.source.StreamProcessor;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public final class JsonLdTripleFilterTest {
+
+    private static final String BASE = "http://example.org/doc";
+    private static final String A = "http://a.example/";
+    private static final String XSD_INT = "http://www.w3.org/2001/XMLSchema#int";
+
+    // first node declares context before its properties and its id after them, so its triples are queued
+    // with final mappings; second node is safe to sink right away; third node declares context after
+    // its properties, so its mappings may still change
+    private static final String DOCUMENT = "[{\"@context\": {\"ex\": \"" + A + "\"},"
+            + " \"ex:p\": {\"@value\": \"hello\", \"@language\": \"en\"},"
+            + " \"ex:q\": {\"@id\": \"" + A + "o\"},"
+            + " \"ex:n\": {\"@value\": \"1\", \"@type\": \"" + XSD_INT + "\"},"
+            + " \"ex:r\": {\"@value\": \"x\", \"@type\": \"" + A + "type\"},"
+            + " \"@id\": \"" + A + "s\"},"
+            + "{\"@id\": \"http://b.example/s\","
+            + " \"" + A + "p\": {\"@value\": \"bonjour\", \"@language\": \"fr\"},"
+            + " \"" + A + "q\": {\"@id\": \"_:b\"}},"
+            + "{\"" + A + "p\": \"late\","
+            + " \"" + A + "r\": \"plain\","
+            + " \"@context\": {\"ex\": \"" + A + "\"}, \"@id\": \"http://c.example/s\"}]";
+
+    // each token identifies single line of unfiltered output
+    private static final String[] TOKENS = {"hello", "<" + A + "o>", "\"1\"", "\"x\"", "bonjour", "_:", "late",
+            "plain"};
+
+    @DataProvider
+    public Object[][] getRejectingFilters() {
+        return new Object[][] {
+                {new TripleFilter().subjectPrefixes(A),
+                        new String[] {"hello", "<" + A + "o>", "\"1\"", "\"x\""}, new String[0]},
+                {new TripleFilter().predicates(A + "p", A + "q"),
+                        new String[] {"hello", "<" + A + "o>", "bonjour", "_:", "late"},
+                        new String[] {"\"1\"", "\"x\""}},
+                {new TripleFilter().objectKinds(TripleFilter.IRI | TripleFilter.TYPED_LITERAL),
+                        new String[] {"<" + A + "o>", "\"1\"", "\"x\""}, new String[0]},
+                {new TripleFilter().datatypes(XSD_INT),
+                        new String[] {"hello", "<" + A + "o>", "\"1\"", "bonjour", "_:", "late", "plain"},
+                        new String[0]},
+                {new TripleFilter().languages("FR", ""),
+                        new String[] {"<" + A + "o>", "\"1\"", "\"x\"", "bonjour", "_:", "late", "plain"},
+                        new String[0]},
+                {new TripleFilter().subjectPrefixes("http://b.example/").predicates(A + "q"),
+                        new String[] {"_:"}, new String[] {"hello", "\"1\"", "\"x\""}},
+        };
+    }
+
+    /**
+     * Parser itself drops only queued triples with rejected predicates once node mappings are final,
+     * other triples are dropped by pipe.
+     */
+    @Test(dataProvider = "getRejectingFilters")
+    public void testRejectingFilterProducesExactOutput(TripleFilter filter, String[] accepted,
+                                                       String[] droppedFromQueue) throws ParseException {
+        List<String> all = parse(DOCUMENT, null, false, false);
+        assertEquals(all.size(), TOKENS.length);
+        for (String token : TOKENS) {
+            assertEquals(select(all, token).size(), 1, token);
+        }
+        List<String> expected = select(all, accepted);
+        assertEquals(parse(DOCUMENT, filter, true, false), expected);
+        assertEquals(parse(DOCUMENT, filter, true, true), expected);
+
+        List<String> pushedDown = new ArrayList<String>(all);
+        pushedDown.removeAll(select(all, droppedFromQueue));
+        assertEquals(parse(DOCUMENT, filter, false, true), pushedDown);
+    }
+
+    private static List<String> select(List<String> lines, String... tokens) {
+        List<String> result = new ArrayList<String>();
+        for (String line : lines) {
+            for (String token : tokens) {
+                if (line.contains(token)) {
+                    result.add(line);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param filter filter to apply or null
+     * @param pipe apply filter with {@link TripleFilterPipe}
+     * @param pushdown push filter down to parser
+     * @return sorted lines of NQuads output
+     */
+    private static List<String> parse(String document, TripleFilter filter, boolean pipe, boolean pushdown)
+            throws ParseException {
+        StringWriter output = new StringWriter();
+        CharOutputSink charOutputSink = new CharOutputSink("UTF-8");
+        charOutputSink.connect(output);
+        QuadSink sink = NQuadsSerializer.connect(charOutputSink);
+        if (pipe) {
+            sink = TripleFilterPipe.connect(sink, filter);
+        }
+        StreamProcessor streamProcessor = new StreamProcessor(JsonLdParser.connect(sink));
+        if (pushdown) {
+            streamProcessor.setProperty(StreamProcessor.TRIPLE_FILTER_PROPERTY, filter);
+        }
+        streamProcessor.process(new StringReader(document), BASE);
+        List<String> lines = new ArrayList<String>();
+        for (String line : output.toString().split("\n")) {
+            if (line.trim().length() > 0) {
+                lines.add(line.trim());
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+}
@@ -15,7 +15,12 @@
  */
 package org.semarglproject.rdf;
 
+import org.semarglproject.sink.ByteSink;
+import org.semarglproject.sink.CharSequenceAdapter;
+import org.semarglproject.sink.CharSequenceQuadSink;
 import org.semarglproject.sink.CharSink;
+import org.semarglproject.sink.IdEncoder;
+import org.semarglproject.sink.IdQuadSink;
 import org.semarglproject.sink.Pipe;
 import org.semarglproject.sink.QuadSink;
 import org.semarglproject.source.StreamProcessor;
@@ -29,10 +34,11 @@ import java.util.BitSet;
  *     <ul>
  *         <li>{@link org.semarglproject.source.StreamProcessor#PROCESSOR_GRAPH_HANDLER_PROPERTY}</li>
  *         <li>{@link org.semarglproject.source.StreamProcessor#ENABLE_ERROR_RECOVERY}</li>
+ *         <li>{@link org.semarglproject.source.StreamProcessor#TERM_DICTIONARY_PROPERTY}</li>
  *     </ul>
  * </p>
  */
-public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
+public final class NQuadsParser extends Pipe<QuadSink> implements CharSink, ByteSink {
 
     /**
      * Class URI for errors produced by a parser
@@ -72,8 +78,25 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
     private String literalType = null; // type or lang for non-plain literals
     private byte quadType = -1;
 
+    // set when parser is connected to dictionary encoded sink
+    private final IdEncoder idEncoder;
+    private long subjId = TermIdDictionary.NO_ID;
+    private long predId = TermIdDictionary.NO_ID;
+    private long objId = TermIdDictionary.NO_ID;
+
+    // set when parser is connected to sink accepting char sequence views
+    private final CharSequenceAdapter viewSink;
+    private TermView subjView = null;
+    private TermView predView = null;
+    private TermView objView = null;
+    private TermView graphView = null;
+    private TermView qualifierView = null;
+    private CharSequence literalQualifier = null;
+    private int viewCount = 0;
+
     private ProcessorGraphHandler processorGraphHandler = null;
     private boolean ignoreErrors = false;
+    private TermDictionary termDictionary = null;
     private boolean skipSentence = false;
 
     private short parsingState;
@@ -81,10 +104,34 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
     private int tokenStartPos;
     private short charsToEscape = 0;
     private boolean waitingForSentenceEnd = false;
-    private StringBuilder addBuffer = null;
+    private boolean escapeSeen = false;
+
+    // input buffer being processed, only one of them is set at a time
+    private char[] charBuffer = null;
+    private byte[] byteBuffer = null;
+    // undecoded bytes of token split between byte buffers
+    private byte[] byteAddBuffer = null;
+    private int byteAddBufferSize = 0;
+    // chars of token split between char buffers
+    private char[] charAddBuffer = null;
+    private int charAddBufferSize = 0;
+
+    // scratch buffers reused across calls
+    private final TermView tokenView = new TermView();
+    private final char[] singleChar = new char[1];
+    private char[] stringBuffer = new char[256];
 
     private NQuadsParser(QuadSink sink) {
         super(sink);
+        idEncoder = sink instanceof IdEncoder ? (IdEncoder) sink : null;
+        viewSink = sink instanceof CharSequenceAdapter ? (CharSequenceAdapter) sink : null;
+        if (viewSink != null) {
+            subjView = new TermView();
+            predView = new TermView();
+            objView = new TermView();
+            graphView = new TermView();
+            qualifierView = new TermView();
+        }
     }
 
     /**
@@ -96,6 +143,26 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
         return new NQuadsParser(sink);
     }
 
+    /**
+     * Creates instance of NQuadsParser connected to specified dictionary encoded sink.
+     * IRIs and BNodes are looked up directly in input buffers, so known terms don't produce garbage.
+     * @param sink sink to be connected to
+     * @return instance of NQuadsParser
+     */
+    public static CharSink connect(IdQuadSink sink) {
+        return new NQuadsParser(IdEncoder.connect(sink));
+    }
+
+    /**
+     * Creates instance of NQuadsParser connected to specified sink. Terms are passed as views over
+     * parser's buffers, so no strings are created for terms without escape sequences.
+     * @param sink sink to be connected to
+     * @return instance of NQuadsParser
+     */
+    public static CharSink connect(CharSequenceQuadSink sink) {
+        return new NQuadsParser(CharSequenceAdapter.connect(sink));
+    }
+
     private void error(String msg) throws ParseException {
         if (processorGraphHandler != null) {
             processorGraphHandler.error(ERROR, msg);
@@ -111,14 +178,18 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
 
     @Override
     public NQuadsParser process(String str) throws ParseException {
-        return process(str.toCharArray(), 0, str.length());
+        int length = str.length();
+        if (stringBuffer.length < length) {
+            stringBuffer = new char[Math.max(stringBuffer.length * 2, length)];
+        }
+        str.getChars(0, length, stringBuffer, 0);
+        return process(stringBuffer, 0, length);
     }
 
     @Override
     public NQuadsParser process(char ch) throws ParseException {
-        char[] buffer = new char[1];
-        buffer[0] = ch;
-        return process(buffer, 0, 1);
+        singleChar[0] = ch;
+        return process(singleChar, 0, 1);
     }
 
     @Override
@@ -128,80 +199,151 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
         }
         int end = start + count;
 
+        charBuffer = buffer;
         for (int pos = start; pos < end; pos++) {
-            if (skipSentence && buffer[pos] != SENTENCE_END) {
-                continue;
-            } else {
-                skipSentence = false;
-            }
+            processChar(buffer[pos], pos);
+        }
+        if (viewSink != null) {
+            // buffer can be reused by caller, so terms of incomplete quad are copied
+            subjView.detach();
+            predView.detach();
+            objView.detach();
+            qualifierView.detach();
+        }
+        charBuffer = null;
+        if (tokenStartPos != -1) {
+            appendChars(buffer, tokenStartPos, end - tokenStartPos);
+        }
+        return this;
+    }
 
-            if (parsingState == PARSING_OUTSIDE) {
-                processOutsideChar(buffer, pos);
-            } else if (parsingState == PARSING_COMMENT) {
-                if (buffer[pos] == '\n' || buffer[pos] == '\r') {
-                    parsingState = PARSING_OUTSIDE;
-                }
-            } else if (parsingState == PARSING_URI) {
-                if (buffer[pos] == '>') {
-                    onNonLiteral(unescape(extractToken(buffer, pos, 1)));
-                    parsingState = PARSING_OUTSIDE;
-                }
-            } else if (parsingState == PARSING_BNODE) {
-                if (WHITESPACE.get(buffer[pos]) || buffer[pos] == SENTENCE_END) {
-                    onNonLiteral(extractToken(buffer, pos - 1, 0));
-                    parsingState = PARSING_OUTSIDE;
+    /**
+     * Scans UTF-8 encoded input without decoding it. All syntax characters are ASCII and can't
+     * appear inside of multibyte sequences, so only tokens containing non-ASCII bytes are decoded.
+     */
+    @Override
+    public NQuadsParser process(byte[] buffer, int start, int count) throws ParseException {
+        if (tokenStartPos != -1) {
+            tokenStartPos = start;
+        }
+        int end = start + count;
+
+        byteBuffer = buffer;
+        for (int pos = start; pos < end; pos++) {
+            processChar((char) (buffer[pos] & 0xFF), pos);
+        }
+        byteBuffer = null;
+        if (tokenStartPos != -1) {
+            appendBytes(buffer, tokenStartPos, end - tokenStartPos);
+        }
+        return this;
+    }
+
+    private void processChar(char ch, int pos) throws ParseException {
+        if (skipSentence && ch != SENTENCE_END) {
+            return;
+        } else {
+            skipSentence = false;
+        }
+
+        if (parsingState == PARSING_OUTSIDE) {
+            processOutsideChar(ch, pos);
+        } else if (parsingState == PARSING_COMMENT) {
+            if (ch == '\n' || ch == '\r') {
+                parsingState = PARSING_OUTSIDE;
+            }
+        } else if (parsingState == PARSING_URI) {
+            if (ch == '>') {
+                if (idEncoder != null) {
+                    onNonLiteral(encodeIriToken(pos));
+                } else if (viewSink != null) {
+                    extractTerm(nextView(), pos, 1);
+                    onNonLiteralView();
+                } else {
+                    onNonLiteral(intern(extractTerm(tokenView, pos, 1)));
                 }
-            } else if (parsingState == PARSING_LITERAL) {
-                processLiteralChar(buffer, pos);
-            } else if (parsingState == PARSING_AFTER_LITERAL) {
-                if (buffer[pos] == '@' || buffer[pos] == '^') {
-                    tokenStartPos = pos;
-                    parsingState = PARSING_LITERAL_TYPE;
-                } else if (WHITESPACE.get(buffer[pos]) || buffer[pos] == '<') {
-                    onPlainLiteral(literal, null);
-                    parsingState = PARSING_OUTSIDE;
-                    processOutsideChar(buffer, pos);
+                parsingState = PARSING_OUTSIDE;
+            } else if (ch == '\\') {
+                escapeSeen = true;
+            }
+        } else if (parsingState == PARSING_BNODE) {
+            if (WHITESPACE.get(ch) || ch == SENTENCE_END) {
+                if (idEncoder != null) {
+                    onNonLiteral(encodeBnodeToken(pos - 1));
+                } else if (viewSink != null) {
+                    extractToken(nextView(), pos - 1, 0);
+                    onNonLiteralView();
                 } else {
-                    error("Unexpected character '" + buffer[pos] + "' after literal in string '" + new String(buffer) + "'");
+                    extractToken(tokenView, pos - 1, 0);
+                    onNonLiteral(tokenView.toString());
                 }
-            } else if (parsingState == PARSING_LITERAL_TYPE) {
-                processLiteralTypeChar(buffer, pos);
+                parsingState = PARSING_OUTSIDE;
             }
-        }
-        if (tokenStartPos != -1) {
-            if (addBuffer == null) {
-                addBuffer = new StringBuilder();
+        } else if (parsingState == PARSING_LITERAL) {
+            processLiteralChar(ch, pos);
+        } else if (parsingState == PARSING_AFTER_LITERAL) {
+            if (ch == '@' || ch == '^') {
+                tokenStartPos = pos;
+                parsingState = PARSING_LITERAL_TYPE;
+            } else if (WHITESPACE.get(ch) || ch == '<') {
+                if (viewSink != null) {
+                    onPlainLiteralView(null);
+                } else {
+                    onPlainLiteral(literal, null);
+                }
+                parsingState = PARSING_OUTSIDE;
+                processOutsideChar(ch, pos);
+            } else {
+                error("Unexpected character '" + ch + "' after literal");
             }
-            addBuffer.append(buffer, tokenStartPos, end - tokenStartPos);
+        } else if (parsingState == PARSING_LITERAL_TYPE) {
+            processLiteralTypeChar(ch, pos);
         }
-        return this;
     }
 
-    private void processLiteralChar(char[] buffer, int pos) throws ParseException {
-        if (charsToEscape == 9 && buffer[pos] == 'u') {
+    private void processLiteralChar(char ch, int pos) throws ParseException {
+        if (charsToEscape == 9 && ch == 'u') {
             charsToEscape -= 5;
-        } else if (charsToEscape == 9 && buffer[pos] != 'U') {
+        } else if (charsToEscape == 9 && ch != 'U') {
             charsToEscape = 0;
         } else if (charsToEscape > 0) {
             charsToEscape--;
         } else {
-            if (buffer[pos] == '\"') {
-                literal = unescape(extractToken(buffer, pos, 1));
+            if (ch == '\"') {
+                if (viewSink != null) {
+                    extractTerm(objView, pos, 1);
+                } else {
+                    literal = extractTerm(tokenView, pos, 1).toString();
+                }
                 parsingState = PARSING_AFTER_LITERAL;
-            } else if (buffer[pos] == '\\') {
+            } else if (ch == '\\') {
                 charsToEscape = 9;
+                escapeSeen = true;
             }
         }
     }
 
-    private void processLiteralTypeChar(char[] buffer, int pos) throws ParseException {
-        if (WHITESPACE.get(buffer[pos])) {
-            String type = extractToken(buffer, pos, 0);
-            int trimSize = type.charAt(type.length() - 1) == SENTENCE_END ? 1 : 0;
+    private void processLiteralTypeChar(char ch, int pos) throws ParseException {
+        if (WHITESPACE.get(ch)) {
+            TermView type = viewSink != null ? qualifierView : tokenView;
+            extractToken(type, pos, 0);
+            int length = type.length();
+            int trimSize = type.charAt(length - 1) == SENTENCE_END ? 1 : 0;
             if (type.charAt(0) == '@') {
-                onPlainLiteral(literal, type.substring(1, type.length() - 1 - trimSize));
-            } else if (type.startsWith("^^<") && type.charAt(type.length() - 2) == '>') {
-                onTypedLiteral(literal, type.substring(3, type.length() - 2 - trimSize));
+                type.narrow(1, length - 1 - trimSize);
+                if (viewSink != null) {
+                    onPlainLiteralView(type);
+                } else {
+                    onPlainLiteral(literal, intern(type));
+                }
+            } else if (length > 3 && type.charAt(0) == '^' && type.charAt(1) == '^' && type.charAt(2) == '<'
+                    && type.charAt(length - 2) == '>') {
+                type.narrow(3, length - 2 - trimSize);
+                if (viewSink != null) {
+                    onTypedLiteralView(type);
+                } else {
+                    onTypedLiteral(literal, intern(type));
+                }
             } else {
                 error("Literal type '" + type + "' can not be parsed");
             }
@@ -212,8 +354,8 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
         }
     }
 
-    private void processOutsideChar(char[] buffer, int pos) throws ParseException {
-        switch (buffer[pos]) {
+    private void processOutsideChar(char ch, int pos) throws ParseException {
+        switch (ch) {
             case '\"':
                 parsingState = PARSING_LITERAL;
                 tokenStartPos = pos;
@@ -233,8 +375,8 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
                 finishSentence();
                 break;
             default:
-                if (!WHITESPACE.get(buffer[pos])) {
-                    error("Unexpected character '" + buffer[pos] + "'");
+                if (!WHITESPACE.get(ch)) {
+                    error("Unexpected character '" + ch + "'");
                 }
         }
     }
@@ -263,18 +405,88 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
         }
     }
 
+    private void onNonLiteral(long id) throws ParseException {
+        if (waitingForSentenceEnd) {
+            error("End of sentence expected");
+        }
+        if (subjId == TermIdDictionary.NO_ID) {
+            subjId = id;
+        } else if (predId == TermIdDictionary.NO_ID) {
+            predId = id;
+        } else if (objId == TermIdDictionary.NO_ID) {
+            objId = id;
+        } else {
+            idEncoder.addQuad(subjId, predId, objId, id);
+            resetQuad();
+        }
+    }
+
     private void onPlainLiteral(String value, String lang) throws ParseException {
+        if (idEncoder != null) {
+            objId = idEncoder.encodePlainLiteral(value, lang);
+            return;
+        }
         literal = value;
         literalType = lang;
         quadType = OBJECT_PLAIN_LITERAL;
     }
 
     private void onTypedLiteral(String value, String type) throws ParseException {
+        if (idEncoder != null) {
+            objId = idEncoder.encodeTypedLiteral(value, type);
+            return;
+        }
         literal = value;
         literalType = type;
         quadType = OBJECT_TYPED_LITERAL;
     }
 
+    private TermView nextView() {
+        if (viewCount == 0) {
+            return subjView;
+        } else if (viewCount == 1) {
+            return predView;
+        } else if (viewCount == 2) {
+            return objView;
+        }
+        return graphView;
+    }
+
+    private void onNonLiteralView() throws ParseException {
+        if (waitingForSentenceEnd) {
+            error("End of sentence expected");
+        }
+        if (viewCount < 3) {
+            viewCount++;
+            quadType = OBJECT_NON_LITERAL;
+        } else {
+            onGraphView();
+        }
+    }
+
+    private void onPlainLiteralView(CharSequence lang) throws ParseException {
+        literalQualifier = lang;
+        quadType = OBJECT_PLAIN_LITERAL;
+        viewCount = 3;
+    }
+
+    private void onTypedLiteralView(CharSequence type) throws ParseException {
+        literalQualifier = type;
+        quadType = OBJECT_TYPED_LITERAL;
+        viewCount = 3;
+    }
+
+    private void onGraphView() throws ParseException {
+        if (quadType == OBJECT_PLAIN_LITERAL) {
+            viewSink.addPlainLiteral(subjView, predView, objView, literalQualifier, graphView);
+        } else if (quadType == OBJECT_TYPED_LITERAL) {
+            viewSink.addTypedLiteral(subjView, predView, objView, literalQualifier, graphView);
+        } else if (quadType == OBJECT_NON_LITERAL) {
+            viewSink.addNonLiteral(subjView, predView, objView, graphView);
+        }
+        resetQuad();
+    }
+
     private void onGraph(String value) throws ParseException {
         if (quadType == OBJECT_PLAIN_LITERAL) {
             sink.addPlainLiteral(subj, pred, literal, literalType, value);
@@ -296,24 +508,117 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
             processorGraphHandler = (ProcessorGraphHandler) value;
         } else if (StreamProcessor.ENABLE_ERROR_RECOVERY.equals(key) && value instanceof Boolean) {
             ignoreErrors = (Boolean) value;
+        } else if (StreamProcessor.TERM_DICTIONARY_PROPERTY.equals(key) && value instanceof TermDictionary) {
+            termDictionary = (TermDictionary) value;
         }
         return false;
     }
 
-    private String extractToken(char[] buffer, int tokenEndPos, int trimSize) throws ParseException {
-        String saved;
-        if (addBuffer != null) {
+    private String intern(TermView term) {
+        if (termDictionary == null) {
+            return term.toString();
+        }
+        return termDictionary.intern(term.array(), term.offset(), term.length());
+    }
+
+    /**
+     * Encodes IRI token ending at specified position. Tokens which aren't split between
+     * input buffers and don't contain escape sequences are looked up in place.
+     */
+    private long encodeIriToken(int tokenEndPos) throws ParseException {
+        int start = tokenStartPos + 1;
+        int count = tokenEndPos - start;
+        if (byteBuffer != null) {
+            if (byteAddBufferSize == 0 && !escapeSeen) {
+                tokenStartPos = -1;
+                return idEncoder.encodeIri(byteBuffer, start, count);
+            }
+        } else if (charAddBufferSize == 0 && !escapeSeen) {
+            tokenStartPos = -1;
+            return idEncoder.encodeIri(charBuffer, start, count);
+        }
+        TermView view = extractTerm(tokenView, tokenEndPos, 1);
+        return idEncoder.encodeIri(view.array(), view.offset(), view.length());
+    }
+
+    private long encodeBnodeToken(int tokenEndPos) throws ParseException {
+        int start = tokenStartPos;
+        int count = tokenEndPos - start + 1;
+        if (byteBuffer != null) {
+            if (byteAddBufferSize == 0) {
+                tokenStartPos = -1;
+                return idEncoder.encodeBnode(byteBuffer, start, count);
+            }
+        } else if (charAddBufferSize == 0) {
+            tokenStartPos = -1;
+            return idEncoder.encodeBnode(charBuffer, start, count);
+        }
+        extractToken(tokenView, tokenEndPos, 0);
+        return idEncoder.encodeBnode(tokenView.array(), tokenView.offset(), tokenView.length());
+    }
+
+    /**
+     * Fills specified view with token ending at specified position and unescapes it
+     * if escape sequences were found while scanning the token.
+     */
+    private TermView extractTerm(TermView view, int tokenEndPos, int trimSize) throws ParseException {
+        extractToken(view, tokenEndPos, trimSize);
+        if (escapeSeen) {
+            escapeSeen = false;
+            unescape(view);
+        }
+        return view;
+    }
+
+    /**
+     * Fills specified view with token ending at specified position. Tokens which aren't split
+     * between input char buffers are wrapped without copying.
+     */
+    private void extractToken(TermView view, int tokenEndPos, int trimSize) {
+        if (byteBuffer != null) {
+            if (byteAddBufferSize > 0) {
+                if (tokenEndPos - trimSize >= tokenStartPos) {
+                    appendBytes(byteBuffer, tokenStartPos, tokenEndPos - tokenStartPos - trimSize + 1);
+                }
+                view.decode(byteAddBuffer, trimSize, byteAddBufferSize - trimSize);
+                byteAddBufferSize = 0;
+            } else {
+                view.decode(byteBuffer, tokenStartPos + trimSize, tokenEndPos - tokenStartPos + 1 - 2 * trimSize);
+            }
+        } else if (charAddBufferSize > 0) {
             if (tokenEndPos - trimSize >= tokenStartPos) {
-                addBuffer.append(buffer, tokenStartPos, tokenEndPos - tokenStartPos - trimSize + 1);
+                appendChars(charBuffer, tokenStartPos, tokenEndPos - tokenStartPos - trimSize + 1);
             }
-            addBuffer.delete(0, trimSize);
-            saved = addBuffer.toString();
-            addBuffer = null;
+            view.copy(charAddBuffer, trimSize, charAddBufferSize - trimSize);
+            charAddBufferSize = 0;
         } else {
-            saved = String.valueOf(buffer, tokenStartPos + trimSize, tokenEndPos - tokenStartPos + 1 - 2 * trimSize);
+            view.wrap(charBuffer, tokenStartPos + trimSize, tokenEndPos - tokenStartPos + 1 - 2 * trimSize);
         }
         tokenStartPos = -1;
-        return saved;
+    }
+
+    private void appendChars(char[] buffer, int start, int count) {
+        if (charAddBuffer == null) {
+            charAddBuffer = new char[Math.max(256, count)];
+        } else if (charAddBufferSize + count > charAddBuffer.length) {
+            char[] newBuffer = new char[Math.max(charAddBuffer.length * 2, charAddBufferSize + count)];
+            System.arraycopy(charAddBuffer, 0, newBuffer, 0, charAddBufferSize);
+            charAddBuffer = newBuffer;
+        }
+        System.arraycopy(buffer, start, charAddBuffer, charAddBufferSize, count);
+        charAddBufferSize += count;
+    }
+
+    private void appendBytes(byte[] buffer, int start, int count) {
+        if (byteAddBuffer == null) {
+            byteAddBuffer = new byte[Math.max(256, count)];
+        } else if (byteAddBufferSize + count > byteAddBuffer.length) {
+            byte[] newBuffer = new byte[Math.max(byteAddBuffer.length * 2, byteAddBufferSize + count)];
+            System.arraycopy(byteAddBuffer, 0, newBuffer, 0, byteAddBufferSize);
+            byteAddBuffer = newBuffer;
+        }
+        System.arraycopy(buffer, start, byteAddBuffer, byteAddBufferSize, count);
+        byteAddBufferSize += count;
     }
 
     @Override
@@ -325,13 +630,26 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
     }
 
     private void resetQuad() {
-        addBuffer = null;
+        charAddBufferSize = 0;
+        byteAddBufferSize = 0;
+        escapeSeen = false;
         tokenStartPos = -1;
         subj = null;
         pred = null;
         literal = null;
         literalType = null;
         quadType = -1;
+        subjId = TermIdDictionary.NO_ID;
+        predId = TermIdDictionary.NO_ID;
+        objId = TermIdDictionary.NO_ID;
+        if (viewSink != null) {
+            viewCount = 0;
+            literalQualifier = null;
+            subjView.clear();
+            predView.clear();
+            objView.clear();
+            qualifierView.clear();
+        }
         waitingForSentenceEnd = true;
     }
 
@@ -343,64 +661,78 @@ public final class NQuadsParser extends Pipe<QuadSink> implements CharSink {
         super.endStream();
     }
 
-    private String unescape(String str) throws ParseException {
-        int limit = str.length();
-        StringBuilder result = new StringBuilder(limit);
-
-        for (int i = 0; i < limit; i++) {
-            char ch = str.charAt(i);
+    /**
+     * Unescapes view content in place. Views without escape sequences aren't copied.
+     */
+    private void unescape(TermView view) throws ParseException {
+        int limit = view.length();
+        int pos = 0;
+        while (pos < limit && view.charAt(pos) != '\\') {
+            pos++;
+        }
+        if (pos == limit) {
+            return;
+        }
+        // unescaped content is never longer than escaped one, so it can be written over it
+        char[] chars = view.edit();
+        int size = pos;
+        for (int i = pos; i < limit; i++) {
+            char ch = chars[i];
             if (ch != '\\') {
-                result.append(ch);
+                chars[size++] = ch;
                 continue;
             }
             i++;
             if (i == limit) {
                 break;
             }
-            ch = str.charAt(i);
+            ch = chars[i];
             switch (ch) {
-                case '\\':
-                case '\'':
-                case '\"':
-                    result.append(ch);
-                    break;
                 case 'b':
-                    result.append('\b');
+                    chars[size++] = '\b';
                     break;
                 case 'f':
-                    result.append('\f');
+                    chars[size++] = '\f';
                     break;
                 case 'n':
-                    result.append('\n');
+                    chars[size++] = '\n';
                     break;
                 case 'r':
-                    result.append('\r');
+                    chars[size++] = '\r';
                     break;
                 case 't':
-                    result.append('\t');
+                    chars[size++] = '\t';
                     break;
                 case 'u':
                 case 'U':
                     int sequenceLength = ch == 'u' ? 4 : 8;
-                    if (i + sequenceLength >= limit) {
+                    long value = i + sequenceLength < limit ? parseHex(chars, i + 1, sequenceLength) : -1;
+                    if (value < 0 || value > Integer.MAX_VALUE) {
                         error("Error parsing escape sequence '\\" + ch + "'");
+                        i = limit;
+                        break;
                     }
-                    String code = str.substring(i + 1, i + 1 + sequenceLength);
                     i += sequenceLength;
-
-                    try {
-                        int value = Integer.parseInt(code, 16);
-                        result.append((char) value);
-                    } catch (NumberFormatException nfe) {
-                        error("Error parsing escape sequence '\\" + ch + "'");
-                    }
+                    chars[size++] = (char) value;
                     break;
                 default:
-                    result.append(ch);
+                    chars[size++] = ch;
                     break;
             }
         }
-        return result.toString();
+        view.setLength(size);
+    }
+
+    private static long parseHex(char[] chars, int start, int count) {
+        long value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = Character.digit(chars[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 16 + digit;
+        }
+        return value;
     }
 
 }
\ No newline at end of file
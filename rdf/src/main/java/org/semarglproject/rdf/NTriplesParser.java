@@ -15,7 +15,12 @@
  */
 package org.semarglproject.rdf;
 
+import org.semarglproject.sink.ByteSink;
+import org.semarglproject.sink.CharSequenceAdapter;
+import org.semarglproject.sink.CharSequenceTripleSink;
 import org.semarglproject.sink.CharSink;
+import org.semarglproject.sink.IdEncoder;
+import org.semarglproject.sink.IdTripleSink;
 import org.semarglproject.sink.Pipe;
 import org.semarglproject.sink.TripleSink;
 import org.semarglproject.source.StreamProcessor;
@@ -29,10 +34,12 @@ import java.util.BitSet;
  *     <ul>
  *         <li>{@link StreamProcessor#PROCESSOR_GRAPH_HANDLER_PROPERTY}</li>
  *         <li>{@link StreamProcessor#ENABLE_ERROR_RECOVERY}</li>
+ *         <li>{@link StreamProcessor#TERM_DICTIONARY_PROPERTY}</li>
+ *         <li>{@link StreamProcessor#TRIPLE_FILTER_PROPERTY}</li>
  *     </ul>
  * </p>
  */
-public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
+public final class NTriplesParser extends Pipe<TripleSink> implements CharSink, ByteSink {
 
     /**
      * Class URI for errors produced by a parser
@@ -49,6 +56,9 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
 
     private static final char SENTENCE_END = '.';
 
+    // placeholder for terms of rejected triple which weren't extracted
+    private static final String SKIPPED_TERM = "";
+
     /**
      * NTriples whitespace char checker
      */
@@ -66,19 +76,61 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
     private String pred = null;
     private String literalObj = null;
 
+    // set when parser is connected to dictionary encoded sink
+    private final IdEncoder idEncoder;
+    private long subjId = TermIdDictionary.NO_ID;
+    private long predId = TermIdDictionary.NO_ID;
+
+    // set when parser is connected to sink accepting char sequence views
+    private final CharSequenceAdapter viewSink;
+    private TermView subjView = null;
+    private TermView predView = null;
+    private TermView objView = null;
+    private TermView qualifierView = null;
+    private int viewCount = 0;
+
     private ProcessorGraphHandler processorGraphHandler = null;
     private boolean ignoreErrors = false;
+    private TermDictionary termDictionary = null;
     private boolean skipSentence = false;
 
+    // pushed down filter, used only when parser is connected to plain triple sink
+    private TripleFilter tripleFilter = null;
+    // set when subject or predicate is rejected by filter, remaining terms of triple aren't extracted
+    private boolean rejected = false;
+
     private short parsingState;
 
     private int tokenStartPos;
     private short charsToEscape = 0;
     private boolean waitingForSentenceEnd = false;
-    private StringBuilder addBuffer = null;
+    private boolean escapeSeen = false;
+
+    // input buffer being processed, only one of them is set at a time
+    private char[] charBuffer = null;
+    private byte[] byteBuffer = null;
+    // undecoded bytes of token split between byte buffers
+    private byte[] byteAddBuffer = null;
+    private int byteAddBufferSize = 0;
+    // chars of token split between char buffers
+    private char[] charAddBuffer = null;
+    private int charAddBufferSize = 0;
+
+    // scratch buffers reused across calls
+    private final TermView tokenView = new TermView();
+    private final char[] singleChar = new char[1];
+    private char[] stringBuffer = new char[256];
 
     private NTriplesParser(TripleSink sink) {
         super(sink);
+        idEncoder = sink instanceof IdEncoder ? (IdEncoder) sink : null;
+        viewSink = sink instanceof CharSequenceAdapter ? (CharSequenceAdapter) sink : null;
+        if (viewSink != null) {
+            subjView = new TermView();
+            predView = new TermView();
+            objView = new TermView();
+            qualifierView = new TermView();
+        }
     }
 
     /**
@@ -90,6 +142,26 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
         return new NTriplesParser(sink);
     }
 
+    /**
+     * Creates instance of NTriplesParser connected to specified dictionary encoded sink.
+     * IRIs and BNodes are looked up directly in input buffers, so known terms don't produce garbage.
+     * @param sink sink to be connected to
+     * @return instance of NTriplesParser
+     */
+    public static CharSink connect(IdTripleSink sink) {
+        return new NTriplesParser(IdEncoder.connect(sink));
+    }
+
+    /**
+     * Creates instance of NTriplesParser connected to specified sink. Terms are passed as views over
+     * parser's buffers, so no strings are created for terms without escape sequences.
+     * @param sink sink to be connected to
+     * @return instance of NTriplesParser
+     */
+    public static CharSink connect(CharSequenceTripleSink sink) {
+        return new NTriplesParser(CharSequenceAdapter.connect(sink));
+    }
+
     private void error(String msg) throws ParseException {
         if (processorGraphHandler != null) {
             processorGraphHandler.error(ERROR, msg);
@@ -105,14 +177,18 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
 
     @Override
     public NTriplesParser process(String str) throws ParseException {
-        return process(str.toCharArray(), 0, str.length());
+        int length = str.length();
+        if (stringBuffer.length < length) {
+            stringBuffer = new char[Math.max(stringBuffer.length * 2, length)];
+        }
+        str.getChars(0, length, stringBuffer, 0);
+        return process(stringBuffer, 0, length);
     }
 
     @Override
     public NTriplesParser process(char ch) throws ParseException {
-        char[] buffer = new char[1];
-        buffer[0] = ch;
-        return process(buffer, 0, 1);
+        singleChar[0] = ch;
+        return process(singleChar, 0, 1);
     }
 
     @Override
@@ -122,80 +198,159 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
         }
         int end = start + count;
 
+        charBuffer = buffer;
         for (int pos = start; pos < end; pos++) {
-            if (skipSentence && buffer[pos] != SENTENCE_END) {
-                continue;
-            } else {
-                skipSentence = false;
-            }
+            processChar(buffer[pos], pos);
+        }
+        if (viewSink != null) {
+            // buffer can be reused by caller, so terms of incomplete triple are copied
+            subjView.detach();
+            predView.detach();
+            objView.detach();
+        }
+        charBuffer = null;
+        if (tokenStartPos != -1) {
+            appendChars(buffer, tokenStartPos, end - tokenStartPos);
+        }
+        return this;
+    }
 
-            if (parsingState == PARSING_OUTSIDE) {
-                processOutsideChar(buffer, pos);
-            } else if (parsingState == PARSING_COMMENT) {
-                if (buffer[pos] == '\n' || buffer[pos] == '\r') {
-                    parsingState = PARSING_OUTSIDE;
-                }
-            } else if (parsingState == PARSING_URI) {
-                if (buffer[pos] == '>') {
-                    onNonLiteral(unescape(extractToken(buffer, pos, 1)));
-                    parsingState = PARSING_OUTSIDE;
-                }
-            } else if (parsingState == PARSING_BNODE) {
-                if (WHITESPACE.get(buffer[pos]) || buffer[pos] == SENTENCE_END) {
-                    onNonLiteral(extractToken(buffer, pos - 1, 0));
-                    parsingState = PARSING_OUTSIDE;
+    /**
+     * Scans UTF-8 encoded input without decoding it. All syntax characters are ASCII and can't
+     * appear inside of multibyte sequences, so only tokens containing non-ASCII bytes are decoded.
+     */
+    @Override
+    public NTriplesParser process(byte[] buffer, int start, int count) throws ParseException {
+        if (tokenStartPos != -1) {
+            tokenStartPos = start;
+        }
+        int end = start + count;
+
+        byteBuffer = buffer;
+        for (int pos = start; pos < end; pos++) {
+            processChar((char) (buffer[pos] & 0xFF), pos);
+        }
+        byteBuffer = null;
+        if (tokenStartPos != -1) {
+            appendBytes(buffer, tokenStartPos, end - tokenStartPos);
+        }
+        return this;
+    }
+
+    private void processChar(char ch, int pos) throws ParseException {
+        if (skipSentence && ch != SENTENCE_END) {
+            return;
+        } else {
+            skipSentence = false;
+        }
+
+        if (parsingState == PARSING_OUTSIDE) {
+            processOutsideChar(ch, pos);
+        } else if (parsingState == PARSING_COMMENT) {
+            if (ch == '\n' || ch == '\r') {
+                parsingState = PARSING_OUTSIDE;
+            }
+        } else if (parsingState == PARSING_URI) {
+            if (ch == '>') {
+                if (idEncoder != null) {
+                    onNonLiteral(encodeIriToken(pos));
+                } else if (viewSink != null) {
+                    extractTerm(nextView(), pos, 1);
+                    onNonLiteralView();
+                } else if (rejected) {
+                    skipToken(pos, 1);
+                    onNonLiteral(SKIPPED_TERM);
+                } else {
+                    onNonLiteral(intern(extractTerm(tokenView, pos, 1)));
                 }
-            } else if (parsingState == PARSING_LITERAL) {
-                processLiteralChar(buffer, pos);
-            } else if (parsingState == PARSING_AFTER_LITERAL) {
-                if (buffer[pos] == '@' || buffer[pos] == '^') {
-                    tokenStartPos = pos;
-                    parsingState = PARSING_LITERAL_TYPE;
-                } else if (WHITESPACE.get(buffer[pos]) || buffer[pos] == SENTENCE_END) {
-                    onPlainLiteral(literalObj, null);
-                    parsingState = PARSING_OUTSIDE;
-                    processOutsideChar(buffer, pos);
+                parsingState = PARSING_OUTSIDE;
+            } else if (ch == '\\') {
+                escapeSeen = true;
+            }
+        } else if (parsingState == PARSING_BNODE) {
+            if (WHITESPACE.get(ch) || ch == SENTENCE_END) {
+                if (idEncoder != null) {
+                    onNonLiteral(encodeBnodeToken(pos - 1));
+                } else if (viewSink != null) {
+                    extractToken(nextView(), pos - 1, 0);
+                    onNonLiteralView();
+                } else if (rejected) {
+                    skipToken(pos - 1, 0);
+                    onNonLiteral(SKIPPED_TERM);
                 } else {
-                    error("Unexpected character '" + buffer[pos] + "' after literal");
+                    extractToken(tokenView, pos - 1, 0);
+                    onNonLiteral(tokenView.toString());
                 }
-            } else if (parsingState == PARSING_LITERAL_TYPE) {
-                processLiteralTypeChar(buffer, pos);
+                parsingState = PARSING_OUTSIDE;
             }
-        }
-        if (tokenStartPos != -1) {
-            if (addBuffer == null) {
-                addBuffer = new StringBuilder();
+        } else if (parsingState == PARSING_LITERAL) {
+            processLiteralChar(ch, pos);
+        } else if (parsingState == PARSING_AFTER_LITERAL) {
+            if (ch == '@' || ch == '^') {
+                tokenStartPos = pos;
+                parsingState = PARSING_LITERAL_TYPE;
+            } else if (WHITESPACE.get(ch) || ch == SENTENCE_END) {
+                if (viewSink != null) {
+                    onPlainLiteralView(null);
+                } else {
+                    onPlainLiteral(literalObj, null);
+                }
+                parsingState = PARSING_OUTSIDE;
+                processOutsideChar(ch, pos);
+            } else {
+                error("Unexpected character '" + ch + "' after literal");
             }
-            addBuffer.append(buffer, tokenStartPos, end - tokenStartPos);
+        } else if (parsingState == PARSING_LITERAL_TYPE) {
+            processLiteralTypeChar(ch, pos);
         }
-        return this;
     }
 
-    private void processLiteralChar(char[] buffer, int pos) throws ParseException {
-        if (charsToEscape == 9 && buffer[pos] == 'u') {
+    private void processLiteralChar(char ch, int pos) throws ParseException {
+        if (charsToEscape == 9 && ch == 'u') {
             charsToEscape -= 5;
-        } else if (charsToEscape == 9 && buffer[pos] != 'U') {
+        } else if (charsToEscape == 9 && ch != 'U') {
             charsToEscape = 0;
         } else if (charsToEscape > 0) {
             charsToEscape--;
         } else {
-            if (buffer[pos] == '\"') {
-                literalObj = unescape(extractToken(buffer, pos, 1));
+            if (ch == '\"') {
+                if (viewSink != null) {
+                    extractTerm(objView, pos, 1);
+                } else if (rejected) {
+                    skipToken(pos, 1);
+                    literalObj = SKIPPED_TERM;
+                } else {
+                    literalObj = extractTerm(tokenView, pos, 1).toString();
+                }
                 parsingState = PARSING_AFTER_LITERAL;
-            } else if (buffer[pos] == '\\') {
+            } else if (ch == '\\') {
                 charsToEscape = 9;
+                escapeSeen = true;
             }
         }
     }
 
-    private void processLiteralTypeChar(char[] buffer, int pos) throws ParseException {
-        if (WHITESPACE.get(buffer[pos])) {
-            String type = extractToken(buffer, pos, 0);
-            int trimSize = type.charAt(type.length() - 1) == SENTENCE_END ? 1 : 0;
+    private void processLiteralTypeChar(char ch, int pos) throws ParseException {
+        if (WHITESPACE.get(ch)) {
+            TermView type = viewSink != null ? qualifierView : tokenView;
+            extractToken(type, pos, 0);
+            int length = type.length();
+            int trimSize = type.charAt(length - 1) == SENTENCE_END ? 1 : 0;
             if (type.charAt(0) == '@') {
-                onPlainLiteral(literalObj, type.substring(1, type.length() - 1 - trimSize));
-            } else if (type.startsWith("^^<") && type.charAt(type.length() - 2) == '>') {
-                onTypedLiteral(literalObj, type.substring(3, type.length() - 2 - trimSize));
+                type.narrow(1, length - 1 - trimSize);
+                if (viewSink != null) {
+                    onPlainLiteralView(type);
+                } else {
+                    onPlainLiteral(literalObj, rejected ? null : intern(type));
+                }
+            } else if (length > 3 && type.charAt(0) == '^' && type.charAt(1) == '^' && type.charAt(2) == '<'
+                    && type.charAt(length - 2) == '>') {
+                type.narrow(3, length - 2 - trimSize);
+                if (viewSink != null) {
+                    onTypedLiteralView(type);
+                } else {
+                    onTypedLiteral(literalObj, rejected ? null : intern(type));
+                }
             } else {
                 error("Literal type '" + type + "' can not be parsed");
             }
@@ -206,8 +361,8 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
         }
     }
 
-    private void processOutsideChar(char[] buffer, int pos) throws ParseException {
-        switch (buffer[pos]) {
+    private void processOutsideChar(char ch, int pos) throws ParseException {
+        switch (ch) {
             case '\"':
                 parsingState = PARSING_LITERAL;
                 tokenStartPos = pos;
@@ -227,8 +382,8 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
                 finishSentence();
                 break;
             default:
-                if (!WHITESPACE.get(buffer[pos])) {
-                    error("Unexpected character '" + buffer[pos] + "'");
+                if (!WHITESPACE.get(ch)) {
+                    error("Unexpected character '" + ch + "'");
                 }
         }
     }
@@ -247,38 +402,118 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
         }
         if (subj == null) {
             subj = uri;
+            rejected = tripleFilter != null && !tripleFilter.acceptsSubject(uri);
         } else if (pred == null) {
             pred = uri;
+            rejected = rejected || tripleFilter != null && !tripleFilter.acceptsPredicate(uri);
         } else {
-            sink.addNonLiteral(subj, pred, uri);
+            if (!rejected) {
+                sink.addNonLiteral(subj, pred, uri);
+            }
+            resetTriple();
+        }
+    }
+
+    private void onNonLiteral(long id) throws ParseException {
+        if (waitingForSentenceEnd) {
+            error("End of sentence expected");
+        }
+        if (subjId == TermIdDictionary.NO_ID) {
+            subjId = id;
+        } else if (predId == TermIdDictionary.NO_ID) {
+            predId = id;
+        } else {
+            idEncoder.addTriple(subjId, predId, id);
             resetTriple();
         }
     }
 
     private void onPlainLiteral(String value, String lang) throws ParseException {
-        if (subj == null || pred == null) {
+        if (!hasPredicate()) {
             if (waitingForSentenceEnd) {
                 error("End of sentence expected");
             } else {
                 error("Literal is not an object");
             }
         }
-        sink.addPlainLiteral(subj, pred, value, lang);
+        if (idEncoder != null) {
+            idEncoder.addTriple(subjId, predId, idEncoder.encodePlainLiteral(value, lang));
+        } else if (!rejected) {
+            sink.addPlainLiteral(subj, pred, value, lang);
+        }
         resetTriple();
     }
 
     private void onTypedLiteral(String value, String type) throws ParseException {
-        if (subj == null || pred == null) {
+        if (!hasPredicate()) {
             if (waitingForSentenceEnd) {
                 error("End of sentence expected");
             } else {
                 error("Literal is not an object");
             }
         }
-        sink.addTypedLiteral(subj, pred, value, type);
+        if (idEncoder != null) {
+            idEncoder.addTriple(subjId, predId, idEncoder.encodeTypedLiteral(value, type));
+        } else if (!rejected) {
+            sink.addTypedLiteral(subj, pred, value, type);
+        }
         resetTriple();
     }
 
+    private TermView nextView() {
+        if (viewCount == 0) {
+            return subjView;
+        } else if (viewCount == 1) {
+            return predView;
+        }
+        return objView;
+    }
+
+    private void onNonLiteralView() throws ParseException {
+        if (waitingForSentenceEnd) {
+            error("End of sentence expected");
+        }
+        if (viewCount < 2) {
+            viewCount++;
+        } else {
+            viewSink.addNonLiteral(subjView, predView, objView);
+            resetTriple();
+        }
+    }
+
+    private void onPlainLiteralView(CharSequence lang) throws ParseException {
+        if (!hasPredicate()) {
+            if (waitingForSentenceEnd) {
+                error("End of sentence expected");
+            } else {
+                error("Literal is not an object");
+            }
+        }
+        viewSink.addPlainLiteral(subjView, predView, objView, lang);
+        resetTriple();
+    }
+
+    private void onTypedLiteralView(CharSequence type) throws ParseException {
+        if (!hasPredicate()) {
+            if (waitingForSentenceEnd) {
+                error("End of sentence expected");
+            } else {
+                error("Literal is not an object");
+            }
+        }
+        viewSink.addTypedLiteral(subjView, predView, objView, type);
+        resetTriple();
+    }
+
+    private boolean hasPredicate() {
+        if (idEncoder != null) {
+            return predId != TermIdDictionary.NO_ID;
+        } else if (viewSink != null) {
+            return viewCount == 2;
+        }
+        return pred != null;
+    }
+
     @Override
     public void setBaseUri(String baseUri) {
     }
@@ -289,24 +524,135 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
             processorGraphHandler = (ProcessorGraphHandler) value;
         } else if (StreamProcessor.ENABLE_ERROR_RECOVERY.equals(key) && value instanceof Boolean) {
             ignoreErrors = (Boolean) value;
+        } else if (StreamProcessor.TERM_DICTIONARY_PROPERTY.equals(key) && value instanceof TermDictionary) {
+            termDictionary = (TermDictionary) value;
+        } else if (StreamProcessor.TRIPLE_FILTER_PROPERTY.equals(key) && value instanceof TripleFilter
+                && idEncoder == null && viewSink == null) {
+            tripleFilter = (TripleFilter) value;
         }
         return false;
     }
 
-    private String extractToken(char[] buffer, int tokenEndPos, int trimSize) throws ParseException {
-        String saved;
-        if (addBuffer != null) {
+    private String intern(TermView term) {
+        if (termDictionary == null) {
+            return term.toString();
+        }
+        return termDictionary.intern(term.array(), term.offset(), term.length());
+    }
+
+    /**
+     * Encodes IRI token ending at specified position. Tokens which aren't split between
+     * input buffers and don't contain escape sequences are looked up in place.
+     */
+    private long encodeIriToken(int tokenEndPos) throws ParseException {
+        int start = tokenStartPos + 1;
+        int count = tokenEndPos - start;
+        if (byteBuffer != null) {
+            if (byteAddBufferSize == 0 && !escapeSeen) {
+                tokenStartPos = -1;
+                return idEncoder.encodeIri(byteBuffer, start, count);
+            }
+        } else if (charAddBufferSize == 0 && !escapeSeen) {
+            tokenStartPos = -1;
+            return idEncoder.encodeIri(charBuffer, start, count);
+        }
+        TermView view = extractTerm(tokenView, tokenEndPos, 1);
+        return idEncoder.encodeIri(view.array(), view.offset(), view.length());
+    }
+
+    private long encodeBnodeToken(int tokenEndPos) throws ParseException {
+        int start = tokenStartPos;
+        int count = tokenEndPos - start + 1;
+        if (byteBuffer != null) {
+            if (byteAddBufferSize == 0) {
+                tokenStartPos = -1;
+                return idEncoder.encodeBnode(byteBuffer, start, count);
+            }
+        } else if (charAddBufferSize == 0) {
+            tokenStartPos = -1;
+            return idEncoder.encodeBnode(charBuffer, start, count);
+        }
+        extractToken(tokenView, tokenEndPos, 0);
+        return idEncoder.encodeBnode(tokenView.array(), tokenView.offset(), tokenView.length());
+    }
+
+    /**
+     * Fills specified view with token ending at specified position and unescapes it
+     * if escape sequences were found while scanning the token.
+     */
+    private TermView extractTerm(TermView view, int tokenEndPos, int trimSize) throws ParseException {
+        extractToken(view, tokenEndPos, trimSize);
+        if (escapeSeen) {
+            escapeSeen = false;
+            unescape(view);
+        }
+        return view;
+    }
+
+    /**
+     * Fills specified view with token ending at specified position. Tokens which aren't split
+     * between input char buffers are wrapped without copying.
+     */
+    private void extractToken(TermView view, int tokenEndPos, int trimSize) {
+        if (byteBuffer != null) {
+            if (byteAddBufferSize > 0) {
+                if (tokenEndPos - trimSize >= tokenStartPos) {
+                    appendBytes(byteBuffer, tokenStartPos, tokenEndPos - tokenStartPos - trimSize + 1);
+                }
+                view.decode(byteAddBuffer, trimSize, byteAddBufferSize - trimSize);
+                byteAddBufferSize = 0;
+            } else {
+                view.decode(byteBuffer, tokenStartPos + trimSize, tokenEndPos - tokenStartPos + 1 - 2 * trimSize);
+            }
+        } else if (charAddBufferSize > 0) {
             if (tokenEndPos - trimSize >= tokenStartPos) {
-                addBuffer.append(buffer, tokenStartPos, tokenEndPos - tokenStartPos - trimSize + 1);
+                appendChars(charBuffer, tokenStartPos, tokenEndPos - tokenStartPos - trimSize + 1);
             }
-            addBuffer.delete(0, trimSize);
-            saved = addBuffer.toString();
-            addBuffer = null;
+            view.copy(charAddBuffer, trimSize, charAddBufferSize - trimSize);
+            charAddBufferSize = 0;
         } else {
-            saved = String.valueOf(buffer, tokenStartPos + trimSize, tokenEndPos - tokenStartPos + 1 - 2 * trimSize);
+            view.wrap(charBuffer, tokenStartPos + trimSize, tokenEndPos - tokenStartPos + 1 - 2 * trimSize);
+        }
+        tokenStartPos = -1;
+    }
+
+    /**
+     * Drops token ending at specified position without extracting it. Tokens containing escape
+     * sequences are still unescaped, so malformed ones are reported regardless of filter.
+     */
+    private void skipToken(int tokenEndPos, int trimSize) throws ParseException {
+        if (escapeSeen) {
+            extractTerm(tokenView, tokenEndPos, trimSize);
+            return;
         }
+        charAddBufferSize = 0;
+        byteAddBufferSize = 0;
+        escapeSeen = false;
         tokenStartPos = -1;
-        return saved;
+    }
+
+    private void appendChars(char[] buffer, int start, int count) {
+        if (charAddBuffer == null) {
+            charAddBuffer = new char[Math.max(256, count)];
+        } else if (charAddBufferSize + count > charAddBuffer.length) {
+            char[] newBuffer = new char[Math.max(charAddBuffer.length * 2, charAddBufferSize + count)];
+            System.arraycopy(charAddBuffer, 0, newBuffer, 0, charAddBufferSize);
+            charAddBuffer = newBuffer;
+        }
+        System.arraycopy(buffer, start, charAddBuffer, charAddBufferSize, count);
+        charAddBufferSize += count;
+    }
+
+    private void appendBytes(byte[] buffer, int start, int count) {
+        if (byteAddBuffer == null) {
+            byteAddBuffer = new byte[Math.max(256, count)];
+        } else if (byteAddBufferSize + count > byteAddBuffer.length) {
+            byte[] newBuffer = new byte[Math.max(byteAddBuffer.length * 2, byteAddBufferSize + count)];
+            System.arraycopy(byteAddBuffer, 0, newBuffer, 0, byteAddBufferSize);
+            byteAddBuffer = newBuffer;
+        }
+        System.arraycopy(buffer, start, byteAddBuffer, byteAddBufferSize, count);
+        byteAddBufferSize += count;
     }
 
     @Override
@@ -318,10 +664,21 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
     }
 
     private void resetTriple() {
-        addBuffer = null;
+        charAddBufferSize = 0;
+        byteAddBufferSize = 0;
+        escapeSeen = false;
         tokenStartPos = -1;
         subj = null;
         pred = null;
+        rejected = false;
+        subjId = TermIdDictionary.NO_ID;
+        predId = TermIdDictionary.NO_ID;
+        if (viewSink != null) {
+            viewCount = 0;
+            subjView.clear();
+            predView.clear();
+            objView.clear();
+        }
         waitingForSentenceEnd = true;
     }
 
@@ -333,64 +690,78 @@ public final class NTriplesParser extends Pipe<TripleSink> implements CharSink {
         super.endStream();
     }
 
-    private String unescape(String str) throws ParseException {
-        int limit = str.length();
-        StringBuilder result = new StringBuilder(limit);
-
-        for (int i = 0; i < limit; i++) {
-            char ch = str.charAt(i);
+    /**
+     * Unescapes view content in place. Views without escape sequences aren't copied.
+     */
+    private void unescape(TermView view) throws ParseException {
+        int limit = view.length();
+        int pos = 0;
+        while (pos < limit && view.charAt(pos) != '\\') {
+            pos++;
+        }
+        if (pos == limit) {
+            return;
+        }
+        // unescaped content is never longer than escaped one, so it can be written over it
+        char[] chars = view.edit();
+        int size = pos;
+        for (int i = pos; i < limit; i++) {
+            char ch = chars[i];
             if (ch != '\\') {
-                result.append(ch);
+                chars[size++] = ch;
                 continue;
             }
             i++;
             if (i == limit) {
                 break;
             }
-            ch = str.charAt(i);
+            ch = chars[i];
             switch (ch) {
-                case '\\':
-                case '\'':
-                case '\"':
-                    result.append(ch);
-                    break;
                 case 'b':
-                    result.append('\b');
+                    chars[size++] = '\b';
                     break;
                 case 'f':
-                    result.append('\f');
+                    chars[size++] = '\f';
                     break;
                 case 'n':
-                    result.append('\n');
+                    chars[size++] = '\n';
                     break;
                 case 'r':
-                    result.append('\r');
+                    chars[size++] = '\r';
                     break;
                 case 't':
-                    result.append('\t');
+                    chars[size++] = '\t';
                     break;
                 case 'u':
                 case 'U':
                     int sequenceLength = ch == 'u' ? 4 : 8;
-                    if (i + sequenceLength >= limit) {
+                    long value = i + sequenceLength < limit ? parseHex(chars, i + 1, sequenceLength) : -1;
+                    if (value < 0 || value > Integer.MAX_VALUE) {
                         error("Error parsing escape sequence '\\" + ch + "'");
+                        i = limit;
+                        break;
                     }
-                    String code = str.substring(i + 1, i + 1 + sequenceLength);
                     i += sequenceLength;
-
-                    try {
-                        int value = Integer.parseInt(code, 16);
-                        result.append((char) value);
-                    } catch (NumberFormatException nfe) {
-                        error("Error parsing escape sequence '\\" + ch + "'");
-                    }
+                    chars[size++] = (char) value;
                     break;
                 default:
-                    result.append(ch);
+                    chars[size++] = ch;
                     break;
             }
         }
-        return result.toString();
+        view.setLength(size);
+    }
+
+    private static long parseHex(char[] chars, int start, int count) {
+        long value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = Character.digit(chars[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 16 + digit;
+        }
+        return value;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import org.semarglproject.sink.ByteSink;
+import org.semarglproject.sink.CharSink;
+import org.semarglproject.sink.QuadSink;
+import org.semarglproject.sink.TripleSink;
+import org.semarglproject.source.BaseStreamProcessor;
+import org.semarglproject.source.StreamProcessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Pipeline managing class which parses line based formats (NTriples and NQuads) using multiple threads.
+ * Input is split at line boundaries into chunks, every chunk is parsed by independent parser instance
+ * and parsed statements are passed to the sink from thread which called <code>process</code> method,
+ * so sinks don't have to be thread-safe. Blank node labels are passed as is, so they stay document-scoped
+ * across chunks. Since splitting is performed at line boundaries, literals can't contain unescaped line breaks.
+ * <p>
+ *     List of supported properties:
+ *     <ul>
+ *         <li>{@link #ORDERED_DELIVERY_PROPERTY}</li>
+ *         <li>{@link #CHUNK_SIZE_PROPERTY}</li>
+ *         <li>{@link #EXECUTOR_SERVICE_PROPERTY}</li>
+ *         <li>{@link StreamProcessor#PROCESSOR_GRAPH_HANDLER_PROPERTY}</li>
+ *         <li>{@link StreamProcessor#ENABLE_ERROR_RECOVERY}</li>
+ *         <li>{@link StreamProcessor#TERM_DICTIONARY_PROPERTY}, dictionary is shared by chunk parsers
+ *         and must be thread-safe, e.g. {@link ConcurrentTermDictionary}</li>
+ *     </ul>
+ * </p>
+ */
+public final class ParallelStreamProcessor extends BaseStreamProcessor {
+
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Enables or disables delivery of statements in document order. When disabled, chunks are
+     * delivered as soon as they are parsed. Enabled by default.
+     */
+    public static final String ORDERED_DELIVERY_PROPERTY =
+            "http://semarglproject.org/core/properties/ordered-delivery";
+
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Specifies approximate size of chunk in bytes (or chars for reader input). Integer must be passed as a value.
+     */
+    public static final String CHUNK_SIZE_PROPERTY =
+            "http://semarglproject.org/core/properties/chunk-size";
+
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Allows to specify {@link ExecutorService} used for parsing chunks. By default shared pool
+     * of daemon threads sized by available processors count is used.
+     */
+    public static final String EXECUTOR_SERVICE_PROPERTY =
+            "http://semarglproject.org/core/properties/executor-service";
+
+    private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_PENDING_CHUNKS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static ExecutorService defaultExecutor = null;
+
+    private final TripleSink sink;
+    private final boolean quads;
+
+    private ExecutorService executor = null;
+    private boolean orderedDelivery = true;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean ignoreErrors = false;
+    private ProcessorGraphHandler processorGraphHandler = null;
+    private TermDictionary termDictionary = null;
+
+    private final LinkedList<Future<StatementBuffer>> pendingChunks = new LinkedList<Future<StatementBuffer>>();
+    private CompletionService<StatementBuffer> completionService;
+
+    private ParallelStreamProcessor(TripleSink sink, boolean quads) {
+        this.sink = sink;
+        this.quads = quads;
+    }
+
+    /**
+     * Creates instance of ParallelStreamProcessor which parses NTriples into specified sink.
+     * @param sink sink to be connected to
+     * @return instance of ParallelStreamProcessor
+     */
+    public static ParallelStreamProcessor forNTriples(TripleSink sink) {
+        return new ParallelStreamProcessor(sink, false);
+    }
+
+    /**
+     * Creates instance of ParallelStreamProcessor which parses NQuads into specified sink.
+     * @param sink sink to be connected to
+     * @return instance of ParallelStreamProcessor
+     */
+    public static ParallelStreamProcessor forNQuads(QuadSink sink) {
+        return new ParallelStreamProcessor(sink, true);
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "semargl-parallel-parser");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return defaultExecutor;
+    }
+
+    @Override
+    protected void startStream() throws ParseException {
+        if (executor == null) {
+            executor = getDefaultExecutor();
+        }
+        completionService = new ExecutorCompletionService<StatementBuffer>(executor);
+        sink.startStream();
+    }
+
+    @Override
+    protected void endStream() throws ParseException {
+        for (Future<StatementBuffer> future : pendingChunks) {
+            future.cancel(true);
+        }
+        pendingChunks.clear();
+        completionService = null;
+        sink.endStream();
+    }
+
+    @Override
+    protected void processInternal(InputStream inputStream, String mimeType, String baseUri) throws ParseException {
+        sink.setBaseUri(baseUri);
+        byte[] buffer = new byte[chunkSize];
+        int filled = 0;
+        try {
+            int read;
+            while ((read = inputStream.read(buffer, filled, buffer.length - filled)) != -1) {
+                filled += read;
+                if (filled < buffer.length) {
+                    continue;
+                }
+                int split = filled;
+                while (split > 0 && buffer[split - 1] != '\n' && buffer[split - 1] != '\r') {
+                    split--;
+                }
+                // if line is longer than chunk, buffer grows until line end is found
+                int rest = filled - split;
+                byte[] next = new byte[Math.max(chunkSize, rest * 2)];
+                System.arraycopy(buffer, split, next, 0, rest);
+                if (split > 0) {
+                    submitChunk(new ChunkTask(buffer, null, split));
+                }
+                buffer = next;
+                filled = rest;
+            }
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        if (filled > 0) {
+            submitChunk(new ChunkTask(buffer, null, filled));
+        }
+        deliverAll();
+    }
+
+    @Override
+    protected void processInternal(Reader reader, String mimeType, String baseUri) throws ParseException {
+        sink.setBaseUri(baseUri);
+        char[] buffer = new char[chunkSize];
+        int filled = 0;
+        try {
+            int read;
+            while ((read = reader.read(buffer, filled, buffer.length - filled)) != -1) {
+                filled += read;
+                if (filled < buffer.length) {
+                    continue;
+                }
+                int split = filled;
+                while (split > 0 && buffer[split - 1] != '\n' && buffer[split - 1] != '\r') {
+                    split--;
+                }
+                // if line is longer than chunk, buffer grows until line end is found
+                int rest = filled - split;
+                char[] next = new char[Math.max(chunkSize, rest * 2)];
+                System.arraycopy(buffer, split, next, 0, rest);
+                if (split > 0) {
+                    submitChunk(new ChunkTask(null, buffer, split));
+                }
+                buffer = next;
+                filled = rest;
+            }
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+        if (filled > 0) {
+            submitChunk(new ChunkTask(null, buffer, filled));
+        }
+        deliverAll();
+    }
+
+    private void submitChunk(ChunkTask task) throws ParseException {
+        if (pendingChunks.size() >= MAX_PENDING_CHUNKS) {
+            deliverNext();
+        }
+        if (orderedDelivery) {
+            pendingChunks.add(executor.submit(task));
+        } else {
+            pendingChunks.add(completionService.submit(task));
+        }
+    }
+
+    private void deliverAll() throws ParseException {
+        while (!pendingChunks.isEmpty()) {
+            deliverNext();
+        }
+    }
+
+    private void deliverNext() throws ParseException {
+        Future<StatementBuffer> future;
+        try {
+            if (orderedDelivery) {
+                future = pendingChunks.removeFirst();
+            } else {
+                future = completionService.take();
+                pendingChunks.remove(future);
+            }
+            future.get().replay(sink, processorGraphHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParseException(e);
+        } catch (ExecutionException e) {
+            throw new ParseException(e.getCause());
+        }
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        boolean result = false;
+        if (ORDERED_DELIVERY_PROPERTY.equals(key) && value instanceof Boolean) {
+            orderedDelivery = (Boolean) value;
+            result = true;
+        } else if (CHUNK_SIZE_PROPERTY.equals(key) && value instanceof Integer) {
+            chunkSize = Math.max(1, (Integer) value);
+            result = true;
+        } else if (EXECUTOR_SERVICE_PROPERTY.equals(key) && value instanceof ExecutorService) {
+            executor = (ExecutorService) value;
+            result = true;
+        } else if (StreamProcessor.ENABLE_ERROR_RECOVERY.equals(key) && value instanceof Boolean) {
+            ignoreErrors = (Boolean) value;
+            result = true;
+        } else if (StreamProcessor.PROCESSOR_GRAPH_HANDLER_PROPERTY.equals(key)
+                && value instanceof ProcessorGraphHandler) {
+            processorGraphHandler = (ProcessorGraphHandler) value;
+            result = true;
+        } else if (StreamProcessor.TERM_DICTIONARY_PROPERTY.equals(key) && value instanceof TermDictionary) {
+            termDictionary = (TermDictionary) value;
+            result = true;
+        }
+        return sink.setProperty(key, value) || result;
+    }
+
+    private final class ChunkTask implements Callable<StatementBuffer> {
+
+        private final byte[] bytes;
+        private final char[] chars;
+        private final int length;
+        private final boolean ignoreErrors;
+        private final boolean handleEvents;
+        private final TermDictionary termDictionary;
+
+        private ChunkTask(byte[] bytes, char[] chars, int length) {
+            this.bytes = bytes;
+            this.chars = chars;
+            this.length = length;
+            this.ignoreErrors = ParallelStreamProcessor.this.ignoreErrors;
+            this.handleEvents = processorGraphHandler != null;
+            this.termDictionary = ParallelStreamProcessor.this.termDictionary;
+        }
+
+        @Override
+        public StatementBuffer call() {
+            StatementBuffer buffer = new StatementBuffer();
+            CharSink parser = quads ? NQuadsParser.connect(buffer) : NTriplesParser.connect(buffer);
+            parser.setProperty(StreamProcessor.ENABLE_ERROR_RECOVERY, ignoreErrors);
+            if (handleEvents) {
+                parser.setProperty(StreamProcessor.PROCESSOR_GRAPH_HANDLER_PROPERTY, buffer);
+            }
+            if (termDictionary != null) {
+                parser.setProperty(StreamProcessor.TERM_DICTIONARY_PROPERTY, termDictionary);
+            }
+            try {
+                parser.startStream();
+                if (bytes != null) {
+                    ((ByteSink) parser).process(bytes, 0, length);
+                } else {
+                    parser.process(chars, 0, length);
+                }
+                parser.endStream();
+            } catch (ParseException e) {
+                buffer.setException(e);
+            }
+            return buffer;
+        }
+    }
+
+}
@@ -37,6 +37,7 @@ import java.util.*;
  *     <ul>
  *         <li>{@link StreamProcessor#PROCESSOR_GRAPH_HANDLER_PROPERTY}</li>
  *         <li>{@link StreamProcessor#ENABLE_ERROR_RECOVERY}</li>
+ *         <li>{@link StreamProcessor#TERM_DICTIONARY_PROPERTY}</li>
  *     </ul>
  * </p>
  */
@@ -100,6 +101,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
 
     private ProcessorGraphHandler processorGraphHandler = null;
     private boolean ignoreErrors = false;
+    private TermDictionary termDictionary = null;
 
     // holds data for triples which addition depends on XML node contents (blank or not)
     private List<String> pendingTriples = new ArrayList<String>();
@@ -159,7 +161,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
 
         processLangAndBase(attrs);
 
-        String iri = nsUri + lname;
+        String iri = intern(nsUri + lname);
         if (subjRes == null && (nsUri == null || nsUri.isEmpty()) || iri.equals(RDF.RDF)) {
             return;
         }
@@ -210,7 +212,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
 
                 predIri = iri;
                 if (predIri.equals(RDF.LI)) {
-                    predIri = RDF.NS + "_" + liIndex++;
+                    predIri = intern(RDF.NS + "_" + liIndex++);
                 }
                 subjLiIndexStack.push(liIndex);
 
@@ -220,6 +222,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
                 }
 
                 captureLiteral = true;
+                datatypeIri = null;
                 mode = INSIDE_OF_PROPERTY;
                 processPropertyAttrs(nsUri, attrs);
                 if (captureLiteral) {
@@ -279,12 +282,12 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
             }
             String value = attrs.getValue(i);
             if (tag.equals(RDF.TYPE)) {
-                sink.addNonLiteral(subjRes, RDF.TYPE, value);
+                sink.addNonLiteral(subjRes, RDF.TYPE, intern(value));
             } else {
                 if (violatesSchema(tag) || tag.equals(RDF.LI)) {
                     error(qname + IS_NOT_ALLOWED_HERE);
                 } else {
-                    sink.addPlainLiteral(subjRes, tag, value, langStack.peek());
+                    sink.addPlainLiteral(subjRes, intern(tag), value, langStack.peek());
                 }
             }
         }
@@ -313,7 +316,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
     private void processLangAndBase(Attributes attrs) throws SAXException {
         String lang = langStack.peek();
         if (attrs.getValue(XmlUtils.XML_LANG) != null) {
-            lang = attrs.getValue(XmlUtils.XML_LANG);
+            lang = intern(attrs.getValue(XmlUtils.XML_LANG));
         }
         langStack.push(lang);
 
@@ -380,7 +383,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
                 error(attr + IS_NOT_ALLOWED_HERE);
             } else {
                 pendingTriples.add(propertyRes);
-                pendingTriples.add(attr);
+                pendingTriples.add(intern(attr));
                 pendingTriples.add(value);
                 captureLiteral = false;
             }
@@ -567,7 +570,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
      */
     private String resolveIRINoResolve(String baseIri, String iri) throws SAXException {
         if (RIUtils.isAbsoluteIri(iri)) {
-            return iri;
+            return intern(iri);
         }
         if (!XmlUtils.isValidNCName(iri)) {
             error("Vocab term must be a valid NCName");
@@ -575,7 +578,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
         }
         String result = baseIri + iri;
         if (RIUtils.isAbsoluteIri(result)) {
-            return result;
+            return intern(result);
         }
         error("Malformed IRI: " + iri);
         return null;
@@ -590,7 +593,7 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
      */
     private String resolveIRI(String baseIri, String iri) throws SAXException {
         try {
-            return RIUtils.resolveIri(baseIri, iri);
+            return intern(RIUtils.resolveIri(baseIri, iri));
         } catch (MalformedIriException e) {
             error(e.getMessage());
             return null;
@@ -723,7 +726,16 @@ public final class RdfXmlParser extends Pipe<TripleSink> implements XmlSink {
             processorGraphHandler = (ProcessorGraphHandler) value;
         } else if (StreamProcessor.ENABLE_ERROR_RECOVERY.equals(key) && value instanceof Boolean) {
             ignoreErrors = (Boolean) value;
+        } else if (StreamProcessor.TERM_DICTIONARY_PROPERTY.equals(key) && value instanceof TermDictionary) {
+            termDictionary = (TermDictionary) value;
         }
         return false;
     }
+
+    private String intern(String term) {
+        if (termDictionary == null) {
+            return term;
+        }
+        return termDictionary.intern(term);
+    }
 }
\ No newline at end of file
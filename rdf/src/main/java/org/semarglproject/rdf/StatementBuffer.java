@@ -0,0 +1,220 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+import org.semarglproject.sink.QuadSink;
+import org.semarglproject.sink.TripleSink;
+
+/**
+ * Compact in-memory recording of statements and processor graph events which can be replayed
+ * to another sink later. Used to move parsing results between threads.
+ */
+final class StatementBuffer implements QuadSink, ProcessorGraphHandler {
+
+    private static final byte NON_LITERAL = 0;
+    private static final byte PLAIN_LITERAL = 1;
+    private static final byte TYPED_LITERAL = 2;
+    private static final byte NON_LITERAL_QUAD = 3;
+    private static final byte PLAIN_LITERAL_QUAD = 4;
+    private static final byte TYPED_LITERAL_QUAD = 5;
+    private static final byte INFO = 6;
+    private static final byte WARNING = 7;
+    private static final byte ERROR = 8;
+
+    private byte[] kinds = new byte[1024];
+    private String[] values = new String[4096];
+    private int kindCount = 0;
+    private int valueCount = 0;
+
+    private ParseException exception = null;
+
+    private void add(byte kind, String v1, String v2) {
+        ensureCapacity(2);
+        kinds[kindCount++] = kind;
+        values[valueCount++] = v1;
+        values[valueCount++] = v2;
+    }
+
+    private void add(byte kind, String v1, String v2, String v3) {
+        ensureCapacity(3);
+        kinds[kindCount++] = kind;
+        values[valueCount++] = v1;
+        values[valueCount++] = v2;
+        values[valueCount++] = v3;
+    }
+
+    private void add(byte kind, String v1, String v2, String v3, String v4) {
+        ensureCapacity(4);
+        kinds[kindCount++] = kind;
+        values[valueCount++] = v1;
+        values[valueCount++] = v2;
+        values[valueCount++] = v3;
+        values[valueCount++] = v4;
+    }
+
+    private void add(byte kind, String v1, String v2, String v3, String v4, String v5) {
+        ensureCapacity(5);
+        kinds[kindCount++] = kind;
+        values[valueCount++] = v1;
+        values[valueCount++] = v2;
+        values[valueCount++] = v3;
+        values[valueCount++] = v4;
+        values[valueCount++] = v5;
+    }
+
+    private void ensureCapacity(int valuesToAdd) {
+        if (kindCount == kinds.length) {
+            byte[] newKinds = new byte[kinds.length * 2];
+            System.arraycopy(kinds, 0, newKinds, 0, kindCount);
+            kinds = newKinds;
+        }
+        if (valueCount + valuesToAdd > values.length) {
+            String[] newValues = new String[values.length * 2];
+            System.arraycopy(values, 0, newValues, 0, valueCount);
+            values = newValues;
+        }
+    }
+
+    /**
+     * Sends recorded events to specified sink and handler preserving their order.
+     * Rethrows exception which interrupted recording, if any.
+     * @param sink sink to send statements to, must be a {@link QuadSink} if quads were recorded
+     * @param handler handler for recorded processor graph events, can be null
+     * @throws ParseException
+     */
+    void replay(TripleSink sink, ProcessorGraphHandler handler) throws ParseException {
+        int pos = 0;
+        for (int i = 0; i < kindCount; i++) {
+            switch (kinds[i]) {
+                case NON_LITERAL:
+                    sink.addNonLiteral(values[pos], values[pos + 1], values[pos + 2]);
+                    pos += 3;
+                    break;
+                case PLAIN_LITERAL:
+                    sink.addPlainLiteral(values[pos], values[pos + 1], values[pos + 2], values[pos + 3]);
+                    pos += 4;
+                    break;
+                case TYPED_LITERAL:
+                    sink.addTypedLiteral(values[pos], values[pos + 1], values[pos + 2], values[pos + 3]);
+                    pos += 4;
+                    break;
+                case NON_LITERAL_QUAD:
+                    ((QuadSink) sink).addNonLiteral(values[pos], values[pos + 1], values[pos + 2], values[pos + 3]);
+                    pos += 4;
+                    break;
+                case PLAIN_LITERAL_QUAD:
+                    ((QuadSink) sink).addPlainLiteral(values[pos], values[pos + 1], values[pos + 2],
+                            values[pos + 3], values[pos + 4]);
+                    pos += 5;
+                    break;
+                case TYPED_LITERAL_QUAD:
+                    ((QuadSink) sink).addTypedLiteral(values[pos], values[pos + 1], values[pos + 2],
+                            values[pos + 3], values[pos + 4]);
+                    pos += 5;
+                    break;
+                case INFO:
+                    if (handler != null) {
+                        handler.info(values[pos], values[pos + 1]);
+                    }
+                    pos += 2;
+                    break;
+                case WARNING:
+                    if (handler != null) {
+                        handler.warning(values[pos], values[pos + 1]);
+                    }
+                    pos += 2;
+                    break;
+                case ERROR:
+                    if (handler != null) {
+                        handler.error(values[pos], values[pos + 1]);
+                    }
+                    pos += 2;
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    void setException(ParseException exception) {
+        this.exception = exception;
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj) {
+        add(NON_LITERAL, subj, pred, obj);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang) {
+        add(PLAIN_LITERAL, subj, pred, content, lang);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type) {
+        add(TYPED_LITERAL, subj, pred, content, type);
+    }
+
+    @Override
+    public void addNonLiteral(String subj, String pred, String obj, String graph) {
+        add(NON_LITERAL_QUAD, subj, pred, obj, graph);
+    }
+
+    @Override
+    public void addPlainLiteral(String subj, String pred, String content, String lang, String graph) {
+        add(PLAIN_LITERAL_QUAD, subj, pred, content, lang, graph);
+    }
+
+    @Override
+    public void addTypedLiteral(String subj, String pred, String content, String type, String graph) {
+        add(TYPED_LITERAL_QUAD, subj, pred, content, type, graph);
+    }
+
+    @Override
+    public void info(String infoClass, String message) {
+        add(INFO, infoClass, message);
+    }
+
+    @Override
+    public void warning(String warningClass, String message) {
+        add(WARNING, warningClass, message);
+    }
+
+    @Override
+    public void error(String errorClass, String message) {
+        add(ERROR, errorClass, message);
+    }
+
+    @Override
+    public void setBaseUri(String baseUri) {
+    }
+
+    @Override
+    public void startStream() throws ParseException {
+    }
+
+    @Override
+    public void endStream() throws ParseException {
+    }
+
+    @Override
+    public boolean setProperty(String key, Object value) {
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf;
+
+/**
+ * Reusable {@link CharSequence} view used by parsers to pass terms without creating strings.
+ * View either wraps a slice of parser's input buffer or holds chars in its own scratch buffer,
+ * so it can outlive the input buffer after {@link #detach()}.
+ */
+final class TermView implements CharSequence {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private char[] scratch = new char[INITIAL_CAPACITY];
+    private char[] chars = scratch;
+    private int offset = 0;
+    private int length = 0;
+
+    /**
+     * Makes view empty and releases wrapped buffer.
+     */
+    void clear() {
+        chars = scratch;
+        offset = 0;
+        length = 0;
+    }
+
+    /**
+     * Points view to specified buffer slice without copying.
+     */
+    void wrap(char[] buffer, int start, int count) {
+        chars = buffer;
+        offset = start;
+        length = count;
+    }
+
+    /**
+     * Copies specified buffer slice to view's own buffer.
+     */
+    void copy(char[] buffer, int start, int count) {
+        ensureCapacity(count);
+        System.arraycopy(buffer, start, scratch, 0, count);
+        setScratch(count);
+    }
+
+    /**
+     * Decodes UTF-8 encoded buffer slice to view's own buffer. Malformed sequences are
+     * replaced with U+FFFD.
+     */
+    void decode(byte[] buffer, int start, int count) {
+        ensureCapacity(count);
+        int end = start + count;
+        int size = 0;
+        int pos = start;
+        while (pos < end) {
+            int b = buffer[pos++];
+            if (b >= 0) {
+                scratch[size++] = (char) b;
+                continue;
+            }
+            int extra;
+            int cp;
+            if ((b & 0xE0) == 0xC0) {
+                extra = 1;
+                cp = b & 0x1F;
+            } else if ((b & 0xF0) == 0xE0) {
+                extra = 2;
+                cp = b & 0x0F;
+            } else if ((b & 0xF8) == 0xF0) {
+                extra = 3;
+                cp = b & 0x07;
+            } else {
+                scratch[size++] = '\uFFFD';
+                continue;
+            }
+            int i = 0;
+            for (; i < extra && pos < end && (buffer[pos] & 0xC0) == 0x80; i++) {
+                cp = (cp << 6) | (buffer[pos++] & 0x3F);
+            }
+            if (i < extra) {
+                scratch[size++] = '\uFFFD';
+            } else if (Character.isValidCodePoint(cp)) {
+                size += Character.toChars(cp, scratch, size);
+            } else {
+                scratch[size++] = '\uFFFD';
+            }
+        }
+        setScratch(size);
+    }
+
+    /**
+     * Moves view content to view's own buffer, so wrapped buffer can be reused by its owner.
+     */
+    void detach() {
+        if (chars != scratch) {
+            ensureCapacity(length);
+            System.arraycopy(chars, offset, scratch, 0, length);
+            setScratch(length);
+        }
+    }
+
+    /**
+     * Narrows view to its subsequence.
+     */
+    void narrow(int start, int end) {
+        offset += start;
+        length = end - start;
+    }
+
+    /**
+     * Detaches view and gives direct access to its chars for in place modifications.
+     * Content starts at index 0, use {@link #setLength(int)} to commit changes.
+     */
+    char[] edit() {
+        detach();
+        return scratch;
+    }
+
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return array holding view content, valid until view is modified
+     */
+    char[] array() {
+        return chars;
+    }
+
+    /**
+     * @return offset of view content in {@link #array()}
+     */
+    int offset() {
+        return offset;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (scratch.length < capacity) {
+            scratch = new char[Math.max(scratch.length * 2, capacity)];
+        }
+    }
+
+    private void setScratch(int size) {
+        chars = scratch;
+        offset = 0;
+        length = size;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, offset, length);
+    }
+}
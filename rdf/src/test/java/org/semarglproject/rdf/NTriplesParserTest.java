@@ -16,25 +16,48 @@
 package org.semarglproject.rdf;
 
 import org.apache.commons.io.IOUtils;
+import org.semarglproject.sink.BatchTripleSink;
+import org.semarglproject.sink.ByteSink;
 import org.semarglproject.sink.CharOutputSink;
+import org.semarglproject.sink.CharSequenceAdapter;
+import org.semarglproject.sink.CharSequenceQuadSink;
+import org.semarglproject.sink.CharSequenceTripleSink;
+import org.semarglproject.sink.CharSink;
+import org.semarglproject.sink.DeduplicatingPipe;
+import org.semarglproject.sink.IdEncoder;
+import org.semarglproject.sink.IdQuadSink;
+import org.semarglproject.sink.IdTripleSink;
+import org.semarglproject.sink.QuadSink;
+import org.semarglproject.sink.TripleBatcher;
+import org.semarglproject.sink.TripleFilterPipe;
+import org.semarglproject.sink.TripleSink;
+import org.semarglproject.source.BaseStreamProcessor;
 import org.semarglproject.source.StreamProcessor;
 import org.semarglproject.test.SesameTestHelper;
 import org.semarglproject.test.TestNGHelper;
+import org.semarglproject.vocab.RDF;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -47,12 +70,43 @@ public final class NTriplesParserTest {
         put("http://www.w3.org/2000/10/rdf-tests/rdfcore/", "w3c/");
     }};
 
+    private static final String BROKEN_LINE = "<http://example.org/s> broken .\n";
+
+    private static final int[] CHUNK_SIZES = {1, 2, 7};
+
+    private static final String[] FILTERED_LINES = {
+            "<http://a.example/s> <http://a.example/p> <http://a.example/o> .\n",
+            "<http://a.example/s> <http://a.example/q> _:b1 .\n",
+            "_:b2 <http://a.example/p> \"esc\\\"aped \\u00E9\" .\n",
+            "<http://b.example/s> <http://a.example/p> \"hello\"@en .\n",
+            "<http://b.example/s> <http://a.example/q> \"bonjour\"@FR .\n",
+            "<http://a.example/s> <http://a.example/p> \"1\"^^<http://www.w3.org/2001/XMLSchema#int> .\n",
+            "<http://b.example/s> <http://a.example/q> \"x\"^^<http://a.example/type> .\n",
+            "<http://a.example/s> <http://a.example/p> \"plain\" .\n"
+    };
+
+    // escapes, raw multibyte chars (2, 3 and 4 bytes in UTF-8) and a surrogate pair split by small chunks
+    private static final String ESCAPES_DOCUMENT =
+            "<http://example.org/caf\\u00E9> <http://example.org/p> \"tab\\there \\\"quoted\\\" back\\\\slash\" .\n"
+            + "<http://example.org/s> <http://example.org/\u00e9t\u00e9> \"\u65e5\u672c\u8a9e\"@ja .\n"
+            + "_:b1 <http://example.org/p> \"smile \\U0001F600 \uD83D\uDE00\"^^<http://example.org/t\\u00E9> .\n"
+            + "# comment with \u00e9\n"
+            + "<http://example.org/s> <http://example.org/p> \"\u00e9\\u00e9\\r\\n\"@fr-ca .\n";
+
     private static final String TESTSUITE_MANIFEST_URI = "http://www.w3.org/2000/10/rdf-tests/rdfcore/Manifest.rdf";
 
     private CharOutputSink charOutputSink;
     private StreamProcessor streamProcessorTtl;
     private StreamProcessor streamProcessorNt;
     private StreamProcessor streamProcessorNq;
+    private ParallelStreamProcessor parallelStreamProcessor;
+    private ParallelStreamProcessor unorderedParallelStreamProcessor;
+    private StreamProcessor streamProcessorInterning;
+    private StreamProcessor streamProcessorIds;
+    private StreamProcessor streamProcessorBatched;
+    private StreamProcessor streamProcessorViews;
+    private StreamProcessor streamProcessorFiltered;
+    private StreamProcessor streamProcessorDeduplicated;
     private SesameTestHelper sth;
 
     @BeforeClass
@@ -62,6 +116,28 @@ public final class NTriplesParserTest {
         streamProcessorTtl = new StreamProcessor(NTriplesParser.connect(TurtleSerializer.connect(charOutputSink)));
         streamProcessorNt = new StreamProcessor(NTriplesParser.connect(NTriplesSerializer.connect(charOutputSink)));
         streamProcessorNq = new StreamProcessor(NTriplesParser.connect(NQuadsSerializer.connect(charOutputSink)));
+        parallelStreamProcessor = ParallelStreamProcessor.forNTriples(NTriplesSerializer.connect(charOutputSink));
+        parallelStreamProcessor.setProperty(ParallelStreamProcessor.CHUNK_SIZE_PROPERTY, 64);
+        unorderedParallelStreamProcessor = ParallelStreamProcessor.forNTriples(
+                NTriplesSerializer.connect(charOutputSink));
+        unorderedParallelStreamProcessor.setProperty(ParallelStreamProcessor.CHUNK_SIZE_PROPERTY, 64);
+        unorderedParallelStreamProcessor.setProperty(ParallelStreamProcessor.ORDERED_DELIVERY_PROPERTY, false);
+        streamProcessorInterning = new StreamProcessor(NTriplesParser.connect(NTriplesSerializer.connect(charOutputSink)));
+        streamProcessorInterning.setProperty(StreamProcessor.TERM_DICTIONARY_PROPERTY, new BoundedTermDictionary(16));
+        streamProcessorIds = new StreamProcessor(NTriplesParser.connect(
+                new IdDecoder(NTriplesSerializer.connect(charOutputSink))));
+        streamProcessorBatched = new StreamProcessor(NTriplesParser.connect(TripleBatcher.connect(
+                new Unbatcher(NTriplesSerializer.connect(charOutputSink)), 7)));
+        streamProcessorViews = new StreamProcessor(NTriplesParser.connect(
+                new ViewCopier(NTriplesSerializer.connect(charOutputSink))));
+        // filter accepts every triple of test suite, so pushdown mustn't drop anything
+        TripleFilter filter = new TripleFilter().subjectPrefixes("http:", "mailto:", RDF.BNODE_PREFIX)
+                .objectKinds(TripleFilter.ANY_OBJECT);
+        streamProcessorFiltered = new StreamProcessor(NTriplesParser.connect(TripleFilterPipe.connect(
+                NTriplesSerializer.connect(charOutputSink), filter)));
+        streamProcessorFiltered.setProperty(StreamProcessor.TRIPLE_FILTER_PROPERTY, filter);
+        streamProcessorDeduplicated = new StreamProcessor(NTriplesParser.connect(DeduplicatingPipe.connect(
+                NTriplesSerializer.connect(charOutputSink), DeduplicatingPipe.exact(1 << 16))));
     }
 
     @DataProvider
@@ -86,6 +162,410 @@ public final class NTriplesParserTest {
         runTest(caseName, new TestCallback(charOutputSink, streamProcessorNq, "nq"));
     }
 
+    @Test(dataProvider = "getTestSuite")
+    public void runWithParallelProcessor(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, parallelStreamProcessor, "parallel.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithUnorderedParallelProcessor(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, unorderedParallelStreamProcessor, "unordered.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithParallelProcessorFromBytes(TestCase testCase) throws Exception {
+        runBytesTest(testCase, parallelStreamProcessor, "parallel-bytes.nt");
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithTermDictionary(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, streamProcessorInterning, "interned.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithIdSink(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, streamProcessorIds, "ids.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithBatchedSink(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, streamProcessorBatched, "batched.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithCharSequenceSink(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, streamProcessorViews, "views.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithTripleFilter(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, streamProcessorFiltered, "filtered.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithDeduplicatingPipe(TestCase caseName) throws Exception {
+        runTest(caseName, new TestCallback(charOutputSink, streamProcessorDeduplicated, "dedup.nt"));
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithNTriplesSinkFromBytes(TestCase testCase) throws Exception {
+        runBytesTest(testCase, streamProcessorNt, "bytes.nt");
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithChunkedInput(TestCase testCase) throws Exception {
+        String document = IOUtils.toString(sth.openStreamForResource(testCase.input), "UTF-8");
+        assertChunkingInvariant(document, testCase.input);
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithCharSequenceQuadSink(TestCase testCase) throws Exception {
+        String document = IOUtils.toString(sth.openStreamForResource(testCase.input), "UTF-8");
+        assertViewsConform(document, testCase.input);
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void runWithIdQuadSink(TestCase testCase) throws Exception {
+        String document = IOUtils.toString(sth.openStreamForResource(testCase.input), "UTF-8");
+        assertIdsRoundTrip(document, testCase.input);
+    }
+
+    @Test
+    public void idQuadSinkDecodesGraphs() throws Exception {
+        String document = "<http://example.org/s> <http://example.org/p> _:o <http://example.org/g1> .\n"
+                + "_:o <http://example.org/p> \"1\"^^<http://example.org/type> _:g .\n"
+                + "_:o <http://example.org/p> \"a\"@en <http://example.org/g1> .\n"
+                + "<http://example.org/g1> <http://example.org/p> _:g _:g .\n";
+        String expected = parse(true, document, "http://example.org/", document.length(), false);
+        assertEquals(expected.trim().split("\n").length, 4);
+        assertEquals(parseIds(document, "http://example.org/", true), expected);
+    }
+
+    @Test
+    public void charSequenceQuadSinkKeepsEscapesAndMultibyteChars() throws Exception {
+        assertViewsConform(ESCAPES_DOCUMENT, "http://example.org/");
+    }
+
+    @Test
+    public void chunkedInputKeepsEscapesAndMultibyteChars() throws Exception {
+        assertChunkingInvariant(ESCAPES_DOCUMENT, "http://example.org/");
+        String output = parse(false, ESCAPES_DOCUMENT, "http://example.org/", ESCAPES_DOCUMENT.length(), false);
+        assertEquals(output.trim().split("\n").length, 4);
+    }
+
+    @DataProvider
+    public Object[][] getRejectingFilters() {
+        return new Object[][] {
+                {new TripleFilter().subjectPrefixes("http://a.example/"), new int[] {0, 1, 5, 7}, true},
+                {new TripleFilter().predicates("http://a.example/q"), new int[] {1, 4, 6}, true},
+                {new TripleFilter().objectKinds(TripleFilter.IRI | TripleFilter.TYPED_LITERAL),
+                        new int[] {0, 5, 6}, false},
+                {new TripleFilter().datatypes("http://www.w3.org/2001/XMLSchema#int"),
+                        new int[] {0, 1, 2, 3, 4, 5, 7}, false},
+                {new TripleFilter().languages("en", ""), new int[] {0, 1, 2, 3, 5, 6, 7}, false},
+                {new TripleFilter().subjectPrefixes("http://b.example/").predicates("http://a.example/p"),
+                        new int[] {3}, true},
+        };
+    }
+
+    /**
+     * Parser itself drops triples with rejected subject or predicate, other criteria are applied by pipe.
+     */
+    @Test(dataProvider = "getRejectingFilters")
+    public void rejectingFilterProducesExactOutput(TripleFilter filter, int[] acceptedLines,
+                                                   boolean exactPushdown) throws Exception {
+        StringBuilder document = new StringBuilder();
+        for (String line : FILTERED_LINES) {
+            document.append(line);
+        }
+        StringBuilder accepted = new StringBuilder();
+        for (int line : acceptedLines) {
+            accepted.append(FILTERED_LINES[line]);
+        }
+        String expected = parseFiltered(accepted.toString(), null, false, false, accepted.length(), false);
+        assertEquals(expected.trim().split("\n").length, acceptedLines.length);
+
+        String input = document.toString();
+        assertEquals(parseFiltered(input, filter, true, false, input.length(), false), expected);
+        for (int chunkSize : new int[] {1, 7, input.length()}) {
+            for (boolean bytes : new boolean[] {false, true}) {
+                assertEquals(parseFiltered(input, filter, true, true, chunkSize, bytes), expected);
+                if (exactPushdown) {
+                    assertEquals(parseFiltered(input, filter, false, true, chunkSize, bytes), expected);
+                }
+            }
+        }
+    }
+
+    @DataProvider
+    public Object[][] getMalformedRejectedLines() {
+        return new Object[][] {
+                {"<http://b.example/s> <http://a.example/p\\u00ZZ> <http://a.example/o> .\n"},
+                {"<http://b.example/s> <http://a.example/p> <http://a.example/o\\U0000> .\n"},
+                {"<http://b.example/s> <http://a.example/p> \"bad \\u12G4\" .\n"},
+                {"<http://b.example/s> <http://a.example/p> \"bad \\u12G4\"@en .\n"},
+        };
+    }
+
+    /**
+     * Terms of triples rejected by pushed down filter aren't materialized, but their escape
+     * sequences are still validated, so malformed input fails regardless of filter.
+     */
+    @Test(dataProvider = "getMalformedRejectedLines")
+    public void rejectedTriplesAreValidated(String line) throws Exception {
+        String document = FILTERED_LINES[0] + line + FILTERED_LINES[7];
+        TripleFilter filter = new TripleFilter().subjectPrefixes("http://a.example/");
+        for (int chunkSize : new int[] {1, 7, document.length()}) {
+            for (boolean bytes : new boolean[] {false, true}) {
+                for (boolean pushdown : new boolean[] {false, true}) {
+                    try {
+                        parseFiltered(document, filter, true, pushdown, chunkSize, bytes);
+                        fail();
+                    } catch (ParseException e) {
+                        // expected
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parallelProcessorAcceptsTermDictionary() {
+        ParallelStreamProcessor processor = ParallelStreamProcessor.forNTriples(
+                NTriplesSerializer.connect(new CharOutputSink("UTF-8")));
+        assertTrue(processor.setProperty(StreamProcessor.TERM_DICTIONARY_PROPERTY, new ConcurrentTermDictionary()));
+    }
+
+    @Test
+    public void parallelProcessorRethrowsChunkFailure() throws Exception {
+        String document = buildDocument(100, 50);
+        String expected = buildDocument(50, -1);
+        for (boolean bytes : new boolean[] {false, true}) {
+            StringWriter output = new StringWriter();
+            ParallelStreamProcessor processor = createParallelProcessor(output, true);
+            try {
+                processParallel(processor, document, bytes);
+                fail();
+            } catch (ParseException e) {
+                // chunks preceding the broken one are delivered, the rest are dropped
+                String delivered = output.toString().trim();
+                assertTrue(delivered.length() > 0);
+                assertTrue(expected.startsWith(delivered));
+            }
+        }
+    }
+
+    @Test
+    public void parallelProcessorRecoversFromChunkFailure() throws Exception {
+        String document = buildDocument(100, 50);
+        for (boolean ordered : new boolean[] {false, true}) {
+            for (boolean bytes : new boolean[] {false, true}) {
+                StringWriter output = new StringWriter();
+                ParallelStreamProcessor processor = createParallelProcessor(output, ordered);
+                processor.setProperty(StreamProcessor.ENABLE_ERROR_RECOVERY, true);
+                processParallel(processor, document, bytes);
+                assertEquals(sortLines(output.toString()), sortLines(document.replace(BROKEN_LINE, "")));
+            }
+        }
+    }
+
+    /**
+     * Feeds document to NTriples and NQuads parsers in char and byte chunks of different sizes,
+     * so tokens, escape sequences and UTF-8 sequences are split between buffers.
+     */
+    private static void assertChunkingInvariant(String document, String baseUri) throws Exception {
+        for (boolean quads : new boolean[] {false, true}) {
+            String input = quads ? toQuads(document) : document;
+            String expected = parse(quads, input, baseUri, input.length(), false);
+            for (int chunkSize : CHUNK_SIZES) {
+                assertEquals(parse(quads, input, baseUri, chunkSize, false), expected);
+                assertEquals(parse(quads, input, baseUri, chunkSize, true), expected);
+            }
+        }
+    }
+
+    /**
+     * Compares output of NQuads parser passing views to {@link CharSequenceQuadSink} and of
+     * {@link CharSequenceAdapter} receiving strings with output of plain {@link QuadSink}.
+     */
+    private static void assertViewsConform(String document, String baseUri) throws Exception {
+        String quads = toQuads(document);
+        String expected = parse(true, quads, baseUri, quads.length(), false);
+        String expectedTriples = parse(false, document, baseUri, document.length(), false);
+        for (int chunkSize : new int[] {1, 7, quads.length()}) {
+            for (boolean bytes : new boolean[] {false, true}) {
+                assertEquals(parseViews(quads, baseUri, true, false, chunkSize, bytes), expected);
+                assertEquals(parseViews(quads, baseUri, true, true, chunkSize, bytes), expected);
+                // quads are passed as triples to sink which doesn't accept quad views
+                assertEquals(parseViews(quads, baseUri, false, false, chunkSize, bytes), expectedTriples);
+                assertEquals(parseViews(quads, baseUri, false, true, chunkSize, bytes), expectedTriples);
+            }
+        }
+    }
+
+    /**
+     * Compares decoded output of NQuads parser connected to {@link IdQuadSink} with output of plain {@link QuadSink}.
+     */
+    private static void assertIdsRoundTrip(String document, String baseUri) throws Exception {
+        String quads = toQuads(document);
+        assertEquals(parseIds(quads, baseUri, true), parse(true, quads, baseUri, quads.length(), false));
+        // quads are passed as triples to sink which doesn't accept quads
+        assertEquals(parseIds(quads, baseUri, false), parse(false, document, baseUri, document.length(), false));
+    }
+
+    private static String parseIds(String document, String baseUri, boolean quadIds) throws Exception {
+        StringWriter output = new StringWriter();
+        CharOutputSink sink = new CharOutputSink("UTF-8");
+        sink.connect(output);
+        IdTripleSink decoder = quadIds ? new IdQuadDecoder(NQuadsSerializer.connect(sink))
+                : new IdDecoder(NTriplesSerializer.connect(sink));
+        feed(NQuadsParser.connect(IdEncoder.connect(decoder)), document, baseUri, 7, false);
+        return output.toString();
+    }
+
+    /**
+     * @param quadViews connect sink which accepts quad views
+     * @param strings hide adapter from parser, so it receives strings instead of views
+     */
+    private static String parseViews(String document, String baseUri, boolean quadViews, boolean strings,
+                                     int chunkSize, boolean bytes) throws Exception {
+        StringWriter output = new StringWriter();
+        CharOutputSink sink = new CharOutputSink("UTF-8");
+        sink.connect(output);
+        QuadSink adapter = quadViews ? CharSequenceAdapter.connect(new QuadViewCopier(NQuadsSerializer.connect(sink)))
+                : CharSequenceAdapter.connect(new ViewCopier(NTriplesSerializer.connect(sink)));
+        if (strings) {
+            adapter = TripleFilterPipe.connect(adapter, new TripleFilter());
+        }
+        feed(NQuadsParser.connect(adapter), document, baseUri, chunkSize, bytes);
+        return output.toString();
+    }
+
+    private static String toQuads(String document) {
+        StringBuilder result = new StringBuilder();
+        for (String line : document.split("\n")) {
+            String statement = line.trim();
+            if (statement.endsWith(".") && !statement.startsWith("#")) {
+                statement = statement.substring(0, statement.length() - 1) + "<http://example.org/g> .";
+            }
+            result.append(statement).append('\n');
+        }
+        return result.toString();
+    }
+
+    private static String parse(boolean quads, String document, String baseUri,
+                                int chunkSize, boolean bytes) throws Exception {
+        StringWriter output = new StringWriter();
+        CharOutputSink sink = new CharOutputSink("UTF-8");
+        sink.connect(output);
+        CharSink parser = quads ? NQuadsParser.connect(NQuadsSerializer.connect(sink))
+                : NTriplesParser.connect(NTriplesSerializer.connect(sink));
+        feed(parser, document, baseUri, chunkSize, bytes);
+        return output.toString();
+    }
+
+    /**
+     * @param filter filter to apply or null
+     * @param pipe apply filter with {@link TripleFilterPipe}
+     * @param pushdown push filter down to parser
+     */
+    private static String parseFiltered(String document, TripleFilter filter, boolean pipe, boolean pushdown,
+                                        int chunkSize, boolean bytes) throws Exception {
+        StringWriter output = new StringWriter();
+        CharOutputSink sink = new CharOutputSink("UTF-8");
+        sink.connect(output);
+        TripleSink tripleSink = NTriplesSerializer.connect(sink);
+        if (pipe) {
+            tripleSink = TripleFilterPipe.connect(tripleSink, filter);
+        }
+        CharSink parser = NTriplesParser.connect(tripleSink);
+        if (pushdown) {
+            parser.setProperty(StreamProcessor.TRIPLE_FILTER_PROPERTY, filter);
+        }
+        feed(parser, document, "http://example.org/", chunkSize, bytes);
+        return output.toString();
+    }
+
+    private static void feed(CharSink parser, String document, String baseUri,
+                             int chunkSize, boolean bytes) throws Exception {
+        parser.setBaseUri(baseUri);
+        parser.startStream();
+        try {
+            if (bytes) {
+                byte[] data = document.getBytes("UTF-8");
+                for (int pos = 0; pos < data.length; pos += chunkSize) {
+                    // fresh copy per chunk, so parser can't rely on previous buffer contents
+                    int count = Math.min(chunkSize, data.length - pos);
+                    ((ByteSink) parser).process(Arrays.copyOfRange(data, pos, pos + count), 0, count);
+                }
+            } else {
+                char[] data = document.toCharArray();
+                for (int pos = 0; pos < data.length; pos += chunkSize) {
+                    int count = Math.min(chunkSize, data.length - pos);
+                    parser.process(Arrays.copyOfRange(data, pos, pos + count), 0, count);
+                }
+            }
+        } finally {
+            parser.endStream();
+        }
+    }
+
+    private static String buildDocument(int lines, int brokenLine) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i == brokenLine) {
+                result.append(BROKEN_LINE);
+            }
+            result.append("<http://example.org/s> <http://example.org/p> \"").append(i).append("\" .\n");
+        }
+        return result.toString();
+    }
+
+    private static ParallelStreamProcessor createParallelProcessor(Writer output, boolean ordered) {
+        CharOutputSink sink = new CharOutputSink("UTF-8");
+        sink.connect(output);
+        ParallelStreamProcessor processor = ParallelStreamProcessor.forNTriples(NTriplesSerializer.connect(sink));
+        processor.setProperty(ParallelStreamProcessor.CHUNK_SIZE_PROPERTY, 128);
+        processor.setProperty(ParallelStreamProcessor.ORDERED_DELIVERY_PROPERTY, ordered);
+        return processor;
+    }
+
+    private static void processParallel(ParallelStreamProcessor processor, String document,
+                                        boolean bytes) throws Exception {
+        if (bytes) {
+            processor.process(new ByteArrayInputStream(document.getBytes("UTF-8")), "http://example.org/");
+        } else {
+            processor.process(new StringReader(document), "http://example.org/");
+        }
+    }
+
+    private static List<String> sortLines(String str) {
+        List<String> lines = Arrays.asList(str.split("\n"));
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private void runBytesTest(TestCase testCase, BaseStreamProcessor streamProcessor, String fileExt) {
+        String resultFilePath = sth.getOutputPath(testCase.input, fileExt);
+        new File(resultFilePath).getParentFile().mkdirs();
+        try {
+            InputStream input = sth.openStreamForResource(testCase.input);
+            Writer output = new OutputStreamWriter(new FileOutputStream(resultFilePath), "UTF-8");
+            try {
+                charOutputSink.connect(output);
+                streamProcessor.process(input, testCase.input);
+            } finally {
+                IOUtils.closeQuietly(input);
+                IOUtils.closeQuietly(output);
+            }
+        } catch (ParseException e) {
+            fail();
+        } catch (IOException e) {
+            fail();
+        }
+        assertTrue(sth.areModelsEqual(resultFilePath, testCase.result, testCase.input));
+    }
+
     public void runTest(TestCase testCase, SaveToFileCallback callback) {
         String resultFilePath = sth.getOutputPath(testCase.input, callback.getOutputFileExt());
         new File(resultFilePath).getParentFile().mkdirs();
@@ -109,10 +589,10 @@ public final class NTriplesParserTest {
     private static class TestCallback implements SaveToFileCallback {
 
         private final CharOutputSink charOutputSink;
-        private final StreamProcessor streamProcessor;
+        private final BaseStreamProcessor streamProcessor;
         private final String fileExt;
 
-        private TestCallback(CharOutputSink charOutputSink, StreamProcessor streamProcessor, String fileExt) {
+        private TestCallback(CharOutputSink charOutputSink, BaseStreamProcessor streamProcessor, String fileExt) {
             this.charOutputSink = charOutputSink;
             this.streamProcessor = streamProcessor;
             this.fileExt = fileExt;
@@ -130,6 +610,224 @@ public final class NTriplesParserTest {
         }
     }
 
+    /**
+     * Decodes dictionary encoded triples back to strings
+     */
+    private static class IdDecoder implements IdTripleSink {
+
+        private final TripleSink sink;
+        final Map<Long, String> terms = new HashMap<Long, String>();
+        final Map<Long, String[]> literals = new HashMap<Long, String[]>();
+
+        private IdDecoder(TripleSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void addIri(long id, String iri) {
+            terms.put(id, iri);
+        }
+
+        @Override
+        public void addBnode(long id, String bnode) {
+            terms.put(id, bnode);
+        }
+
+        @Override
+        public void addPlainLiteral(long id, String content, String lang) {
+            literals.put(id, new String[] {content, lang});
+        }
+
+        @Override
+        public void addTypedLiteral(long id, String content, String type) {
+            literals.put(id, new String[] {content, null, type});
+        }
+
+        @Override
+        public void addTriple(long subj, long pred, long obj) {
+            String[] literal = literals.remove(obj);
+            if (literal == null) {
+                sink.addNonLiteral(terms.get(subj), terms.get(pred), terms.get(obj));
+            } else if (literal.length == 2) {
+                sink.addPlainLiteral(terms.get(subj), terms.get(pred), literal[0], literal[1]);
+            } else {
+                sink.addTypedLiteral(terms.get(subj), terms.get(pred), literal[0], literal[2]);
+            }
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+            sink.setBaseUri(baseUri);
+        }
+
+        @Override
+        public void startStream() throws ParseException {
+            sink.startStream();
+        }
+
+        @Override
+        public void endStream() throws ParseException {
+            sink.endStream();
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            return sink.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Decodes dictionary encoded quads back to strings
+     */
+    private static final class IdQuadDecoder extends IdDecoder implements IdQuadSink {
+
+        private final QuadSink sink;
+
+        private IdQuadDecoder(QuadSink sink) {
+            super(sink);
+            this.sink = sink;
+        }
+
+        @Override
+        public void addQuad(long subj, long pred, long obj, long graph) {
+            String[] literal = literals.remove(obj);
+            if (literal == null) {
+                sink.addNonLiteral(terms.get(subj), terms.get(pred), terms.get(obj), terms.get(graph));
+            } else if (literal.length == 2) {
+                sink.addPlainLiteral(terms.get(subj), terms.get(pred), literal[0], literal[1], terms.get(graph));
+            } else {
+                sink.addTypedLiteral(terms.get(subj), terms.get(pred), literal[0], literal[2], terms.get(graph));
+            }
+        }
+    }
+
+    /**
+     * Passes blocks of triples to single triple sink
+     */
+    private static final class Unbatcher implements BatchTripleSink {
+
+        private final TripleSink sink;
+
+        private Unbatcher(TripleSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void addTriples(String[] subjs, String[] preds, String[] objs, byte[] kinds,
+                               String[] qualifiers, int count) {
+            for (int i = 0; i < count; i++) {
+                if (kinds[i] == NON_LITERAL) {
+                    sink.addNonLiteral(subjs[i], preds[i], objs[i]);
+                } else if (kinds[i] == PLAIN_LITERAL) {
+                    sink.addPlainLiteral(subjs[i], preds[i], objs[i], qualifiers[i]);
+                } else {
+                    sink.addTypedLiteral(subjs[i], preds[i], objs[i], qualifiers[i]);
+                }
+            }
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+            sink.setBaseUri(baseUri);
+        }
+
+        @Override
+        public void startStream() throws ParseException {
+            sink.startStream();
+        }
+
+        @Override
+        public void endStream() throws ParseException {
+            sink.endStream();
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            return sink.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Copies char sequence views to strings
+     */
+    private static class ViewCopier implements CharSequenceTripleSink {
+
+        private final TripleSink sink;
+
+        private ViewCopier(TripleSink sink) {
+            this.sink = sink;
+        }
+
+        static String copy(CharSequence seq) {
+            return seq == null ? null : seq.toString();
+        }
+
+        @Override
+        public void addNonLiteral(CharSequence subj, CharSequence pred, CharSequence obj) {
+            sink.addNonLiteral(copy(subj), copy(pred), copy(obj));
+        }
+
+        @Override
+        public void addPlainLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence lang) {
+            sink.addPlainLiteral(copy(subj), copy(pred), copy(content), copy(lang));
+        }
+
+        @Override
+        public void addTypedLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence type) {
+            sink.addTypedLiteral(copy(subj), copy(pred), copy(content), copy(type));
+        }
+
+        @Override
+        public void setBaseUri(String baseUri) {
+            sink.setBaseUri(baseUri);
+        }
+
+        @Override
+        public void startStream() throws ParseException {
+            sink.startStream();
+        }
+
+        @Override
+        public void endStream() throws ParseException {
+            sink.endStream();
+        }
+
+        @Override
+        public boolean setProperty(String key, Object value) {
+            return sink.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Copies char sequence views of quads to strings
+     */
+    private static final class QuadViewCopier extends ViewCopier implements CharSequenceQuadSink {
+
+        private final QuadSink sink;
+
+        private QuadViewCopier(QuadSink sink) {
+            super(sink);
+            this.sink = sink;
+        }
+
+        @Override
+        public void addNonLiteral(CharSequence subj, CharSequence pred, CharSequence obj, CharSequence graph) {
+            sink.addNonLiteral(copy(subj), copy(pred), copy(obj), copy(graph));
+        }
+
+        @Override
+        public void addPlainLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence lang,
+                                    CharSequence graph) {
+            sink.addPlainLiteral(copy(subj), copy(pred), copy(content), copy(lang), copy(graph));
+        }
+
+        @Override
+        public void addTypedLiteral(CharSequence subj, CharSequence pred, CharSequence content, CharSequence type,
+                                    CharSequence graph) {
+            sink.addTypedLiteral(copy(subj), copy(pred), copy(content), copy(type), copy(graph));
+        }
+    }
+
     public interface SaveToFileCallback {
         void run(Reader input, String inputUri, Writer output) throws ParseException;
         String getOutputFileExt();
@@ -24,17 +24,21 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -57,6 +61,7 @@ public final class RdfXmlParserTest {
     private StreamProcessor streamProcessorTtl;
     private StreamProcessor streamProcessorNt;
     private StreamProcessor streamProcessorNq;
+    private StreamProcessor streamProcessorInterning;
     private SesameTestHelper sth;
 
     @BeforeClass
@@ -66,6 +71,8 @@ public final class RdfXmlParserTest {
         streamProcessorTtl = new StreamProcessor(RdfXmlParser.connect(TurtleSerializer.connect(charOutputSink)));
         streamProcessorNt = new StreamProcessor(RdfXmlParser.connect(NTriplesSerializer.connect(charOutputSink)));
         streamProcessorNq = new StreamProcessor(RdfXmlParser.connect(NQuadsSerializer.connect(charOutputSink)));
+        streamProcessorInterning = new StreamProcessor(RdfXmlParser.connect(NTriplesSerializer.connect(charOutputSink)));
+        streamProcessorInterning.setProperty(StreamProcessor.TERM_DICTIONARY_PROPERTY, new BoundedTermDictionary(16));
     }
 
     @DataProvider
@@ -91,6 +98,58 @@ public final class RdfXmlParserTest {
         runTest(testCase, new TestCallback(charOutputSink, streamProcessorNq, "nq"));
     }
 
+    @Test(dataProvider = "getTestSuite")
+    public void runWithTermDictionary(TestCase testCase) {
+        runTest(testCase, new TestCallback(charOutputSink, streamProcessorInterning, "interned.nt"));
+    }
+
+    @Test
+    public void datatypeIsNotInheritedBySiblingProperty() throws Exception {
+        String document = "<rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'"
+                + " xmlns:ex='http://example.org/'>"
+                + "<rdf:Description rdf:about='http://example.org/s'>"
+                + "<ex:p1 rdf:datatype='http://www.w3.org/2001/XMLSchema#int'>1</ex:p1>"
+                + "<ex:p2>2</ex:p2>"
+                + "</rdf:Description>"
+                + "</rdf:RDF>";
+        StringWriter output = new StringWriter();
+        CharOutputSink sink = new CharOutputSink("UTF-8");
+        sink.connect(output);
+        new StreamProcessor(RdfXmlParser.connect(NTriplesSerializer.connect(sink)))
+                .process(new StringReader(document), "http://example.org/");
+        assertEquals(output.toString(),
+                "<http://example.org/s> <http://example.org/p1> \"1\"^^<http://www.w3.org/2001/XMLSchema#int> .\n"
+                + "<http://example.org/s> <http://example.org/p2> \"2\" .\n\n");
+    }
+
+    @Test
+    public void encodingIsDetectedFromInputStream() throws Exception {
+        String body = "<rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'"
+                + " xmlns:ex='http://example.org/'>"
+                + "<rdf:Description rdf:about='http://example.org/s'>"
+                + "<ex:p>caf\u00e9 \u00fc\u00df</ex:p>"
+                + "</rdf:Description>"
+                + "</rdf:RDF>";
+        String expected = "<http://example.org/s> <http://example.org/p> \"caf\\u00E9 \\u00FC\\u00DF\" .\n\n";
+        for (int readAhead : new int[] {0, 16}) {
+            assertEquals(parseRdfXml(body.getBytes("UTF-8"), readAhead), expected);
+            assertEquals(parseRdfXml(("<?xml version='1.0' encoding='ISO-8859-1'?>" + body).getBytes("ISO-8859-1"),
+                    readAhead), expected);
+            // UTF-16 encoder writes byte order mark
+            assertEquals(parseRdfXml(body.getBytes("UTF-16"), readAhead), expected);
+        }
+    }
+
+    private static String parseRdfXml(byte[] document, int readAhead) throws ParseException {
+        StringWriter output = new StringWriter();
+        CharOutputSink sink = new CharOutputSink("UTF-8");
+        sink.connect(output);
+        StreamProcessor streamProcessor = new StreamProcessor(RdfXmlParser.connect(NTriplesSerializer.connect(sink)));
+        streamProcessor.setProperty(StreamProcessor.READ_AHEAD_PROPERTY, readAhead);
+        streamProcessor.process(new ByteArrayInputStream(document), "http://example.org/");
+        return output.toString();
+    }
+
     public void runTest(TestCase testCase, SaveToFileCallback callback) {
         String resultFilePath = sth.getOutputPath(testCase.input, callback.getOutputFileExt());
         new File(resultFilePath).getParentFile().mkdirs();
@@ -133,6 +133,10 @@ final class DocumentContext {
         return parser.loadVocabulary(vocabUrl);
     }
 
+    Vocabulary awaitVocabulary(Vocabulary vocab) {
+        return parser.awaitVocabulary(vocab);
+    }
+
     void setBaseUri(String baseUri) {
         if (base == null) {
             originUri = baseUri;
@@ -21,7 +21,6 @@ import org.semarglproject.ri.MalformedIriException;
 import org.semarglproject.vocab.RDFa;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -269,6 +268,8 @@ final class EvalContext {
             }
             String term;
             if (vocab != null) {
+                // vocabulary loaded in background replaces its placeholder once terms are resolved against it
+                vocab = documentContext.awaitVocabulary(vocab);
                 term = vocab.resolveTerm(value);
             } else {
                 term = resolveXhtmlTerm(value);
@@ -282,11 +283,8 @@ final class EvalContext {
         return resolveCurieOrIri(value, true);
     }
 
-    Iterable<String> expand(String pred) {
-        if (vocab == null) {
-            return Collections.EMPTY_LIST;
-        }
-        return vocab.expand(pred);
+    Vocabulary getVocab() {
+        return vocab;
     }
 
     private String resolveCurieOrIri(String curie, boolean ignoreRelIri) throws MalformedIriException {
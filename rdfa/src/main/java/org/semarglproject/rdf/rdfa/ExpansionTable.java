@@ -0,0 +1,122 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable transitive closure of vocabulary expansion relations. Built once per vocabulary load,
+ * lookups don't allocate. Expansions are stored in open addressing table keyed by IRI, IRIs without
+ * expansions are resolved by a single hash probe (or without probing at all for empty tables).
+ */
+final class ExpansionTable {
+
+    static final ExpansionTable EMPTY = new ExpansionTable(Collections.<String, Collection<String>>emptyMap());
+
+    private static final String[] NO_EXPANSIONS = new String[0];
+
+    private final String[] keys;
+    private final String[][] values;
+    private final int mask;
+    private final int size;
+
+    /**
+     * Creates table from direct expansion relations.
+     * @param edges direct expansions of each IRI
+     */
+    ExpansionTable(Map<String, Collection<String>> edges) {
+        int capacity = 2;
+        while (capacity < edges.size() * 2) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        values = new String[capacity][];
+        mask = capacity - 1;
+
+        int count = 0;
+        for (String iri : edges.keySet()) {
+            Set<String> closure = computeClosure(iri, edges);
+            if (closure.isEmpty()) {
+                continue;
+            }
+            int slot = iri.hashCode() & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = iri;
+            values[slot] = closure.toArray(new String[closure.size()]);
+            count++;
+        }
+        size = count;
+    }
+
+    private static Set<String> computeClosure(String iri, Map<String, Collection<String>> edges) {
+        Set<String> closure = new LinkedHashSet<String>();
+        Deque<String> queue = new ArrayDeque<String>(edges.get(iri));
+        while (!queue.isEmpty()) {
+            String next = queue.poll();
+            if (next.equals(iri) || !closure.add(next)) {
+                continue;
+            }
+            Collection<String> nextEdges = edges.get(next);
+            if (nextEdges != null) {
+                queue.addAll(nextEdges);
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * @param iri IRI to expand
+     * @return all IRIs entailed by specified IRI excluding IRI itself, array must not be modified
+     */
+    String[] expand(String iri) {
+        if (size == 0) {
+            return NO_EXPANSIONS;
+        }
+        int slot = iri.hashCode() & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (key == iri || key.equals(iri)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_EXPANSIONS;
+    }
+
+    /**
+     * @return expansions as a map, suitable for serialization
+     */
+    Map<String, Collection<String>> toMap() {
+        Map<String, Collection<String>> result = new HashMap<String, Collection<String>>(size * 2);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                result.put(keys[i], Arrays.asList(values[i]));
+            }
+        }
+        return result;
+    }
+
+}
@@ -15,9 +15,12 @@
  */
 package org.semarglproject.rdf.rdfa;
 
+import org.semarglproject.rdf.EventTracer;
 import org.semarglproject.rdf.ParseException;
 import org.semarglproject.rdf.ProcessorGraphHandler;
 import org.semarglproject.rdf.RdfXmlParser;
+import org.semarglproject.rdf.TermDictionary;
+import org.semarglproject.rdf.TripleFilter;
 import org.semarglproject.ri.MalformedCurieException;
 import org.semarglproject.ri.MalformedIriException;
 import org.semarglproject.ri.RIUtils;
@@ -38,11 +41,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Implementation of streaming RDFa (<a href="http://www.w3.org/TR/2008/REC-rdfa-syntax-20081014/">1.0</a> and
@@ -54,9 +62,13 @@ import java.util.NoSuchElementException;
  *     <ul>
  *         <li>{@link #RDFA_VERSION_PROPERTY}</li>
  *         <li>{@link StreamProcessor#PROCESSOR_GRAPH_HANDLER_PROPERTY}</li>
+ *         <li>{@link StreamProcessor#TERM_DICTIONARY_PROPERTY}</li>
+ *         <li>{@link StreamProcessor#TRIPLE_FILTER_PROPERTY}</li>
  *         <li>{@link #ENABLE_OUTPUT_GRAPH}</li>
  *         <li>{@link #ENABLE_PROCESSOR_GRAPH}</li>
  *         <li>{@link #ENABLE_VOCAB_EXPANSION}</li>
+ *         <li>{@link #VOCAB_CACHE_PROPERTY}</li>
+ *         <li>{@link #VOCAB_PREFETCH_BUDGET_PROPERTY}</li>
  *     </ul>
  * </p>
  */
@@ -92,14 +104,27 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
     public static final String ENABLE_VOCAB_EXPANSION =
             "http://semarglproject.org/rdfa/properties/enable-vocab-expansion";
 
-    static final String AUTODETECT_DATE_DATATYPE = "AUTODETECT_DATE_DATATYPE";
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Allows to specify cache for vocabularies loaded during vocabulary expansion.
+     * Instance of {@link VocabCache} must be passed as a value. Process-wide cache is used by default.
+     */
+    public static final String VOCAB_CACHE_PROPERTY =
+            "http://semarglproject.org/rdfa/properties/vocab-cache";
 
-    private static final ThreadLocal<VocabManager> VOCAB_MANAGER = new ThreadLocal<VocabManager>() {
-        @Override
-        protected VocabManager initialValue() {
-            return new VocabManager();
-        }
-    };
+    /**
+     * Used as a key with {@link #setProperty(String, Object)} method.
+     * Enables asynchronous loading of vocabularies with specified per-document time budget in milliseconds.
+     * Parsing doesn't wait for vocabularies, expansions of triples which depend on a vocabulary
+     * being loaded are held back until it arrives or document end is reached and budget expires.
+     * Resolution of terms waits for vocabulary within the budget, so output matches synchronous mode.
+     * Terms are resolved without checking vocabulary content if budget expires.
+     * Zero (default) value enables synchronous loading.
+     */
+    public static final String VOCAB_PREFETCH_BUDGET_PROPERTY =
+            "http://semarglproject.org/rdfa/properties/vocab-prefetch-budget";
+
+    static final String AUTODETECT_DATE_DATATYPE = "AUTODETECT_DATE_DATATYPE";
 
     // flag used in incomplTriple list to indicate that following element should be
     // treated as having @rev relation instead of @rel
@@ -131,17 +156,28 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
     private static final String PARENT_OBJECT = "poie";
     private static final String BNODE_IF_TYPEOF = RDFa.TYPEOF_ATTR;
 
+    private static final EventTracer TRACER = EventTracer.get();
+
     private Deque<EvalContext> contextStack = null;
 
     private StringBuilder xmlString = null;
     private List<String> xmlStringPred = null;
     private String xmlStringSubj = null;
+    private Object xmlStringEvent = null;
 
     private Short forcedRdfaVersion = null;
     private boolean sinkOutputGraph;
     private boolean sinkProcessorGraph;
 
     private boolean expandVocab;
+    private VocabCache vocabCache = VocabCache.getSharedInstance();
+    private long vocabPrefetchBudget = 0;
+    private long vocabDeadline;
+    private TermDictionary termDictionary = null;
+    private TripleFilter tripleFilter = null;
+    // placeholders of vocabularies being loaded in background
+    private final Map<Vocabulary, Future<Vocabulary>> pendingVocabs = new IdentityHashMap<Vocabulary, Future<Vocabulary>>();
+    private final List<HeldExpansion> heldExpansions = new LinkedList<HeldExpansion>();
     private final DocumentContext dh;
     private final Splitter splitter;
     private Locator locator = null;
@@ -177,6 +213,9 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
 
     @Override
     public void startDocument() {
+        vocabDeadline = System.currentTimeMillis() + vocabPrefetchBudget;
+        dropHeldExpansions();
+
         EvalContext initialContext = EvalContext.createInitialContext(dh);
         initialContext.iriMappings.put("", XHTML_VOCAB);
         contextStack.push(initialContext);
@@ -184,13 +223,24 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
         xmlString = null;
         xmlStringPred = null;
         xmlStringSubj = null;
+        xmlStringEvent = null;
 
         rdfXmlInline = false;
         rdfXmlParser = null;
     }
 
+    @Override
+    public void endStream() throws ParseException {
+        // endDocument isn't called when document is aborted by I/O or sink failure
+        dropHeldExpansions();
+        super.endStream();
+    }
+
     @Override
     public void endDocument() throws SAXException {
+        releaseHeldExpansions(true);
+        pendingVocabs.clear();
+
         if (sinkOutputGraph) {
             Iterator<String> iterator = copyingPairs.iterator();
             while (iterator.hasNext()) {
@@ -246,7 +296,7 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
         }
 
         EvalContext parent = contextStack.peek();
-        if (parent.parsingLiteral) {
+        if (parent.parsingLiteral && xmlString != null) {
             xmlString.append(XmlUtils.serializeOpenTag(nsUri, qName, parent.iriMappings, attrs, false));
         }
 
@@ -815,9 +865,13 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
      */
     private void pushContext(EvalContext current, EvalContext parent, boolean skipElement) {
         if (current.parsingLiteral) {
-            xmlString = new StringBuilder();
             xmlStringPred = current.properties;
             xmlStringSubj = current.subject == null ? parent.subject : current.subject;
+            // literal isn't serialized if all its triples will be rejected
+            if (isXmlLiteralAccepted(xmlStringSubj, xmlStringPred, current.lang)) {
+                xmlStringEvent = TRACER.begin(EventTracer.Kind.XML_LITERAL);
+                xmlString = new StringBuilder();
+            }
         }
         if (current.parsingLiteral || skipElement) {
             current.subject = parent.subject;
@@ -866,6 +920,7 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
             }
             return;
         }
+        releaseHeldExpansions(false);
 
         EvalContext current = contextStack.pop();
         processXmlString(current);
@@ -890,6 +945,27 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
         }
     }
 
+    /**
+     * Checks if pushed down filter accepts any triple produced by XML literal. Vocabulary expansion
+     * can add accepted properties, so filter isn't applied when expansion is enabled.
+     * @param subj literal's subject
+     * @param preds literal's properties
+     * @param lang literal's language
+     * @return false if every triple will be rejected
+     */
+    private boolean isXmlLiteralAccepted(String subj, List<String> preds, String lang) {
+        if (tripleFilter == null || expandVocab || subj == null) {
+            return true;
+        }
+        for (String pred : preds) {
+            if (tripleFilter.acceptsTypedLiteral(subj, pred, RDF.XML_LITERAL)
+                    || dh.rdfaVersion == RDFa.VERSION_10 && tripleFilter.acceptsPlainLiteral(subj, pred, lang)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Generates triples for parsed literal if it present
      * @param current current context
@@ -907,6 +983,10 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
                     addTypedLiteral(xmlStringSubj, pred, content, RDF.XML_LITERAL);
                 }
             }
+            if (xmlStringEvent != null) {
+                TRACER.end(xmlStringEvent, dh.originUri, content.length(), xmlStringPred.size());
+                xmlStringEvent = null;
+            }
         }
     }
 
@@ -1064,10 +1144,20 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
                 sinkProcessorGraph = true;
                 expandVocab = true;
             }
+        } else if (VOCAB_CACHE_PROPERTY.equals(key) && value instanceof VocabCache) {
+            vocabCache = (VocabCache) value;
+        } else if (VOCAB_PREFETCH_BUDGET_PROPERTY.equals(key) && value instanceof Number) {
+            vocabPrefetchBudget = Math.max(0, ((Number) value).longValue());
         } else if (StreamProcessor.PROCESSOR_GRAPH_HANDLER_PROPERTY.equals(key)
                 && value instanceof ProcessorGraphHandler) {
             processorGraphHandler = (ProcessorGraphHandler) value;
             return false;
+        } else if (StreamProcessor.TERM_DICTIONARY_PROPERTY.equals(key) && value instanceof TermDictionary) {
+            termDictionary = (TermDictionary) value;
+            return false;
+        } else if (StreamProcessor.TRIPLE_FILTER_PROPERTY.equals(key) && value instanceof TripleFilter) {
+            tripleFilter = (TripleFilter) value;
+            return false;
         } else {
             return false;
         }
@@ -1090,7 +1180,138 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
         if (sinkOutputGraph) {
             sink.addNonLiteral(dh.base, RDFa.USES_VOCABULARY, vocabUrl);
         }
-        return VOCAB_MANAGER.get().findVocab(vocabUrl, expandVocab);
+        if (!expandVocab) {
+            return new Vocabulary(vocabUrl);
+        }
+        if (vocabPrefetchBudget == 0) {
+            return vocabCache.findVocab(vocabUrl);
+        }
+        Future<Vocabulary> future = vocabCache.prefetchVocab(vocabUrl);
+        if (future.isDone()) {
+            return getVocabulary(future, vocabUrl);
+        }
+        Vocabulary placeholder = new Vocabulary(vocabUrl);
+        pendingVocabs.put(placeholder, future);
+        return placeholder;
+    }
+
+    /**
+     * Waits for vocabulary being loaded in background until document's time budget expires.
+     * @param vocab vocabulary of evaluation context
+     * @return loaded vocabulary or specified one if it isn't being loaded or wasn't loaded within time budget
+     */
+    Vocabulary awaitVocabulary(Vocabulary vocab) {
+        Future<Vocabulary> future = pendingVocabs.get(vocab);
+        if (future == null) {
+            return vocab;
+        }
+        Vocabulary loaded;
+        if (future.isDone()) {
+            loaded = getVocabulary(future, vocab.getUrl());
+        } else {
+            loaded = waitForVocabulary(future, vocab.getUrl());
+        }
+        return loaded == null ? vocab : loaded;
+    }
+
+    private static Vocabulary getVocabulary(Future<Vocabulary> future, String vocabUrl) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // vocabulary can't be loaded
+        }
+        return new Vocabulary(vocabUrl);
+    }
+
+    /**
+     * Returns vocabulary of current context or holds back expansion if vocabulary is still being loaded.
+     * @return vocabulary to use for expansion or null if there is nothing to expand
+     */
+    private Vocabulary getExpansionVocab(short objectType, String subj, String pred, String obj, String langOrDt) {
+        Vocabulary vocab = contextStack.peek().getVocab();
+        if (vocab == null || pendingVocabs.isEmpty()) {
+            return vocab;
+        }
+        Future<Vocabulary> future = pendingVocabs.get(vocab);
+        if (future == null) {
+            return vocab;
+        }
+        if (future.isDone()) {
+            return getVocabulary(future, vocab.getUrl());
+        }
+        heldExpansions.add(new HeldExpansion(vocab, objectType, subj, pred, obj, langOrDt));
+        return null;
+    }
+
+    /**
+     * Sends expansions of held back triples whose vocabularies are loaded.
+     * @param waitForVocabs wait for vocabularies until document's time budget expires
+     */
+    private void releaseHeldExpansions(boolean waitForVocabs) {
+        if (heldExpansions.isEmpty()) {
+            return;
+        }
+        Iterator<HeldExpansion> iterator = heldExpansions.iterator();
+        while (iterator.hasNext()) {
+            HeldExpansion held = iterator.next();
+            Future<Vocabulary> future = pendingVocabs.get(held.vocab);
+            Vocabulary vocab;
+            if (future == null) {
+                vocab = null;
+            } else if (future.isDone()) {
+                vocab = getVocabulary(future, held.vocab.getUrl());
+            } else if (!waitForVocabs) {
+                continue;
+            } else {
+                vocab = waitForVocabulary(future, held.vocab.getUrl());
+            }
+            iterator.remove();
+            if (vocab == null) {
+                continue;
+            }
+            if (held.objectType == HeldExpansion.NON_LITERAL) {
+                expandNonLiteral(vocab, held.subj, held.pred, held.obj);
+            } else if (held.objectType == HeldExpansion.PLAIN_LITERAL) {
+                expandPlainLiteral(vocab, held.subj, held.pred, held.obj, held.langOrDt);
+            } else {
+                expandTypedLiteral(vocab, held.subj, held.pred, held.obj, held.langOrDt);
+            }
+        }
+    }
+
+    /**
+     * Forgets expansions held by previous document. Loading of vocabularies isn't cancelled,
+     * because their futures are shared through vocabulary cache.
+     */
+    private void dropHeldExpansions() {
+        heldExpansions.clear();
+        pendingVocabs.clear();
+    }
+
+    private Vocabulary waitForVocabulary(Future<Vocabulary> future, String vocabUrl) {
+        long timeout = vocabDeadline - System.currentTimeMillis();
+        if (timeout > 0) {
+            try {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                return null;
+            } catch (TimeoutException e) {
+                // handled below
+            }
+        }
+        warning(RDFa.WARNING, "Vocabulary " + vocabUrl + " was not loaded within time budget");
+        // expansions held by the same vocabulary are dropped without waiting
+        Iterator<Future<Vocabulary>> iterator = pendingVocabs.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == future) {
+                iterator.remove();
+            }
+        }
+        return null;
     }
 
     // error handling
@@ -1196,25 +1417,33 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
     }
 
     private void addNonLiteralInternal(String subj, String pred, String obj) {
+        if (termDictionary != null) {
+            subj = intern(subj);
+            pred = intern(pred);
+            obj = intern(obj);
+        }
+        sink.addNonLiteral(subj, pred, obj);
         if (!expandVocab) {
-            sink.addNonLiteral(subj, pred, obj);
             return;
         }
-        addNonLiteralWithObjExpansion(subj, pred, obj);
-        for (String predSynonym : contextStack.peek().expand(pred)) {
-            addNonLiteralWithObjExpansion(subj, predSynonym, obj);
+        Vocabulary vocab = getExpansionVocab(HeldExpansion.NON_LITERAL, subj, pred, obj, null);
+        if (vocab != null) {
+            expandNonLiteral(vocab, subj, pred, obj);
         }
     }
 
-    private void addNonLiteralWithObjExpansion(String subj, String pred, String obj) {
-        if (obj.startsWith(RDF.BNODE_PREFIX)) {
-            sink.addNonLiteral(subj, pred, obj);
-            return;
-        }
-        sink.addNonLiteral(subj, pred, obj);
-        for (String objSynonym : contextStack.peek().expand(obj)) {
+    private void expandNonLiteral(Vocabulary vocab, String subj, String pred, String obj) {
+        // bnodes are never expanded since vocabularies contain expansions of IRIs only
+        String[] objSynonyms = vocab.expand(obj);
+        for (String objSynonym : objSynonyms) {
             sink.addNonLiteral(subj, pred, objSynonym);
         }
+        for (String predSynonym : vocab.expand(pred)) {
+            sink.addNonLiteral(subj, predSynonym, obj);
+            for (String objSynonym : objSynonyms) {
+                sink.addNonLiteral(subj, predSynonym, objSynonym);
+            }
+        }
     }
 
     @Override
@@ -1234,8 +1463,20 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
     }
 
     private void addPlainLiteralInternal(String subj, String pred, String content, String lang) {
+        if (termDictionary != null) {
+            subj = intern(subj);
+            pred = intern(pred);
+            lang = intern(lang);
+        }
         sink.addPlainLiteral(subj, pred, content, lang);
-        for (String predSynonym : contextStack.peek().expand(pred)) {
+        Vocabulary vocab = getExpansionVocab(HeldExpansion.PLAIN_LITERAL, subj, pred, content, lang);
+        if (vocab != null) {
+            expandPlainLiteral(vocab, subj, pred, content, lang);
+        }
+    }
+
+    private void expandPlainLiteral(Vocabulary vocab, String subj, String pred, String content, String lang) {
+        for (String predSynonym : vocab.expand(pred)) {
             sink.addPlainLiteral(subj, predSynonym, content, lang);
         }
     }
@@ -1256,12 +1497,31 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
     }
 
     private void addTypedLiteralInternal(String subj, String pred, String content, String type) {
+        if (termDictionary != null) {
+            subj = intern(subj);
+            pred = intern(pred);
+            type = intern(type);
+        }
         sink.addTypedLiteral(subj, pred, content, type);
-        for (String predSynonym : contextStack.peek().expand(pred)) {
+        Vocabulary vocab = getExpansionVocab(HeldExpansion.TYPED_LITERAL, subj, pred, content, type);
+        if (vocab != null) {
+            expandTypedLiteral(vocab, subj, pred, content, type);
+        }
+    }
+
+    private void expandTypedLiteral(Vocabulary vocab, String subj, String pred, String content, String type) {
+        for (String predSynonym : vocab.expand(pred)) {
             sink.addTypedLiteral(subj, predSynonym, content, type);
         }
     }
 
+    private String intern(String term) {
+        if (term == null || term.startsWith(RDF.BNODE_PREFIX)) {
+            return term;
+        }
+        return termDictionary.intern(term);
+    }
+
     @Override
     public void setDocumentLocator(Locator locator) {
         this.locator = locator;
@@ -1353,4 +1613,29 @@ public final class RdfaParser extends Pipe<TripleSink> implements XmlSink, Tripl
         }
     }
 
+    /**
+     * Triple whose expansion waits for vocabulary being loaded.
+     */
+    private static final class HeldExpansion {
+        static final short NON_LITERAL = 0;
+        static final short PLAIN_LITERAL = 1;
+        static final short TYPED_LITERAL = 2;
+
+        final Vocabulary vocab;
+        final short objectType;
+        final String subj;
+        final String pred;
+        final String obj;
+        final String langOrDt;
+
+        HeldExpansion(Vocabulary vocab, short objectType, String subj, String pred, String obj, String langOrDt) {
+            this.vocab = vocab;
+            this.objectType = objectType;
+            this.subj = subj;
+            this.pred = pred;
+            this.obj = obj;
+            this.langOrDt = langOrDt;
+        }
+    }
+
 }
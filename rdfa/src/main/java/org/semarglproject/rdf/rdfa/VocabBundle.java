@@ -0,0 +1,184 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Precompiled vocabularies shipped on classpath. Bundles are looked up as {@link #RESOURCE_NAME} resources,
+ * so applications can add their own bundles compiled by {@link VocabBundleCompiler}. If several bundles
+ * contain the same vocabulary, the first one found on classpath wins.
+ * <p>
+ *     Bundle is a gzipped table of unique strings followed by vocabularies which refer to
+ *     strings by their indexes.
+ * </p>
+ */
+final class VocabBundle {
+
+    static final String RESOURCE_NAME = "org/semarglproject/rdf/rdfa/vocab-bundle.bin";
+
+    private static final int MAGIC = 0x53564231;
+    private static final int BUNDLE_VERSION = 1;
+
+    private VocabBundle() {
+    }
+
+    /**
+     * Finds precompiled vocabulary.
+     * @param vocabUrl vocabulary URL
+     * @return vocabulary or null if none of bundles contain it
+     */
+    static Vocabulary find(String vocabUrl) {
+        return BundledVocabs.VOCABS.get(vocabUrl);
+    }
+
+    static void write(Collection<Vocabulary> vocabs, OutputStream outputStream) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for (Vocabulary vocab : vocabs) {
+            index(vocab.getUrl(), strings, indexes);
+            for (String term : vocab.getTerms()) {
+                index(term, strings, indexes);
+            }
+            for (Map.Entry<String, Collection<String>> entry : vocab.getExpansions().entrySet()) {
+                index(entry.getKey(), strings, indexes);
+                for (String expansion : entry.getValue()) {
+                    index(expansion, strings, indexes);
+                }
+            }
+        }
+
+        GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+        DataOutputStream out = new DataOutputStream(gzipStream);
+        out.writeInt(MAGIC);
+        out.writeInt(BUNDLE_VERSION);
+        out.writeInt(strings.size());
+        for (String str : strings) {
+            out.writeUTF(str);
+        }
+        out.writeInt(vocabs.size());
+        for (Vocabulary vocab : vocabs) {
+            out.writeInt(indexes.get(vocab.getUrl()));
+            out.writeInt(vocab.getTerms().size());
+            for (String term : vocab.getTerms()) {
+                out.writeInt(indexes.get(term));
+            }
+            out.writeInt(vocab.getExpansions().size());
+            for (Map.Entry<String, Collection<String>> entry : vocab.getExpansions().entrySet()) {
+                out.writeInt(indexes.get(entry.getKey()));
+                out.writeInt(entry.getValue().size());
+                for (String expansion : entry.getValue()) {
+                    out.writeInt(indexes.get(expansion));
+                }
+            }
+        }
+        out.flush();
+        gzipStream.finish();
+    }
+
+    static void read(InputStream inputStream, Map<String, Vocabulary> vocabs) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a vocabulary bundle");
+        }
+        if (in.readInt() != BUNDLE_VERSION) {
+            throw new IOException("Unsupported vocabulary bundle version");
+        }
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int vocabCount = in.readInt();
+        for (int i = 0; i < vocabCount; i++) {
+            String url = strings[in.readInt()];
+            int termCount = in.readInt();
+            Collection<String> terms = new HashSet<String>(termCount * 2);
+            for (int j = 0; j < termCount; j++) {
+                terms.add(strings[in.readInt()]);
+            }
+            int expansionCount = in.readInt();
+            Map<String, Collection<String>> expansions = new HashMap<String, Collection<String>>(expansionCount * 2);
+            for (int j = 0; j < expansionCount; j++) {
+                String pred = strings[in.readInt()];
+                int count = in.readInt();
+                Collection<String> predExpansions = new HashSet<String>(count * 2);
+                for (int k = 0; k < count; k++) {
+                    predExpansions.add(strings[in.readInt()]);
+                }
+                expansions.put(pred, predExpansions);
+            }
+            if (!vocabs.containsKey(url)) {
+                vocabs.put(url, new Vocabulary(url, terms, expansions));
+            }
+        }
+    }
+
+    private static void index(String str, List<String> strings, Map<String, Integer> indexes) {
+        if (!indexes.containsKey(str)) {
+            indexes.put(str, strings.size());
+            strings.add(str);
+        }
+    }
+
+    private static Map<String, Vocabulary> loadBundles() {
+        Map<String, Vocabulary> vocabs = new HashMap<String, Vocabulary>();
+        ClassLoader classLoader = VocabBundle.class.getClassLoader();
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        try {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE_NAME);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try {
+                    InputStream inputStream = resource.openStream();
+                    try {
+                        read(inputStream, vocabs);
+                    } finally {
+                        inputStream.close();
+                    }
+                } catch (IOException e) {
+                    // broken bundle shouldn't prevent other bundles from loading
+                }
+            }
+        } catch (IOException e) {
+            // vocabularies will be loaded from network
+        }
+        return Collections.unmodifiableMap(vocabs);
+    }
+
+    // bundles are read once on first lookup
+    private static final class BundledVocabs {
+        private static final Map<String, Vocabulary> VOCABS = loadBundles();
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Build-time tool which compiles vocabularies into a bundle loaded by RdfaParser before any network access.
+ * <p>
+ *     Usage: <code>VocabBundleCompiler &lt;manifest&gt; &lt;bundle&gt;</code>. Each non-empty line of
+ *     manifest not starting with '#' contains vocabulary URL optionally followed by location of vocabulary
+ *     document (URL or path relative to manifest). Vocabulary URL is used as a location if none specified.
+ *     Resulting bundle should be placed on classpath as
+ *     <code>org/semarglproject/rdf/rdfa/vocab-bundle.bin</code> resource.
+ * </p>
+ */
+public final class VocabBundleCompiler {
+
+    private VocabBundleCompiler() {
+    }
+
+    /**
+     * Compiles vocabulary bundle.
+     * @param args manifest path and bundle path
+     * @throws IOException if manifest can't be read, bundle can't be written or any vocabulary can't be loaded
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: VocabBundleCompiler <manifest> <bundle>");
+        }
+        File manifest = new File(args[0]);
+        File bundle = new File(args[1]);
+
+        List<Vocabulary> vocabs = new ArrayList<Vocabulary>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                String location = parts.length > 1 ? resolveLocation(manifest, parts[1]) : parts[0];
+                Vocabulary vocab = new Vocabulary(parts[0]);
+                vocab.load(location);
+                if (!vocab.isLoaded()) {
+                    throw new IOException("Vocabulary " + parts[0] + " can't be loaded from " + location);
+                }
+                vocabs.add(vocab);
+            }
+        } finally {
+            reader.close();
+        }
+
+        File parent = bundle.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create directory " + parent);
+        }
+        OutputStream out = new FileOutputStream(bundle);
+        try {
+            VocabBundle.write(vocabs, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String resolveLocation(File manifest, String location) {
+        if (URI.create(location).isAbsolute()) {
+            return location;
+        }
+        return new File(manifest.getAbsoluteFile().getParentFile(), location).toURI().toString();
+    }
+
+}
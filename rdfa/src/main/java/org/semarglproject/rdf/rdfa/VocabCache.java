@@ -0,0 +1,390 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread-safe cache of vocabularies used for RDFa vocabulary expansion. Concurrent requests for missing
+ * vocabulary result in a single fetch. Cache is bounded and evicts least recently used vocabularies,
+ * loaded vocabularies expire after specified time. Vocabularies which can't be loaded are cached for
+ * a short time which grows exponentially with subsequent failures. Cache can be persisted to a file,
+ * so warm restarts don't require network access. Vocabularies precompiled into classpath bundle
+ * (see {@link VocabBundleCompiler}) are used before any network access and never expire.
+ * <p>
+ *     By default all RdfaParser instances share {@link #getSharedInstance() process-wide cache}.
+ *     Custom cache can be specified using {@link RdfaParser#VOCAB_CACHE_PROPERTY}.
+ * </p>
+ */
+public final class VocabCache {
+
+    /**
+     * Default maximum count of cached vocabularies
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /**
+     * Default time to live of loaded vocabulary in milliseconds
+     */
+    public static final long DEFAULT_TTL = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Default time in milliseconds before vocabulary loading is retried after first failure
+     */
+    public static final long DEFAULT_NEGATIVE_TTL = 60 * 1000L;
+
+    /**
+     * Default maximum time in milliseconds before vocabulary loading is retried
+     */
+    public static final long DEFAULT_MAX_NEGATIVE_TTL = 60 * 60 * 1000L;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // loads finished within this period are persisted with a single snapshot write
+    private static final long SNAPSHOT_WRITE_DELAY = 1000;
+
+    private static final VocabCache SHARED_INSTANCE = new VocabCache();
+
+    private static ExecutorService loaderExecutor = null;
+    private static ScheduledExecutorService snapshotExecutor = null;
+
+    private final long ttl;
+    private final long negativeTtl;
+    private final long maxNegativeTtl;
+
+    private final Map<String, Entry> entries;
+    private volatile File snapshotFile = null;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean(false);
+
+    /**
+     * Creates cache with default settings.
+     */
+    public VocabCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_NEGATIVE_TTL);
+    }
+
+    /**
+     * Creates cache with specified settings.
+     * @param maxSize maximum count of cached vocabularies
+     * @param ttl time to live of loaded vocabulary in milliseconds
+     * @param negativeTtl time in milliseconds before loading is retried after first failure
+     * @param maxNegativeTtl maximum time in milliseconds before loading is retried
+     */
+    public VocabCache(final int maxSize, long ttl, long negativeTtl, long maxNegativeTtl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxNegativeTtl = maxNegativeTtl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return cache shared by all RdfaParser instances by default
+     */
+    public static VocabCache getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Enables persistence of cache to specified file. If file exists, cache is populated with its content.
+     * File is rewritten in background shortly after vocabularies are loaded, so bursts of loads result
+     * in a single write. Use {@link #flushSnapshot()} to write pending changes immediately.
+     * @param file snapshot file, null disables persistence
+     * @throws IOException if existing snapshot can't be read
+     */
+    public void setSnapshotFile(File file) throws IOException {
+        if (file != null && file.exists()) {
+            loadSnapshot(file);
+        }
+        snapshotFile = file;
+    }
+
+    /**
+     * Writes loaded vocabularies to snapshot file if persistence is enabled. Should be called before
+     * shutdown, since background writes are performed by daemon thread.
+     * @throws IOException if snapshot can't be written
+     */
+    public void flushSnapshot() throws IOException {
+        snapshotScheduled.set(false);
+        File file = snapshotFile;
+        if (file != null) {
+            saveSnapshot(file);
+        }
+    }
+
+    /**
+     * Removes all vocabularies from cache.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Finds vocabulary in cache or loads it. Concurrent calls for the same URL wait for a single load.
+     * @param vocabUrl vocabulary URL
+     * @return vocabulary, which may contain no terms if it can't be loaded
+     */
+    Vocabulary findVocab(String vocabUrl) {
+        Entry entry = findEntry(vocabUrl, false);
+        return entry.get();
+    }
+
+    /**
+     * Finds vocabulary in cache or starts loading it in background.
+     * @param vocabUrl vocabulary URL
+     * @return future vocabulary, which may contain no terms if it can't be loaded
+     */
+    Future<Vocabulary> prefetchVocab(String vocabUrl) {
+        return findEntry(vocabUrl, true).task;
+    }
+
+    private Entry findEntry(String vocabUrl, boolean async) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(vocabUrl);
+        }
+        if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+            return entry;
+        }
+        // first bundle lookup reads bundle from classpath, so it mustn't block other cache users
+        Vocabulary bundled = VocabBundle.find(vocabUrl);
+        boolean loader = false;
+        synchronized (entries) {
+            entry = entries.get(vocabUrl);
+            if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+                if (bundled != null) {
+                    entry = new Entry(bundled, Long.MAX_VALUE, true);
+                } else {
+                    entry = new Entry(vocabUrl, entry == null ? 0 : entry.failures);
+                    loader = true;
+                }
+                entries.put(vocabUrl, entry);
+            }
+        }
+        if (loader) {
+            if (async) {
+                getLoaderExecutor().execute(entry.task);
+            } else {
+                entry.task.run();
+            }
+        }
+        return entry;
+    }
+
+    private static synchronized ExecutorService getLoaderExecutor() {
+        if (loaderExecutor == null) {
+            loaderExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "semargl-vocab-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loaderExecutor;
+    }
+
+    private static synchronized ScheduledExecutorService getSnapshotExecutor() {
+        if (snapshotExecutor == null) {
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "semargl-vocab-snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return snapshotExecutor;
+    }
+
+    private void onSnapshotChanged() {
+        if (snapshotFile == null || !snapshotScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        getSnapshotExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushSnapshot();
+                } catch (IOException e) {
+                    // snapshot is an optimization, parsing can proceed without it
+                }
+            }
+        }, SNAPSHOT_WRITE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void loadSnapshot(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long expiresAt = in.readLong();
+                Vocabulary vocab = Vocabulary.read(in);
+                if (expiresAt > System.currentTimeMillis()) {
+                    synchronized (entries) {
+                        entries.put(vocab.getUrl(), new Entry(vocab, expiresAt, false));
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private synchronized void saveSnapshot(File file) throws IOException {
+        List<Entry> loaded = new ArrayList<Entry>();
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (!entry.bundled && entry.task.isDone() && entry.get().isLoaded()) {
+                    loaded.add(entry);
+                }
+            }
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(loaded.size());
+            for (Entry entry : loaded) {
+                out.writeLong(entry.expiresAt);
+                entry.get().write(out);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file) && (!file.delete() || !tempFile.renameTo(file))) {
+            throw new IOException("Can't replace snapshot file " + file);
+        }
+    }
+
+    private final class Entry {
+
+        private final String vocabUrl;
+        private final FutureTask<Vocabulary> task;
+        private final boolean bundled;
+        private volatile long expiresAt = Long.MAX_VALUE;
+        private volatile int failures;
+
+        private Entry(final String vocabUrl, int failures) {
+            this.vocabUrl = vocabUrl;
+            this.failures = failures;
+            this.bundled = false;
+            this.task = new FutureTask<Vocabulary>(new Callable<Vocabulary>() {
+                @Override
+                public Vocabulary call() {
+                    Vocabulary vocab = new Vocabulary(vocabUrl);
+                    try {
+                        vocab.load();
+                    } finally {
+                        onLoaded(vocab);
+                    }
+                    return vocab;
+                }
+            }) {
+                @Override
+                protected void done() {
+                    if (Entry.this.failures == 0) {
+                        onSnapshotChanged();
+                    }
+                }
+            };
+        }
+
+        private Entry(final Vocabulary vocab, long expiresAt, boolean bundled) {
+            this.vocabUrl = vocab.getUrl();
+            this.expiresAt = expiresAt;
+            this.bundled = bundled;
+            this.task = new FutureTask<Vocabulary>(new Callable<Vocabulary>() {
+                @Override
+                public Vocabulary call() {
+                    return vocab;
+                }
+            });
+            task.run();
+        }
+
+        private void onLoaded(Vocabulary vocab) {
+            long now = System.currentTimeMillis();
+            if (vocab.isLoaded()) {
+                failures = 0;
+                expiresAt = now + ttl;
+            } else {
+                long backoff = negativeTtl << Math.min(failures, 30);
+                failures++;
+                expiresAt = now + Math.min(backoff, maxNegativeTtl);
+            }
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+
+        private Vocabulary get() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return task.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        return new Vocabulary(vocabUrl);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+}
@@ -15,22 +15,21 @@
  */
 package org.semarglproject.rdf.rdfa;
 
+import org.semarglproject.rdf.EventTracer;
 import org.semarglproject.rdf.ParseException;
 import org.semarglproject.rdf.RdfXmlParser;
 import org.semarglproject.ri.RIUtils;
 import org.semarglproject.sink.TripleSink;
-import org.semarglproject.source.StreamProcessor;
+import org.semarglproject.sink.XmlSink;
+import org.semarglproject.source.SniffingStreamProcessor;
 import org.semarglproject.vocab.OWL;
 import org.semarglproject.vocab.RDF;
 import org.semarglproject.vocab.RDFS;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -38,80 +37,131 @@ import java.util.Map;
 final class Vocabulary {
 
     private final String url;
-    private Map<String, Collection<String>> expansions = null;
+    private ExpansionTable expansions = ExpansionTable.EMPTY;
     private Collection<String> terms = null;
 
     Vocabulary(String url) {
         this.url = url;
     }
 
-    private void addExpansion(String pred, String expansion) {
-        if (!expansions.containsKey(pred)) {
-            expansions.put(pred, new HashSet<String>());
-        }
-        expansions.get(pred).add(expansion);
+    Vocabulary(String url, Collection<String> terms, Map<String, Collection<String>> expansions) {
+        this.url = url;
+        this.terms = terms;
+        this.expansions = new ExpansionTable(expansions);
     }
 
-    void load() {
-        VocabParser vocabParser = new VocabParser();
+    String getUrl() {
+        return url;
+    }
 
-        URL vocabUrl;
-        try {
-            vocabUrl = new URL(url);
-        } catch (MalformedURLException e) {
-            return;
-        }
+    /**
+     * @return true if vocabulary was loaded and contains any terms
+     */
+    boolean isLoaded() {
+        return terms != null;
+    }
 
-        if (expansions == null) {
-            expansions = new HashMap<String, Collection<String>>();
-            terms = new HashSet<String>();
-        }
+    Collection<String> getTerms() {
+        return terms;
+    }
 
-        StreamProcessor rdfaSp = new StreamProcessor(RdfaParser.connect(vocabParser));
-        rdfaSp.setProperty(RdfaParser.ENABLE_VOCAB_EXPANSION, false);
-        parseVocabWithDp(vocabUrl, rdfaSp);
+    Map<String, Collection<String>> getExpansions() {
+        return expansions.toMap();
+    }
 
-        if (!terms.isEmpty() || !expansions.isEmpty()) {
+    void write(DataOutput out) throws IOException {
+        out.writeUTF(url);
+        out.writeBoolean(terms != null);
+        if (terms == null) {
             return;
         }
+        out.writeInt(terms.size());
+        for (String term : terms) {
+            out.writeUTF(term);
+        }
+        Map<String, Collection<String>> expansionMap = expansions.toMap();
+        out.writeInt(expansionMap.size());
+        for (Map.Entry<String, Collection<String>> entry : expansionMap.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String expansion : entry.getValue()) {
+                out.writeUTF(expansion);
+            }
+        }
+    }
 
-        // TODO: add format detection
-        StreamProcessor rdfXmlSp = new StreamProcessor(RdfXmlParser.connect(vocabParser));
-        rdfaSp.setProperty(RdfaParser.ENABLE_VOCAB_EXPANSION, false);
-        parseVocabWithDp(vocabUrl, rdfXmlSp);
-
-        if (terms.isEmpty() && expansions.isEmpty()) {
-            terms = null;
-            expansions = null;
+    static Vocabulary read(DataInput in) throws IOException {
+        String url = in.readUTF();
+        if (!in.readBoolean()) {
+            return new Vocabulary(url);
+        }
+        Collection<String> terms = new HashSet<String>();
+        Map<String, Collection<String>> expansions = new HashMap<String, Collection<String>>();
+        int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            terms.add(in.readUTF());
+        }
+        int expansionCount = in.readInt();
+        for (int i = 0; i < expansionCount; i++) {
+            String pred = in.readUTF();
+            int count = in.readInt();
+            for (int j = 0; j < count; j++) {
+                addExpansion(expansions, pred, in.readUTF());
+            }
         }
+        return new Vocabulary(url, terms, expansions);
     }
 
-    private void parseVocabWithDp(URL vocabUrl, StreamProcessor streamProcessor) {
-        InputStream inputStream;
-        try {
-            inputStream = vocabUrl.openStream();
-        } catch (IOException e) {
-            return;
+    private static void addExpansion(Map<String, Collection<String>> expansions, String pred, String expansion) {
+        if (!expansions.containsKey(pred)) {
+            expansions.put(pred, new HashSet<String>());
         }
-        InputStreamReader reader = new InputStreamReader(inputStream);
+        expansions.get(pred).add(expansion);
+    }
+
+    void load() {
+        load(url);
+    }
+
+    /**
+     * Loads vocabulary from specified location using vocabulary URL as a base.
+     * @param location URL of vocabulary document or its copy
+     */
+    void load(String location) {
+        EventTracer tracer = EventTracer.get();
+        Object event = tracer.begin(EventTracer.Kind.VOCABULARY_LOAD);
+        VocabParser vocabParser = new VocabParser();
+        XmlSink rdfaParser = RdfaParser.connect(vocabParser);
+        SniffingStreamProcessor streamProcessor = new SniffingStreamProcessor()
+                .register(SniffingStreamProcessor.RDF_XML, RdfXmlParser.connect(vocabParser))
+                .register(SniffingStreamProcessor.HTML, rdfaParser)
+                .register(SniffingStreamProcessor.XHTML, rdfaParser)
+                .register(SniffingStreamProcessor.XML, rdfaParser);
+        streamProcessor.setProperty(RdfaParser.ENABLE_VOCAB_EXPANSION, false);
         try {
-            streamProcessor.process(reader, url);
+            streamProcessor.process(location, url);
         } catch (ParseException e) {
             // do nothing
-        } finally {
-            try {
-                reader.close();
-            } catch (IOException e) {
-                // do nothing
-            }
         }
-    }
 
-    Collection<String> expand(String uri) {
-        if (expansions == null || !expansions.containsKey(uri)) {
-            return Collections.EMPTY_LIST;
+        if (vocabParser.terms.isEmpty() && vocabParser.edges.isEmpty()) {
+            terms = null;
+            expansions = ExpansionTable.EMPTY;
+        } else {
+            terms = vocabParser.terms;
+            expansions = new ExpansionTable(vocabParser.edges);
         }
-        return expansions.get(uri);
+        if (event != null) {
+            tracer.end(event, location, vocabParser.terms.size(), vocabParser.triples);
+        }
+    }
+
+    /**
+     * @param uri IRI to expand
+     * @return all IRIs transitively entailed by specified IRI, array must not be modified
+     */
+    String[] expand(String uri) {
+        return expansions.expand(uri);
     }
 
     String resolveTerm(String term) {
@@ -122,19 +172,25 @@ final class Vocabulary {
         return null;
     }
 
-    private final class VocabParser implements TripleSink {
+    private static final class VocabParser implements TripleSink {
+
+        private final Collection<String> terms = new HashSet<String>();
+        private final Map<String, Collection<String>> edges = new HashMap<String, Collection<String>>();
+        private long triples = 0;
+
         @Override
         public void addNonLiteral(String subj, String pred, String obj) {
+            triples++;
             if (subj.startsWith(RDF.BNODE_PREFIX) || obj.startsWith(RDF.BNODE_PREFIX)) {
                 return;
             }
             if (pred.equals(OWL.EQUIVALENT_PROPERTY) || pred.equals(OWL.EQUIVALENT_CLASS)) {
-                addExpansion(subj, obj);
-                addExpansion(obj, subj);
+                addExpansion(edges, subj, obj);
+                addExpansion(edges, obj, subj);
                 terms.add(obj);
                 terms.add(subj);
             } else if (pred.equals(RDFS.SUB_CLASS_OF) || pred.equals(RDFS.SUB_PROPERTY_OF)) {
-                addExpansion(subj, obj);
+                addExpansion(edges, subj, obj);
                 terms.add(obj);
                 terms.add(subj);
             }
@@ -145,10 +201,12 @@ final class Vocabulary {
 
         @Override
         public void addPlainLiteral(String subj, String pred, String content, String lang) {
+            triples++;
         }
 
         @Override
         public void addTypedLiteral(String subj, String pred, String content, String type) {
+            triples++;
         }
 
         @Override
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+
+public final class ExpansionTableTest {
+
+    @Test
+    public void testEmptyTable() {
+        assertEquals(ExpansionTable.EMPTY.expand("http://example.org/a").length, 0);
+        assertEquals(new ExpansionTable(new HashMap<String, Collection<String>>()).expand("a").length, 0);
+    }
+
+    @Test
+    public void testMultiHopChain() {
+        ExpansionTable table = new ExpansionTable(edges("a", "b", "b", "c", "c", "d", "x", "c"));
+        assertEquals(set(table.expand("a")), set("b", "c", "d"));
+        assertEquals(set(table.expand("b")), set("c", "d"));
+        assertEquals(set(table.expand("x")), set("c", "d"));
+        assertEquals(set(table.expand("d")), set());
+    }
+
+    @Test
+    public void testCyclesDontExpandToSelf() {
+        ExpansionTable table = new ExpansionTable(edges("a", "b", "b", "c", "c", "a", "c", "d", "e", "e"));
+        assertEquals(set(table.expand("a")), set("b", "c", "d"));
+        assertEquals(set(table.expand("b")), set("a", "c", "d"));
+        assertEquals(set(table.expand("c")), set("a", "b", "d"));
+        assertEquals(table.expand("e").length, 0);
+        assertEquals(table.toMap().keySet(), set("a", "b", "c"));
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        // all keys have equal hash codes, so they occupy a single probe sequence
+        String[] keys = {"Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB"};
+        assertEquals(keys[0].hashCode(), keys[1].hashCode());
+        assertEquals(keys[2].hashCode(), keys[5].hashCode());
+        Map<String, Collection<String>> edges = new HashMap<String, Collection<String>>();
+        for (String key : keys) {
+            edges.put(key, Arrays.asList(key + "-expansion"));
+        }
+        ExpansionTable table = new ExpansionTable(edges);
+        for (String key : keys) {
+            assertEquals(set(table.expand(key)), set(key + "-expansion"));
+            // lookup by equal but not identical string
+            assertEquals(set(table.expand(new String(key))), set(key + "-expansion"));
+        }
+        // absent keys with the same hash code walk the probe sequence until empty slot
+        assertEquals("C#".hashCode(), "Aa".hashCode());
+        assertEquals(table.expand("C#").length, 0);
+        assertEquals(table.expand("C#C#").length, 0);
+    }
+
+    @Test
+    public void testMapRoundtrip() {
+        ExpansionTable table = new ExpansionTable(edges("a", "b", "b", "c", "c", "a", "d", "a"));
+        ExpansionTable copy = new ExpansionTable(table.toMap());
+        for (String iri : new String[] {"a", "b", "c", "d", "e"}) {
+            assertEquals(set(copy.expand(iri)), set(table.expand(iri)));
+        }
+    }
+
+    private static Map<String, Collection<String>> edges(String... pairs) {
+        Map<String, Collection<String>> result = new HashMap<String, Collection<String>>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (!result.containsKey(pairs[i])) {
+                result.put(pairs[i], new HashSet<String>());
+            }
+            result.get(pairs[i]).add(pairs[i + 1]);
+        }
+        return result;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+}
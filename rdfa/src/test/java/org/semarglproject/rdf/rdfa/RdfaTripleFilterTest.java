@@ -0,0 +1,173 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import org.semarglproject.rdf.NTriplesSerializer;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.rdf.TripleFilter;
+import org.semarglproject.sink.CharOutputSink;
+import org.semarglproject.sink.TripleFilterPipe;
+import org.semarglproject.sink.TripleSink;
+import org.semarglproject.source.StreamProcessor;
+import org.semarglproject.vocab.RDF;
+import org.semarglproject.vocab.RDFa;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public final class RdfaTripleFilterTest {
+
+    private static final String BASE = "http://example.org/doc";
+    private static final String A = "http://a.example/";
+    private static final String B = "http://b.example/";
+    private static final String XSD_INT = "http://www.w3.org/2001/XMLSchema#int";
+
+    private static final String DOCUMENT = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body>"
+            + "<div about=\"" + A + "s\">"
+            + "<span property=\"" + A + "p\" xml:lang=\"en\">hello</span>"
+            + "<span property=\"" + A + "q\" datatype=\"" + A + "type\">x</span>"
+            + "<span property=\"" + A + "p\" datatype=\"" + XSD_INT + "\">1</span>"
+            + "<span property=\"" + A + "xml\" datatype=\"" + RDF.XML_LITERAL + "\">first <b>bold</b></span>"
+            + "<a rel=\"" + A + "q\" href=\"" + A + "o\">o</a>"
+            + "</div>"
+            + "<div about=\"" + B + "s\">"
+            + "<span property=\"" + A + "xml\" datatype=\"" + RDF.XML_LITERAL + "\">second <i>italic</i></span>"
+            + "<span property=\"" + A + "p\" xml:lang=\"fr\">bonjour</span>"
+            + "</div>"
+            + "</body></html>";
+
+    // each token identifies single line of unfiltered output
+    private static final String[] TOKENS = {"hello", "\"x\"", "\"1\"", "bold", "<" + A + "o>", "italic", "bonjour"};
+
+    @DataProvider
+    public Object[][] getRejectingFilters() {
+        return new Object[][] {
+                {new TripleFilter().subjectPrefixes(A),
+                        new String[] {"hello", "\"x\"", "\"1\"", "bold", "<" + A + "o>"}, new String[] {"italic"}},
+                {new TripleFilter().predicates(A + "p", A + "q"),
+                        new String[] {"hello", "\"x\"", "\"1\"", "<" + A + "o>", "bonjour"},
+                        new String[] {"bold", "italic"}},
+                {new TripleFilter().objectKinds(TripleFilter.IRI | TripleFilter.PLAIN_LITERAL),
+                        new String[] {"hello", "<" + A + "o>", "bonjour"}, new String[] {"bold", "italic"}},
+                {new TripleFilter().datatypes(XSD_INT),
+                        new String[] {"hello", "\"1\"", "<" + A + "o>", "bonjour"}, new String[] {"bold", "italic"}},
+                {new TripleFilter().datatypes(RDF.XML_LITERAL),
+                        new String[] {"hello", "bold", "<" + A + "o>", "italic", "bonjour"}, new String[0]},
+                {new TripleFilter().languages("fr"),
+                        new String[] {"\"x\"", "\"1\"", "bold", "<" + A + "o>", "italic", "bonjour"}, new String[0]},
+        };
+    }
+
+    /**
+     * Parser itself doesn't serialize XML literals whose triples are all rejected, other
+     * triples are dropped by pipe.
+     */
+    @Test(dataProvider = "getRejectingFilters")
+    public void testRejectingFilterProducesExactOutput(TripleFilter filter, String[] accepted,
+                                                       String[] skippedXmlLiterals) throws ParseException {
+        List<String> all = parse(DOCUMENT, RDFa.VERSION_11, null, false, false, false);
+        assertEquals(all.size(), TOKENS.length);
+        List<String> expected = select(all, accepted);
+        assertEquals(parse(DOCUMENT, RDFa.VERSION_11, filter, true, false, false), expected);
+        assertEquals(parse(DOCUMENT, RDFa.VERSION_11, filter, true, true, false), expected);
+
+        List<String> pushedDown = new ArrayList<String>(all);
+        pushedDown.removeAll(select(all, skippedXmlLiterals));
+        assertEquals(parse(DOCUMENT, RDFa.VERSION_11, filter, false, true, false), pushedDown);
+    }
+
+    @Test
+    public void testXmlLiteralsAreSerializedWithVocabExpansion() throws ParseException {
+        // expansion can add accepted properties, so pushdown is disabled
+        TripleFilter filter = new TripleFilter().subjectPrefixes(A).predicates(A + "p");
+        List<String> all = parse(DOCUMENT, RDFa.VERSION_11, null, false, false, true);
+        assertEquals(parse(DOCUMENT, RDFa.VERSION_11, filter, false, true, true), all);
+        assertEquals(parse(DOCUMENT, RDFa.VERSION_11, filter, true, true, true),
+                select(all, "hello", "\"1\""));
+    }
+
+    @Test
+    public void testPlainLiteralsOfRdfa10() throws ParseException {
+        // RDFa 1.0 literals without markup are plain, so they are accepted by plain literal filter
+        String document = "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body><div about=\"" + A + "s\">"
+                + "<span property=\"" + A + "p\">plain</span>"
+                + "<span property=\"" + A + "p\">with <b>markup</b></span>"
+                + "</div></body></html>";
+        TripleFilter filter = new TripleFilter().objectKinds(TripleFilter.PLAIN_LITERAL);
+        List<String> all = parse(document, RDFa.VERSION_10, null, false, false, false);
+        assertEquals(all.size(), 2);
+        List<String> expected = select(all, "plain");
+        assertEquals(parse(document, RDFa.VERSION_10, filter, true, true, false), expected);
+        // markup isn't known before literal ends, so both literals are serialized
+        assertEquals(parse(document, RDFa.VERSION_10, filter, false, true, false), all);
+
+        filter = new TripleFilter().objectKinds(TripleFilter.IRI);
+        assertEquals(parse(document, RDFa.VERSION_10, filter, false, true, false), Collections.<String>emptyList());
+    }
+
+    private static List<String> select(List<String> lines, String... tokens) {
+        List<String> result = new ArrayList<String>();
+        for (String line : lines) {
+            for (String token : tokens) {
+                if (line.contains(token)) {
+                    result.add(line);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param filter filter to apply or null
+     * @param pipe apply filter with {@link TripleFilterPipe}
+     * @param pushdown push filter down to parser
+     * @return sorted lines of NTriples output
+     */
+    private static List<String> parse(String document, short rdfaVersion, TripleFilter filter, boolean pipe,
+                                      boolean pushdown, boolean expandVocab) throws ParseException {
+        StringWriter output = new StringWriter();
+        CharOutputSink charOutputSink = new CharOutputSink("UTF-8");
+        charOutputSink.connect(output);
+        TripleSink sink = NTriplesSerializer.connect(charOutputSink);
+        if (pipe) {
+            sink = TripleFilterPipe.connect(sink, filter);
+        }
+        StreamProcessor streamProcessor = new StreamProcessor(RdfaParser.connect(sink));
+        streamProcessor.setProperty(RdfaParser.RDFA_VERSION_PROPERTY, rdfaVersion);
+        streamProcessor.setProperty(RdfaParser.ENABLE_PROCESSOR_GRAPH, false);
+        streamProcessor.setProperty(RdfaParser.ENABLE_VOCAB_EXPANSION, expandVocab);
+        if (pushdown) {
+            streamProcessor.setProperty(StreamProcessor.TRIPLE_FILTER_PROPERTY, filter);
+        }
+        streamProcessor.process(new StringReader(document), BASE);
+        List<String> lines = new ArrayList<String>();
+        for (String line : output.toString().split("\n")) {
+            if (line.trim().length() > 0) {
+                lines.add(line.trim());
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+}
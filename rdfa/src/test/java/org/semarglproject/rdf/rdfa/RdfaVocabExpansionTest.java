@@ -0,0 +1,252 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import org.semarglproject.rdf.NTriplesSerializer;
+import org.semarglproject.rdf.ParseException;
+import org.semarglproject.sink.CharOutputSink;
+import org.semarglproject.source.StreamProcessor;
+import org.semarglproject.vocab.RDF;
+import org.semarglproject.vocab.RDFa;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public final class RdfaVocabExpansionTest {
+
+    private static final String BASE = "http://example.org/doc";
+    private static final String SUBJ = "http://example.org/s";
+    private static final String LABEL = "http://example.org/label";
+
+    private VocabServer server;
+
+    @BeforeClass
+    public void init() throws IOException {
+        server = new VocabServer();
+    }
+
+    @AfterClass
+    public void cleanUp() {
+        server.stop();
+    }
+
+    @Test
+    public void testAsyncLoadingProducesSameOutput() throws ParseException {
+        String vocab = server.getUrl("/async#");
+        server.publish("/async", VocabServer.rdfXml(vocab + "name", LABEL, vocab + "knows", null));
+        String document = document(vocab, "<span property=\"name\">Alice</span>"
+                + "<span property=\"unknown\">ignored</span>"
+                + "<a rel=\"knows\" href=\"http://example.org/o\">o</a>");
+        List<String> expected = sorted(
+                "<" + BASE + "> <" + RDFa.USES_VOCABULARY + "> <" + vocab + "> .",
+                "<" + SUBJ + "> <" + LABEL + "> \"Alice\" .",
+                "<" + SUBJ + "> <" + vocab + "knows> <http://example.org/o> .",
+                "<" + SUBJ + "> <" + vocab + "name> \"Alice\" .");
+        assertEquals(parse(document, 0), expected);
+        server.setDelay(300);
+        try {
+            assertEquals(parse(document, 5000), expected);
+        } finally {
+            server.setDelay(0);
+        }
+    }
+
+    @Test
+    public void testTermsAreResolvedWithoutVocabularyAfterBudgetExpires() throws ParseException {
+        String vocab = server.getUrl("/late#");
+        server.publish("/late", VocabServer.rdfXml(vocab + "name", LABEL));
+        String document = document(vocab, "<span property=\"unknown\">value</span>");
+        server.setDelay(1000);
+        try {
+            assertEquals(parse(document, 1), sorted(
+                    "<" + BASE + "> <" + RDFa.USES_VOCABULARY + "> <" + vocab + "> .",
+                    "<" + SUBJ + "> <" + vocab + "unknown> \"value\" ."));
+        } finally {
+            server.setDelay(0);
+        }
+    }
+
+    @Test
+    public void testMultiHopChainIsExpanded() throws ParseException {
+        String vocab = server.getUrl("/chain#");
+        server.publish("/chain", VocabServer.rdfXml(vocab + "a", vocab + "b", vocab + "b", vocab + "c",
+                vocab + "c", "http://example.org/d"));
+        assertEquals(parse(document(vocab, "<span property=\"a\">v</span><span property=\"c\">w</span>"), 0),
+                sorted("<" + BASE + "> <" + RDFa.USES_VOCABULARY + "> <" + vocab + "> .",
+                        "<" + SUBJ + "> <" + vocab + "a> \"v\" .",
+                        "<" + SUBJ + "> <" + vocab + "b> \"v\" .",
+                        "<" + SUBJ + "> <" + vocab + "c> \"v\" .",
+                        "<" + SUBJ + "> <http://example.org/d> \"v\" .",
+                        "<" + SUBJ + "> <" + vocab + "c> \"w\" .",
+                        "<" + SUBJ + "> <http://example.org/d> \"w\" ."));
+    }
+
+    @Test
+    public void testCyclesAreExpandedOnce() throws ParseException {
+        String vocab = server.getUrl("/cycle#");
+        // a -> b <-> c -> a, object type is expanded as well
+        server.publish("/cycle", "<?xml version=\"1.0\"?>\n"
+                + "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n"
+                + "    xmlns:rdfs=\"http://www.w3.org/2000/01/rdf-schema#\"\n"
+                + "    xmlns:owl=\"http://www.w3.org/2002/07/owl#\">\n"
+                + "  <rdf:Description rdf:about=\"" + vocab + "a\">"
+                + "<rdfs:subPropertyOf rdf:resource=\"" + vocab + "b\"/></rdf:Description>\n"
+                + "  <rdf:Description rdf:about=\"" + vocab + "b\">"
+                + "<owl:equivalentProperty rdf:resource=\"" + vocab + "c\"/></rdf:Description>\n"
+                + "  <rdf:Description rdf:about=\"" + vocab + "c\">"
+                + "<rdfs:subPropertyOf rdf:resource=\"" + vocab + "a\"/></rdf:Description>\n"
+                + "  <rdf:Description rdf:about=\"" + vocab + "Person\">"
+                + "<rdfs:subClassOf rdf:resource=\"" + vocab + "Agent\"/></rdf:Description>\n"
+                + "  <rdf:Description rdf:about=\"" + vocab + "Agent\">"
+                + "<rdfs:subClassOf rdf:resource=\"" + vocab + "Person\"/></rdf:Description>\n"
+                + "</rdf:RDF>\n");
+        assertEquals(parse(document(vocab, "<span property=\"b\">v</span>"
+                + "<span rel=\"a\" resource=\"http://example.org/o\" typeof=\"Person\"></span>"), 0),
+                sorted("<" + BASE + "> <" + RDFa.USES_VOCABULARY + "> <" + vocab + "> .",
+                        "<" + SUBJ + "> <" + vocab + "a> \"v\" .",
+                        "<" + SUBJ + "> <" + vocab + "b> \"v\" .",
+                        "<" + SUBJ + "> <" + vocab + "c> \"v\" .",
+                        "<" + SUBJ + "> <" + vocab + "a> <http://example.org/o> .",
+                        "<" + SUBJ + "> <" + vocab + "b> <http://example.org/o> .",
+                        "<" + SUBJ + "> <" + vocab + "c> <http://example.org/o> .",
+                        "<http://example.org/o> <" + RDF.TYPE + "> <" + vocab + "Person> .",
+                        "<http://example.org/o> <" + RDF.TYPE + "> <" + vocab + "Agent> ."));
+    }
+
+    @Test
+    public void testCollidingTermsAreExpandedSeparately() throws ParseException {
+        String vocab = server.getUrl("/collisions#");
+        // "Aa", "BB" and their concatenations have equal hash codes
+        assertEquals((vocab + "Aa").hashCode(), (vocab + "BB").hashCode());
+        server.publish("/collisions", VocabServer.rdfXml(vocab + "Aa", "http://example.org/x",
+                vocab + "BB", "http://example.org/y", vocab + "AaBB", "http://example.org/z",
+                vocab + "BBAa", null));
+        assertEquals(parse(document(vocab, "<span property=\"Aa\">1</span><span property=\"BB\">2</span>"
+                + "<span property=\"AaBB\">3</span><span property=\"BBAa\">4</span>"), 0),
+                sorted("<" + BASE + "> <" + RDFa.USES_VOCABULARY + "> <" + vocab + "> .",
+                        "<" + SUBJ + "> <" + vocab + "Aa> \"1\" .",
+                        "<" + SUBJ + "> <http://example.org/x> \"1\" .",
+                        "<" + SUBJ + "> <" + vocab + "BB> \"2\" .",
+                        "<" + SUBJ + "> <http://example.org/y> \"2\" .",
+                        "<" + SUBJ + "> <" + vocab + "AaBB> \"3\" .",
+                        "<" + SUBJ + "> <http://example.org/z> \"3\" .",
+                        "<" + SUBJ + "> <" + vocab + "BBAa> \"4\" ."));
+    }
+
+    @Test
+    public void testAbortedDocumentDoesNotLeakHeldExpansions() throws Exception {
+        String vocab = server.getUrl("/aborted#");
+        server.publish("/aborted", VocabServer.rdfXml(vocab + "name", LABEL));
+        VocabCache vocabCache = new VocabCache();
+        StringWriter output = new StringWriter();
+        StreamProcessor streamProcessor = createStreamProcessor(output, vocabCache, 5000);
+
+        // property isn't a term, so its expansion is held while vocabulary is loaded, then connection is lost
+        Reader abortedDocument = new FilterReader(new StringReader("<html xmlns=\"http://www.w3.org/1999/xhtml\">"
+                + "<body vocab=\"" + vocab + "\"><div about=\"" + SUBJ + "\">"
+                + "<span property=\"" + vocab + "name\">Alice</span><p>")) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int count = super.read(cbuf, off, len);
+                if (count == -1) {
+                    throw new IOException("Connection reset");
+                }
+                return count;
+            }
+        };
+        server.setDelay(300);
+        try {
+            streamProcessor.process(abortedDocument, BASE);
+            fail();
+        } catch (ParseException e) {
+            // expected
+        } finally {
+            server.setDelay(0);
+        }
+        vocabCache.prefetchVocab(vocab).get();
+        output.getBuffer().setLength(0);
+
+        String other = "http://example.org/other";
+        streamProcessor.process(new StringReader("<html xmlns=\"http://www.w3.org/1999/xhtml\"><body>"
+                + "<div about=\"" + other + "\"><span property=\"http://example.org/p\">Bob</span></div>"
+                + "</body></html>"), BASE);
+        assertEquals(lines(output), sorted("<" + other + "> <http://example.org/p> \"Bob\" ."));
+    }
+
+    private static List<String> sorted(String... lines) {
+        List<String> result = Arrays.asList(lines);
+        Collections.sort(result);
+        return result;
+    }
+
+    private static String document(String vocab, String content) {
+        return "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body vocab=\"" + vocab + "\">"
+                + "<div about=\"" + SUBJ + "\">" + content + "</div></body></html>";
+    }
+
+    /**
+     * Parses document with fresh vocabulary cache.
+     * @param prefetchBudget asynchronous loading budget, zero for synchronous loading
+     * @return sorted lines of NTriples output
+     */
+    private static List<String> parse(String document, long prefetchBudget) throws ParseException {
+        StringWriter output = new StringWriter();
+        createStreamProcessor(output, new VocabCache(), prefetchBudget).process(new StringReader(document), BASE);
+        return lines(output);
+    }
+
+    private static StreamProcessor createStreamProcessor(StringWriter output, VocabCache vocabCache,
+                                                         long prefetchBudget) {
+        CharOutputSink charOutputSink = new CharOutputSink("UTF-8");
+        charOutputSink.connect(output);
+        StreamProcessor streamProcessor = new StreamProcessor(RdfaParser.connect(
+                NTriplesSerializer.connect(charOutputSink)));
+        streamProcessor.setProperty(RdfaParser.RDFA_VERSION_PROPERTY, RDFa.VERSION_11);
+        streamProcessor.setProperty(RdfaParser.ENABLE_PROCESSOR_GRAPH, false);
+        streamProcessor.setProperty(RdfaParser.ENABLE_VOCAB_EXPANSION, true);
+        streamProcessor.setProperty(RdfaParser.VOCAB_CACHE_PROPERTY, vocabCache);
+        streamProcessor.setProperty(RdfaParser.VOCAB_PREFETCH_BUDGET_PROPERTY, prefetchBudget);
+        return streamProcessor;
+    }
+
+    /**
+     * @return sorted lines of NTriples output
+     */
+    private static List<String> lines(StringWriter output) {
+        List<String> lines = new ArrayList<String>();
+        for (String line : output.toString().split("\n")) {
+            if (line.trim().length() > 0) {
+                lines.add(line.trim());
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class VocabBundleCompilerTest {
+
+    private static final String VOCAB1 = "http://example.org/vocab1#";
+    private static final String VOCAB2 = "http://example.org/vocab2/";
+
+    private File dir;
+
+    @BeforeMethod
+    public void init() throws IOException {
+        dir = File.createTempFile("semargl-bundle", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @AfterMethod
+    public void cleanUp() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testCompiledBundleIsRead() throws IOException {
+        write("vocab1.rdf", VocabServer.rdfXml(
+                VOCAB1 + "name", "http://example.org/label",
+                VOCAB1 + "label", "http://example.org/label",
+                VOCAB1 + "knows", null));
+        write("vocab2.rdf", VocabServer.rdfXml(VOCAB2 + "title", VOCAB1 + "name"));
+        write("vocabularies.txt", "# comment\n\n" + VOCAB1 + "  vocab1.rdf\n"
+                + VOCAB2 + "\t" + new File(dir, "vocab2.rdf").toURI() + "\n");
+        File bundle = new File(dir, "vocab-bundle.bin");
+        VocabBundleCompiler.main(new String[] {new File(dir, "vocabularies.txt").getPath(), bundle.getPath()});
+
+        Map<String, Vocabulary> vocabs = read(bundle);
+        assertEquals(vocabs.keySet(), set(VOCAB1, VOCAB2));
+
+        Vocabulary vocab1 = vocabs.get(VOCAB1);
+        assertEquals(vocab1.getUrl(), VOCAB1);
+        assertEquals(set(vocab1.getTerms()), set(
+                VOCAB1 + "name", VOCAB1 + "label", VOCAB1 + "knows", "http://example.org/label"));
+        assertEquals(vocab1.getExpansions(), loadDirectly(VOCAB1, "vocab1.rdf").getExpansions());
+        assertEquals(vocab1.resolveTerm("knows"), VOCAB1 + "knows");
+        assertEquals(vocab1.resolveTerm("unknown"), null);
+        assertEquals(set(vocab1.expand(VOCAB1 + "name")), set("http://example.org/label"));
+
+        Vocabulary vocab2 = vocabs.get(VOCAB2);
+        assertEquals(set(vocab2.getTerms()), set(loadDirectly(VOCAB2, "vocab2.rdf").getTerms()));
+        assertEquals(set(vocab2.expand(VOCAB2 + "title")), set(VOCAB1 + "name"));
+    }
+
+    @Test
+    public void testFirstBundleWins() throws IOException {
+        Vocabulary first = new Vocabulary(VOCAB1, Collections.singleton(VOCAB1 + "a"),
+                Collections.<String, Collection<String>>emptyMap());
+        Vocabulary second = new Vocabulary(VOCAB1, Collections.singleton(VOCAB1 + "b"),
+                Collections.<String, Collection<String>>emptyMap());
+        Map<String, Vocabulary> vocabs = new HashMap<String, Vocabulary>();
+        VocabBundle.read(toStream(first), vocabs);
+        VocabBundle.read(toStream(second), vocabs);
+        assertEquals(set(vocabs.get(VOCAB1).getTerms()), set(VOCAB1 + "a"));
+    }
+
+    @Test
+    public void testUnloadableVocabularyFailsCompilation() throws IOException {
+        write("vocabularies.txt", VOCAB1 + " missing.rdf\n");
+        try {
+            VocabBundleCompiler.main(new String[] {new File(dir, "vocabularies.txt").getPath(),
+                    new File(dir, "vocab-bundle.bin").getPath()});
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(VOCAB1));
+        }
+    }
+
+    @Test
+    public void testForeignDataIsRejected() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        OutputStream gzip = new GZIPOutputStream(buffer);
+        gzip.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        gzip.close();
+        try {
+            VocabBundle.read(new ByteArrayInputStream(buffer.toByteArray()), new HashMap<String, Vocabulary>());
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static InputStream toStream(Vocabulary vocab) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        VocabBundle.write(Collections.singleton(vocab), buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+    private static Set<String> set(Collection<String> values) {
+        return new HashSet<String>(values);
+    }
+
+    private Vocabulary loadDirectly(String url, String fileName) {
+        Vocabulary vocab = new Vocabulary(url);
+        vocab.load(new File(dir, fileName).toURI().toString());
+        assertTrue(vocab.isLoaded());
+        return vocab;
+    }
+
+    private Map<String, Vocabulary> read(File bundle) throws IOException {
+        Map<String, Vocabulary> vocabs = new HashMap<String, Vocabulary>();
+        InputStream inputStream = new FileInputStream(bundle);
+        try {
+            VocabBundle.read(inputStream, vocabs);
+        } finally {
+            inputStream.close();
+        }
+        return vocabs;
+    }
+
+    private void write(String fileName, String content) throws IOException {
+        OutputStream output = new FileOutputStream(new File(dir, fileName));
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+}
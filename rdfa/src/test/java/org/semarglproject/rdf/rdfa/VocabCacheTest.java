@@ -0,0 +1,196 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public final class VocabCacheTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private VocabServer server;
+
+    @BeforeClass
+    public void init() throws IOException {
+        server = new VocabServer();
+        for (String name : new String[] {"a", "b", "c", "slow", "expiring", "snapshot1", "snapshot2"}) {
+            server.publish("/" + name, VocabServer.rdfXml(server.getUrl("/" + name + "#term"), null));
+        }
+    }
+
+    @AfterClass
+    public void cleanUp() {
+        server.stop();
+    }
+
+    @Test
+    public void testConcurrentRequestsAreLoadedOnce() throws Exception {
+        final VocabCache cache = new VocabCache();
+        final String url = server.getUrl("/slow#");
+        final CountDownLatch start = new CountDownLatch(1);
+        server.setDelay(300);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Vocabulary>> results = new ArrayList<Future<Vocabulary>>();
+            for (int i = 0; i < 8; i++) {
+                final boolean async = i % 2 == 0;
+                results.add(executor.submit(new Callable<Vocabulary>() {
+                    @Override
+                    public Vocabulary call() throws Exception {
+                        start.await();
+                        return async ? cache.prefetchVocab(url).get() : cache.findVocab(url);
+                    }
+                }));
+            }
+            start.countDown();
+            Vocabulary first = results.get(0).get();
+            assertTrue(first.isLoaded());
+            for (Future<Vocabulary> result : results) {
+                assertSame(result.get(), first);
+            }
+        } finally {
+            server.setDelay(0);
+            executor.shutdown();
+        }
+        assertEquals(server.getRequests("/slow"), 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedVocabIsEvicted() {
+        VocabCache cache = new VocabCache(2, HOUR, HOUR, HOUR);
+        int requestsA = server.getRequests("/a");
+        int requestsB = server.getRequests("/b");
+        cache.findVocab(server.getUrl("/a#"));
+        cache.findVocab(server.getUrl("/b#"));
+        cache.findVocab(server.getUrl("/a#"));
+        cache.findVocab(server.getUrl("/c#"));
+        assertEquals(server.getRequests("/a"), requestsA + 1);
+        assertEquals(server.getRequests("/b"), requestsB + 1);
+
+        assertTrue(cache.findVocab(server.getUrl("/a#")).isLoaded());
+        assertEquals(server.getRequests("/a"), requestsA + 1);
+        assertTrue(cache.findVocab(server.getUrl("/b#")).isLoaded());
+        assertEquals(server.getRequests("/b"), requestsB + 2);
+    }
+
+    @Test
+    public void testLoadedVocabExpires() throws InterruptedException {
+        VocabCache cache = new VocabCache(16, 300, HOUR, HOUR);
+        String url = server.getUrl("/expiring#");
+        cache.findVocab(url);
+        cache.findVocab(url);
+        assertEquals(server.getRequests("/expiring"), 1);
+        Thread.sleep(500);
+        assertTrue(cache.findVocab(url).isLoaded());
+        assertEquals(server.getRequests("/expiring"), 2);
+    }
+
+    @Test
+    public void testFailedLoadIsRetriedWithBackoff() throws InterruptedException {
+        VocabCache cache = new VocabCache(16, HOUR, 300, 600);
+        String url = server.getUrl("/missing#");
+        assertFalse(cache.findVocab(url).isLoaded());
+        assertFalse(cache.findVocab(url).isLoaded());
+        assertEquals(server.getRequests("/missing"), 1);
+
+        // first retry after 300 ms, next one after 600 ms
+        Thread.sleep(450);
+        assertFalse(cache.findVocab(url).isLoaded());
+        assertEquals(server.getRequests("/missing"), 2);
+        Thread.sleep(300);
+        cache.findVocab(url);
+        assertEquals(server.getRequests("/missing"), 2);
+        Thread.sleep(450);
+        cache.findVocab(url);
+        assertEquals(server.getRequests("/missing"), 3);
+
+        // backoff is limited by maximum negative TTL
+        server.publish("/missing", VocabServer.rdfXml(server.getUrl("/missing#term"), null));
+        try {
+            Thread.sleep(750);
+            assertTrue(cache.findVocab(url).isLoaded());
+            assertEquals(server.getRequests("/missing"), 4);
+        } finally {
+            server.remove("/missing");
+        }
+    }
+
+    @Test
+    public void testSnapshotIsRestored() throws Exception {
+        File file = File.createTempFile("semargl-vocabs", ".bin");
+        file.delete();
+        try {
+            VocabCache cache = new VocabCache();
+            cache.setSnapshotFile(file);
+            cache.findVocab(server.getUrl("/snapshot1#"));
+            cache.findVocab(server.getUrl("/snapshot2#"));
+            // write is delayed, so both loads end up in a single snapshot
+            assertFalse(file.exists());
+            for (int i = 0; i < 100 && !file.exists(); i++) {
+                Thread.sleep(50);
+            }
+            assertTrue(file.exists());
+
+            VocabCache restored = new VocabCache();
+            restored.setSnapshotFile(file);
+            assertTrue(restored.findVocab(server.getUrl("/snapshot1#")).isLoaded());
+            assertTrue(restored.findVocab(server.getUrl("/snapshot2#")).isLoaded());
+            assertEquals(server.getRequests("/snapshot1"), 1);
+            assertEquals(server.getRequests("/snapshot2"), 1);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSnapshotIsFlushed() throws Exception {
+        File file = File.createTempFile("semargl-vocabs", ".bin");
+        file.delete();
+        try {
+            VocabCache cache = new VocabCache();
+            cache.setSnapshotFile(file);
+            cache.findVocab(server.getUrl("/c#"));
+            cache.flushSnapshot();
+            assertTrue(file.exists());
+
+            int requests = server.getRequests("/c");
+            VocabCache restored = new VocabCache();
+            restored.setSnapshotFile(file);
+            assertTrue(restored.findVocab(server.getUrl("/c#")).isLoaded());
+            assertEquals(server.getRequests("/c"), requests);
+        } finally {
+            file.delete();
+        }
+    }
+
+}
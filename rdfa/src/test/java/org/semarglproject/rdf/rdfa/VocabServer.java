@@ -0,0 +1,134 @@
+/**
+ * Copyright 2012-2013 the Semargl contributors. See AUTHORS for more details.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semarglproject.rdf.rdfa;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP server publishing vocabulary documents and counting requests for them.
+ */
+final class VocabServer {
+
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String RDFS_NS = "http://www.w3.org/2000/01/rdf-schema#";
+
+    private final Map<String, String> documents = new ConcurrentHashMap<String, String>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile long delay = 0;
+
+    VocabServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Builds RDF/XML vocabulary document.
+     * @param statements pairs of subject and object IRIs of rdfs:subPropertyOf statements,
+     *                   subjects with null object are declared as rdf:Property
+     */
+    static String rdfXml(String... statements) {
+        StringBuilder result = new StringBuilder("<?xml version=\"1.0\"?>\n<rdf:RDF xmlns:rdf=\"")
+                .append(RDF_NS).append("\" xmlns:rdfs=\"").append(RDFS_NS).append("\">\n");
+        for (int i = 0; i < statements.length; i += 2) {
+            result.append("  <rdf:Description rdf:about=\"").append(statements[i]).append("\">");
+            if (statements[i + 1] == null) {
+                result.append("<rdf:type rdf:resource=\"").append(RDF_NS).append("Property\"/>");
+            } else {
+                result.append("<rdfs:subPropertyOf rdf:resource=\"").append(statements[i + 1]).append("\"/>");
+            }
+            result.append("</rdf:Description>\n");
+        }
+        return result.append("</rdf:RDF>\n").toString();
+    }
+
+    String getUrl(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    void publish(String path, String document) {
+        documents.put(path, document);
+    }
+
+    void remove(String path) {
+        documents.remove(path);
+    }
+
+    void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    int getRequests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        synchronized (requests) {
+            if (!requests.containsKey(path)) {
+                requests.put(path, new AtomicInteger());
+            }
+        }
+        requests.get(path).incrementAndGet();
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String document = documents.get(path);
+        if (document == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = document.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/rdf+xml");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream output = exchange.getResponseBody();
+        try {
+            output.write(body);
+        } finally {
+            output.close();
+        }
+    }
+
+}